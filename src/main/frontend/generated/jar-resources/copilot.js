@@ -0,0 +1 @@
+import "./copilot/copilot-CjVeA4wK.js";
@@ -0,0 +1,2 @@
+import {applyTheme as _applyTheme} from './theme-vaadin-mail-manager.generated.js';
+export const applyTheme = _applyTheme;
@@ -1,6 +1,7 @@
 package ch.aarboard.vamm;
 
 import com.vaadin.flow.component.page.AppShellConfigurator;
+import com.vaadin.flow.component.page.Push;
 import com.vaadin.flow.theme.Theme;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
@@ -11,8 +12,11 @@ import org.springframework.boot.autoconfigure.SpringBootApplication;
  * Use the @PWA annotation make the application installable on phones, tablets
  * and some desktop browsers.
  *
+ * Server push is enabled so views can render immediately and receive their
+ * data from background threads.
  */
 @SpringBootApplication
+@Push
 @Theme(value = "vaadin-mail-manager")
 public class Application implements AppShellConfigurator {
 
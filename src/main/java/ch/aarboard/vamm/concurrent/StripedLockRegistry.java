@@ -0,0 +1,166 @@
+package ch.aarboard.vamm.concurrent;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Serializes check-then-act flows (e.g. "does the address exist? then create it") per key.
+ *
+ * Keys are hashed onto a fixed number of stripes, so memory stays constant no matter how
+ * many addresses are touched, and unrelated operations only wait for each other on a hash
+ * collision. An uncontended acquisition is a single CAS through {@link ReentrantLock#tryLock()},
+ * only a contended one parks the thread and is counted in the {@link LockStats}.
+ *
+ * Operations on several keys take their stripes in ascending index order, which rules out
+ * lock-order deadlocks between them. The locks are local to this JVM, the directory itself
+ * still rejects duplicate DNs across instances.
+ */
+@Component
+public class StripedLockRegistry {
+
+    private final ReentrantLock[] stripes;
+    private final int mask;
+
+    private final LongAdder acquisitions = new LongAdder();
+    private final LongAdder contended = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+    private final LongAccumulator maxWaitNanos = new LongAccumulator(Math::max, 0);
+    private final AtomicLong waiting = new AtomicLong();
+
+    @Autowired
+    public StripedLockRegistry(@Value("${jamm.locks.stripes:64}") int stripeCount) {
+        if (stripeCount < 1) {
+            throw new IllegalArgumentException("Stripe count must be positive: " + stripeCount);
+        }
+        // Round up to a power of two so the stripe index is a mask instead of a modulo
+        int size = 1;
+        while (size < stripeCount) {
+            size <<= 1;
+        }
+        this.stripes = new ReentrantLock[size];
+        for (int i = 0; i < size; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+        this.mask = size - 1;
+    }
+
+    /**
+     * Key for a mail address. Accounts and aliases share it, since they share the DN.
+     */
+    public static String mailKey(String mail) {
+        return "mail:" + normalize(mail);
+    }
+
+    /**
+     * Key for a virtual domain
+     */
+    public static String domainKey(String domain) {
+        return "domain:" + normalize(domain);
+    }
+
+    /**
+     * Run an action while holding the stripes of all given keys.
+     *
+     * @param keys   The keys, e.g. from {@link #mailKey(String)}
+     * @param action The check-then-act sequence
+     * @return The result of the action
+     */
+    public <T> T withLocks(Supplier<T> action, String... keys) {
+        int[] indices = stripeIndices(keys);
+        int acquired = 0;
+        try {
+            for (int index : indices) {
+                acquire(stripes[index]);
+                acquired++;
+            }
+            return action.get();
+        } finally {
+            for (int i = acquired - 1; i >= 0; i--) {
+                stripes[indices[i]].unlock();
+            }
+        }
+    }
+
+    /**
+     * Run an action while holding the stripes of all given keys.
+     */
+    public void withLocks(Runnable action, String... keys) {
+        withLocks(() -> {
+            action.run();
+            return null;
+        }, keys);
+    }
+
+    public int getStripeCount() {
+        return stripes.length;
+    }
+
+    /**
+     * Snapshot of the contention counters since startup
+     */
+    public LockStats getStats() {
+        return new LockStats(acquisitions.sum(), contended.sum(), waitNanos.sum(), maxWaitNanos.get(), waiting.get());
+    }
+
+    private void acquire(ReentrantLock lock) {
+        acquisitions.increment();
+        if (lock.tryLock()) {
+            return;
+        }
+
+        contended.increment();
+        waiting.incrementAndGet();
+        long start = System.nanoTime();
+        try {
+            lock.lock();
+        } finally {
+            long waited = System.nanoTime() - start;
+            waiting.decrementAndGet();
+            waitNanos.add(waited);
+            maxWaitNanos.accumulate(waited);
+        }
+    }
+
+    int stripeIndex(String key) {
+        int h = key.hashCode();
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    private int[] stripeIndices(String... keys) {
+        if (keys == null || keys.length == 0) {
+            throw new IllegalArgumentException("At least one key is required");
+        }
+        // Sorted and without duplicates: fixed acquisition order, and no stripe is taken twice
+        return Arrays.stream(keys).mapToInt(this::stripeIndex).sorted().distinct().toArray();
+    }
+
+    private static String normalize(String value) {
+        return value == null ? "" : value.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Contention counters of the registry.
+     *
+     * @param acquisitions    Stripes acquired in total
+     * @param contended       Acquisitions that had to wait because the stripe was held
+     * @param totalWaitNanos  Time spent waiting over all contended acquisitions
+     * @param maxWaitNanos    Longest single wait
+     * @param currentlyWaiting Threads waiting for a stripe right now
+     */
+    public record LockStats(long acquisitions, long contended, long totalWaitNanos, long maxWaitNanos,
+                            long currentlyWaiting) {
+
+        public double contentionRatio() {
+            return acquisitions == 0 ? 0.0 : (double) contended / acquisitions;
+        }
+    }
+}
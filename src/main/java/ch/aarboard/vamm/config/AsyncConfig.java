@@ -0,0 +1,73 @@
+package ch.aarboard.vamm.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+/**
+ * Executors used to move LDAP work off the Vaadin request threads.
+ */
+@Configuration
+public class AsyncConfig {
+
+    public static final String VIEW_LOAD_EXECUTOR = "viewLoadExecutor";
+    public static final String JOB_EXECUTOR = "jobExecutor";
+    public static final String PASSWORD_HASH_EXECUTOR = "passwordHashExecutor";
+
+    /**
+     * Executor that loads view data in the background. Results are handed back
+     * to the UI through {@code UI.access} and delivered by server push.
+     */
+    @Bean(name = VIEW_LOAD_EXECUTOR, destroyMethod = "shutdown")
+    public ThreadPoolTaskExecutor viewLoadExecutor(
+            @Value("${jamm.ui.loader.pool-size:4}") int poolSize,
+            @Value("${jamm.ui.loader.queue-capacity:200}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("view-load-");
+        executor.setWaitForTasksToCompleteOnShutdown(false);
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * Executor for long-running background jobs such as domain deletion. Kept small
+     * and separate from the view loader so bulk work never starves page loads.
+     */
+    @Bean(name = JOB_EXECUTOR, destroyMethod = "shutdown")
+    public ThreadPoolTaskExecutor jobExecutor(
+            @Value("${jamm.jobs.pool-size:2}") int poolSize,
+            @Value("${jamm.jobs.queue-capacity:100}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("job-");
+        executor.setWaitForTasksToCompleteOnShutdown(false);
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * Executor for password hashing. Argon2 and PBKDF2 take tens of milliseconds of CPU per
+     * hash, the pool is bounded to half the cores by default so a burst of password changes
+     * leaves room for the request threads. A full queue rejects instead of piling up.
+     */
+    @Bean(name = PASSWORD_HASH_EXECUTOR, destroyMethod = "shutdown")
+    public ThreadPoolTaskExecutor passwordHashExecutor(
+            @Value("${jamm.password.hash-threads:0}") int poolSize,
+            @Value("${jamm.password.hash-queue-capacity:100}") int queueCapacity) {
+        int threads = poolSize > 0 ? poolSize : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("password-hash-");
+        executor.setWaitForTasksToCompleteOnShutdown(false);
+        executor.initialize();
+        return executor;
+    }
+}
@@ -0,0 +1,51 @@
+package ch.aarboard.vamm.config;
+
+import ch.aarboard.vamm.ldap.InMemoryJammDirectory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.annotation.Profile;
+
+import java.nio.file.Path;
+
+/**
+ * Runs the application against an {@link InMemoryJammDirectory} instead of an external server,
+ * for local runs and load tests without OpenLDAP:
+ *
+ * <pre>
+ * mvn spring-boot:run -Dspring-boot.run.profiles=embedded-ldap
+ * </pre>
+ *
+ * The directory is loaded with the sample data and lost on shutdown. Log in as the admin of
+ * {@code jamm.root.dn} with the password {@code admin}. The directory indexes read it as the same
+ * admin, see {@code application-embedded-ldap.properties}.
+ */
+@Configuration
+@Profile("embedded-ldap")
+public class EmbeddedLdapConfig {
+
+    private static final Logger log = LoggerFactory.getLogger(EmbeddedLdapConfig.class);
+
+    @Bean(destroyMethod = "close")
+    public InMemoryJammDirectory inMemoryJammDirectory(
+            @Value("${jamm.ldap.embedded.port:0}") int port,
+            @Value("${jamm.ldap.embedded.schema:example/schemas/jamm.ldif}") String schema,
+            @Value("${jamm.ldap.embedded.ldif:example/sample.ldif}") String ldif) throws Exception {
+        InMemoryJammDirectory directory = new InMemoryJammDirectory(Path.of(schema), port);
+        int entries = ldif.isBlank() ? 0 : directory.importLdif(Path.of(ldif));
+        log.info("Embedded LDAP server listening on {} with {} entries from {}", directory.getUrl(), entries, ldif);
+        return directory;
+    }
+
+    /**
+     * Replaces the {@code jamm.ldap.*} settings, the port is only known once the directory listens
+     */
+    @Bean
+    @Primary
+    public LdapConfig inMemoryLdapConfig(InMemoryJammDirectory directory) {
+        return directory.ldapConfig();
+    }
+}
@@ -1,28 +1,23 @@
 package ch.aarboard.vamm.config;
 
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 @Component
 public class LdapConfig {
 
-    @Value("${jamm.ldap.url:ldap://localhost:389}")
-    private String url;
-
-    @Value("${jamm.ldap.base:dc=example,dc=com}")
-    private String base;
-
-    @Value("${jamm.ldap.connection-timeout:5000}")
-    private int connectionTimeout;
-
-    @Value("${jamm.ldap.read-timeout:10000}")
-    private int readTimeout;
-
-    public LdapConfig() {
-        // Default constructor for Spring to create bean
-    }
-
-    public LdapConfig(String ldapUrl, String ldapBase, int connectionTimeout, int readTimeout) {
+    private final String url;
+    private final String base;
+    private final int connectionTimeout;
+    private final int readTimeout;
+
+    // Constructor injection, field injection would also overwrite instances created by @Bean methods
+    @Autowired
+    public LdapConfig(@Value("${jamm.ldap.url:ldap://localhost:389}") String ldapUrl,
+                      @Value("${jamm.ldap.base:dc=example,dc=com}") String ldapBase,
+                      @Value("${jamm.ldap.connection-timeout:5000}") int connectionTimeout,
+                      @Value("${jamm.ldap.read-timeout:10000}") int readTimeout) {
         this.url = ldapUrl;
         this.base = ldapBase;
         this.connectionTimeout = connectionTimeout;
@@ -44,4 +39,4 @@ public class LdapConfig {
     public int getReadTimeout() {
         return readTimeout;
     }
-}
\ No newline at end of file
+}
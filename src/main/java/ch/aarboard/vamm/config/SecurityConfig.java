@@ -4,12 +4,16 @@ import ch.aarboard.vamm.security.LdapAuthenticationProvider;
 import ch.aarboard.vamm.ui.views.security.LoginView;
 import com.vaadin.flow.spring.security.VaadinWebSecurity;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
 import org.springframework.security.authentication.AuthenticationProvider;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
+import org.springframework.security.web.SecurityFilterChain;
 
 @Configuration
 @EnableWebSecurity
@@ -32,13 +36,26 @@ public class SecurityConfig extends VaadinWebSecurity {
         );
     }
 
+    /**
+     * The actuator endpoints are served on {@code management.server.port}, which is bound to
+     * localhost, so the Prometheus scraper can read them without a login. The rule only applies
+     * while that port differs from the application's, otherwise the endpoints need a login
+     * like every other page.
+     */
     @Bean
-    public LdapConfig ldapConfig() {
-        return new LdapConfig();
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public SecurityFilterChain managementSecurityFilterChain(HttpSecurity http,
+                                                             @Value("${server.port:8080}") int serverPort,
+                                                             @Value("${management.server.port:-1}") int managementPort)
+            throws Exception {
+        boolean separatePort = managementPort > 0 && managementPort != serverPort;
+        http.securityMatcher(request -> separatePort && request.getLocalPort() == managementPort)
+                .authorizeHttpRequests(auth -> auth.anyRequest().permitAll());
+        return http.build();
     }
 
     @Bean
-    public AuthenticationProvider authenticationProvider(@Autowired ApplicationContext applicationContext) {
-        return new LdapAuthenticationProvider(ldapConfig(), applicationContext);
+    public AuthenticationProvider authenticationProvider(LdapConfig ldapConfig, @Autowired ApplicationContext applicationContext) {
+        return new LdapAuthenticationProvider(ldapConfig, applicationContext);
     }
 }
\ No newline at end of file
@@ -1,11 +1,13 @@
 package ch.aarboard.vamm.data.entries;
 
+import ch.aarboard.vamm.data.interfaces.IJammEntry;
 import ch.aarboard.vamm.utils.LdapUtils;
 import ch.aarboard.vamm.utils.MailUtils;
 import ch.aarboard.vamm.utils.PasswordUtils;
 import org.springframework.ldap.odm.annotations.Attribute;
 import org.springframework.ldap.odm.annotations.Entry;
 import org.springframework.ldap.odm.annotations.Id;
+import org.springframework.ldap.odm.annotations.Transient;
 import org.springframework.ldap.support.LdapNameBuilder;
 
 import javax.naming.Name;
@@ -16,7 +18,7 @@ import java.time.Instant;
  * Maps to the JammMailAccount objectClass.
  */
 @Entry(objectClasses = {"top", "JammMailAccount"})
-public final class JammMailAccount {
+public final class JammMailAccount implements IJammEntry {
 
     @Id
     private Name id;
@@ -38,6 +40,10 @@ public final class JammMailAccount {
     @Attribute(name = "lastChange")
     private String lastChange;
 
+    // lastChange as read from the directory, the expected value for conditional updates
+    @Transient
+    private String loadedLastChange;
+
     // Boolean
     @Attribute(name = "delete")
     private String delete;
@@ -82,17 +88,27 @@ public final class JammMailAccount {
 
 
     /**
-     * Set password securely using SSHA hashing
+     * Set password securely using the default scheme of {@link PasswordUtils}, SSHA unless configured otherwise
      * This method hashes the password and updates the last change timestamp.
      * @param plainPassword the plain text password to hash
      */
     public void setPasswordSecure(String plainPassword) {
+        setHashedPassword(plainPassword, PasswordUtils.hashPassword(plainPassword));
+    }
+
+    /**
+     * Set a password that was already hashed, e.g. on the hashing executor
+     * This method updates the last change timestamp.
+     * @param plainPassword the plain text password
+     * @param hashedPassword the hashed password including the scheme prefix
+     */
+    public void setHashedPassword(String plainPassword, String hashedPassword) {
         if (plainPassword == null || plainPassword.trim().isEmpty()) {
             throw new IllegalArgumentException("Password cannot be empty");
         }
 
         this.clearPassword = plainPassword;
-        this.userPassword = PasswordUtils.hashPasswordSsha(plainPassword);
+        this.userPassword = hashedPassword;
         updateLastChange();
     }
 
@@ -109,12 +125,7 @@ public final class JammMailAccount {
 
         this.clearPassword = plainPassword;
 
-        switch (scheme) {
-            case PLAIN -> this.userPassword = PasswordUtils.PasswordScheme.PLAIN.getPrefix() + plainPassword;
-            case SSHA -> this.userPassword = PasswordUtils.hashPasswordSsha(plainPassword);
-            case SHA -> this.userPassword = PasswordUtils.hashPasswordSha(plainPassword);
-            case MD5 -> this.userPassword = PasswordUtils.hashPasswordMd5(plainPassword);
-        }
+        this.userPassword = PasswordUtils.hashPassword(plainPassword, scheme);
 
         updateLastChange();
     }
@@ -200,9 +211,10 @@ public final class JammMailAccount {
     /**
      * Update the last change timestamp to the current time.
      * This method sets the lastChange attribute to the current epoch second.
+     * The value is always above the one the entity was read with, so it can serve as a version.
      */
     public void updateLastChange() {
-        this.lastChange = String.valueOf(Instant.now().getEpochSecond());
+        this.lastChange = LdapUtils.nextLastChange(loadedLastChange);
     }
 
     /**
@@ -243,9 +255,15 @@ public final class JammMailAccount {
     public String getAccountActive() { return accountActive; }
     public void setAccountActive(String accountActive) { this.accountActive = accountActive; }
 
+    @Override
     public String getLastChange() { return lastChange; }
     public void setLastChange(String lastChange) { this.lastChange = lastChange; }
 
+    @Override
+    public String getLoadedLastChange() { return loadedLastChange; }
+    @Override
+    public void setLoadedLastChange(String loadedLastChange) { this.loadedLastChange = loadedLastChange; }
+
     public String getDelete() { return delete; }
     public void setDelete(String delete) { this.delete = delete; }
 
@@ -1,10 +1,12 @@
 package ch.aarboard.vamm.data.entries;
 
+import ch.aarboard.vamm.data.interfaces.IJammEntry;
 import ch.aarboard.vamm.utils.LdapUtils;
 import ch.aarboard.vamm.utils.MailUtils;
 import org.springframework.ldap.odm.annotations.Attribute;
 import org.springframework.ldap.odm.annotations.Entry;
 import org.springframework.ldap.odm.annotations.Id;
+import org.springframework.ldap.odm.annotations.Transient;
 import org.springframework.ldap.support.LdapNameBuilder;
 
 import javax.naming.Name;
@@ -18,7 +20,7 @@ import java.util.Collections;
  * Maps to the JammMailAlias objectClass.
  */
 @Entry(objectClasses = {"top", "JammMailAlias"})
-public final class JammMailAlias {
+public final class JammMailAlias implements IJammEntry {
 
     @Id
     private Name id;
@@ -37,6 +39,10 @@ public final class JammMailAlias {
     @Attribute(name = "lastChange")
     private String lastChange;
 
+    // lastChange as read from the directory, the expected value for conditional updates
+    @Transient
+    private String loadedLastChange;
+
     @Attribute(name = "mailsource")
     private String mailsource;
 
@@ -49,6 +55,11 @@ public final class JammMailAlias {
     @Attribute(name = "userPassword")
     private String userPassword;
 
+    // Boolean, set by the hosting setup for aliases like postmaster and abuse, never written here.
+    // See example/schemas/jamm-systemalias.ldif for servers with an older schema.
+    @Attribute(name = "systemAlias", readonly = true)
+    private String systemAlias;
+
 
     public JammMailAlias() {
         this.accountActive = "TRUE";
@@ -118,6 +129,15 @@ public final class JammMailAlias {
         return mail != null && mail.startsWith("@");
     }
 
+    /**
+     * Convenience method to check if the alias is a system alias.
+     * System aliases are required by the hosting setup and are not changed by cleanups.
+     * @return true if the alias is marked as system alias, false otherwise.
+     */
+    public boolean isSystemAlias() {
+        return "TRUE".equals(systemAlias);
+    }
+
     /**
      * Convenience method to check if the alias is a postmaster alias.
      * A postmaster alias typically has "postmaster" in the mail address.
@@ -169,9 +189,10 @@ public final class JammMailAlias {
     /**
      * Update the last change timestamp to the current time.
      * This is typically called when the alias is modified.
+     * The value is always above the one the entity was read with, so it can serve as a version.
      */
     public void updateLastChange() {
-        this.lastChange = String.valueOf(Instant.now().getEpochSecond());
+        this.lastChange = LdapUtils.nextLastChange(loadedLastChange);
     }
 
     /**
@@ -207,9 +228,15 @@ public final class JammMailAlias {
     public String getAccountActive() { return accountActive; }
     public void setAccountActive(String accountActive) { this.accountActive = accountActive; }
 
+    @Override
     public String getLastChange() { return lastChange; }
     public void setLastChange(String lastChange) { this.lastChange = lastChange; }
 
+    @Override
+    public String getLoadedLastChange() { return loadedLastChange; }
+    @Override
+    public void setLoadedLastChange(String loadedLastChange) { this.loadedLastChange = loadedLastChange; }
+
     public String getMailsource() { return mailsource; }
     public void setMailsource(String mailsource) { this.mailsource = mailsource; }
 
@@ -1,10 +1,12 @@
 package ch.aarboard.vamm.data.entries;
 
+import ch.aarboard.vamm.data.interfaces.IJammEntry;
 import ch.aarboard.vamm.utils.LdapUtils;
 import ch.aarboard.vamm.utils.MailUtils;
 import org.springframework.ldap.odm.annotations.Attribute;
 import org.springframework.ldap.odm.annotations.Entry;
 import org.springframework.ldap.odm.annotations.Id;
+import org.springframework.ldap.odm.annotations.Transient;
 import org.springframework.ldap.support.LdapNameBuilder;
 
 import javax.naming.Name;
@@ -19,7 +21,7 @@ import java.util.Collections;
  * This represents a special alias that has postmaster privileges.
  */
 @Entry(objectClasses = {"top", "JammMailAlias", "JammPostmaster"})
-public final class JammPostmaster {
+public final class JammPostmaster implements IJammEntry {
 
     @Id
     private Name id;
@@ -39,6 +41,10 @@ public final class JammPostmaster {
     @Attribute(name = "lastChange")
     private String lastChange;
 
+    // lastChange as read from the directory, the expected value for conditional updates
+    @Transient
+    private String loadedLastChange;
+
     @Attribute(name = "mailsource")
     private String mailsource;
 
@@ -209,9 +215,10 @@ public final class JammPostmaster {
     /**
      * Method to update the last change timestamp to the current time.
      * This sets the lastChange attribute to the current epoch second.
+     * The value is always above the one the entity was read with, so it can serve as a version.
      */
     public void updateLastChange() {
-        this.lastChange = String.valueOf(Instant.now().getEpochSecond());
+        this.lastChange = LdapUtils.nextLastChange(loadedLastChange);
     }
 
     /**
@@ -249,9 +256,15 @@ public final class JammPostmaster {
     public String getAccountActive() { return accountActive; }
     public void setAccountActive(String accountActive) { this.accountActive = accountActive; }
 
+    @Override
     public String getLastChange() { return lastChange; }
     public void setLastChange(String lastChange) { this.lastChange = lastChange; }
 
+    @Override
+    public String getLoadedLastChange() { return loadedLastChange; }
+    @Override
+    public void setLoadedLastChange(String loadedLastChange) { this.loadedLastChange = loadedLastChange; }
+
     public String getMailsource() { return mailsource; }
     public void setMailsource(String mailsource) { this.mailsource = mailsource; }
 
@@ -1,5 +1,6 @@
 package ch.aarboard.vamm.data.entries;
 
+import ch.aarboard.vamm.data.interfaces.IJammEntry;
 import ch.aarboard.vamm.utils.LdapUtils;
 import org.springframework.ldap.odm.annotations.Attribute;
 import org.springframework.ldap.odm.annotations.Entry;
@@ -11,7 +12,7 @@ import javax.naming.Name;
 import java.time.Instant;
 
 @Entry(objectClasses = {"top", "JammVirtualDomain"})
-public final class JammVirtualDomain {
+public final class JammVirtualDomain implements IJammEntry {
 
     @Id
     private Name id;
@@ -27,6 +28,10 @@ public final class JammVirtualDomain {
     @Attribute(name = "lastChange")
     private String lastChange;
 
+    // lastChange as read from the directory, the expected value for conditional updates
+    @Transient
+    private String loadedLastChange;
+
     // Boolean
     @Attribute(name = "delete")
     private String delete;
@@ -163,9 +168,10 @@ public final class JammVirtualDomain {
     /**
      * Update the last change timestamp to the current time.
      * This is typically called when any significant change is made to the domain.
+     * The value is always above the one the entity was read with, so it can serve as a version.
      */
     public void updateLastChange() {
-        this.lastChange = String.valueOf(Instant.now().getEpochSecond());
+        this.lastChange = LdapUtils.nextLastChange(loadedLastChange);
     }
 
     /**
@@ -198,9 +204,15 @@ public final class JammVirtualDomain {
     public String getAccountActive() { return accountActive; }
     public void setAccountActive(String accountActive) { this.accountActive = accountActive; }
 
+    @Override
     public String getLastChange() { return lastChange; }
     public void setLastChange(String lastChange) { this.lastChange = lastChange; }
 
+    @Override
+    public String getLoadedLastChange() { return loadedLastChange; }
+    @Override
+    public void setLoadedLastChange(String loadedLastChange) { this.loadedLastChange = loadedLastChange; }
+
     public String getDelete() { return delete; }
     public void setDelete(String delete) { this.delete = delete; }
 
@@ -0,0 +1,27 @@
+package ch.aarboard.vamm.data.interfaces;
+
+/**
+ * Common contract of the Jamm entities for optimistic concurrency.
+ *
+ * The {@code lastChange} value an entity was read with is kept next to the current one,
+ * writes are made conditional on the directory still holding that value.
+ */
+public interface IJammEntry {
+
+    /**
+     * @return the current lastChange value (epoch seconds)
+     */
+    String getLastChange();
+
+    /**
+     * @return the lastChange value the entity was read with, or null if it was never read from the directory
+     */
+    String getLoadedLastChange();
+
+    /**
+     * Record the lastChange value that is currently stored in the directory.
+     *
+     * @param loadedLastChange the stored lastChange value
+     */
+    void setLoadedLastChange(String loadedLastChange);
+}
@@ -3,6 +3,7 @@ package ch.aarboard.vamm.data.interfaces;
 import ch.aarboard.vamm.data.entries.JammMailAccount;
 
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 public interface IJammMailAccountRepository extends IJammRepository<JammMailAccount> {
@@ -21,6 +22,7 @@ public interface IJammMailAccountRepository extends IJammRepository<JammMailAcco
 
     // Count operations
     int countByDomain(String domain);
+    Map<String, Integer> countAllByDomain();
 
     // Search operations
     List<JammMailAccount> findByDomainAndEmailContaining(String domain, String searchTerm);
@@ -4,6 +4,7 @@ import ch.aarboard.vamm.data.entries.JammMailAccount;
 import ch.aarboard.vamm.data.entries.JammMailAlias;
 
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 public interface IJammMailAliasRepository extends IJammRepository<JammMailAlias> {
@@ -20,6 +21,7 @@ public interface IJammMailAliasRepository extends IJammRepository<JammMailAlias>
     // Count operations
     int countByDomain(String domain);
     int countByDomainExcludingSystem(String domain);
+    Map<String, Integer> countAllByDomainExcludingSystem();
 
     // System alias queries
     List<JammMailAlias> findSystemAliasesByDomain(String domain);
@@ -27,5 +29,6 @@ public interface IJammMailAliasRepository extends IJammRepository<JammMailAlias>
 
     // Search operations
     List<JammMailAlias> findByDomainAndEmailContaining(String domain, String searchTerm);
+    List<JammMailAlias> findByDestination(String destination);
 
 }
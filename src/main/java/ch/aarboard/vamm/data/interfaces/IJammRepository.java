@@ -10,6 +10,14 @@ public interface IJammRepository<T> {
      */
     T save(T entity);
 
+    /**
+     * Creates the given entity without checking for an existing entry first.
+     *
+     * @param entity the entity to create
+     * @return the created entity as stored in the directory
+     */
+    T create(T entity);
+
     /**
      * Deletes the given entity.
      *
@@ -2,16 +2,24 @@ package ch.aarboard.vamm.data.repositories;
 
 import ch.aarboard.vamm.data.entries.JammMailAccount;
 import ch.aarboard.vamm.data.interfaces.IJammMailAccountRepository;
+import ch.aarboard.vamm.ldap.EntryConflictException;
+import ch.aarboard.vamm.ldap.LdapEntryWriter;
 import ch.aarboard.vamm.ldap.LdapSessionManager;
+import ch.aarboard.vamm.ldap.PagedSearch;
 import ch.aarboard.vamm.utils.LdapUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.ldap.NameNotFoundException;
 import org.springframework.ldap.query.LdapQueryBuilder;
 import org.springframework.stereotype.Repository;
 
 import javax.naming.Name;
+import javax.naming.directory.SearchControls;
+import javax.naming.ldap.LdapName;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 @Repository
@@ -19,6 +27,8 @@ public class JammMailAccountRepository implements IJammMailAccountRepository {
 
     private static final Logger log = LoggerFactory.getLogger(JammMailAccountRepository.class);
 
+    private static final int PAGE_SIZE = 500;
+
     private LdapSessionManager ldapSessionManager;
 
     public JammMailAccountRepository(@Autowired LdapSessionManager ldapSessionManager) {
@@ -214,6 +224,27 @@ public class JammMailAccountRepository implements IJammMailAccountRepository {
         }
     }
 
+    @Override
+    public Map<String, Integer> countAllByDomain() {
+        try {
+            // Only the DNs, one search for all domains instead of one per domain, paged past the size limit
+            SearchControls controls = new SearchControls();
+            controls.setSearchScope(SearchControls.SUBTREE_SCOPE);
+            controls.setReturningAttributes(new String[]{"1.1"});
+            String filter = LdapQueryBuilder.query()
+                    .where("objectClass").is(LdapUtils.JAMM_MAIL_ACCOUNT)
+                    .filter().encode();
+
+            Map<String, Integer> counts = new HashMap<>();
+            PagedSearch.search(ldapSessionManager.createUserLdapTemplate(), LdapUtils.baseDN().build(), filter, controls,
+                    PAGE_SIZE, pair -> counts.merge(LdapUtils.domainOf(new LdapName(pair.getNameInNamespace())), 1, Integer::sum));
+            return counts;
+        } catch (Exception e) {
+            log.error("Error counting accounts of all domains: {}", e.getMessage());
+            return Map.of();
+        }
+    }
+
     @Override
     public List<JammMailAccount> findByDomainAndEmailContaining(String domain, String searchTerm) {
         if (domain == null || domain.isEmpty() || searchTerm == null || searchTerm.isEmpty()) {
@@ -239,32 +270,54 @@ public class JammMailAccountRepository implements IJammMailAccountRepository {
 
     @Override
     public JammMailAccount save(JammMailAccount account) throws RuntimeException {
-        if (account.getId() == null) {
-            String domain = account.getDomain();
-            Name dn = LdapUtils.mailDN(domain, account.getMail()).build();
-            account.setId(dn);
-        }
-
+        assignId(account);
         account.updateLastChange();
 
         try {
-            var existingOpt = findByEmail(account.getMail());
-
-            if (existingOpt.isPresent()) {
-                ldapSessionManager.createUserLdapTemplate().update(account);
+            LdapEntryWriter writer = ldapSessionManager.createEntryWriter();
+            try {
+                JammMailAccount saved = writer.update(account);
                 log.debug("Successfully updated account: {}", account.getMail());
-            } else {
-                ldapSessionManager.createUserLdapTemplate().create(account);
+                return saved;
+            } catch (NameNotFoundException e) {
+                // No lookup before the write, a missing entry is created instead. The writer reports one
+                // that was deleted after the entity was read as conflict, it is not brought back.
+                JammMailAccount saved = writer.create(account);
                 log.debug("Successfully created account: {}", account.getMail());
+                return saved;
             }
-
-            return account;
+        } catch (EntryConflictException e) {
+            log.debug("Conflict saving account {}: {}", account.getMail(), e.getMessage());
+            throw e;
         } catch (Exception e) {
             log.debug("Error saving account {}: {}", account.getMail(), e.getMessage());
             throw new RuntimeException("Failed to save account: " + account.getMail(), e);
         }
     }
 
+    @Override
+    public JammMailAccount create(JammMailAccount account) throws RuntimeException {
+        assignId(account);
+        account.updateLastChange();
+
+        try {
+            JammMailAccount created = ldapSessionManager.createEntryWriter().create(account);
+            log.debug("Successfully created account: {}", account.getMail());
+            return created;
+        } catch (Exception e) {
+            log.debug("Error creating account {}: {}", account.getMail(), e.getMessage());
+            throw new RuntimeException("Failed to create account: " + account.getMail(), e);
+        }
+    }
+
+    private void assignId(JammMailAccount account) {
+        if (account.getId() == null) {
+            String domain = account.getDomain();
+            Name dn = LdapUtils.mailDN(domain, account.getMail()).build();
+            account.setId(dn);
+        }
+    }
+
     @Override
     public void delete(JammMailAccount entity){
         if (entity.getId() == null) {
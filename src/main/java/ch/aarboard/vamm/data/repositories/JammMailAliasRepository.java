@@ -2,16 +2,24 @@ package ch.aarboard.vamm.data.repositories;
 
 import ch.aarboard.vamm.data.entries.JammMailAlias;
 import ch.aarboard.vamm.data.interfaces.IJammMailAliasRepository;
+import ch.aarboard.vamm.ldap.EntryConflictException;
+import ch.aarboard.vamm.ldap.LdapEntryWriter;
 import ch.aarboard.vamm.ldap.LdapSessionManager;
+import ch.aarboard.vamm.ldap.PagedSearch;
 import ch.aarboard.vamm.utils.LdapUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.ldap.NameNotFoundException;
 import org.springframework.ldap.query.LdapQueryBuilder;
 import org.springframework.stereotype.Repository;
 
 import javax.naming.Name;
+import javax.naming.directory.SearchControls;
+import javax.naming.ldap.LdapName;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 @Repository
@@ -19,6 +27,8 @@ public class JammMailAliasRepository implements IJammMailAliasRepository {
 
     private static final Logger log = LoggerFactory.getLogger(JammMailAliasRepository.class);
 
+    private static final int PAGE_SIZE = 500;
+
     private LdapSessionManager ldapSessionManager;
 
     public JammMailAliasRepository(@Autowired LdapSessionManager ldapSessionManager) {
@@ -167,6 +177,28 @@ public class JammMailAliasRepository implements IJammMailAliasRepository {
         }
     }
 
+    @Override
+    public Map<String, Integer> countAllByDomainExcludingSystem() {
+        try {
+            // Only the DNs, one search for all domains instead of one per domain, paged past the size limit
+            SearchControls controls = new SearchControls();
+            controls.setSearchScope(SearchControls.SUBTREE_SCOPE);
+            controls.setReturningAttributes(new String[]{"1.1"});
+            String filter = LdapQueryBuilder.query()
+                    .where("objectClass").is(LdapUtils.JAMM_MAIL_ALIAS)
+                    .and("systemAlias").is("FALSE")
+                    .filter().encode();
+
+            Map<String, Integer> counts = new HashMap<>();
+            PagedSearch.search(ldapSessionManager.createUserLdapTemplate(), LdapUtils.baseDN().build(), filter, controls,
+                    PAGE_SIZE, pair -> counts.merge(LdapUtils.domainOf(new LdapName(pair.getNameInNamespace())), 1, Integer::sum));
+            return counts;
+        } catch (Exception e) {
+            log.error("Error counting non-system aliases of all domains: {}", e.getMessage());
+            return Map.of();
+        }
+    }
+
     @Override
     public List<JammMailAlias> findSystemAliasesByDomain(String domain) {
         if (domain == null || domain.isEmpty()) {
@@ -220,34 +252,84 @@ public class JammMailAliasRepository implements IJammMailAliasRepository {
         }
     }
 
+    /**
+     * The aliases of all domains delivering to an address, postmasters excluded. Searches every
+     * domain, the {@link ch.aarboard.vamm.index.DestinationIndex} answers this without the directory.
+     */
     @Override
-    public JammMailAlias save(JammMailAlias alias) {
-        if (alias.getId() == null) {
-            String domain = alias.getDomain();
-            Name dn = LdapUtils.mailDN(domain, alias.getMail()).build();
-            alias.setId(dn);
+    public List<JammMailAlias> findByDestination(String destination) {
+        if (destination == null || destination.isEmpty()) {
+            log.debug("Destination is null or empty, cannot find aliases.");
+            return List.of();
+        }
+
+        try {
+            return ldapSessionManager.createUserLdapTemplate().find(
+                            LdapQueryBuilder.query()
+                                    .base(LdapUtils.baseDN().build())
+                                    .where("objectClass").is(LdapUtils.JAMM_MAIL_ALIAS)
+                                    .and("maildrop").is(destination),
+                            JammMailAlias.class
+                    ).stream()
+                    // Postmasters are named by cn, not by their address
+                    .filter(alias -> LdapUtils.mailDN(alias.getMail()).build().equals(alias.getId()))
+                    .toList();
+        } catch (Exception e) {
+            log.error("Error finding aliases by destination {}: {}", destination, e.getMessage());
+            return List.of();
         }
+    }
 
+    @Override
+    public JammMailAlias save(JammMailAlias alias) {
+        assignId(alias);
         alias.updateLastChange();
 
         try {
-            var aliasOpt = findByEmail(alias.getMail());
-
-            if (aliasOpt.isPresent()) {
-                ldapSessionManager.createUserLdapTemplate().update(alias);
+            LdapEntryWriter writer = ldapSessionManager.createEntryWriter();
+            try {
+                JammMailAlias saved = writer.update(alias);
                 log.debug("Successfully updated alias: {}", alias.getMail());
-            } else {
-                ldapSessionManager.createUserLdapTemplate().create(alias);
+                return saved;
+            } catch (NameNotFoundException e) {
+                // No lookup before the write, a missing entry is created instead. The writer reports one
+                // that was deleted after the entity was read as conflict, it is not brought back.
+                JammMailAlias saved = writer.create(alias);
                 log.debug("Successfully created alias: {}", alias.getMail());
+                return saved;
             }
-
-            return alias;
+        } catch (EntryConflictException e) {
+            log.debug("Conflict saving alias {}: {}", alias.getMail(), e.getMessage());
+            throw e;
         } catch (Exception e) {
             log.debug("Error saving alias {}: {}", alias.getMail(), e.getMessage());
             throw new RuntimeException("Failed to save alias: " + alias.getMail(), e);
         }
     }
 
+    @Override
+    public JammMailAlias create(JammMailAlias alias) {
+        assignId(alias);
+        alias.updateLastChange();
+
+        try {
+            JammMailAlias created = ldapSessionManager.createEntryWriter().create(alias);
+            log.debug("Successfully created alias: {}", alias.getMail());
+            return created;
+        } catch (Exception e) {
+            log.debug("Error creating alias {}: {}", alias.getMail(), e.getMessage());
+            throw new RuntimeException("Failed to create alias: " + alias.getMail(), e);
+        }
+    }
+
+    private void assignId(JammMailAlias alias) {
+        if (alias.getId() == null) {
+            String domain = alias.getDomain();
+            Name dn = LdapUtils.mailDN(domain, alias.getMail()).build();
+            alias.setId(dn);
+        }
+    }
+
     @Override
     public void delete(JammMailAlias entity) {
         if (entity.getId() == null) {
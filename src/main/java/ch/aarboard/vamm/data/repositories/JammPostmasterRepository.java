@@ -2,11 +2,14 @@ package ch.aarboard.vamm.data.repositories;
 
 import ch.aarboard.vamm.data.entries.JammPostmaster;
 import ch.aarboard.vamm.data.interfaces.IJammPostmasterRepository;
+import ch.aarboard.vamm.ldap.EntryConflictException;
+import ch.aarboard.vamm.ldap.LdapEntryWriter;
 import ch.aarboard.vamm.ldap.LdapSessionManager;
 import ch.aarboard.vamm.utils.LdapUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.ldap.NameNotFoundException;
 import org.springframework.ldap.query.LdapQueryBuilder;
 import org.springframework.stereotype.Repository;
 
@@ -151,32 +154,54 @@ public class JammPostmasterRepository implements IJammPostmasterRepository {
 
     @Override
     public JammPostmaster save(JammPostmaster postmaster) {
-        if (postmaster.getId() == null) {
-            String domain = postmaster.getDomain();
-            Name dn = LdapUtils.postmasterDN(domain).build();
-            postmaster.setId(dn);
-        }
-
+        assignId(postmaster);
         postmaster.updateLastChange();
 
         try {
-            var postmasterOpt = findByDomain(postmaster.getDomain());
-
-            if (postmasterOpt.isPresent()) {
-                ldapSessionManager.createUserLdapTemplate().update(postmaster);
+            LdapEntryWriter writer = ldapSessionManager.createEntryWriter();
+            try {
+                JammPostmaster saved = writer.update(postmaster);
                 log.debug("Successfully updated postmaster: {}", postmaster.getMail());
-            } else {
-                ldapSessionManager.createUserLdapTemplate().create(postmaster);
+                return saved;
+            } catch (NameNotFoundException e) {
+                // No lookup before the write, a missing entry is created instead. The writer reports one
+                // that was deleted after the entity was read as conflict, it is not brought back.
+                JammPostmaster saved = writer.create(postmaster);
                 log.debug("Successfully created postmaster: {}", postmaster.getMail());
+                return saved;
             }
-
-            return postmaster;
+        } catch (EntryConflictException e) {
+            log.debug("Conflict saving postmaster {}: {}", postmaster.getMail(), e.getMessage());
+            throw e;
         } catch (Exception e) {
             log.debug("Error saving postmaster {}: {}", postmaster.getMail(), e.getMessage());
             throw new RuntimeException("Failed to save postmaster: " + postmaster.getMail(), e);
         }
     }
 
+    @Override
+    public JammPostmaster create(JammPostmaster postmaster) {
+        assignId(postmaster);
+        postmaster.updateLastChange();
+
+        try {
+            JammPostmaster created = ldapSessionManager.createEntryWriter().create(postmaster);
+            log.debug("Successfully created postmaster: {}", postmaster.getMail());
+            return created;
+        } catch (Exception e) {
+            log.debug("Error creating postmaster {}: {}", postmaster.getMail(), e.getMessage());
+            throw new RuntimeException("Failed to create postmaster: " + postmaster.getMail(), e);
+        }
+    }
+
+    private void assignId(JammPostmaster postmaster) {
+        if (postmaster.getId() == null) {
+            String domain = postmaster.getDomain();
+            Name dn = LdapUtils.postmasterDN(domain).build();
+            postmaster.setId(dn);
+        }
+    }
+
     @Override
     public void delete(JammPostmaster entity) {
         if (entity.getId() == null) {
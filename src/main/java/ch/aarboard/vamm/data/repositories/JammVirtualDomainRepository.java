@@ -3,11 +3,14 @@ package ch.aarboard.vamm.data.repositories;
 import ch.aarboard.vamm.data.entries.JammMailAccount;
 import ch.aarboard.vamm.data.entries.JammVirtualDomain;
 import ch.aarboard.vamm.data.interfaces.IJammVirtualDomainRepository;
+import ch.aarboard.vamm.ldap.EntryConflictException;
+import ch.aarboard.vamm.ldap.LdapEntryWriter;
 import ch.aarboard.vamm.ldap.LdapSessionManager;
 import ch.aarboard.vamm.utils.LdapUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.ldap.NameNotFoundException;
 import org.springframework.ldap.query.LdapQueryBuilder;
 import org.springframework.stereotype.Repository;
 
@@ -130,30 +133,53 @@ public class JammVirtualDomainRepository implements IJammVirtualDomainRepository
 
     @Override
     public JammVirtualDomain save(JammVirtualDomain domain) {
-        if (domain.getId() == null) {
-            Name dn = LdapUtils.domainDN(domain.getJvd()).build();
-            domain.setId(dn);
-        }
-
+        assignId(domain);
         domain.updateLastChange();
 
         try {
-            var domainOpt = findByName(domain.getJvd());
-
-            if (domainOpt.isPresent()) {
-                ldapSessionManager.createUserLdapTemplate().update(domain);
+            LdapEntryWriter writer = ldapSessionManager.createEntryWriter();
+            try {
+                JammVirtualDomain saved = writer.update(domain);
                 log.debug("Successfully updated domain: {}", domain.getJvd());
-            } else {
-                ldapSessionManager.createUserLdapTemplate().create(domain);
+                return saved;
+            } catch (NameNotFoundException e) {
+                // No lookup before the write, a missing entry is created instead. The writer reports one
+                // that was deleted after the entity was read as conflict, it is not brought back.
+                JammVirtualDomain saved = writer.create(domain);
                 log.debug("Successfully created domain: {}", domain.getJvd());
+                return saved;
             }
-            return domain;
+        } catch (EntryConflictException e) {
+            log.debug("Conflict saving domain {}: {}", domain.getJvd(), e.getMessage());
+            throw e;
         } catch (Exception e) {
             log.debug("Error saving domain {}: {}", domain.getJvd(), e.getMessage());
             throw new RuntimeException("Failed to save domain: " + domain.getJvd(), e);
         }
     }
 
+    @Override
+    public JammVirtualDomain create(JammVirtualDomain domain) {
+        assignId(domain);
+        domain.updateLastChange();
+
+        try {
+            JammVirtualDomain created = ldapSessionManager.createEntryWriter().create(domain);
+            log.debug("Successfully created domain: {}", domain.getJvd());
+            return created;
+        } catch (Exception e) {
+            log.debug("Error creating domain {}: {}", domain.getJvd(), e.getMessage());
+            throw new RuntimeException("Failed to create domain: " + domain.getJvd(), e);
+        }
+    }
+
+    private void assignId(JammVirtualDomain domain) {
+        if (domain.getId() == null) {
+            Name dn = LdapUtils.domainDN(domain.getJvd()).build();
+            domain.setId(dn);
+        }
+    }
+
     @Override
     public void delete(JammVirtualDomain entity) {
         if (entity.getId() == null) {
@@ -0,0 +1,196 @@
+package ch.aarboard.vamm.events;
+
+import ch.aarboard.vamm.events.DomainContentChangedEvent.ContentType;
+import com.vaadin.flow.component.UI;
+import com.vaadin.flow.function.SerializableConsumer;
+import com.vaadin.flow.shared.Registration;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Fans {@link DomainContentChangedEvent}s out to the UIs that display the affected domain.
+ *
+ * Events are coalesced per domain: the first event of a domain opens a window, every
+ * further event within that window is folded into the same {@link DomainContentDelta},
+ * and when the window closes each subscriber of that domain receives exactly one delta.
+ * Subscribers are indexed by domain, so the fan-out cost only depends on the number of
+ * UIs showing that domain.
+ */
+@Component
+public class DomainContentBroadcaster {
+
+    private static final Logger log = LoggerFactory.getLogger(DomainContentBroadcaster.class);
+
+    /** Upper bound of addresses carried in one delta, beyond that subscribers should reload */
+    static final int MAX_MAILS_PER_DELTA = 100;
+
+    private final long windowMillis;
+    private final Map<String, List<Subscription>> subscribers = new ConcurrentHashMap<>();
+    private final Map<String, PendingDelta> pending = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler;
+
+    @Autowired
+    public DomainContentBroadcaster(@Value("${jamm.ui.broadcast.coalesce-window-ms:250}") long windowMillis) {
+        this.windowMillis = windowMillis;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "domain-broadcast");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Register a UI for changes of a domain. The listener runs inside {@code UI.access},
+     * usually on the broadcaster's own thread: it has no security context and delays the
+     * deltas of all other domains while it runs, so it must hand directory reads to a
+     * background loader instead of making them itself.
+     *
+     * @param domainName The domain the UI is showing
+     * @param ui         The receiving UI
+     * @param listener   Called once per coalescing window with the collected changes
+     * @return A registration to remove the subscription, e.g. on detach or domain change
+     */
+    public Registration register(String domainName, UI ui, SerializableConsumer<DomainContentDelta> listener) {
+        return register(domainName, command -> ui.access(command::run), listener);
+    }
+
+    /**
+     * Register a listener whose deltas are handed to the given dispatcher.
+     */
+    Registration register(String domainName, Executor dispatcher, Consumer<DomainContentDelta> listener) {
+        String key = normalize(domainName);
+        Subscription subscription = new Subscription(dispatcher, listener);
+        subscribers.computeIfAbsent(key, k -> new CopyOnWriteArrayList<>()).add(subscription);
+
+        return () -> subscribers.computeIfPresent(key, (k, list) -> {
+            list.remove(subscription);
+            return list.isEmpty() ? null : list;
+        });
+    }
+
+    @EventListener
+    public void onDomainContentChanged(DomainContentChangedEvent event) {
+        publish(event.getDomainName(), event.getContentType(), event.getMail());
+    }
+
+    /**
+     * Record a change. Delivery happens when the coalescing window of the domain closes.
+     */
+    public void publish(String domainName, ContentType contentType, String mail) {
+        if (domainName == null || contentType == null) {
+            return;
+        }
+
+        String key = normalize(domainName);
+        if (!subscribers.containsKey(key)) {
+            return; // Nobody is looking at this domain
+        }
+
+        while (true) {
+            boolean[] opened = {false};
+            PendingDelta delta = pending.computeIfAbsent(key, k -> {
+                opened[0] = true;
+                return new PendingDelta();
+            });
+
+            if (delta.add(contentType, mail)) {
+                if (opened[0]) {
+                    scheduler.schedule(() -> flush(key, delta), windowMillis, TimeUnit.MILLISECONDS);
+                }
+                return;
+            }
+            // The window was closed concurrently, open a new one
+        }
+    }
+
+    /**
+     * Number of UIs registered for a domain
+     */
+    public int getSubscriberCount(String domainName) {
+        List<Subscription> list = subscribers.get(normalize(domainName));
+        return list == null ? 0 : list.size();
+    }
+
+    private void flush(String key, PendingDelta pendingDelta) {
+        pending.remove(key, pendingDelta);
+        DomainContentDelta delta = pendingDelta.close(key);
+
+        List<Subscription> targets = subscribers.get(key);
+        if (targets == null) {
+            return;
+        }
+
+        for (Subscription subscription : targets) {
+            try {
+                subscription.dispatcher().execute(() -> subscription.listener().accept(delta));
+            } catch (Exception e) {
+                // Typically a detached UI that missed its cleanup, drop it
+                log.debug("Dropping subscriber of domain {}: {}", key, e.getMessage());
+                targets.remove(subscription);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    private static String normalize(String domainName) {
+        return domainName.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private record Subscription(Executor dispatcher, Consumer<DomainContentDelta> listener) {
+    }
+
+    /**
+     * Accumulates the events of one window. Once closed, further adds are rejected so the
+     * publisher opens a new window instead of losing the event.
+     */
+    private static final class PendingDelta {
+
+        private final Map<ContentType, Integer> changes = new EnumMap<>(ContentType.class);
+        private final Set<String> mails = new LinkedHashSet<>();
+        private boolean truncated = false;
+        private boolean closed = false;
+
+        synchronized boolean add(ContentType contentType, String mail) {
+            if (closed) {
+                return false;
+            }
+            changes.merge(contentType, 1, Integer::sum);
+            if (mail == null) {
+                truncated = true;
+            } else if (mails.size() < MAX_MAILS_PER_DELTA) {
+                mails.add(mail);
+            } else if (!mails.contains(mail)) {
+                truncated = true;
+            }
+            return true;
+        }
+
+        synchronized DomainContentDelta close(String domainName) {
+            closed = true;
+            return new DomainContentDelta(domainName, changes, mails, truncated);
+        }
+    }
+}
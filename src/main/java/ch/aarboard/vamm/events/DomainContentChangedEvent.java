@@ -9,6 +9,7 @@ public class DomainContentChangedEvent extends ApplicationEvent {
 
     private final String domainName;
     private final ContentType contentType;
+    private final String mail;
 
     public enum ContentType {
         ACCOUNT_CREATED,
@@ -20,9 +21,14 @@ public class DomainContentChangedEvent extends ApplicationEvent {
     }
 
     public DomainContentChangedEvent(Object source, String domainName, ContentType contentType) {
+        this(source, domainName, contentType, null);
+    }
+
+    public DomainContentChangedEvent(Object source, String domainName, ContentType contentType, String mail) {
         super(source);
         this.domainName = domainName;
         this.contentType = contentType;
+        this.mail = mail;
     }
 
     public String getDomainName() {
@@ -32,4 +38,11 @@ public class DomainContentChangedEvent extends ApplicationEvent {
     public ContentType getContentType() {
         return contentType;
     }
-}
\ No newline at end of file
+
+    /**
+     * The address of the changed account or alias, if known
+     */
+    public String getMail() {
+        return mail;
+    }
+}
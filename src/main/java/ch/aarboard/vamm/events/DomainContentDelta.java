@@ -0,0 +1,45 @@
+package ch.aarboard.vamm.events;
+
+import ch.aarboard.vamm.events.DomainContentChangedEvent.ContentType;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Compact summary of all {@link DomainContentChangedEvent}s of one domain that
+ * arrived within a single coalescing window.
+ *
+ * @param domainName     The affected domain
+ * @param changes        Number of changes per content type
+ * @param mails          Addresses that changed, if known (capped, see {@code mailsTruncated})
+ * @param mailsTruncated True if more addresses changed than are listed in {@code mails}
+ */
+public record DomainContentDelta(String domainName,
+                                 Map<ContentType, Integer> changes,
+                                 Set<String> mails,
+                                 boolean mailsTruncated) {
+
+    public DomainContentDelta {
+        changes = Map.copyOf(changes);
+        mails = Set.copyOf(mails);
+    }
+
+    /**
+     * Total number of events folded into this delta
+     */
+    public int totalChanges() {
+        return changes.values().stream().mapToInt(Integer::intValue).sum();
+    }
+
+    /**
+     * Check if the delta contains at least one change of the given types
+     */
+    public boolean contains(ContentType... types) {
+        for (ContentType type : types) {
+            if (changes.getOrDefault(type, 0) > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,197 @@
+package ch.aarboard.vamm.index;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.naming.InvalidNameException;
+import javax.naming.ldap.LdapName;
+import javax.naming.ldap.Rdn;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+
+/**
+ * Completes mail addresses and domain names from their start, without asking the directory. The
+ * addresses are those of all accounts and aliases, catch-alls excluded, kept in a
+ * {@link RadixTrie} together with one of the domain names.
+ *
+ * Both tries together stay below {@code jamm.index.autocomplete.max-bytes}, estimated. Addresses
+ * beyond it are left out, and the next rebuild logs how many.
+ */
+@Component
+public class AddressAutocomplete implements DirectoryIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(AddressAutocomplete.class);
+
+    /** Keys looked at per completion at most */
+    private static final int MAX_VISITED = 10_000;
+
+    private final long maxBytes;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private volatile Tries tries;
+
+    private static final class Tries {
+        private final RadixTrie addresses = new RadixTrie();
+        private final RadixTrie domains = new RadixTrie();
+        private long dropped;
+
+        private long footprint() {
+            return addresses.footprint() + domains.footprint();
+        }
+    }
+
+    @Autowired
+    public AddressAutocomplete(@Value("${jamm.index.autocomplete.max-bytes:134217728}") long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    @Override
+    public Set<String> attributes() {
+        return Set.of("mail", "jvd");
+    }
+
+    @Override
+    public boolean isReady() {
+        return tries != null;
+    }
+
+    /**
+     * @param domains Which domains to complete addresses of, the others are skipped
+     * @return Up to limit addresses starting with the prefix, in alphabetical order
+     */
+    public List<String> completeAddress(String prefix, int limit, Predicate<String> domains) {
+        return complete(prefix, limit, false,
+                address -> domains.test(address.substring(address.lastIndexOf('@') + 1)));
+    }
+
+    /**
+     * @param domains Which domains to complete, the others are skipped
+     * @return Up to limit domain names starting with the prefix, in alphabetical order
+     */
+    public List<String> completeDomain(String prefix, int limit, Predicate<String> domains) {
+        return complete(prefix, limit, true, domains);
+    }
+
+    private List<String> complete(String prefix, int limit, boolean domains, Predicate<String> accept) {
+        lock.readLock().lock();
+        try {
+            Tries current = tries;
+            if (current == null || prefix == null) {
+                return List.of();
+            }
+            return (domains ? current.domains : current.addresses)
+                    .complete(prefix.strip(), limit, MAX_VISITED, accept);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return The number of addresses and domain names
+     */
+    public int size() {
+        Tries current = tries;
+        return current == null ? 0 : current.addresses.size() + current.domains.size();
+    }
+
+    /**
+     * @return The estimated heap size of the tries in bytes
+     */
+    public long footprint() {
+        Tries current = tries;
+        return current == null ? 0 : current.footprint();
+    }
+
+    @Override
+    public Rebuild rebuild() {
+        Tries rebuilt = new Tries();
+        return new Rebuild() {
+            @Override
+            public void add(IndexEntry entry) {
+                AddressAutocomplete.this.add(rebuilt, entry);
+            }
+
+            @Override
+            public void commit() {
+                if (rebuilt.dropped > 0) {
+                    log.warn("Autocompletion is limited to {} bytes, left out {} addresses",
+                            maxBytes, rebuilt.dropped);
+                }
+                tries = rebuilt;
+            }
+        };
+    }
+
+    @Override
+    public void update(IndexEntry entry) {
+        Tries current = tries;
+        if (current == null) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            add(current, entry);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void add(Tries target, IndexEntry entry) {
+        if (target.footprint() >= maxBytes) {
+            target.dropped++;
+            return;
+        }
+        if (entry.hasObjectClass("JammVirtualDomain")) {
+            String domain = entry.value("jvd");
+            if (domain != null) {
+                target.domains.add(domain);
+            }
+        } else if (entry.hasObjectClass("JammMailAccount") || entry.hasObjectClass("JammMailAlias")) {
+            String mail = entry.value("mail");
+            if (mail != null && !mail.isBlank() && !mail.startsWith("@")) {
+                target.addresses.add(mail);
+            }
+        }
+    }
+
+    @Override
+    public void remove(String dn) {
+        Tries current = tries;
+        if (current == null) {
+            return;
+        }
+        Rdn rdn;
+        try {
+            List<Rdn> rdns = new LdapName(dn).getRdns();
+            if (rdns.isEmpty()) {
+                return;
+            }
+            rdn = rdns.getLast();
+        } catch (InvalidNameException e) {
+            return;
+        }
+
+        lock.writeLock().lock();
+        try {
+            String value = rdn.getValue().toString();
+            switch (rdn.getType()) {
+                case "mail" -> current.addresses.remove(value);
+                case "jvd" -> {
+                    current.domains.remove(value);
+                    String suffix = "@" + value;
+                    current.addresses.removeIf(address -> address.endsWith(suffix));
+                }
+                // Postmasters are named by cn, they go with their domain
+                default -> {
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package ch.aarboard.vamm.index;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Finds accounts and aliases of all domains by a part of their {@code mail}, {@code cn},
+ * {@code maildrop} or {@code description}, without asking the directory.
+ *
+ * Matches are ranked by where the term is found: the whole value, its start, the start of a word
+ * in it or anywhere. For the same kind of match the mail address beats the name, which beats a
+ * destination, which beats the description. Terms need at least two characters, a two character
+ * term only matches the start of a value.
+ */
+@Component
+public class AddressSearchIndex implements DirectoryIndex {
+
+    private static final String[] FIELDS = {"mail", "cn", "maildrop", "description"};
+    private static final int[] FIELD_WEIGHTS = {6, 4, 2, 0};
+
+    private final int maxCandidates;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private volatile TrigramIndex index;
+
+    public enum Kind {
+        ACCOUNT,
+        ALIAS
+    }
+
+    /**
+     * @param field The attribute the term was found in
+     * @param value Its value, in lower case
+     */
+    public record Match(Kind kind, String mail, String domain, String field, String value) {
+    }
+
+    /**
+     * @param total     The number of entries matching, the matches are the best of them
+     * @param truncated Stopped after checking {@code jamm.index.search.max-candidates} entries,
+     *                  the total is higher and better matches may be missing
+     */
+    public record SearchResult(List<Match> matches, int total, boolean truncated) {
+    }
+
+    @Autowired
+    public AddressSearchIndex(@Value("${jamm.index.search.max-candidates:5000}") int maxCandidates) {
+        this.maxCandidates = Math.max(1, maxCandidates);
+    }
+
+    @Override
+    public Set<String> attributes() {
+        return Set.of(FIELDS);
+    }
+
+    @Override
+    public boolean isReady() {
+        return index != null;
+    }
+
+    /**
+     * @param domains Which domains to search in, the others are skipped before ranking
+     */
+    public SearchResult search(String term, int limit, Predicate<String> domains) {
+        lock.readLock().lock();
+        try {
+            TrigramIndex current = index;
+            if (current == null) {
+                return new SearchResult(List.of(), 0, false);
+            }
+            TrigramIndex.Result result = current.search(term, limit, maxCandidates, domains, AddressSearchIndex::score);
+            List<Match> matches = new ArrayList<>(result.hits().size());
+            for (TrigramIndex.Hit hit : result.hits()) {
+                TrigramIndex.Document document = hit.document();
+                matches.add(new Match((Kind) document.payload(), document.values()[0], document.domain(),
+                        FIELDS[hit.field()], hit.value()));
+            }
+            return new SearchResult(matches, result.matches(), result.truncated());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static int score(int field, String value, int position, String term) {
+        int score;
+        if (position == 0 && value.length() == term.length()) {
+            score = 100;
+        } else if (position == 0) {
+            score = 60;
+        } else if (!Character.isLetterOrDigit(value.charAt(position - 1))) {
+            score = 40;
+        } else {
+            score = 20;
+        }
+        return score + FIELD_WEIGHTS[field];
+    }
+
+    @Override
+    public Rebuild rebuild() {
+        TrigramIndex rebuilt = new TrigramIndex();
+        return new Rebuild() {
+            @Override
+            public void add(IndexEntry entry) {
+                TrigramIndex.Document document = document(entry);
+                if (document != null) {
+                    rebuilt.put(document);
+                }
+            }
+
+            @Override
+            public void commit() {
+                index = rebuilt;
+            }
+        };
+    }
+
+    @Override
+    public void update(IndexEntry entry) {
+        TrigramIndex.Document document = document(entry);
+        write(current -> {
+            if (document != null) {
+                current.put(document);
+            } else {
+                current.remove(entry.dn());
+            }
+        });
+    }
+
+    @Override
+    public void remove(String dn) {
+        write(current -> {
+            if (!current.remove(dn)) {
+                String suffix = "," + dn;
+                current.removeIf(document -> document.key().endsWith(suffix));
+            }
+        });
+    }
+
+    private void write(Consumer<TrigramIndex> change) {
+        TrigramIndex current = index;
+        if (current == null) {
+            // The first rebuild will read the change
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            change.accept(current);
+            if (current.garbage() > Math.max(1000, current.size())) {
+                index = current.compact();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return null for entries that are neither an account nor an alias
+     */
+    private static TrigramIndex.Document document(IndexEntry entry) {
+        Kind kind;
+        if (entry.hasObjectClass("JammMailAccount")) {
+            kind = Kind.ACCOUNT;
+        } else if (entry.hasObjectClass("JammMailAlias")) {
+            kind = Kind.ALIAS;
+        } else {
+            return null;
+        }
+        String mail = entry.value("mail");
+        if (mail == null || mail.isBlank()) {
+            return null;
+        }
+
+        // The mail address first, it identifies the match
+        List<String> values = new ArrayList<>();
+        List<Byte> fields = new ArrayList<>();
+        for (int field = 0; field < FIELDS.length; field++) {
+            for (String value : entry.values(FIELDS[field])) {
+                if (!value.isBlank()) {
+                    values.add(value.toLowerCase(Locale.ROOT));
+                    fields.add((byte) field);
+                }
+            }
+        }
+        byte[] fieldArray = new byte[fields.size()];
+        for (int i = 0; i < fieldArray.length; i++) {
+            fieldArray[i] = fields.get(i);
+        }
+        return new TrigramIndex.Document(entry.dn(), kind, entry.domain(), values.toArray(String[]::new), fieldArray);
+    }
+}
@@ -0,0 +1,191 @@
+package ch.aarboard.vamm.index;
+
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Which aliases deliver to an address, the reverse of their {@code maildrop}. Answers without
+ * asking the directory, where it would take a search over all domains on an unindexed attribute.
+ * Postmasters are left out, they go with their domain.
+ */
+@Component
+public class DestinationIndex implements DirectoryIndex {
+
+    private static final String[] NONE = new String[0];
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private volatile References references;
+
+    private static final class References {
+        /** Lower case destination to the addresses of the aliases delivering to it */
+        private final Map<String, String[]> aliases = new HashMap<>();
+        /** Alias DN to its address followed by its destinations, to undo them on an update */
+        private final Map<String, String[]> entries = new HashMap<>();
+
+        private void put(String dn, String mail, List<String> destinations) {
+            remove(dn);
+            String[] entry = new String[destinations.size() + 1];
+            entry[0] = mail;
+            int i = 1;
+            for (String destination : destinations) {
+                String key = destination.strip().toLowerCase(Locale.ROOT);
+                entry[i++] = key;
+                aliases.merge(key, new String[]{mail}, DestinationIndex::union);
+            }
+            entries.put(dn, entry);
+        }
+
+        private boolean remove(String dn) {
+            String[] entry = entries.remove(dn);
+            if (entry == null) {
+                return false;
+            }
+            for (int i = 1; i < entry.length; i++) {
+                aliases.computeIfPresent(entry[i], (key, mails) -> without(mails, entry[0]));
+            }
+            return true;
+        }
+
+        private void removeBelow(String dn) {
+            String suffix = "," + dn;
+            entries.keySet().stream()
+                    .filter(key -> key.endsWith(suffix))
+                    .toList()
+                    .forEach(this::remove);
+        }
+    }
+
+    @Override
+    public Set<String> attributes() {
+        return Set.of("mail", "maildrop");
+    }
+
+    @Override
+    public boolean isReady() {
+        return references != null;
+    }
+
+    /**
+     * @return The addresses of the aliases delivering to the destination, in alphabetical order
+     */
+    public List<String> aliasesDeliveringTo(String destination) {
+        if (destination == null) {
+            return List.of();
+        }
+        lock.readLock().lock();
+        try {
+            References current = references;
+            if (current == null) {
+                return List.of();
+            }
+            String[] mails = current.aliases.getOrDefault(destination.strip().toLowerCase(Locale.ROOT), NONE);
+            return Arrays.stream(mails).sorted().toList();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return The number of aliases indexed
+     */
+    public int size() {
+        References current = references;
+        return current == null ? 0 : current.entries.size();
+    }
+
+    @Override
+    public Rebuild rebuild() {
+        References rebuilt = new References();
+        return new Rebuild() {
+            @Override
+            public void add(IndexEntry entry) {
+                put(rebuilt, entry);
+            }
+
+            @Override
+            public void commit() {
+                references = rebuilt;
+            }
+        };
+    }
+
+    @Override
+    public void update(IndexEntry entry) {
+        References current = references;
+        if (current == null) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            put(current, entry);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static void put(References target, IndexEntry entry) {
+        if (!entry.hasObjectClass("JammMailAlias") || entry.hasObjectClass("JammPostmaster")) {
+            return;
+        }
+        String mail = entry.value("mail");
+        if (mail == null) {
+            return;
+        }
+        target.put(entry.dn(), mail, entry.values("maildrop"));
+    }
+
+    @Override
+    public void remove(String dn) {
+        References current = references;
+        if (current == null) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            // Aliases have no children, only look through all of them for a domain
+            if (!current.remove(dn)) {
+                current.removeBelow(dn);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static String[] union(String[] mails, String[] added) {
+        String mail = added[0];
+        for (String existing : mails) {
+            if (existing.equals(mail)) {
+                return mails;
+            }
+        }
+        String[] merged = Arrays.copyOf(mails, mails.length + 1);
+        merged[mails.length] = mail;
+        return merged;
+    }
+
+    /**
+     * @return The addresses without the one, or null when none is left to drop the destination
+     */
+    private static String[] without(String[] mails, String mail) {
+        for (int i = 0; i < mails.length; i++) {
+            if (mails[i].equals(mail)) {
+                if (mails.length == 1) {
+                    return null;
+                }
+                String[] rest = new String[mails.length - 1];
+                System.arraycopy(mails, 0, rest, 0, i);
+                System.arraycopy(mails, i + 1, rest, i, rest.length - i);
+                return rest;
+            }
+        }
+        return mails;
+    }
+}
@@ -0,0 +1,51 @@
+package ch.aarboard.vamm.index;
+
+import java.util.Set;
+
+/**
+ * An in-memory view of the directory kept by the {@link DirectoryIndexer}. Beans implementing it
+ * are picked up automatically.
+ *
+ * All methods are called from the indexer's single thread, implementations only have to make
+ * their reads safe against it.
+ */
+public interface DirectoryIndex {
+
+    /**
+     * The attributes the index needs, objectClass is always read
+     */
+    Set<String> attributes();
+
+    /**
+     * Start a full rebuild from a scan of the directory. The index keeps answering from its
+     * current content until the rebuild is committed.
+     */
+    Rebuild rebuild();
+
+    /**
+     * An entry was added or modified, its current content
+     */
+    void update(IndexEntry entry);
+
+    /**
+     * An entry was deleted or renamed, together with everything below it
+     *
+     * @param dn The normalized DN
+     */
+    void remove(String dn);
+
+    /**
+     * @return false until the first rebuild was committed
+     */
+    boolean isReady();
+
+    interface Rebuild {
+
+        void add(IndexEntry entry);
+
+        /**
+         * Replace the index's content with the entries added
+         */
+        void commit();
+    }
+}
@@ -0,0 +1,262 @@
+package ch.aarboard.vamm.index;
+
+import ch.aarboard.vamm.config.LdapConfig;
+import ch.aarboard.vamm.ldap.LdapOperation;
+import ch.aarboard.vamm.ldap.LdapOperationObserver;
+import ch.aarboard.vamm.ldap.LdapSessionManager;
+import ch.aarboard.vamm.ldap.PagedSearch;
+import ch.aarboard.vamm.utils.LdapUtils;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.context.event.EventListener;
+import org.springframework.ldap.NameNotFoundException;
+import org.springframework.ldap.core.AttributesMapper;
+import org.springframework.ldap.core.LdapTemplate;
+import org.springframework.ldap.core.NameClassPairCallbackHandler;
+import org.springframework.stereotype.Component;
+
+import javax.naming.NamingException;
+import javax.naming.directory.Attributes;
+import javax.naming.directory.SearchControls;
+import javax.naming.directory.SearchResult;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the {@link DirectoryIndex}es in step with the directory below {@code o=hosting}.
+ *
+ * When the application is ready, and every {@code jamm.index.rebuild-interval-ms} after that,
+ * the subtree is read with a paged search and every index is rebuilt from it. In between, the
+ * writes sent through the {@link LdapSessionManager} are observed: deleted entries are removed
+ * from the indexes, added and modified ones are read again and updated. Writes are coalesced,
+ * an entry changed several times before its refresh is read once.
+ *
+ * Scans, refreshes and therefore all calls into the indexes happen on one thread, a write seen
+ * during a rebuild is applied after the rebuilt index is committed. Renames and writes of other
+ * LDAP clients are picked up by the next rebuild.
+ *
+ * The indexer runs without a logged in user and binds as {@code jamm.index.bind-dn}, which needs
+ * read access to the whole subtree. Without it the indexes are never built and stay not ready.
+ */
+@Component
+public class DirectoryIndexer implements LdapOperationObserver {
+
+    private static final Logger log = LoggerFactory.getLogger(DirectoryIndexer.class);
+
+    private final LdapSessionManager ldapSessionManager;
+    private final String bindDn;
+    private final String bindPassword;
+    private final List<DirectoryIndex> indexes;
+    private final String baseDn;
+    private final String hostingDn;
+    private final int pageSize;
+    private final long rebuildIntervalMillis;
+    private final ScheduledExecutorService executor;
+
+    // Normalized DN to the last write seen, in the order of the first write
+    private final Map<String, LdapOperation.Type> pending = new LinkedHashMap<>();
+    private boolean refreshScheduled = false;
+
+    @Autowired
+    public DirectoryIndexer(@Lazy LdapSessionManager ldapSessionManager, LdapConfig ldapConfig,
+                            ObjectProvider<DirectoryIndex> indexes,
+                            @Value("${jamm.index.bind-dn:}") String bindDn,
+                            @Value("${jamm.index.bind-password:}") String bindPassword,
+                            @Value("${jamm.index.page-size:500}") int pageSize,
+                            @Value("${jamm.index.rebuild-interval-ms:3600000}") long rebuildIntervalMillis) {
+        this(ldapSessionManager, ldapConfig.getBase(), bindDn, bindPassword, indexes.orderedStream().toList(), pageSize,
+                rebuildIntervalMillis);
+    }
+
+    /**
+     * @param base                  The base DN of the session manager's templates
+     * @param bindDn                The DN to read the directory as, empty to leave the indexes unbuilt
+     * @param rebuildIntervalMillis 0 to only build when {@link #start()} is called
+     */
+    public DirectoryIndexer(LdapSessionManager ldapSessionManager, String base, String bindDn, String bindPassword,
+                            List<DirectoryIndex> indexes, int pageSize, long rebuildIntervalMillis) {
+        this.ldapSessionManager = ldapSessionManager;
+        this.bindDn = bindDn;
+        this.bindPassword = bindPassword;
+        this.indexes = List.copyOf(indexes);
+        this.baseDn = IndexEntry.normalizeDn(base);
+        this.hostingDn = IndexEntry.normalizeDn(LdapUtils.baseDN().build() + "," + base);
+        this.pageSize = Math.max(1, pageSize);
+        this.rebuildIntervalMillis = rebuildIntervalMillis;
+        this.executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "directory-index");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (indexes.isEmpty()) {
+            return;
+        }
+        if (!isEnabled()) {
+            log.warn("jamm.index.bind-dn is not set, the directory indexes are not built");
+            return;
+        }
+        if (rebuildIntervalMillis > 0) {
+            executor.scheduleWithFixedDelay(this::rebuild, 0, rebuildIntervalMillis, TimeUnit.MILLISECONDS);
+        } else {
+            executor.execute(this::rebuild);
+        }
+    }
+
+    /**
+     * Whether the indexer has credentials to read the directory with
+     */
+    public boolean isEnabled() {
+        return bindDn != null && !bindDn.isBlank();
+    }
+
+    @Override
+    public void completed(LdapOperation operation) {
+        if (operation.failed() || indexes.isEmpty() || !isEnabled()) {
+            return;
+        }
+        switch (operation.type()) {
+            case ADD, MODIFY, DELETE, RENAME -> {
+                String dn = IndexEntry.normalizeDn(operation.dn());
+                if (!dn.endsWith(hostingDn)) {
+                    return;
+                }
+                synchronized (pending) {
+                    pending.put(dn, operation.type());
+                    if (!refreshScheduled) {
+                        refreshScheduled = true;
+                        executor.execute(this::refreshPending);
+                    }
+                }
+            }
+            default -> {
+            }
+        }
+    }
+
+    /**
+     * Wait until the rebuilds started and the writes seen so far are applied to the indexes
+     */
+    public void sync() throws InterruptedException {
+        try {
+            executor.submit(() -> {
+            }).get();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private void refreshPending() {
+        Map<String, LdapOperation.Type> writes;
+        synchronized (pending) {
+            writes = new LinkedHashMap<>(pending);
+            pending.clear();
+            refreshScheduled = false;
+        }
+
+        LdapTemplate template = null;
+        String[] attributes = attributes();
+        for (Map.Entry<String, LdapOperation.Type> write : writes.entrySet()) {
+            String dn = write.getKey();
+            try {
+                if (write.getValue() == LdapOperation.Type.DELETE || write.getValue() == LdapOperation.Type.RENAME) {
+                    indexes.forEach(index -> index.remove(dn));
+                    continue;
+                }
+                if (template == null) {
+                    template = createLdapTemplate();
+                }
+                IndexEntry entry = read(template, dn, attributes);
+                if (entry == null) {
+                    indexes.forEach(index -> index.remove(dn));
+                } else {
+                    indexes.forEach(index -> index.update(entry));
+                }
+            } catch (RuntimeException | NamingException e) {
+                log.warn("Could not refresh {} in the indexes: {}", dn, e.getMessage());
+            }
+        }
+    }
+
+    private IndexEntry read(LdapTemplate template, String dn, String[] attributes) throws NamingException {
+        String relative = dn.equals(baseDn) ? "" : dn.substring(0, dn.length() - baseDn.length() - 1);
+        Attributes read;
+        try {
+            read = template.lookup(relative, attributes, (AttributesMapper<Attributes>) found -> found);
+        } catch (NameNotFoundException e) {
+            return null;
+        }
+        return IndexEntry.of(dn, read);
+    }
+
+    /**
+     * Rebuild every index from a scan of {@code o=hosting}, on the calling thread. A failed scan
+     * leaves the indexes as they were.
+     */
+    public void rebuild() {
+        if (indexes.isEmpty() || !isEnabled()) {
+            return;
+        }
+        long started = System.nanoTime();
+        List<DirectoryIndex.Rebuild> rebuilds = new ArrayList<>();
+        indexes.forEach(index -> rebuilds.add(index.rebuild()));
+
+        SearchControls controls = new SearchControls();
+        controls.setSearchScope(SearchControls.SUBTREE_SCOPE);
+        controls.setReturningAttributes(attributes());
+        controls.setReturningObjFlag(false);
+
+        long[] count = {0};
+        NameClassPairCallbackHandler handler = pair -> {
+            SearchResult result = (SearchResult) pair;
+            IndexEntry entry = IndexEntry.of(result.getNameInNamespace(), result.getAttributes());
+            rebuilds.forEach(rebuild -> rebuild.add(entry));
+            count[0]++;
+        };
+
+        try {
+            PagedSearch.search(createLdapTemplate(), LdapUtils.baseDN().build(), "(objectClass=*)", controls, pageSize,
+                    handler);
+        } catch (RuntimeException e) {
+            log.warn("Indexing the directory failed after {} entries, keeping the previous indexes: {}",
+                    count[0], e.getMessage());
+            return;
+        }
+
+        rebuilds.forEach(DirectoryIndex.Rebuild::commit);
+        log.info("Indexed {} entries in {} ms", count[0], TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+    }
+
+    private LdapTemplate createLdapTemplate() {
+        return ldapSessionManager.createLdapTemplate(bindDn, bindPassword);
+    }
+
+    private String[] attributes() {
+        Set<String> attributes = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+        attributes.add("objectClass");
+        indexes.forEach(index -> attributes.addAll(index.attributes()));
+        return attributes.toArray(String[]::new);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,100 @@
+package ch.aarboard.vamm.index;
+
+import javax.naming.InvalidNameException;
+import javax.naming.NamingEnumeration;
+import javax.naming.NamingException;
+import javax.naming.directory.Attribute;
+import javax.naming.directory.Attributes;
+import javax.naming.ldap.LdapName;
+import javax.naming.ldap.Rdn;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * An entry as handed to the {@link DirectoryIndex}es: its normalized DN and the attributes they
+ * asked for.
+ *
+ * @param dn         The full DN, normalized with {@link #normalizeDn}
+ * @param attributes Lower case attribute names to their values
+ */
+public record IndexEntry(String dn, Map<String, List<String>> attributes) {
+
+    public static IndexEntry of(String dn, Attributes attributes) throws NamingException {
+        Map<String, List<String>> values = new HashMap<>();
+        for (NamingEnumeration<? extends Attribute> all = attributes.getAll(); all.hasMore(); ) {
+            Attribute attribute = all.next();
+            List<String> list = new ArrayList<>(attribute.size());
+            for (int i = 0; i < attribute.size(); i++) {
+                Object value = attribute.get(i);
+                if (value instanceof String s) {
+                    list.add(s);
+                }
+            }
+            values.put(attribute.getID().toLowerCase(Locale.ROOT), list);
+        }
+        return new IndexEntry(normalizeDn(dn), values);
+    }
+
+    public List<String> values(String attribute) {
+        return attributes.getOrDefault(attribute.toLowerCase(Locale.ROOT), List.of());
+    }
+
+    /**
+     * @return The first value of the attribute, null if it has none
+     */
+    public String value(String attribute) {
+        List<String> values = values(attribute);
+        return values.isEmpty() ? null : values.getFirst();
+    }
+
+    public boolean hasObjectClass(String objectClass) {
+        return values("objectClass").stream().anyMatch(objectClass::equalsIgnoreCase);
+    }
+
+    /**
+     * @return The domain of the entry from the jvd component of its DN, null if it has none
+     */
+    public String domain() {
+        return domainOf(dn);
+    }
+
+    /**
+     * @param dn A DN normalized with {@link #normalizeDn}
+     */
+    public static String domainOf(String dn) {
+        int start = 0;
+        if (!dn.startsWith("jvd=")) {
+            start = dn.indexOf(",jvd=") + 1;
+            if (start == 0) {
+                return null;
+            }
+        }
+        int end = dn.indexOf(',', start);
+        return dn.substring(start + 4, end < 0 ? dn.length() : end);
+    }
+
+    /**
+     * A DN in one spelling, so DNs reported for writes match the ones read by a scan: attribute
+     * types and values in lower case, no spaces around the separators.
+     */
+    public static String normalizeDn(String dn) {
+        try {
+            List<Rdn> rdns = new LdapName(dn).getRdns();
+            StringBuilder normalized = new StringBuilder(dn.length());
+            for (int i = rdns.size() - 1; i >= 0; i--) {
+                Rdn rdn = rdns.get(i);
+                if (!normalized.isEmpty()) {
+                    normalized.append(',');
+                }
+                normalized.append(rdn.getType().toLowerCase(Locale.ROOT)).append('=')
+                        .append(Rdn.escapeValue(rdn.getValue()).toLowerCase(Locale.ROOT));
+            }
+            return normalized.toString();
+        } catch (InvalidNameException | IllegalArgumentException e) {
+            return dn.toLowerCase(Locale.ROOT);
+        }
+    }
+}
@@ -0,0 +1,308 @@
+package ch.aarboard.vamm.index;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Predicate;
+
+/**
+ * A set of lower case strings for prefix completion, stored as a radix trie over their UTF-8
+ * bytes. Keys sharing a prefix share the nodes of it, a node with a single child is merged into
+ * it, so a node's label holds the bytes up to the next branch. Children are kept in an array
+ * sorted by their first byte.
+ *
+ * The trie keeps an estimate of its heap size, counting the nodes and their arrays with
+ * compressed references. Not thread-safe, see {@link AddressAutocomplete} for the locking.
+ */
+final class RadixTrie {
+
+    private static final byte[] EMPTY = new byte[0];
+    private static final Node[] NO_CHILDREN = new Node[0];
+
+    /** Object header plus the three fields */
+    private static final int NODE_BYTES = 24;
+    private static final int ARRAY_BYTES = 16;
+
+    private final Node root = new Node(EMPTY);
+    private int size;
+    private long footprint = footprint(root);
+
+    private static final class Node {
+        private byte[] label;
+        private Node[] children = NO_CHILDREN;
+        private boolean terminal;
+
+        private Node(byte[] label) {
+            this.label = label;
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return The estimated heap size in bytes
+     */
+    long footprint() {
+        return footprint;
+    }
+
+    boolean add(String key) {
+        byte[] bytes = bytes(key);
+        Node node = root;
+        int i = 0;
+        while (i < bytes.length) {
+            int c = find(node, bytes[i]);
+            if (c < 0) {
+                Node leaf = new Node(Arrays.copyOfRange(bytes, i, bytes.length));
+                leaf.terminal = true;
+                footprint += footprint(leaf);
+                insertChild(node, -c - 1, leaf);
+                size++;
+                return true;
+            }
+
+            Node child = node.children[c];
+            int common = common(child.label, bytes, i);
+            if (common < child.label.length) {
+                // Split the child where the key leaves its label
+                Node branch = new Node(Arrays.copyOf(child.label, common));
+                footprint -= footprint(child);
+                child.label = Arrays.copyOfRange(child.label, common, child.label.length);
+                footprint += footprint(child);
+                branch.children = new Node[]{child};
+                footprint += footprint(branch);
+                node.children[c] = branch;
+                child = branch;
+            }
+            node = child;
+            i += common;
+        }
+        if (node.terminal) {
+            return false;
+        }
+        node.terminal = true;
+        size++;
+        return true;
+    }
+
+    boolean remove(String key) {
+        byte[] bytes = bytes(key);
+        Node parent = null;
+        int index = -1;
+        Node node = root;
+        int i = 0;
+        while (i < bytes.length) {
+            int c = find(node, bytes[i]);
+            if (c < 0) {
+                return false;
+            }
+            Node child = node.children[c];
+            if (common(child.label, bytes, i) < child.label.length) {
+                return false;
+            }
+            parent = node;
+            index = c;
+            node = child;
+            i += child.label.length;
+        }
+        if (!node.terminal) {
+            return false;
+        }
+        node.terminal = false;
+        size--;
+
+        if (node == root) {
+            return true;
+        }
+        if (node.children.length == 0) {
+            footprint -= footprint(node);
+            removeChild(parent, index);
+            if (parent != root && !parent.terminal && parent.children.length == 1) {
+                merge(parent);
+            }
+        } else if (node.children.length == 1) {
+            merge(node);
+        }
+        return true;
+    }
+
+    /**
+     * Remove all keys matching a condition, by visiting all of them
+     */
+    void removeIf(Predicate<String> condition) {
+        List<String> matching = new ArrayList<>();
+        collect(root, new Buffer(), Integer.MAX_VALUE, Integer.MAX_VALUE, condition, matching);
+        matching.forEach(this::remove);
+    }
+
+    /**
+     * The keys starting with a prefix, in the order of their bytes
+     *
+     * @param accept     Which keys to return, the others are skipped
+     * @param maxVisited Keys to look at at most, bounds the time a rarely accepting condition takes
+     */
+    List<String> complete(String prefix, int limit, int maxVisited, Predicate<String> accept) {
+        byte[] bytes = bytes(prefix);
+        Buffer path = new Buffer();
+        Node node = root;
+        int i = 0;
+        while (i < bytes.length) {
+            int c = find(node, bytes[i]);
+            if (c < 0) {
+                return List.of();
+            }
+            Node child = node.children[c];
+            int common = common(child.label, bytes, i);
+            if (common < child.label.length && i + common < bytes.length) {
+                return List.of();
+            }
+            path.append(child.label);
+            node = child;
+            i += child.label.length;
+        }
+        List<String> keys = new ArrayList<>(Math.min(limit, 64));
+        if (limit > 0) {
+            collect(node, path, limit, maxVisited, accept, keys);
+        }
+        return keys;
+    }
+
+    /**
+     * @return The number of keys visited below the node
+     */
+    private static int collect(Node node, Buffer path, int limit, int maxVisited, Predicate<String> accept,
+                               List<String> keys) {
+        int visited = 0;
+        if (node.terminal) {
+            visited++;
+            String key = path.string();
+            if (accept.test(key)) {
+                keys.add(key);
+            }
+        }
+        for (Node child : node.children) {
+            if (keys.size() >= limit || visited >= maxVisited) {
+                break;
+            }
+            int length = path.length;
+            path.append(child.label);
+            visited += collect(child, path, limit, maxVisited - visited, accept, keys);
+            path.length = length;
+        }
+        return visited;
+    }
+
+    /**
+     * Join a node that is no key with its only child
+     */
+    private void merge(Node node) {
+        Node child = node.children[0];
+        footprint -= footprint(node) + footprint(child);
+        byte[] label = Arrays.copyOf(node.label, node.label.length + child.label.length);
+        System.arraycopy(child.label, 0, label, node.label.length, child.label.length);
+        node.label = label;
+        node.children = child.children;
+        node.terminal = child.terminal;
+        footprint += footprint(node);
+    }
+
+    private void insertChild(Node node, int index, Node child) {
+        footprint -= footprint(node);
+        Node[] children = new Node[node.children.length + 1];
+        System.arraycopy(node.children, 0, children, 0, index);
+        children[index] = child;
+        System.arraycopy(node.children, index, children, index + 1, node.children.length - index);
+        node.children = children;
+        footprint += footprint(node);
+    }
+
+    private void removeChild(Node node, int index) {
+        footprint -= footprint(node);
+        if (node.children.length == 1) {
+            node.children = NO_CHILDREN;
+        } else {
+            Node[] children = new Node[node.children.length - 1];
+            System.arraycopy(node.children, 0, children, 0, index);
+            System.arraycopy(node.children, index + 1, children, index, children.length - index);
+            node.children = children;
+        }
+        footprint += footprint(node);
+    }
+
+    /**
+     * @return The index of the child whose label starts with the byte, or
+     * {@code -(insertion point) - 1}
+     */
+    private static int find(Node node, byte first) {
+        int key = first & 0xff;
+        int low = 0;
+        int high = node.children.length - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int value = node.children[mid].label[0] & 0xff;
+            if (value < key) {
+                low = mid + 1;
+            } else if (value > key) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    /**
+     * @return The length of the common prefix of the label and the key from an offset
+     */
+    private static int common(byte[] label, byte[] key, int offset) {
+        int max = Math.min(label.length, key.length - offset);
+        int i = 0;
+        while (i < max && label[i] == key[offset + i]) {
+            i++;
+        }
+        return i;
+    }
+
+    private static long footprint(Node node) {
+        long bytes = NODE_BYTES;
+        if (node.label.length > 0) {
+            bytes += align(ARRAY_BYTES + node.label.length);
+        }
+        if (node.children.length > 0) {
+            bytes += align(ARRAY_BYTES + 4L * node.children.length);
+        }
+        return bytes;
+    }
+
+    private static long align(long bytes) {
+        return (bytes + 7) & ~7L;
+    }
+
+    private static byte[] bytes(String key) {
+        return key.toLowerCase(Locale.ROOT).getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * The bytes of the path to a node
+     */
+    private static final class Buffer {
+        private byte[] bytes = new byte[64];
+        private int length;
+
+        private void append(byte[] label) {
+            if (length + label.length > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + label.length));
+            }
+            System.arraycopy(label, 0, bytes, length, label.length);
+            length += label.length;
+        }
+
+        private String string() {
+            return new String(bytes, 0, length, StandardCharsets.UTF_8);
+        }
+    }
+}
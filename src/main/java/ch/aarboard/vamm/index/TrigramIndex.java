@@ -0,0 +1,342 @@
+package ch.aarboard.vamm.index;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.function.Predicate;
+
+/**
+ * Substring search over short values, like addresses, by their trigrams.
+ *
+ * Every value is indexed by its lower case trigrams plus one marking its start. A term of three or
+ * more characters finds the documents having all its trigrams, from the intersection of their
+ * posting lists, shortest first. The candidates are then checked for the term itself and ranked. A
+ * term of two characters only matches at the start of a value.
+ *
+ * The candidates with a value starting with the term, those in the posting list of its start
+ * trigram, are checked first, then the others. A broad term stops at a maximum of candidates, the
+ * values starting with it are still among the first checked.
+ *
+ * Documents get increasing ids, so appending keeps the posting lists sorted. A removed document
+ * stays in the posting lists and is skipped until the index is {@link #compact compacted}. Not
+ * thread-safe, see {@link AddressSearchIndex} for the locking.
+ */
+final class TrigramIndex {
+
+    /** Precedes the first character of every value, so a trigram can match at the start only */
+    private static final char START = '\u0002';
+
+    /** Posting lists intersected at most, the candidates are checked for the whole term anyway */
+    private static final int MAX_LISTS = 3;
+
+    private final List<Document> documents = new ArrayList<>();
+    private final Map<String, Integer> ids = new HashMap<>();
+    private final Map<Long, Postings> postings = new HashMap<>();
+    private int removed;
+
+    /**
+     * Something that can be found
+     *
+     * @param key    Unique, like the DN
+     * @param values Lower case values to search in
+     * @param fields The field of each value, for the ranking
+     */
+    record Document(String key, Object payload, String domain, String[] values, byte[] fields) {
+    }
+
+    /**
+     * @param value The matching value
+     * @param score Higher is better
+     */
+    record Hit(Document document, int field, String value, int score) {
+    }
+
+    /**
+     * @param matches   Documents matching the term, the hits are the best of them
+     * @param truncated Stopped at the maximum of candidates, there may be more and better matches
+     */
+    record Result(List<Hit> hits, int matches, boolean truncated) {
+    }
+
+    /**
+     * Ranks how well a value matches. A match at the start of a value has to rank above all
+     * others, those are searched first.
+     */
+    @FunctionalInterface
+    interface Scorer {
+
+        /**
+         * @param position Where the term starts in the value
+         */
+        int score(int field, String value, int position, String term);
+    }
+
+    private static final class Postings {
+        private int[] ids = new int[2];
+        private int size;
+
+        private void add(int id) {
+            if (size > 0 && ids[size - 1] == id) {
+                return;
+            }
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size + (size >> 1) + 1);
+            }
+            ids[size++] = id;
+        }
+    }
+
+    int size() {
+        return ids.size();
+    }
+
+    /**
+     * Documents removed but still in the posting lists
+     */
+    int garbage() {
+        return removed;
+    }
+
+    void put(Document document) {
+        remove(document.key());
+        int id = documents.size();
+        documents.add(document);
+        ids.put(document.key(), id);
+        for (String value : document.values()) {
+            char a = START;
+            char b = value.isEmpty() ? 0 : value.charAt(0);
+            for (int i = 1; i <= value.length(); i++) {
+                char c = i < value.length() ? value.charAt(i) : 0;
+                if (b == 0) {
+                    break;
+                }
+                if (c != 0 || a == START) {
+                    postings.computeIfAbsent(key(a, b, c), k -> new Postings()).add(id);
+                }
+                a = b;
+                b = c;
+            }
+        }
+    }
+
+    boolean remove(String key) {
+        Integer id = ids.remove(key);
+        if (id == null) {
+            return false;
+        }
+        documents.set(id, null);
+        removed++;
+        return true;
+    }
+
+    /**
+     * A copy with the live documents only, dropping the removed ones from the posting lists
+     */
+    TrigramIndex compact() {
+        TrigramIndex compacted = new TrigramIndex();
+        for (Document document : documents) {
+            if (document != null) {
+                compacted.put(document);
+            }
+        }
+        return compacted;
+    }
+
+    /**
+     * Remove all documents matching a condition, by scanning all of them
+     */
+    void removeIf(Predicate<Document> condition) {
+        for (Document document : documents) {
+            if (document != null && condition.test(document)) {
+                remove(document.key());
+            }
+        }
+    }
+
+    /**
+     * @param maxCandidates Documents to check at most, bounds the time a broad term takes
+     */
+    Result search(String term, int limit, int maxCandidates, Predicate<String> domainFilter, Scorer scorer) {
+        String q = term.strip().toLowerCase(Locale.ROOT);
+        if (q.length() < 2 || limit <= 0) {
+            return new Result(List.of(), 0, false);
+        }
+
+        Postings start = postings.get(key(START, q.charAt(0), q.charAt(1)));
+        Postings[] lists = new Postings[q.length() - 2];
+        for (int i = 0; i < lists.length; i++) {
+            lists[i] = postings.get(key(q.charAt(i), q.charAt(i + 1), q.charAt(i + 2)));
+            if (lists[i] == null) {
+                return new Result(List.of(), 0, false);
+            }
+        }
+        if (lists.length == 0) {
+            if (start == null) {
+                return new Result(List.of(), 0, false);
+            }
+            lists = new Postings[]{start};
+        }
+        int[] candidates = intersect(lists);
+
+        // Matches at the start of a value rank above all others, so they are checked first and
+        // are not lost when the others exceed the maximum
+        Collector collector = new Collector(limit, maxCandidates);
+        boolean[] checked = new boolean[candidates.length];
+        if (start != null) {
+            int cursor = 0;
+            for (int c = 0; c < candidates.length && !collector.full(); c++) {
+                int found = gallop(start.ids, start.size, cursor, candidates[c]);
+                cursor = found < 0 ? -found - 1 : found;
+                if (found >= 0) {
+                    checked[c] = check(candidates[c], q, true, domainFilter, scorer, collector);
+                }
+            }
+        }
+        int c = 0;
+        for (; c < candidates.length && !collector.full(); c++) {
+            if (!checked[c]) {
+                check(candidates[c], q, false, domainFilter, scorer, collector);
+            }
+        }
+        return collector.result(c < candidates.length);
+    }
+
+    /**
+     * The documents in all of the shortest posting lists. A few lists narrow the candidates down
+     * enough, checking them for the term is cheaper than walking long lists.
+     */
+    private static int[] intersect(Postings[] lists) {
+        Postings[] shortest = lists.clone();
+        Arrays.sort(shortest, Comparator.comparingInt(p -> p.size));
+        int count = Math.min(shortest.length, MAX_LISTS);
+        int[] cursors = new int[count];
+        int[] ids = new int[shortest[0].size];
+        int size = 0;
+        candidates:
+        for (int c = 0; c < shortest[0].size; c++) {
+            int id = shortest[0].ids[c];
+            for (int l = 1; l < count; l++) {
+                int found = gallop(shortest[l].ids, shortest[l].size, cursors[l], id);
+                if (found < 0) {
+                    cursors[l] = -found - 1;
+                    continue candidates;
+                }
+                cursors[l] = found;
+            }
+            ids[size++] = id;
+        }
+        return Arrays.copyOf(ids, size);
+    }
+
+    /**
+     * @param atStart Only take the document if it has a value starting with the term, else take
+     *                it if it contains the term
+     * @return Whether the document had a value starting with the term
+     */
+    private boolean check(int id, String term, boolean atStart, Predicate<String> domainFilter, Scorer scorer,
+                          Collector collector) {
+        collector.examined++;
+        Document document = documents.get(id);
+        if (document == null || !domainFilter.test(document.domain())) {
+            return atStart;
+        }
+        if (atStart && !startsWith(document, term)) {
+            return false;
+        }
+        Hit hit = bestHit(document, term, scorer);
+        if (hit != null) {
+            collector.add(hit);
+        }
+        return atStart;
+    }
+
+    /**
+     * The best hits seen, until the maximum of candidates is examined
+     */
+    private static final class Collector {
+        private static final Comparator<Hit> RANKING = Comparator.comparingInt(Hit::score)
+                .thenComparing(hit -> hit.document().key(), Comparator.reverseOrder());
+
+        private final int limit;
+        private final int maxCandidates;
+        private final PriorityQueue<Hit> best;
+        private int examined;
+        private int matches;
+
+        private Collector(int limit, int maxCandidates) {
+            this.limit = limit;
+            this.maxCandidates = maxCandidates;
+            this.best = new PriorityQueue<>(limit + 1, RANKING);
+        }
+
+        private void add(Hit hit) {
+            matches++;
+            if (best.size() < limit) {
+                best.add(hit);
+            } else if (RANKING.compare(hit, best.peek()) > 0) {
+                best.poll();
+                best.add(hit);
+            }
+        }
+
+        private boolean full() {
+            return examined >= maxCandidates;
+        }
+
+        private Result result(boolean truncated) {
+            List<Hit> hits = new ArrayList<>(best);
+            hits.sort(RANKING.reversed());
+            return new Result(hits, matches, truncated);
+        }
+    }
+
+    /**
+     * Find an id at or after a position, doubling the step first since the next candidate is
+     * usually close
+     *
+     * @return Its position, or {@code -(insertion point) - 1} like a binary search
+     */
+    private static int gallop(int[] ids, int size, int from, int id) {
+        int step = 1;
+        int low = from;
+        while (from + step < size && ids[from + step] < id) {
+            low = from + step;
+            step <<= 1;
+        }
+        return Arrays.binarySearch(ids, low, Math.min(from + step + 1, size), id);
+    }
+
+    private static Hit bestHit(Document document, String term, Scorer scorer) {
+        Hit best = null;
+        String[] values = document.values();
+        for (int i = 0; i < values.length; i++) {
+            int position = values[i].indexOf(term);
+            if (position < 0) {
+                continue;
+            }
+            int score = scorer.score(document.fields()[i], values[i], position, term);
+            if (best == null || score > best.score()) {
+                best = new Hit(document, document.fields()[i], values[i], score);
+            }
+        }
+        return best;
+    }
+
+    private static boolean startsWith(Document document, String term) {
+        for (String value : document.values()) {
+            if (value.startsWith(term)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static long key(char a, char b, char c) {
+        return ((long) a << 32) | ((long) b << 16) | c;
+    }
+}
@@ -0,0 +1,10 @@
+package ch.aarboard.vamm.jobs;
+
+/**
+ * The work of a background job
+ */
+@FunctionalInterface
+public interface Job {
+
+    void run(JobContext context) throws Exception;
+}
@@ -0,0 +1,35 @@
+package ch.aarboard.vamm.jobs;
+
+import java.util.concurrent.CancellationException;
+
+/**
+ * Handed to a running job to report progress and to check for cancellation.
+ * Cancellation is cooperative: the worker thread is interrupted as well, but
+ * jobs should call {@link #checkCancelled()} between units of work.
+ */
+public interface JobContext {
+
+    /**
+     * Report progress. Calls are cheap, listeners are notified at a throttled rate.
+     *
+     * @param processed Work items done so far
+     * @param total     Work items in total, 0 if not known
+     */
+    void progress(long processed, long total);
+
+    /**
+     * Set a status message shown next to the job
+     */
+    void message(String message);
+
+    boolean isCancelled();
+
+    /**
+     * @throws CancellationException if the job was cancelled
+     */
+    default void checkCancelled() {
+        if (isCancelled()) {
+            throw new CancellationException("Job cancelled");
+        }
+    }
+}
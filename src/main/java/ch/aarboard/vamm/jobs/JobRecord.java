@@ -0,0 +1,77 @@
+package ch.aarboard.vamm.jobs;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Immutable snapshot of a background job. Every state change produces a new record,
+ * so records can be handed to UIs and written to disk without further locking.
+ *
+ * @param id          Unique id of the job
+ * @param type        Kind of job, e.g. {@code domain-delete}
+ * @param subject     What the job works on, e.g. the domain name
+ * @param description Human readable description
+ * @param owner       User that submitted the job
+ * @param processed   Work items done so far
+ * @param total       Work items in total, 0 if not known yet
+ * @param message     Last status or error message
+ */
+public record JobRecord(String id, String type, String subject, String description, String owner,
+                        JobStatus status, Instant createdAt, Instant startedAt, Instant finishedAt,
+                        long processed, long total, String message) {
+
+    JobRecord withStatus(JobStatus status, Instant at, String message) {
+        Instant started = status == JobStatus.RUNNING && startedAt == null ? at : startedAt;
+        Instant finished = status.isFinished() ? at : finishedAt;
+        return new JobRecord(id, type, subject, description, owner, status, createdAt, started, finished,
+                processed, total, message != null ? message : this.message);
+    }
+
+    JobRecord withProgress(long processed, long total) {
+        return new JobRecord(id, type, subject, description, owner, status, createdAt, startedAt, finishedAt,
+                processed, total, message);
+    }
+
+    JobRecord withMessage(String message) {
+        return new JobRecord(id, type, subject, description, owner, status, createdAt, startedAt, finishedAt,
+                processed, total, message);
+    }
+
+    /**
+     * @return progress between 0 and 1, or -1 if the total is not known
+     */
+    @JsonIgnore
+    public double fraction() {
+        if (total <= 0) {
+            return status == JobStatus.SUCCEEDED ? 1.0 : -1.0;
+        }
+        return Math.min(1.0, (double) processed / total);
+    }
+
+    /**
+     * @return the running time, up to now for unfinished jobs
+     */
+    @JsonIgnore
+    public Duration duration() {
+        if (startedAt == null) {
+            return Duration.ZERO;
+        }
+        return Duration.between(startedAt, finishedAt != null ? finishedAt : Instant.now());
+    }
+
+    /**
+     * @return work items per second over the running time
+     */
+    @JsonIgnore
+    public double throughput() {
+        double seconds = duration().toMillis() / 1000.0;
+        return seconds <= 0 ? 0.0 : processed / seconds;
+    }
+
+    @JsonIgnore
+    public boolean isFinished() {
+        return status.isFinished();
+    }
+}
@@ -0,0 +1,332 @@
+package ch.aarboard.vamm.jobs;
+
+import ch.aarboard.vamm.config.AsyncConfig;
+import com.vaadin.flow.component.UI;
+import com.vaadin.flow.function.SerializableConsumer;
+import com.vaadin.flow.shared.Registration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+/**
+ * Runs long bulk operations (domain deletion, imports, ...) on a small bounded pool,
+ * off the Vaadin request threads.
+ *
+ * Each job is tracked as a {@link JobRecord}. Records are persisted through the
+ * {@link JobStore} on every state change and periodically while running; jobs that
+ * were still queued or running when the application stopped are reported as
+ * {@link JobStatus#INTERRUPTED} after the next start.
+ *
+ * Listeners receive every state change, progress updates are throttled per job so a
+ * fast job does not flood the UIs with pushes.
+ */
+@Service
+public class JobService {
+
+    private static final Logger log = LoggerFactory.getLogger(JobService.class);
+
+    /** Running jobs are persisted at most this many progress notifications apart */
+    private static final int PERSIST_EVERY = 20;
+
+    private final AsyncTaskExecutor executor;
+    private final JobStore store;
+    private final long notifyIntervalMillis;
+    private final int retention;
+
+    private final Map<String, TrackedJob> jobs = new ConcurrentHashMap<>();
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    @Autowired
+    public JobService(@Qualifier(AsyncConfig.JOB_EXECUTOR) AsyncTaskExecutor executor,
+                      JobStore store,
+                      @Value("${jamm.jobs.notify-interval-ms:250}") long notifyIntervalMillis,
+                      @Value("${jamm.jobs.retention:200}") int retention) {
+        this.executor = executor;
+        this.store = store;
+        this.notifyIntervalMillis = notifyIntervalMillis;
+        this.retention = retention;
+        restore();
+    }
+
+    /**
+     * Queue a job. The security context of the calling thread is propagated, so the
+     * job talks to LDAP with the credentials of the submitting user.
+     *
+     * @param type        Kind of job, used by views to react to completions
+     * @param subject     What the job works on, e.g. the domain name
+     * @param description Human readable description
+     * @param job         The work
+     * @return The record of the queued job
+     * @throws IllegalStateException if the job queue is full
+     */
+    public JobRecord submit(String type, String subject, String description, Job job) {
+        SecurityContext securityContext = SecurityContextHolder.getContext();
+        Authentication authentication = securityContext.getAuthentication();
+        String owner = authentication != null ? authentication.getName() : null;
+
+        JobRecord record = new JobRecord(UUID.randomUUID().toString(), type, subject, description, owner,
+                JobStatus.QUEUED, Instant.now(), null, null, 0, 0, null);
+        TrackedJob tracked = new TrackedJob(record);
+        jobs.put(record.id(), tracked);
+        store.save(record);
+
+        try {
+            Future<?> future = executor.submit(() -> execute(tracked, job, securityContext));
+            tracked.attach(future);
+        } catch (TaskRejectedException e) {
+            jobs.remove(record.id());
+            store.delete(record.id());
+            throw new IllegalStateException("Too many background jobs queued, try again later", e);
+        }
+
+        log.info("Queued job {} ({}: {})", record.id(), type, subject);
+        publish(tracked.record);
+        return record;
+    }
+
+    /**
+     * Request cancellation. Queued jobs never start, running jobs are interrupted and
+     * stop at their next cancellation check.
+     *
+     * @return true if the job was still queued or running
+     */
+    public boolean cancel(String id) {
+        TrackedJob tracked = jobs.get(id);
+        if (tracked == null || tracked.record.isFinished()) {
+            return false;
+        }
+
+        tracked.cancelled = true;
+        Future<?> future = tracked.future;
+        if (future != null) {
+            future.cancel(true);
+        }
+
+        // A queued job never reaches execute(), finish it here
+        if (tracked.record.status() == JobStatus.QUEUED) {
+            finish(tracked, JobStatus.CANCELLED, "Cancelled before start");
+        }
+        return true;
+    }
+
+    public Optional<JobRecord> getJob(String id) {
+        TrackedJob tracked = jobs.get(id);
+        return tracked == null ? Optional.empty() : Optional.of(tracked.record);
+    }
+
+    /**
+     * @return all known jobs, newest first
+     */
+    public List<JobRecord> getJobs() {
+        return jobs.values().stream()
+                .map(t -> t.record)
+                .sorted(Comparator.comparing(JobRecord::createdAt).reversed())
+                .toList();
+    }
+
+    /**
+     * Register a UI for job updates. The listener runs inside {@code UI.access}.
+     *
+     * @return A registration to remove the listener, e.g. on detach
+     */
+    public Registration register(UI ui, SerializableConsumer<JobRecord> listener) {
+        return register(command -> ui.access(command::run), listener);
+    }
+
+    /**
+     * Register a listener whose updates are handed to the given dispatcher.
+     */
+    Registration register(Executor dispatcher, Consumer<JobRecord> listener) {
+        Listener entry = new Listener(dispatcher, listener);
+        listeners.add(entry);
+        return () -> listeners.remove(entry);
+    }
+
+    private void execute(TrackedJob tracked, Job job, SecurityContext securityContext) {
+        synchronized (tracked) {
+            // cancel() may have finished the job while it was queued
+            if (tracked.cancelled || tracked.record.isFinished()) {
+                return;
+            }
+            tracked.update(tracked.record.withStatus(JobStatus.RUNNING, Instant.now(), null));
+        }
+
+        SecurityContextHolder.setContext(securityContext);
+        try {
+            store.save(tracked.record);
+            publish(tracked.record);
+
+            job.run(tracked);
+
+            if (tracked.cancelled) {
+                finish(tracked, JobStatus.CANCELLED, "Cancelled");
+            } else {
+                finish(tracked, JobStatus.SUCCEEDED, null);
+            }
+        } catch (CancellationException | InterruptedException e) {
+            finish(tracked, JobStatus.CANCELLED, "Cancelled");
+        } catch (Exception e) {
+            if (tracked.cancelled) {
+                finish(tracked, JobStatus.CANCELLED, "Cancelled");
+            } else {
+                log.warn("Job {} failed: {}", tracked.record.id(), e.getMessage(), e);
+                finish(tracked, JobStatus.FAILED, e.getMessage());
+            }
+        } finally {
+            SecurityContextHolder.clearContext();
+            Thread.interrupted(); // Do not leak a cancellation interrupt into the next job
+        }
+    }
+
+    private void finish(TrackedJob tracked, JobStatus status, String message) {
+        synchronized (tracked) {
+            if (tracked.record.isFinished()) {
+                return;
+            }
+            tracked.update(tracked.record.withStatus(status, Instant.now(), message));
+        }
+        store.save(tracked.record);
+        publish(tracked.record);
+        log.info("Job {} {} after {} of {} items", tracked.record.id(), status, tracked.record.processed(),
+                tracked.record.total());
+        prune();
+    }
+
+    private void publish(JobRecord record) {
+        for (Listener listener : listeners) {
+            try {
+                listener.dispatcher().execute(() -> listener.consumer().accept(record));
+            } catch (Exception e) {
+                // Typically a detached UI that missed its cleanup, drop it
+                log.debug("Dropping job listener: {}", e.getMessage());
+                listeners.remove(listener);
+            }
+        }
+    }
+
+    /**
+     * Load the persisted history. Jobs that did not finish belonged to a previous run.
+     */
+    private void restore() {
+        for (JobRecord record : store.loadAll()) {
+            if (!record.isFinished()) {
+                record = record.withStatus(JobStatus.INTERRUPTED, Instant.now(), "Interrupted by application restart");
+                store.save(record);
+            }
+            jobs.put(record.id(), new TrackedJob(record));
+        }
+        prune();
+    }
+
+    /**
+     * Drop the oldest finished jobs beyond the retention limit
+     */
+    private void prune() {
+        List<JobRecord> finished = jobs.values().stream()
+                .map(t -> t.record)
+                .filter(JobRecord::isFinished)
+                .sorted(Comparator.comparing(JobRecord::createdAt).reversed())
+                .toList();
+        for (JobRecord record : finished.subList(Math.min(retention, finished.size()), finished.size())) {
+            jobs.remove(record.id());
+            store.delete(record.id());
+        }
+    }
+
+    private record Listener(Executor dispatcher, Consumer<JobRecord> consumer) {
+    }
+
+    /**
+     * Mutable holder of a job's current record, also the context handed to the job
+     */
+    private final class TrackedJob implements JobContext {
+
+        private volatile JobRecord record;
+        private volatile Future<?> future;
+        private volatile boolean cancelled = false;
+        private long lastNotified = 0;
+        private int notifications = 0;
+
+        private TrackedJob(JobRecord record) {
+            this.record = record;
+        }
+
+        private void attach(Future<?> future) {
+            this.future = future;
+            if (cancelled) {
+                future.cancel(true);
+            }
+        }
+
+        private void update(JobRecord record) {
+            this.record = record;
+        }
+
+        @Override
+        public void progress(long processed, long total) {
+            JobRecord current;
+            boolean notify;
+            boolean persist;
+            synchronized (this) {
+                if (record.isFinished()) {
+                    return;
+                }
+                record = record.withProgress(processed, total);
+                current = record;
+
+                long now = System.currentTimeMillis();
+                notify = now - lastNotified >= notifyIntervalMillis || (total > 0 && processed >= total);
+                persist = false;
+                if (notify) {
+                    lastNotified = now;
+                    persist = ++notifications % PERSIST_EVERY == 0;
+                }
+            }
+            if (persist) {
+                store.save(current);
+            }
+            if (notify) {
+                publish(current);
+            }
+        }
+
+        @Override
+        public void message(String message) {
+            JobRecord current;
+            synchronized (this) {
+                if (record.isFinished()) {
+                    return;
+                }
+                record = record.withMessage(message);
+                current = record;
+            }
+            publish(current);
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return cancelled || Thread.currentThread().isInterrupted();
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package ch.aarboard.vamm.jobs;
+
+public enum JobStatus {
+    QUEUED,
+    RUNNING,
+    SUCCEEDED,
+    FAILED,
+    CANCELLED,
+    /** The application stopped while the job was queued or running */
+    INTERRUPTED;
+
+    public boolean isFinished() {
+        return this != QUEUED && this != RUNNING;
+    }
+}
@@ -0,0 +1,86 @@
+package ch.aarboard.vamm.jobs;
+
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Keeps one JSON file per job in a local directory, so the job history and the fact that
+ * a job was cut off by a restart survive the application. Files are written to a temporary
+ * name and moved into place, a crash never leaves a half written record behind.
+ */
+@Component
+public class JobStore {
+
+    private static final Logger log = LoggerFactory.getLogger(JobStore.class);
+
+    private static final String SUFFIX = ".json";
+
+    private final Path directory;
+    private final JsonMapper mapper = JsonMapper.builder()
+            .findAndAddModules()
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .build();
+
+    @Autowired
+    public JobStore(@Value("${jamm.jobs.directory:${java.io.tmpdir}/vamm-jobs}") String directory) {
+        this.directory = Path.of(directory);
+    }
+
+    public void save(JobRecord job) {
+        try {
+            Files.createDirectories(directory);
+            Path target = file(job.id());
+            Path temp = directory.resolve(job.id() + SUFFIX + ".tmp");
+            mapper.writeValue(temp.toFile(), job);
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            // The job itself keeps running, only its history is affected
+            log.warn("Could not persist job {}: {}", job.id(), e.getMessage());
+        }
+    }
+
+    public List<JobRecord> loadAll() {
+        List<JobRecord> jobs = new ArrayList<>();
+        if (!Files.isDirectory(directory)) {
+            return jobs;
+        }
+
+        try (Stream<Path> files = Files.list(directory)) {
+            files.filter(f -> f.getFileName().toString().endsWith(SUFFIX)).forEach(f -> {
+                try {
+                    jobs.add(mapper.readValue(f.toFile(), JobRecord.class));
+                } catch (IOException e) {
+                    log.warn("Skipping unreadable job file {}: {}", f, e.getMessage());
+                }
+            });
+        } catch (IOException e) {
+            log.warn("Could not list job directory {}: {}", directory, e.getMessage());
+        }
+        return jobs;
+    }
+
+    public void delete(String id) {
+        try {
+            Files.deleteIfExists(file(id));
+        } catch (IOException e) {
+            log.debug("Could not delete job file {}: {}", id, e.getMessage());
+        }
+    }
+
+    private Path file(String id) {
+        return directory.resolve(id + SUFFIX);
+    }
+}
@@ -0,0 +1,28 @@
+package ch.aarboard.vamm.ldap;
+
+import javax.naming.Name;
+
+/**
+ * Thrown when a conditional update fails because the entry was changed or deleted since it was
+ * read. The entity that was written is stale, it has to be reloaded before the change is applied
+ * again.
+ */
+public class EntryConflictException extends RuntimeException {
+
+    private final transient Name dn;
+    private final String expectedLastChange;
+
+    public EntryConflictException(Name dn, String expectedLastChange, Throwable cause) {
+        super("Entry " + dn + " was modified or deleted concurrently (expected lastChange " + expectedLastChange + ")", cause);
+        this.dn = dn;
+        this.expectedLastChange = expectedLastChange;
+    }
+
+    public Name getDn() {
+        return dn;
+    }
+
+    public String getExpectedLastChange() {
+        return expectedLastChange;
+    }
+}
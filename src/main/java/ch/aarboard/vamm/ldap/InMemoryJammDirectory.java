@@ -0,0 +1,188 @@
+package ch.aarboard.vamm.ldap;
+
+import ch.aarboard.vamm.config.LdapConfig;
+import com.unboundid.ldap.listener.InMemoryDirectoryServer;
+import com.unboundid.ldap.listener.InMemoryDirectoryServerConfig;
+import com.unboundid.ldap.listener.InMemoryDirectoryServerSnapshot;
+import com.unboundid.ldap.listener.InMemoryListenerConfig;
+import com.unboundid.ldap.listener.interceptor.InMemoryOperationInterceptor;
+import com.unboundid.ldap.sdk.Attribute;
+import com.unboundid.ldap.sdk.Entry;
+import com.unboundid.ldap.sdk.LDAPException;
+import com.unboundid.ldap.sdk.schema.Schema;
+import com.unboundid.ldif.LDIFException;
+import com.unboundid.ldif.LDIFReader;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An UnboundID in-memory directory with the Jamm schema, listening on a free local port.
+ *
+ * The schema is read from the OpenLDAP cn=config LDIF in {@code example/schemas/jamm.ldif} and
+ * added to the standard schema, so entries are checked as strictly as by the production server.
+ * The RFC 2307 attributes the Jamm classes use are added as well, OpenLDAP has them from nis.schema.
+ * The base entry and {@code o=hosting} are created, the admin binds with the same DN and password
+ * as the development OpenLDAP.
+ *
+ * Each instance is independent, tests can run one per class in parallel and reset it with
+ * {@link #snapshot()} and {@link #restore(InMemoryDirectoryServerSnapshot)}.
+ */
+public class InMemoryJammDirectory implements AutoCloseable {
+
+    public static final String BASE = "dc=example,dc=com";
+    public static final String ADMIN_DN = "cn=admin,dc=example,dc=com";
+    public static final String ADMIN_PASSWORD = "admin";
+    public static final Path SCHEMA_FILE = Path.of("example", "schemas", "jamm.ldif");
+    public static final Path SAMPLE_FILE = Path.of("example", "sample.ldif");
+
+    /** From the OpenLDAP nis.schema, used by JammMailAccount */
+    private static final List<String> RFC2307_ATTRIBUTE_TYPES = List.of(
+            "( 1.3.6.1.1.1.1.0 NAME 'uidNumber' EQUALITY integerMatch ORDERING integerOrderingMatch"
+                    + " SYNTAX 1.3.6.1.4.1.1466.115.121.1.27 SINGLE-VALUE )",
+            "( 1.3.6.1.1.1.1.1 NAME 'gidNumber' EQUALITY integerMatch ORDERING integerOrderingMatch"
+                    + " SYNTAX 1.3.6.1.4.1.1466.115.121.1.27 SINGLE-VALUE )",
+            "( 1.3.6.1.1.1.1.3 NAME 'homeDirectory' EQUALITY caseExactIA5Match"
+                    + " SYNTAX 1.3.6.1.4.1.1466.115.121.1.26 SINGLE-VALUE )");
+
+    private final InMemoryDirectoryServer server;
+
+    /**
+     * Start a directory with the schema from {@link #SCHEMA_FILE}, relative to the working directory
+     */
+    public InMemoryJammDirectory() throws LDAPException, IOException, LDIFException {
+        this(SCHEMA_FILE, 0);
+    }
+
+    /**
+     * @param schemaFile   The Jamm schema as OpenLDAP cn=config LDIF
+     * @param port         Port to listen on, 0 for a free one
+     * @param interceptors Hooks to imitate other servers' behavior, in the order they are given
+     */
+    public InMemoryJammDirectory(Path schemaFile, int port, InMemoryOperationInterceptor... interceptors)
+            throws LDAPException, IOException, LDIFException {
+        InMemoryDirectoryServerConfig config = new InMemoryDirectoryServerConfig(BASE);
+        for (InMemoryOperationInterceptor interceptor : interceptors) {
+            config.addInMemoryOperationInterceptor(interceptor);
+        }
+        config.addAdditionalBindCredentials(ADMIN_DN, ADMIN_PASSWORD);
+        config.setListenerConfigs(InMemoryListenerConfig.createLDAPConfig("default", port));
+        config.setSchema(Schema.mergeSchemas(Schema.getDefaultStandardSchema(), readSchema(schemaFile)));
+        // Access and LDAP logs would dominate every measurement
+        config.setAccessLogHandler(null);
+        config.setLDAPDebugLogHandler(null);
+
+        server = new InMemoryDirectoryServer(config);
+        server.add(new Entry(BASE,
+                new Attribute("objectClass", "top", "dcObject", "organization"),
+                new Attribute("dc", "example"),
+                new Attribute("o", "example")));
+        server.add(new Entry("o=hosting," + BASE,
+                new Attribute("objectClass", "top", "organization"),
+                new Attribute("o", "hosting")));
+        server.startListening();
+    }
+
+    /**
+     * Convert the attribute types and object classes of a cn=config schema entry into a subschema entry
+     */
+    static Schema readSchema(Path schemaFile) throws IOException, LDIFException {
+        List<String> attributeTypes = new ArrayList<>(RFC2307_ATTRIBUTE_TYPES);
+        List<String> objectClasses = new ArrayList<>();
+        try (LDIFReader reader = new LDIFReader(schemaFile.toFile())) {
+            Entry entry;
+            while ((entry = reader.readEntry()) != null) {
+                addValues(entry, "olcAttributeTypes", attributeTypes);
+                addValues(entry, "olcObjectClasses", objectClasses);
+            }
+        }
+        return new Schema(new Entry("cn=schema",
+                new Attribute("objectClass", "top", "ldapSubentry", "subschema"),
+                new Attribute("cn", "schema"),
+                new Attribute("attributeTypes", attributeTypes),
+                new Attribute("objectClasses", objectClasses)));
+    }
+
+    private static void addValues(Entry entry, String attribute, List<String> values) {
+        String[] found = entry.getAttributeValues(attribute);
+        if (found != null) {
+            values.addAll(List.of(found));
+        }
+    }
+
+    public InMemoryDirectoryServer getServer() {
+        return server;
+    }
+
+    public int getPort() {
+        return server.getListenPort();
+    }
+
+    public String getUrl() {
+        return "ldap://localhost:" + getPort();
+    }
+
+    /**
+     * @return a configuration for an {@link LdapSessionManager} talking to this directory
+     */
+    public LdapConfig ldapConfig() {
+        return new LdapConfig(getUrl(), BASE, 5000, 60000);
+    }
+
+    /**
+     * Add entries directly, without a network round trip
+     */
+    public void add(Entry... entries) throws LDAPException {
+        for (Entry entry : entries) {
+            server.add(entry);
+        }
+    }
+
+    /**
+     * Add the entries of an LDIF file. Entries that exist already, like the base and o=hosting
+     * in the sample data, are left as they are.
+     *
+     * @return the number of entries added
+     */
+    public int importLdif(Path file) throws LDAPException, IOException, LDIFException {
+        int added = 0;
+        try (LDIFReader reader = new LDIFReader(file.toFile())) {
+            Entry entry;
+            while ((entry = reader.readEntry()) != null) {
+                if (!server.entryExists(entry.getDN())) {
+                    server.add(entry);
+                    added++;
+                }
+            }
+        }
+        return added;
+    }
+
+    /**
+     * Copy the current content, taking a snapshot costs about as much as the entries take to copy
+     */
+    public InMemoryDirectoryServerSnapshot snapshot() {
+        return server.createSnapshot();
+    }
+
+    /**
+     * Reset the content to a snapshot of this directory
+     */
+    public void restore(InMemoryDirectoryServerSnapshot snapshot) {
+        server.restoreSnapshot(snapshot);
+    }
+
+    /**
+     * @return the number of entries in the directory, including base and o=hosting
+     */
+    public int countEntries() throws LDAPException {
+        return server.countEntries();
+    }
+
+    @Override
+    public void close() {
+        server.shutDown(true);
+    }
+}
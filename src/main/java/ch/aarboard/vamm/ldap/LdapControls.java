@@ -0,0 +1,147 @@
+package ch.aarboard.vamm.ldap;
+
+import com.unboundid.asn1.ASN1OctetString;
+import com.unboundid.ldap.sdk.Filter;
+import com.unboundid.ldap.sdk.LDAPException;
+import com.unboundid.ldap.sdk.ReadOnlyEntry;
+import com.unboundid.ldap.sdk.ResultCode;
+import com.unboundid.ldap.sdk.controls.AssertionRequestControl;
+import com.unboundid.ldap.sdk.controls.PostReadRequestControl;
+import com.unboundid.ldap.sdk.controls.PostReadResponseControl;
+import com.unboundid.ldap.sdk.controls.SubtreeDeleteRequestControl;
+
+import javax.naming.NamingException;
+import javax.naming.directory.Attributes;
+import javax.naming.directory.BasicAttribute;
+import javax.naming.directory.BasicAttributes;
+import javax.naming.ldap.BasicControl;
+import javax.naming.ldap.Control;
+import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * JNDI request controls and response decoding for the LDAP extensions used by the repositories.
+ * The BER encoding is delegated to the UnboundID SDK, the controls themselves are sent through
+ * the regular JNDI contexts created by Spring LDAP.
+ */
+public final class LdapControls {
+
+    /** RFC 4527 post-read control */
+    public static final String POST_READ_OID = PostReadRequestControl.POST_READ_REQUEST_OID;
+
+    /** Tree Delete control, as implemented by Active Directory and the UnboundID servers */
+    public static final String SUBTREE_DELETE_OID = SubtreeDeleteRequestControl.SUBTREE_DELETE_REQUEST_OID;
+
+    /** RFC 4528 assertion control */
+    public static final String ASSERTION_OID = AssertionRequestControl.ASSERTION_REQUEST_OID;
+
+    private static final Pattern JNDI_RESULT_CODE = Pattern.compile("\\[LDAP: error code (\\d+)");
+
+    private LdapControls() {
+    }
+
+    /**
+     * Create a non-critical post-read request control. Servers that do not
+     * support it simply omit the response control.
+     *
+     * @param attributes Attributes to return, all user attributes if empty
+     */
+    public static Control postRead(String... attributes) {
+        PostReadRequestControl control = new PostReadRequestControl(false, attributes);
+        return new BasicControl(control.getOID(), control.isCritical(), control.getValue().getValue());
+    }
+
+    /**
+     * Create a critical assertion control, the operation only succeeds if the
+     * entry has the given attribute value.
+     *
+     * @param attribute The attribute to compare
+     * @param value     The value the entry must hold
+     */
+    public static Control assertion(String attribute, String value) {
+        AssertionRequestControl control = new AssertionRequestControl(Filter.createEqualityFilter(attribute, value), true);
+        return new BasicControl(control.getOID(), control.isCritical(), control.getValue().getValue());
+    }
+
+    /**
+     * Create a critical Tree Delete control, a delete request carrying it removes the whole subtree.
+     */
+    public static Control subtreeDelete() {
+        return new BasicControl(SUBTREE_DELETE_OID, true, null);
+    }
+
+    /**
+     * Check if an exception, or one of its causes, reports a failed assertion (result code 122).
+     */
+    public static boolean isAssertionFailure(Throwable error) {
+        for (Throwable t = error; t != null; t = t.getCause()) {
+            if (resultCode(t) == ResultCode.ASSERTION_FAILED_INT_VALUE) {
+                return true;
+            }
+            if (t.getCause() == t) {
+                break;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The LDAP result code an exception carries, -1 if it is no LDAP error. JNDI has no
+     * exception class or getter for most codes, its LdapCtx reports them as a NamingException
+     * whose explanation starts with {@code [LDAP: error code <code> - }.
+     */
+    static int resultCode(Throwable error) {
+        if (error instanceof LDAPException ldapException) {
+            return ldapException.getResultCode().intValue();
+        }
+        if (error instanceof NamingException namingException && namingException.getExplanation() != null) {
+            Matcher matcher = JNDI_RESULT_CODE.matcher(namingException.getExplanation());
+            if (matcher.lookingAt()) {
+                return Integer.parseInt(matcher.group(1));
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Extract the entry returned by a post-read response control.
+     *
+     * @param responseControls The response controls of the write operation, may be null
+     * @return The attributes of the entry as seen by the server after the write
+     */
+    public static Optional<Attributes> postReadEntry(Control[] responseControls) throws LDAPException {
+        Control control = find(responseControls, POST_READ_OID);
+        if (control == null) {
+            return Optional.empty();
+        }
+
+        PostReadResponseControl response = new PostReadResponseControl(
+                control.getID(), control.isCritical(), new ASN1OctetString(control.getEncodedValue()));
+        return Optional.of(toAttributes(response.getEntry()));
+    }
+
+    private static Control find(Control[] controls, String oid) {
+        if (controls == null) {
+            return null;
+        }
+        for (Control control : controls) {
+            if (control != null && oid.equals(control.getID())) {
+                return control;
+            }
+        }
+        return null;
+    }
+
+    private static Attributes toAttributes(ReadOnlyEntry entry) {
+        Attributes attributes = new BasicAttributes(true);
+        for (com.unboundid.ldap.sdk.Attribute source : entry.getAttributes()) {
+            BasicAttribute target = new BasicAttribute(source.getBaseName());
+            for (String value : source.getValues()) {
+                target.add(value);
+            }
+            attributes.put(target);
+        }
+        return attributes;
+    }
+}
@@ -0,0 +1,310 @@
+package ch.aarboard.vamm.ldap;
+
+import ch.aarboard.vamm.data.interfaces.IJammEntry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ldap.NameNotFoundException;
+import org.springframework.ldap.core.DirContextAdapter;
+import org.springframework.ldap.core.LdapTemplate;
+import org.springframework.ldap.odm.annotations.Id;
+import org.springframework.ldap.odm.annotations.Transient;
+import org.springframework.ldap.odm.core.ObjectDirectoryMapper;
+
+import javax.naming.Name;
+import javax.naming.NamingEnumeration;
+import javax.naming.NamingException;
+import javax.naming.directory.Attribute;
+import javax.naming.directory.Attributes;
+import javax.naming.directory.BasicAttribute;
+import javax.naming.directory.DirContext;
+import javax.naming.directory.ModificationItem;
+import javax.naming.ldap.Control;
+import javax.naming.ldap.LdapContext;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Writes ODM entities in a single round trip and returns the server's view of the entry.
+ *
+ * Adds and modifies carry the RFC 4527 post-read control when the server advertises it,
+ * the entry in the response control is mapped back to the entity class. Without the
+ * control the locally merged entity is returned unchanged.
+ *
+ * Unlike {@link LdapTemplate#update(Object)} no lookup is done before a modify: every
+ * mapped attribute is replaced with the entity's value, attributes that are null in the
+ * entity are removed. Passwords are the exception, ACLs usually hide them from the reader,
+ * so a null password means unknown and is left alone.
+ *
+ * Modifies of {@link IJammEntry} entities that were read from the directory are conditional:
+ * the RFC 4528 assertion control makes the server reject the write if {@code lastChange}
+ * no longer holds the value the entity was read with. Servers without the control get a
+ * compare of {@code lastChange} right before the modify, which narrows but does not close
+ * the race. Either way a lost race surfaces as {@link EntryConflictException}, and so does an
+ * entry that was deleted since it was read: recreating it from the stale copy would undo the delete.
+ *
+ * A server that cannot evaluate the assertion, e.g. OpenLDAP with a schema that gives
+ * {@code lastChange} no EQUALITY rule, fails it although the value matches. The writer then
+ * falls back to the compare and reports it, so later writers leave the control out.
+ */
+public class LdapEntryWriter {
+
+    private static final Logger log = LoggerFactory.getLogger(LdapEntryWriter.class);
+
+    private static final Map<Class<?>, Set<String>> REMOVABLE_ATTRIBUTES = new ConcurrentHashMap<>();
+
+    /** Only removed by an explicit modify, never because the entity holds no value */
+    private static final Set<String> WRITE_ONLY_ATTRIBUTES = Set.of("userpassword", "clearpassword");
+
+    private final LdapTemplate template;
+    private final ObjectDirectoryMapper odm;
+    private final boolean postReadSupported;
+    private volatile boolean assertionSupported;
+    private final Runnable assertionUnusable;
+
+    public LdapEntryWriter(LdapTemplate template, boolean postReadSupported, boolean assertionSupported) {
+        this(template, postReadSupported, assertionSupported, () -> { });
+    }
+
+    /**
+     * @param assertionUnusable Called when the server failed an assertion on a matching
+     *                          {@code lastChange}, it cannot evaluate it
+     */
+    public LdapEntryWriter(LdapTemplate template, boolean postReadSupported, boolean assertionSupported,
+                           Runnable assertionUnusable) {
+        this.template = template;
+        this.odm = template.getObjectDirectoryMapper();
+        this.postReadSupported = postReadSupported;
+        this.assertionSupported = assertionSupported;
+        this.assertionUnusable = assertionUnusable;
+    }
+
+    /**
+     * Add a new entry.
+     *
+     * @param entity The entity, its id must be set
+     * @return The entry as stored by the server, or the given entity if the server did not return it
+     */
+    public <T> T create(T entity) {
+        Name dn = odm.getId(entity);
+        DirContextAdapter context = new DirContextAdapter(dn);
+        odm.mapToLdapDataEntry(entity, context);
+        Attributes attributes = context.getAttributes();
+
+        Optional<Attributes> stored = execute(ctx -> ctx.bind(dn, null, attributes), null);
+        return stored.map(a -> mapBack(a, dn, entity)).orElseGet(() -> written(entity));
+    }
+
+    /**
+     * Replace all mapped attributes of an existing entry.
+     *
+     * @param entity The entity, its id must be set
+     * @return The entry as stored by the server, or the given entity if the server did not return it
+     * @throws org.springframework.ldap.NameNotFoundException if the entry does not exist and the entity
+     *                                                        was not read from the directory
+     * @throws EntryConflictException if the entry was changed or deleted since the entity was read
+     */
+    public <T> T update(T entity) {
+        Name dn = odm.getId(entity);
+        ModificationItem[] modifications = replaceModifications(entity, dn);
+        String expected = entity instanceof IJammEntry entry ? entry.getLoadedLastChange() : null;
+
+        try {
+            return update(entity, dn, modifications, expected);
+        } catch (NameNotFoundException e) {
+            if (expected == null) {
+                throw e;
+            }
+            throw new EntryConflictException(dn, expected, e);
+        }
+    }
+
+    private <T> T update(T entity, Name dn, ModificationItem[] modifications, String expected) {
+        Optional<Attributes> stored;
+        try {
+            stored = modify(dn, modifications, expected, assertionSupported);
+        } catch (NameNotFoundException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            if (expected == null || !LdapControls.isAssertionFailure(e)) {
+                throw e;
+            }
+            // lastChange only grows, if it still holds the value nobody wrote in between
+            if (!lastChangeMatches(dn, expected)) {
+                throw new EntryConflictException(dn, expected, e);
+            }
+            log.warn("The server failed the assertion on an unchanged lastChange of {}, comparing before writes instead."
+                    + " Give lastChange an EQUALITY rule, see example/schemas/jamm-lastchange-equality.ldif", dn);
+            assertionSupported = false;
+            assertionUnusable.run();
+            stored = modify(dn, modifications, expected, false);
+        }
+        return stored.map(a -> mapBack(a, dn, entity)).orElseGet(() -> written(entity));
+    }
+
+    private Optional<Attributes> modify(Name dn, ModificationItem[] modifications, String expected, boolean assertion) {
+        return execute(ctx -> {
+            if (expected != null && !assertion) {
+                verifyLastChange(ctx, dn, expected);
+            }
+            ctx.modifyAttributes(dn, modifications);
+        }, assertion ? expected : null);
+    }
+
+    private boolean lastChangeMatches(Name dn, String expected) {
+        return template.executeReadOnly(ctx -> expected.equals(readLastChange(ctx, dn)));
+    }
+
+    public boolean isPostReadSupported() {
+        return postReadSupported;
+    }
+
+    public boolean isAssertionSupported() {
+        return assertionSupported;
+    }
+
+    private interface WriteOperation {
+        void apply(DirContext ctx) throws NamingException;
+    }
+
+    /**
+     * @param expectedLastChange Sent as assertion, null for none
+     */
+    private Optional<Attributes> execute(WriteOperation operation, String expectedLastChange) {
+        List<Control> controls = new ArrayList<>();
+        if (postReadSupported) {
+            controls.add(LdapControls.postRead());
+        }
+        if (expectedLastChange != null) {
+            controls.add(LdapControls.assertion("lastChange", expectedLastChange));
+        }
+
+        return template.executeReadWrite(ctx -> {
+            if (controls.isEmpty()) {
+                operation.apply(ctx);
+                return Optional.<Attributes>empty();
+            }
+            if (!(ctx instanceof LdapContext ldapContext)) {
+                // Writing without the assertion would silently drop the conflict check
+                throw new IllegalStateException("Cannot send request controls on " + ctx.getClass().getName());
+            }
+
+            ldapContext.setRequestControls(controls.toArray(Control[]::new));
+            try {
+                operation.apply(ldapContext);
+                return postReadSupported ? readResponse(ldapContext.getResponseControls()) : Optional.<Attributes>empty();
+            } finally {
+                ldapContext.setRequestControls(null);
+            }
+        });
+    }
+
+    private void verifyLastChange(DirContext ctx, Name dn, String expected) throws NamingException {
+        if (!Objects.equals(expected, readLastChange(ctx, dn))) {
+            throw new EntryConflictException(dn, expected, null);
+        }
+    }
+
+    private static String readLastChange(DirContext ctx, Name dn) throws NamingException {
+        Attribute current = ctx.getAttributes(dn, new String[]{"lastChange"}).get("lastChange");
+        Object value = current == null ? null : current.get();
+        return value == null ? null : value.toString();
+    }
+
+    /**
+     * The server did not return the entry, the written entity is now the stored state.
+     */
+    private static <T> T written(T entity) {
+        if (entity instanceof IJammEntry entry) {
+            entry.setLoadedLastChange(entry.getLastChange());
+        }
+        return entity;
+    }
+
+    private Optional<Attributes> readResponse(Control[] responseControls) {
+        try {
+            return LdapControls.postReadEntry(responseControls);
+        } catch (Exception e) {
+            // The write itself succeeded, fall back to the local entity
+            log.debug("Could not decode post-read response: {}", e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T mapBack(Attributes attributes, Name dn, T fallback) {
+        try {
+            return (T) odm.mapFromLdapDataEntry(new DirContextAdapter(attributes, dn), fallback.getClass());
+        } catch (Exception e) {
+            log.debug("Could not map post-read entry {}: {}", dn, e.getMessage());
+            return fallback;
+        }
+    }
+
+    private ModificationItem[] replaceModifications(Object entity, Name dn) {
+        DirContextAdapter context = new DirContextAdapter(dn);
+        odm.mapToLdapDataEntry(entity, context);
+        Attributes attributes = context.getAttributes();
+
+        List<ModificationItem> modifications = new ArrayList<>();
+        Set<String> present = new HashSet<>();
+        try {
+            NamingEnumeration<? extends Attribute> all = attributes.getAll();
+            while (all.hasMore()) {
+                Attribute attribute = all.next();
+                String name = attribute.getID().toLowerCase(Locale.ROOT);
+                if (name.equals("objectclass")) {
+                    continue; // Structural classes never change on update
+                }
+                present.add(name);
+                modifications.add(new ModificationItem(DirContext.REPLACE_ATTRIBUTE, attribute));
+            }
+        } catch (NamingException e) {
+            throw org.springframework.ldap.support.LdapUtils.convertLdapException(e);
+        }
+
+        // Replacing with no values removes the attribute, and is a no-op if it is absent
+        for (String name : removableAttributes(entity.getClass())) {
+            if (!present.contains(name.toLowerCase(Locale.ROOT))) {
+                modifications.add(new ModificationItem(DirContext.REPLACE_ATTRIBUTE, new BasicAttribute(name)));
+            }
+        }
+
+        return modifications.toArray(ModificationItem[]::new);
+    }
+
+    /**
+     * The mapped attributes an update removes when the entity holds no value
+     */
+    private static Set<String> removableAttributes(Class<?> type) {
+        return REMOVABLE_ATTRIBUTES.computeIfAbsent(type, t -> {
+            Set<String> names = new HashSet<>();
+            for (Field field : t.getDeclaredFields()) {
+                // Same rules as the ODM: every instance field except the id and transient ones is mapped
+                if (Modifier.isStatic(field.getModifiers()) || field.isSynthetic()
+                        || field.isAnnotationPresent(Id.class) || field.isAnnotationPresent(Transient.class)) {
+                    continue;
+                }
+                org.springframework.ldap.odm.annotations.Attribute attribute =
+                        field.getAnnotation(org.springframework.ldap.odm.annotations.Attribute.class);
+                if (attribute != null && attribute.readonly()) {
+                    continue; // Never written, so never removed either
+                }
+                String name = attribute == null || attribute.name().isEmpty() ? field.getName() : attribute.name();
+                if (!name.equalsIgnoreCase("objectClass")
+                        && !WRITE_ONLY_ATTRIBUTES.contains(name.toLowerCase(Locale.ROOT))) {
+                    names.add(name);
+                }
+            }
+            return Set.copyOf(names);
+        });
+    }
+}
@@ -0,0 +1,32 @@
+package ch.aarboard.vamm.ldap;
+
+import javax.naming.NameNotFoundException;
+
+/**
+ * One round trip to the directory, as seen by an {@link LdapOperationObserver}.
+ *
+ * @param type    The kind of request, BIND for opening and authenticating a connection
+ * @param dn      The full DN the request was made on, the search base for searches, the user for binds
+ * @param filter  The search filter, null for other requests
+ * @param results Entries returned by a search, 1 for a successful read, 0 otherwise
+ * @param bytes   Approximate size of the returned entries, names and values without the protocol framing
+ * @param nanos   Time from sending the request until the last result was read
+ * @param failure The exception the request ended with, null on success
+ */
+public record LdapOperation(Type type, String dn, String filter, long results, long bytes, long nanos, Exception failure) {
+
+    public enum Type {
+        BIND, SEARCH, READ, ADD, MODIFY, DELETE, RENAME
+    }
+
+    public boolean failed() {
+        return failure != null;
+    }
+
+    /**
+     * A missing entry is the expected answer when checking whether an entry exists
+     */
+    public boolean notFound() {
+        return failure instanceof NameNotFoundException;
+    }
+}
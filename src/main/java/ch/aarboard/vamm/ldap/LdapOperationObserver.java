@@ -0,0 +1,14 @@
+package ch.aarboard.vamm.ldap;
+
+/**
+ * Notified after every request {@link LdapSessionManager}'s templates send to the directory.
+ * Beans implementing it are picked up automatically.
+ *
+ * Observers are called on the thread that made the request, after the request finished. They
+ * must be fast and must not throw, an exception is logged and otherwise ignored.
+ */
+@FunctionalInterface
+public interface LdapOperationObserver {
+
+    void completed(LdapOperation operation);
+}
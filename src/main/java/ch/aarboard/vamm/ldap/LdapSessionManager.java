@@ -9,6 +9,7 @@ import ch.aarboard.vamm.data.entries.JammVirtualDomain;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.ldap.core.DirContextOperations;
 import org.springframework.ldap.core.LdapTemplate;
@@ -18,10 +19,16 @@ import org.springframework.ldap.support.LdapNameBuilder;
 import org.springframework.stereotype.Service;
 
 import javax.naming.Name;
+import javax.naming.NamingEnumeration;
+import javax.naming.directory.Attribute;
 import javax.naming.directory.Attributes;
 import javax.naming.directory.BasicAttribute;
 import javax.naming.directory.BasicAttributes;
+import javax.naming.directory.DirContext;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 @Service
 public class LdapSessionManager {
@@ -31,10 +38,33 @@ public class LdapSessionManager {
     private final LdapConfig ldapConfig;
     private final SecurityService securityService;
 
-    @Autowired
+    // The organization entry is only created once, checking it on every template costs a round trip
+    private volatile boolean organizationVerified = false;
+
+    // Controls advertised in the root DSE, read once per server
+    private volatile Set<String> supportedControls = null;
+
+    // Cleared when the server failed an assertion it could not evaluate, see LdapEntryWriter
+    private volatile boolean assertionUsable = true;
+
+    // Notified of every request sent through the templates, see createContextSource
+    private final List<LdapOperationObserver> observers;
+
     public LdapSessionManager(LdapConfig ldapConfig, SecurityService securityService) {
+        this(ldapConfig, securityService, List.of());
+    }
+
+    @Autowired
+    public LdapSessionManager(LdapConfig ldapConfig, SecurityService securityService,
+                              ObjectProvider<LdapOperationObserver> observers) {
+        this(ldapConfig, securityService, observers.orderedStream().toList());
+    }
+
+    public LdapSessionManager(LdapConfig ldapConfig, SecurityService securityService,
+                              List<LdapOperationObserver> observers) {
         this.ldapConfig = ldapConfig;
         this.securityService = securityService;
+        this.observers = List.copyOf(observers);
     }
 
 
@@ -45,16 +75,49 @@ public class LdapSessionManager {
      * @return A configured LdapTemplate instance.
      */
     public LdapTemplate createUserLdapTemplate() {
+        String[] credentials = currentCredentials();
+        return createLdapTemplate(credentials[0], credentials[1]);
+    }
+
+    /**
+     * Creates a writer for the current user that returns the stored entry with the
+     * post-read control and makes updates conditional with the assertion control,
+     * as far as the server supports them.
+     *
+     * @return A configured LdapEntryWriter instance.
+     */
+    public LdapEntryWriter createEntryWriter() {
+        String[] credentials = currentCredentials();
+        LdapTemplate template = createLdapTemplate(credentials[0], credentials[1]);
+        Set<String> controls = getSupportedControls(credentials[0], credentials[1]);
+        return new LdapEntryWriter(template,
+                controls.contains(LdapControls.POST_READ_OID),
+                assertionUsable && controls.contains(LdapControls.ASSERTION_OID),
+                () -> assertionUsable = false);
+    }
+
+    /**
+     * Check if the server advertises a control in its root DSE.
+     *
+     * @param oid The OID of the control
+     * @return true if the control is listed in supportedControl
+     */
+    public boolean supportsControl(String oid) {
+        String[] credentials = currentCredentials();
+        return getSupportedControls(credentials[0], credentials[1]).contains(oid);
+    }
+
+    private String[] currentCredentials() {
         if (securityService.isTestMode() ||
                 (securityService.getCurrentUserDn().isEmpty() &&
                         securityService.getCurrentUserPassword().isEmpty())) {
-            return createLdapTemplate("cn=admin,dc=example,dc=com","admin");
+            return new String[]{"cn=admin,dc=example,dc=com", "admin"};
         } else {
             String userDn = securityService.getCurrentUserDn()
                     .orElseThrow(() -> new IllegalStateException("Kein LDAP-Benutzer-DN verfügbar"));
             String password = securityService.getCurrentUserPassword()
                     .orElseThrow(() -> new IllegalStateException("Kein LDAP-Passwort verfügbar"));
-            return createLdapTemplate(userDn, password);
+            return new String[]{userDn, password};
         }
     }
 
@@ -67,21 +130,10 @@ public class LdapSessionManager {
      * @return A configured LdapTemplate instance.
      */
     public LdapTemplate createLdapTemplate(String userDn, String password) {
-        LdapContextSource contextSource = new LdapContextSource();
-        contextSource.setUrl(ldapConfig.getUrl());
-        contextSource.setBase(ldapConfig.getBase());
-        contextSource.setUserDn(userDn);
-        contextSource.setPassword(password);
-
-        contextSource.setBaseEnvironmentProperties(Map.of(
-                "com.sun.jndi.ldap.connect.timeout", String.valueOf(ldapConfig.getConnectionTimeout()),
-                "com.sun.jndi.ldap.read.timeout", String.valueOf(ldapConfig.getReadTimeout())
-        ));
-
-        contextSource.afterPropertiesSet();
+        LdapContextSource contextSource = createContextSource(userDn, password, ldapConfig.getBase());
 
         LdapTemplate template = new LdapTemplate(contextSource);
-        DefaultObjectDirectoryMapper odm = new DefaultObjectDirectoryMapper();
+        DefaultObjectDirectoryMapper odm = new VersionTrackingObjectDirectoryMapper();
 
         odm.manageClass(JammMailAccount.class);
         odm.manageClass(JammMailAlias.class);
@@ -90,6 +142,14 @@ public class LdapSessionManager {
 
         template.setObjectDirectoryMapper(odm);
 
+        if (!organizationVerified) {
+            ensureOrganizationExists(template);
+        }
+
+        return template;
+    }
+
+    private void ensureOrganizationExists(LdapTemplate template) {
         var orgDn = LdapNameBuilder.newInstance().add("o", "hosting").build();
         if (!doesOrganizationExist(template, orgDn)){
             Attributes attributes = new BasicAttributes();
@@ -105,10 +165,81 @@ public class LdapSessionManager {
 
             template.bind(orgDn, null, attributes);
         }
+        organizationVerified = true;
+    }
 
-        return template;
+
+    private LdapContextSource createContextSource(String userDn, String password, String base) {
+        LdapContextSource contextSource = observers.isEmpty() ? new LdapContextSource() : new ObservedContextSource();
+        contextSource.setUrl(ldapConfig.getUrl());
+        contextSource.setBase(base);
+        contextSource.setUserDn(userDn);
+        contextSource.setPassword(password);
+
+        contextSource.setBaseEnvironmentProperties(Map.of(
+                "com.sun.jndi.ldap.connect.timeout", String.valueOf(ldapConfig.getConnectionTimeout()),
+                "com.sun.jndi.ldap.read.timeout", String.valueOf(ldapConfig.getReadTimeout())
+        ));
+
+        contextSource.afterPropertiesSet();
+        return contextSource;
+    }
+
+    /**
+     * Reads the supportedControl attribute of the root DSE. The result is cached,
+     * a failed read is retried on the next call.
+     */
+    private Set<String> getSupportedControls(String userDn, String password) {
+        Set<String> cached = supportedControls;
+        if (cached != null) {
+            return cached;
+        }
+
+        // The root DSE lives above the configured base, read it through a context without base
+        DirContext ctx = null;
+        try {
+            ctx = createContextSource(userDn, password, "").getReadOnlyContext();
+            Attributes attributes = ctx.getAttributes("", new String[]{"supportedControl"});
+            Set<String> controls = new HashSet<>();
+            Attribute attribute = attributes.get("supportedControl");
+            if (attribute != null) {
+                NamingEnumeration<?> values = attribute.getAll();
+                while (values.hasMore()) {
+                    controls.add(String.valueOf(values.next()));
+                }
+            }
+            supportedControls = Set.copyOf(controls);
+            logger.debug("Server supports controls: {}", controls);
+            return supportedControls;
+        } catch (Exception e) {
+            logger.debug("Could not read supported controls: {}", e.getMessage());
+            return Set.of();
+        } finally {
+            org.springframework.ldap.support.LdapUtils.closeContext(ctx);
+        }
     }
 
+    /**
+     * Hands out contexts that report their requests to the observers
+     */
+    private final class ObservedContextSource extends LdapContextSource {
+
+        @Override
+        public DirContext getReadOnlyContext() {
+            return ObservedDirContext.open(super::getReadOnlyContext, getUserDn(), getBaseLdapPathAsString(), observers);
+        }
+
+        @Override
+        public DirContext getReadWriteContext() {
+            return ObservedDirContext.open(super::getReadWriteContext, getUserDn(), getBaseLdapPathAsString(), observers);
+        }
+
+        @Override
+        public DirContext getContext(String principal, String credentials) {
+            return ObservedDirContext.open(() -> super.getContext(principal, credentials), principal,
+                    getBaseLdapPathAsString(), observers);
+        }
+    }
 
     public boolean doesOrganizationExist(LdapTemplate template, Name orgDn) {
         try {
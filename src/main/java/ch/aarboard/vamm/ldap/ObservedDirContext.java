@@ -0,0 +1,243 @@
+package ch.aarboard.vamm.ldap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ldap.core.DirContextOperations;
+import org.springframework.util.ClassUtils;
+
+import javax.naming.NamingEnumeration;
+import javax.naming.NamingException;
+import javax.naming.directory.Attribute;
+import javax.naming.directory.Attributes;
+import javax.naming.directory.DirContext;
+import javax.naming.directory.SearchResult;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Wraps a context so every directory request is reported to the {@link LdapOperationObserver}s.
+ *
+ * A search is reported once its results are read to the end or the enumeration is closed, so the
+ * duration includes streaming the entries. Calls that do not reach the server, like
+ * {@code getEnvironment} or {@code close}, are passed through unobserved.
+ */
+final class ObservedDirContext implements InvocationHandler {
+
+    private static final Logger log = LoggerFactory.getLogger(ObservedDirContext.class);
+
+    private final DirContext target;
+    private final String base;
+    private final List<LdapOperationObserver> observers;
+
+    private ObservedDirContext(DirContext target, String base, List<LdapOperationObserver> observers) {
+        this.target = target;
+        this.base = base;
+        this.observers = observers;
+    }
+
+    /**
+     * Open a context, reporting the connect and bind, and wrap it
+     *
+     * @param userDn The DN the context authenticates as
+     * @param base   The base DN the context's names are relative to
+     */
+    static DirContext open(Supplier<DirContext> opener, String userDn, String base, List<LdapOperationObserver> observers) {
+        long started = System.nanoTime();
+        DirContext target;
+        try {
+            target = opener.get();
+        } catch (RuntimeException e) {
+            publish(observers, new LdapOperation(LdapOperation.Type.BIND, userDn, null, 0, 0, System.nanoTime() - started, e));
+            throw e;
+        }
+        publish(observers, new LdapOperation(LdapOperation.Type.BIND, userDn, null, 0, 0, System.nanoTime() - started, null));
+        return (DirContext) Proxy.newProxyInstance(ObservedDirContext.class.getClassLoader(),
+                ClassUtils.getAllInterfacesForClass(target.getClass()),
+                new ObservedDirContext(target, base, observers));
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        LdapOperation.Type type = type(method.getName());
+        if (type == null) {
+            return call(method, args);
+        }
+
+        String dn = args != null && args.length > 0 ? dn(args[0]) : base;
+        String filter = type == LdapOperation.Type.SEARCH && args.length > 1 && args[1] instanceof String s ? s : null;
+        long started = System.nanoTime();
+        try {
+            Object result = call(method, args);
+            if (result instanceof NamingEnumeration<?> results) {
+                return new ObservedEnumeration<>(results, type, dn, filter, started);
+            }
+            publish(observers, new LdapOperation(type, dn, filter, type == LdapOperation.Type.READ ? 1 : 0,
+                    size(result), System.nanoTime() - started, null));
+            return result;
+        } catch (Exception e) {
+            publish(observers, new LdapOperation(type, dn, filter, 0, 0, System.nanoTime() - started, e));
+            throw e;
+        }
+    }
+
+    private Object call(Method method, Object[] args) throws Exception {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            if (e.getCause() instanceof Exception cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private static LdapOperation.Type type(String method) {
+        return switch (method) {
+            case "search", "list", "listBindings" -> LdapOperation.Type.SEARCH;
+            case "lookup", "getAttributes" -> LdapOperation.Type.READ;
+            case "bind", "createSubcontext" -> LdapOperation.Type.ADD;
+            case "modifyAttributes", "rebind" -> LdapOperation.Type.MODIFY;
+            case "unbind", "destroySubcontext" -> LdapOperation.Type.DELETE;
+            case "rename" -> LdapOperation.Type.RENAME;
+            default -> null;
+        };
+    }
+
+    private String dn(Object name) {
+        String relative = String.valueOf(name);
+        if (relative.isEmpty()) {
+            return base;
+        }
+        return base.isEmpty() ? relative : relative + "," + base;
+    }
+
+    /**
+     * Approximate size of an entry as returned by the server, its name, attribute names and values
+     */
+    private static long size(Object result) {
+        Attributes attributes;
+        long size = 0;
+        if (result instanceof SearchResult entry) {
+            attributes = entry.getAttributes();
+            size += entry.getName().length();
+        } else if (result instanceof DirContextOperations entry) {
+            attributes = entry.getAttributes();
+            size += entry.getDn().toString().length();
+        } else if (result instanceof Attributes entry) {
+            attributes = entry;
+        } else {
+            return 0;
+        }
+        if (attributes == null) {
+            return size;
+        }
+        try {
+            for (NamingEnumeration<? extends Attribute> all = attributes.getAll(); all.hasMore(); ) {
+                Attribute attribute = all.next();
+                size += attribute.getID().length();
+                for (int i = 0; i < attribute.size(); i++) {
+                    Object value = attribute.get(i);
+                    size += value instanceof byte[] bytes ? bytes.length : String.valueOf(value).length();
+                }
+            }
+        } catch (NamingException e) {
+            // Only reading what is already in memory
+        }
+        return size;
+    }
+
+    private static void publish(List<LdapOperationObserver> observers, LdapOperation operation) {
+        for (LdapOperationObserver observer : observers) {
+            try {
+                observer.completed(operation);
+            } catch (RuntimeException e) {
+                log.warn("LDAP operation observer {} failed: {}", observer.getClass().getName(), e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Counts the results and reports the search when it is done
+     */
+    private final class ObservedEnumeration<T> implements NamingEnumeration<T> {
+
+        private final NamingEnumeration<T> delegate;
+        private final LdapOperation.Type type;
+        private final String dn;
+        private final String filter;
+        private final long started;
+        private long results;
+        private long bytes;
+        private boolean reported;
+
+        private ObservedEnumeration(NamingEnumeration<T> delegate, LdapOperation.Type type, String dn, String filter,
+                                    long started) {
+            this.delegate = delegate;
+            this.type = type;
+            this.dn = dn;
+            this.filter = filter;
+            this.started = started;
+        }
+
+        @Override
+        public boolean hasMore() throws NamingException {
+            try {
+                boolean more = delegate.hasMore();
+                if (!more) {
+                    report(null);
+                }
+                return more;
+            } catch (NamingException e) {
+                report(e);
+                throw e;
+            }
+        }
+
+        @Override
+        public T next() throws NamingException {
+            try {
+                T next = delegate.next();
+                results++;
+                bytes += size(next);
+                return next;
+            } catch (NamingException e) {
+                report(e);
+                throw e;
+            }
+        }
+
+        @Override
+        public boolean hasMoreElements() {
+            boolean more = delegate.hasMoreElements();
+            if (!more) {
+                report(null);
+            }
+            return more;
+        }
+
+        @Override
+        public T nextElement() {
+            T next = delegate.nextElement();
+            results++;
+            bytes += size(next);
+            return next;
+        }
+
+        @Override
+        public void close() throws NamingException {
+            report(null);
+            delegate.close();
+        }
+
+        private void report(Exception failure) {
+            if (!reported) {
+                reported = true;
+                publish(observers, new LdapOperation(type, dn, filter, results, bytes, System.nanoTime() - started, failure));
+            }
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package ch.aarboard.vamm.ldap;
+
+import org.springframework.ldap.control.PagedResultsDirContextProcessor;
+import org.springframework.ldap.core.LdapTemplate;
+import org.springframework.ldap.core.NameClassPairCallbackHandler;
+import org.springframework.ldap.core.support.SingleContextSource;
+
+import javax.naming.Name;
+import javax.naming.directory.SearchControls;
+
+/**
+ * Searches with the RFC 2696 paged results control, so results beyond the server's size limit
+ * are not silently cut off. The pages are requested on one connection: the paging cookie is
+ * only valid there.
+ */
+public final class PagedSearch {
+
+    private PagedSearch() {
+    }
+
+    /**
+     * Search page by page, passing every entry to the handler.
+     *
+     * @throws org.springframework.ldap.NameNotFoundException if the base does not exist
+     */
+    public static void search(LdapTemplate template, Name base, String filter, SearchControls controls, int pageSize,
+                              NameClassPairCallbackHandler handler) {
+        search(template, base, filter, controls, pageSize, handler, () -> { });
+    }
+
+    /**
+     * Search page by page, passing every entry to the handler.
+     *
+     * @param afterPage Runs after every page, e.g. to flush what the handler collected.
+     *                  An exception it throws ends the search.
+     * @throws org.springframework.ldap.NameNotFoundException if the base does not exist
+     */
+    public static void search(LdapTemplate template, Name base, String filter, SearchControls controls, int pageSize,
+                              NameClassPairCallbackHandler handler, Runnable afterPage) {
+        PagedResultsDirContextProcessor processor = new PagedResultsDirContextProcessor(pageSize);
+        SingleContextSource.doWithSingleContext(template.getContextSource(), operations -> {
+            do {
+                operations.search(base, filter, controls, handler, processor);
+                afterPage.run();
+            } while (processor.hasMore());
+            return null;
+        });
+    }
+}
@@ -0,0 +1,336 @@
+package ch.aarboard.vamm.ldap;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.ldap.NameNotFoundException;
+import org.springframework.ldap.core.LdapTemplate;
+import org.springframework.ldap.core.NameClassPairCallbackHandler;
+import org.springframework.ldap.core.support.BaseLdapPathSource;
+import org.springframework.ldap.support.LdapUtils;
+import org.springframework.stereotype.Component;
+
+import javax.naming.Name;
+import javax.naming.directory.SearchControls;
+import javax.naming.ldap.Control;
+import javax.naming.ldap.LdapContext;
+import javax.naming.ldap.LdapName;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Deletes an entry together with everything below it.
+ *
+ * If the server advertises the Tree Delete control (1.2.840.113556.1.4.805) the whole subtree
+ * is removed with a single request. Otherwise the DNs of the subtree are collected with a paged,
+ * attribute-less search and deleted level by level, deepest first: all entries of one depth are
+ * leaves once the deeper levels are gone, so they are split into batches and deleted in parallel,
+ * each batch on one connection. The number of concurrent batches is bounded for the whole
+ * application, not per call.
+ *
+ * Progress is written to a checkpoint file after every batch. Deletes are idempotent, so an
+ * interrupted run is resumed by calling the engine again for the same DN: the search only finds
+ * what is left, the counters continue from the checkpoint.
+ */
+@Component
+public class SubtreeDeletionEngine {
+
+    private static final Logger log = LoggerFactory.getLogger(SubtreeDeletionEngine.class);
+
+    private static final int PAGE_SIZE = 500;
+
+    private final LdapSessionManager ldapSessionManager;
+    private final int batchSize;
+    private final Path checkpointDirectory;
+    private final ExecutorService workers;
+
+    @Autowired
+    public SubtreeDeletionEngine(LdapSessionManager ldapSessionManager,
+                                 @Value("${jamm.ldap.delete.parallelism:8}") int parallelism,
+                                 @Value("${jamm.ldap.delete.batch-size:200}") int batchSize,
+                                 @Value("${jamm.ldap.delete.checkpoint-dir:${java.io.tmpdir}/vamm-delete}") String checkpointDirectory) {
+        this.ldapSessionManager = ldapSessionManager;
+        this.batchSize = Math.max(1, batchSize);
+        this.checkpointDirectory = Path.of(checkpointDirectory);
+        AtomicInteger threadCount = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(Math.max(1, parallelism), r -> {
+            Thread thread = new Thread(r, "subtree-delete-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Progress of a running deletion.
+     *
+     * @param deleted Entries deleted so far, including those of an interrupted earlier run
+     * @param total   Entries to delete in total, 0 while the subtree is still being searched
+     */
+    public record Progress(Name dn, long deleted, long total) {
+
+        public double fraction() {
+            return total == 0 ? 0.0 : Math.min(1.0, (double) deleted / total);
+        }
+    }
+
+    @FunctionalInterface
+    public interface ProgressListener {
+
+        ProgressListener NONE = progress -> { };
+
+        void onProgress(Progress progress);
+    }
+
+    /**
+     * Outcome of a deletion
+     *
+     * @param deleted     Entries deleted, 1 with tree delete since the server does not report a count
+     * @param treeDelete  Whether the Tree Delete control was used
+     * @param resumed     Whether an interrupted earlier run was continued
+     */
+    public record Result(long deleted, boolean treeDelete, boolean resumed) {
+    }
+
+    /**
+     * Delete an entry and its subtree with the current user's credentials.
+     * Runs in the calling thread, interrupting it stops after the running batches
+     * and keeps the checkpoint.
+     *
+     * @param dn       The root of the subtree, relative to the configured base
+     * @param listener Receives progress after every batch
+     * @throws CancellationException if the calling thread was interrupted
+     */
+    public Result deleteSubtree(Name dn, ProgressListener listener) {
+        LdapTemplate template = ldapSessionManager.createUserLdapTemplate();
+
+        if (ldapSessionManager.supportsControl(LdapControls.SUBTREE_DELETE_OID)) {
+            try {
+                treeDelete(template, dn);
+                listener.onProgress(new Progress(dn, 1, 1));
+                deleteCheckpoint(dn);
+                log.debug("Deleted subtree {} with the tree delete control", dn);
+                return new Result(1, true, false);
+            } catch (NameNotFoundException e) {
+                deleteCheckpoint(dn);
+                return new Result(0, true, false);
+            } catch (RuntimeException e) {
+                // e.g. the control is advertised but not permitted for this user
+                log.debug("Tree delete of {} failed, deleting level by level: {}", dn, e.getMessage());
+            }
+        }
+
+        return deleteByLevel(template, dn, listener);
+    }
+
+    private void treeDelete(LdapTemplate template, Name dn) {
+        template.executeReadWrite(ctx -> {
+            if (!(ctx instanceof LdapContext ldapContext)) {
+                throw new IllegalStateException("Context does not support request controls");
+            }
+            ldapContext.setRequestControls(new Control[]{LdapControls.subtreeDelete()});
+            try {
+                ldapContext.unbind(dn);
+            } finally {
+                ldapContext.setRequestControls(null);
+            }
+            return null;
+        });
+    }
+
+    private Result deleteByLevel(LdapTemplate template, Name dn, ProgressListener listener) {
+        Properties checkpoint = loadCheckpoint(dn);
+        boolean resumed = checkpoint != null;
+        long previouslyDeleted = resumed ? Long.parseLong(checkpoint.getProperty("deleted", "0")) : 0;
+        String startedAt = resumed ? checkpoint.getProperty("startedAt") : Instant.now().toString();
+        if (resumed) {
+            log.info("Resuming deletion of {} after {} entries", dn, previouslyDeleted);
+        }
+
+        listener.onProgress(new Progress(dn, previouslyDeleted, 0));
+        TreeMap<Integer, List<Name>> levels = collectSubtree(template, dn);
+        long remaining = levels.values().stream().mapToLong(List::size).sum();
+        long total = previouslyDeleted + remaining;
+
+        AtomicLong deleted = new AtomicLong(previouslyDeleted);
+        AtomicBoolean stopped = new AtomicBoolean(false);
+        listener.onProgress(new Progress(dn, deleted.get(), total));
+
+        for (Map.Entry<Integer, List<Name>> level : levels.descendingMap().entrySet()) {
+            List<CompletableFuture<Void>> batches = new ArrayList<>();
+            List<Name> names = level.getValue();
+            for (int from = 0; from < names.size(); from += batchSize) {
+                List<Name> batch = names.subList(from, Math.min(from + batchSize, names.size()));
+                batches.add(CompletableFuture.runAsync(() -> {
+                    if (stopped.get()) {
+                        return; // Cancelled or a sibling batch failed, leave the rest for a resume
+                    }
+                    try {
+                        deleteBatch(template, batch);
+                    } catch (RuntimeException e) {
+                        stopped.set(true);
+                        throw e;
+                    }
+                    long done = deleted.addAndGet(batch.size());
+                    saveCheckpoint(dn, startedAt, deleted, total);
+                    listener.onProgress(new Progress(dn, done, total));
+                }, workers));
+            }
+
+            CompletableFuture<Void> all = CompletableFuture.allOf(batches.toArray(CompletableFuture[]::new));
+            try {
+                all.get();
+            } catch (InterruptedException e) {
+                // Let the running batches finish so the checkpoint matches the directory
+                stopped.set(true);
+                try {
+                    all.join();
+                } catch (CompletionException ignored) {
+                    // Reported as cancellation
+                }
+                Thread.currentThread().interrupt();
+                throw new CancellationException("Deletion of " + dn + " cancelled after " + deleted.get() + " entries");
+            } catch (ExecutionException e) {
+                throw e.getCause() instanceof RuntimeException cause ? cause : new IllegalStateException(e.getCause());
+            }
+        }
+
+        deleteCheckpoint(dn);
+        log.debug("Deleted subtree {} with {} entries", dn, deleted.get());
+        return new Result(deleted.get(), false, resumed);
+    }
+
+    /**
+     * Collect the DNs of the subtree, including its root, grouped by depth.
+     */
+    private TreeMap<Integer, List<Name>> collectSubtree(LdapTemplate template, Name dn) {
+        LdapName base = contextBase(template);
+        TreeMap<Integer, List<Name>> levels = new TreeMap<>();
+
+        SearchControls controls = new SearchControls();
+        controls.setSearchScope(SearchControls.SUBTREE_SCOPE);
+        controls.setReturningAttributes(new String[]{"1.1"});
+
+        NameClassPairCallbackHandler handler = pair -> {
+            LdapName name = LdapUtils.newLdapName(pair.getNameInNamespace());
+            Name relative = base.isEmpty() ? name : LdapUtils.removeFirst(name, base);
+            levels.computeIfAbsent(relative.size(), k -> new ArrayList<>()).add(relative);
+        };
+
+        try {
+            PagedSearch.search(template, dn, "(objectClass=*)", controls, PAGE_SIZE, handler);
+        } catch (NameNotFoundException e) {
+            return levels; // Already gone
+        }
+
+        levels.values().forEach(list -> list.sort(Comparator.comparing(Name::toString)));
+        return levels;
+    }
+
+    private static LdapName contextBase(LdapTemplate template) {
+        if (template.getContextSource() instanceof BaseLdapPathSource source) {
+            return source.getBaseLdapName();
+        }
+        return LdapUtils.emptyLdapName();
+    }
+
+    private void deleteBatch(LdapTemplate template, List<Name> batch) {
+        template.executeReadWrite(ctx -> {
+            for (Name name : batch) {
+                try {
+                    ctx.unbind(name);
+                } catch (javax.naming.NameNotFoundException e) {
+                    // Removed by an earlier, interrupted run or concurrently
+                }
+            }
+            return null;
+        });
+    }
+
+    private Path checkpointFile(Name dn) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256")
+                    .digest(dn.toString().toLowerCase(Locale.ROOT).getBytes(StandardCharsets.UTF_8));
+            return checkpointDirectory.resolve(HexFormat.of().formatHex(hash) + ".properties");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private Properties loadCheckpoint(Name dn) {
+        Path file = checkpointFile(dn);
+        if (!Files.exists(file)) {
+            return null;
+        }
+        Properties properties = new Properties();
+        try (InputStream in = Files.newInputStream(file)) {
+            properties.load(in);
+            return properties;
+        } catch (IOException e) {
+            log.warn("Ignoring unreadable checkpoint {}: {}", file, e.getMessage());
+            return null;
+        }
+    }
+
+    private synchronized void saveCheckpoint(Name dn, String startedAt, AtomicLong deleted, long total) {
+        Properties properties = new Properties();
+        properties.setProperty("dn", dn.toString());
+        properties.setProperty("startedAt", startedAt);
+        properties.setProperty("updatedAt", Instant.now().toString());
+        // Read under the lock, batches finish out of order and the value must not go backwards
+        properties.setProperty("deleted", String.valueOf(deleted.get()));
+        properties.setProperty("total", String.valueOf(total));
+
+        Path file = checkpointFile(dn);
+        try {
+            Files.createDirectories(checkpointDirectory);
+            Path temp = Files.createTempFile(checkpointDirectory, "checkpoint", ".tmp");
+            try (OutputStream out = Files.newOutputStream(temp)) {
+                properties.store(out, "Subtree deletion checkpoint");
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            // Losing the checkpoint only loses the counters, the deletion itself stays resumable
+            log.warn("Could not write checkpoint {}: {}", file, e.getMessage());
+        }
+    }
+
+    private synchronized void deleteCheckpoint(Name dn) {
+        try {
+            Files.deleteIfExists(checkpointFile(dn));
+        } catch (IOException e) {
+            log.warn("Could not remove checkpoint for {}: {}", dn, e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        workers.shutdownNow();
+    }
+}
@@ -0,0 +1,21 @@
+package ch.aarboard.vamm.ldap;
+
+import ch.aarboard.vamm.data.interfaces.IJammEntry;
+import org.springframework.LdapDataEntry;
+import org.springframework.ldap.odm.core.impl.DefaultObjectDirectoryMapper;
+
+/**
+ * Object directory mapper that remembers the lastChange value every Jamm entity was read with,
+ * which the {@link LdapEntryWriter} uses as the expected value for conditional updates.
+ */
+class VersionTrackingObjectDirectoryMapper extends DefaultObjectDirectoryMapper {
+
+    @Override
+    public <T> T mapFromLdapDataEntry(LdapDataEntry context, Class<T> clazz) {
+        T entity = super.mapFromLdapDataEntry(context, clazz);
+        if (entity instanceof IJammEntry entry) {
+            entry.setLoadedLastChange(entry.getLastChange());
+        }
+        return entity;
+    }
+}
@@ -0,0 +1,128 @@
+package ch.aarboard.vamm.ldif;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Progress, results and bookkeeping shared by the bulk writers, {@link LdifImporter} and
+ * {@link CsvProvisioner}. An item is a record of an LDIF file or a row of a CSV file.
+ */
+public final class BulkJob {
+
+    /** Upper bound of errors kept in the result, beyond that only the count is kept */
+    static final int MAX_REPORTED_ERRORS = 1000;
+
+    private BulkJob() {
+    }
+
+    /**
+     * Progress of a running job.
+     *
+     * @param processed Items handled so far, created or failed
+     * @param total     Items to handle
+     */
+    public record Progress(long processed, long total, long created, long failed) {
+    }
+
+    @FunctionalInterface
+    public interface ProgressListener {
+
+        ProgressListener NONE = progress -> { };
+
+        void onProgress(Progress progress);
+    }
+
+    /**
+     * An item that could not be written.
+     *
+     * @param position Position of the item in the input, starting at 1. A CSV header is not counted.
+     * @param name     The DN or address of the item, null if the item could not be read
+     */
+    public record ItemError(long position, String name, String message) {
+    }
+
+    /**
+     * Outcome of a job
+     *
+     * @param read    Items read
+     * @param created Entries added, in a dry run those which would be added
+     * @param skipped Items of other types
+     * @param failed  Items that failed the checks or could not be added
+     * @param errors  The first {@value #MAX_REPORTED_ERRORS} failures, in input order
+     * @param dryRun  Whether nothing was written
+     */
+    public record Result(long read, long created, long skipped, long failed, List<ItemError> errors,
+                         boolean dryRun, long durationMillis) {
+
+        public boolean errorsTruncated() {
+            return failed > errors.size();
+        }
+
+        /**
+         * One line summary for job messages and notifications
+         *
+         * @param item What an item is called in the input, e.g. "row"
+         */
+        public String summary(String item) {
+            StringBuilder summary = new StringBuilder()
+                    .append(created).append(dryRun ? " would be created, " : " created, ")
+                    .append(skipped).append(" skipped, ")
+                    .append(failed).append(" failed");
+            if (!errors.isEmpty()) {
+                ItemError first = errors.get(0);
+                summary.append(". First error in ").append(item).append(' ').append(first.position())
+                        .append(first.name() != null ? " (" + first.name() + ")" : "")
+                        .append(": ").append(first.message());
+            }
+            return summary.toString();
+        }
+    }
+
+    static ExecutorService daemonPool(String prefix, int size) {
+        AtomicInteger threadCount = new AtomicInteger();
+        return Executors.newFixedThreadPool(size, r -> {
+            Thread thread = new Thread(r, prefix + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Counters of one job, updated concurrently by its worker and writer threads
+     */
+    static final class Tally {
+
+        final AtomicLong processed = new AtomicLong();
+        final AtomicLong created = new AtomicLong();
+        final AtomicLong skipped = new AtomicLong();
+        final AtomicLong failed = new AtomicLong();
+        private final Queue<ItemError> errors = new ConcurrentLinkedQueue<>();
+
+        void created() {
+            created.incrementAndGet();
+            processed.incrementAndGet();
+        }
+
+        void fail(long position, String name, String message) {
+            processed.incrementAndGet();
+            if (failed.incrementAndGet() <= MAX_REPORTED_ERRORS) {
+                errors.add(new ItemError(position, name, message));
+            }
+        }
+
+        Progress progress(long total) {
+            return new Progress(processed.get(), total, created.get(), failed.get());
+        }
+
+        Result result(long read, boolean dryRun, long durationMillis) {
+            List<ItemError> sorted = errors.stream().sorted(Comparator.comparingLong(ItemError::position)).toList();
+            return new Result(read, created.get(), skipped.get(), failed.get(), sorted, dryRun, durationMillis);
+        }
+    }
+}
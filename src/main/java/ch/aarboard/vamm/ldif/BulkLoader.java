@@ -0,0 +1,120 @@
+package ch.aarboard.vamm.ldif;
+
+import ch.aarboard.vamm.utils.LdapUtils;
+import com.unboundid.ldap.sdk.AddRequest;
+import com.unboundid.ldap.sdk.AsyncResultListener;
+import com.unboundid.ldap.sdk.Entry;
+import com.unboundid.ldap.sdk.LDAPConnection;
+import com.unboundid.ldap.sdk.LDAPException;
+import com.unboundid.ldap.sdk.LDAPResult;
+import com.unboundid.ldap.sdk.ResultCode;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Adds generated entries to a server as fast as it accepts them. Up to {@code window} adds are
+ * sent without waiting for their results, the server works on them in parallel while the
+ * next ones are on the wire. A domain is only added once all earlier adds are answered, and its
+ * children only after the domain, so no entry arrives before its parent.
+ *
+ * Failed adds are counted and the first error kept, loading goes on.
+ */
+public final class BulkLoader implements DataGenerator.Sink, AutoCloseable {
+
+    private final LDAPConnection connection;
+    private final int window;
+    private final Semaphore inFlight;
+    private final AtomicLong added = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicReference<String> firstError = new AtomicReference<>();
+
+    /**
+     * @param connection An authenticated connection, not in synchronous mode. It stays open on {@link #close()}.
+     * @param window     Adds in flight at once
+     */
+    public BulkLoader(LDAPConnection connection, int window) {
+        this.connection = connection;
+        this.window = Math.max(1, window);
+        this.inFlight = new Semaphore(this.window);
+    }
+
+    /**
+     * @param added      Entries added
+     * @param failed     Adds rejected by the server, including existing entries
+     * @param firstError Message of the first rejected add, null without failures
+     */
+    public record Result(long added, long failed, String firstError) {
+    }
+
+    @Override
+    public void add(Entry entry) throws LDAPException {
+        if (entry.hasObjectClass(LdapUtils.JAMM_VIRTUAL_DOMAIN)) {
+            drain();
+            try {
+                connection.add(entry);
+                added.incrementAndGet();
+            } catch (LDAPException e) {
+                failed(entry.getDN(), e.getResultCode(), e.getMessage());
+            }
+            return;
+        }
+
+        acquire(1);
+        try {
+            String dn = entry.getDN();
+            AsyncResultListener listener = (requestID, result) -> received(dn, result);
+            connection.asyncAdd(new AddRequest(entry), listener);
+        } catch (LDAPException e) {
+            inFlight.release();
+            throw e;
+        }
+    }
+
+    private void received(String dn, LDAPResult result) {
+        try {
+            if (result.getResultCode() == ResultCode.SUCCESS) {
+                added.incrementAndGet();
+            } else {
+                failed(dn, result.getResultCode(), result.getDiagnosticMessage());
+            }
+        } finally {
+            inFlight.release();
+        }
+    }
+
+    private void failed(String dn, ResultCode resultCode, String message) {
+        failed.incrementAndGet();
+        firstError.compareAndSet(null, resultCode + " adding " + dn + ": " + message);
+    }
+
+    /**
+     * Wait until every add sent so far is answered
+     */
+    public void drain() {
+        acquire(window);
+        inFlight.release(window);
+    }
+
+    private void acquire(int permits) {
+        try {
+            inFlight.acquire(permits);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while loading", e);
+        }
+    }
+
+    public Result getResult() {
+        return new Result(added.get(), failed.get(), firstError.get());
+    }
+
+    /**
+     * Wait for the outstanding adds
+     */
+    @Override
+    public void close() {
+        drain();
+    }
+}
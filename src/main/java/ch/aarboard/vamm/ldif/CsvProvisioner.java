@@ -0,0 +1,470 @@
+package ch.aarboard.vamm.ldif;
+
+import ch.aarboard.vamm.data.entries.JammMailAccount;
+import ch.aarboard.vamm.data.entries.JammMailAlias;
+import ch.aarboard.vamm.ldap.LdapSessionManager;
+import ch.aarboard.vamm.ldap.PagedSearch;
+import ch.aarboard.vamm.security.BreachedPasswordBlocklist;
+import ch.aarboard.vamm.security.PasswordHashingService;
+import ch.aarboard.vamm.utils.LdapUtils;
+import ch.aarboard.vamm.utils.MailUtils;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.ldap.core.DirContextAdapter;
+import org.springframework.ldap.core.LdapTemplate;
+import org.springframework.ldap.core.NameClassPairCallbackHandler;
+import org.springframework.ldap.filter.EqualsFilter;
+import org.springframework.ldap.filter.LikeFilter;
+import org.springframework.ldap.filter.OrFilter;
+import org.springframework.ldap.odm.core.ObjectDirectoryMapper;
+import org.springframework.stereotype.Component;
+
+import javax.naming.NameAlreadyBoundException;
+import javax.naming.NamingException;
+import javax.naming.directory.Attribute;
+import javax.naming.directory.Attributes;
+import javax.naming.directory.SearchControls;
+import javax.naming.directory.SearchResult;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Creates accounts and aliases in bulk, from a CSV file or from a list of {@link Row}s.
+ *
+ * Creating entries one by one through the management services costs four or more round trips
+ * per entry and hashes every password on the calling thread. Here the rows are validated first,
+ * then checked against the directory with a single paged search over all domains they touch
+ * (existing domains and addresses). Passwords are hashed in parallel through the
+ * {@link PasswordHashingService}, with as many hashes outstanding as its executor has threads,
+ * and each batch is added on its own connection by the writer pool as soon as its passwords are
+ * ready, so several batches are written concurrently.
+ *
+ * A dry run stops after the checks and reports what would be created.
+ *
+ * The CSV columns are those of the {@link DirectoryExporter} plus {@code password}, only
+ * {@code mail} is required. Rows of type {@code domain} and {@code postmaster} are skipped,
+ * so an export can be fed back in.
+ */
+@Component
+public class CsvProvisioner {
+
+    private static final Logger log = LoggerFactory.getLogger(CsvProvisioner.class);
+
+    /** Column understood in addition to those of the export */
+    public static final String PASSWORD_COLUMN = "password";
+
+    private final LdapSessionManager ldapSessionManager;
+    private final BreachedPasswordBlocklist passwordBlocklist;
+    private final PasswordHashingService passwordHashingService;
+    private final int batchSize;
+    private final ExecutorService hashers;
+    private final ExecutorService writers;
+
+    public enum Type {
+        ACCOUNT, ALIAS
+    }
+
+    /**
+     * An entry to create
+     *
+     * @param number        Position in the input, starting at 1, used in error reports
+     * @param type          Account or alias, null to decide by the presence of destinations
+     * @param destinations  Alias destinations, ignored for accounts
+     * @param homeDirectory Home directory of an account, null for the default below /var/vmail
+     * @param password      Plain text password of an account, may be null
+     */
+    public record Row(long number, Type type, String mail, List<String> destinations, String homeDirectory,
+                      String quota, String description, String password, boolean active) {
+    }
+
+    @Autowired
+    public CsvProvisioner(LdapSessionManager ldapSessionManager,
+                          BreachedPasswordBlocklist passwordBlocklist,
+                          PasswordHashingService passwordHashingService,
+                          @Value("${jamm.provisioning.write-concurrency:4}") int writeConcurrency,
+                          @Value("${jamm.provisioning.batch-size:50}") int batchSize) {
+        this.ldapSessionManager = ldapSessionManager;
+        this.passwordBlocklist = passwordBlocklist;
+        this.passwordHashingService = passwordHashingService;
+        this.batchSize = Math.max(1, batchSize);
+        // These threads only wait for the hashing executor, one per hash it runs at once
+        this.hashers = BulkJob.daemonPool("provision-hash-", passwordHashingService.getConcurrency());
+        this.writers = BulkJob.daemonPool("provision-write-", Math.max(1, writeConcurrency));
+    }
+
+    /**
+     * Provision the rows of a CSV file with the current user's credentials. The file is read
+     * completely before anything is written, it is meant for up to some ten thousand rows.
+     *
+     * @throws IOException              if the file cannot be read
+     * @throws IllegalArgumentException if the header is missing or has unknown columns
+     * @throws CancellationException    if the calling thread was interrupted
+     */
+    public BulkJob.Result provisionFile(Path file, boolean dryRun, BulkJob.ProgressListener listener) throws IOException {
+        List<Row> rows = new ArrayList<>();
+        List<BulkJob.ItemError> parseErrors = new ArrayList<>();
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            readCsv(reader, rows, parseErrors);
+        }
+        return provision(rows, parseErrors, dryRun, listener);
+    }
+
+    /**
+     * Provision the given rows with the current user's credentials. Runs in the calling thread,
+     * interrupting it stops after the batches being written.
+     *
+     * @throws CancellationException if the calling thread was interrupted
+     */
+    public BulkJob.Result provision(List<Row> rows, boolean dryRun, BulkJob.ProgressListener listener) {
+        return provision(rows, List.of(), dryRun, listener);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        hashers.shutdownNow();
+        writers.shutdownNow();
+    }
+
+    private BulkJob.Result provision(List<Row> rows, List<BulkJob.ItemError> parseErrors, boolean dryRun,
+                                     BulkJob.ProgressListener listener) {
+        long started = System.currentTimeMillis();
+        LdapTemplate template = ldapSessionManager.createUserLdapTemplate();
+        Run run = new Run(template, listener, parseErrors);
+
+        List<Row> candidates = run.validate(rows);
+        Existing existing = findExisting(template, candidates);
+        List<Row> accepted = new ArrayList<>(candidates.size());
+        for (Row row : candidates) {
+            String domain = MailUtils.extractDomainFromMail(row.mail()).toLowerCase(Locale.ROOT);
+            if (!existing.domains().contains(domain)) {
+                run.fail(row, "Domain does not exist: " + domain);
+            } else if (existing.mails().contains(row.mail().toLowerCase(Locale.ROOT))) {
+                run.fail(row, "Address already exists: " + row.mail());
+            } else {
+                accepted.add(row);
+            }
+        }
+
+        if (dryRun) {
+            run.tally.created.addAndGet(accepted.size());
+        } else {
+            run.write(accepted);
+        }
+
+        long total = rows.size() + parseErrors.size();
+        BulkJob.Result result = run.tally.result(total, dryRun, System.currentTimeMillis() - started);
+        log.info("Provisioned {} rows{}: {} created, {} skipped, {} failed in {} ms", total, dryRun ? " (dry run)" : "",
+                result.created(), result.skipped(), result.failed(), result.durationMillis());
+        return result;
+    }
+
+    private record Existing(Set<String> domains, Set<String> mails) {
+    }
+
+    /**
+     * One paged search for the domains of the rows and all addresses in them
+     */
+    private Existing findExisting(LdapTemplate template, Collection<Row> rows) {
+        Set<String> domains = new TreeSet<>();
+        rows.forEach(row -> domains.add(MailUtils.extractDomainFromMail(row.mail()).toLowerCase(Locale.ROOT)));
+        Set<String> existingDomains = new HashSet<>();
+        Set<String> existingMails = new HashSet<>();
+        if (domains.isEmpty()) {
+            return new Existing(existingDomains, existingMails);
+        }
+
+        OrFilter filter = new OrFilter();
+        for (String domain : domains) {
+            filter.or(new EqualsFilter("jvd", domain));
+            filter.or(new LikeFilter("mail", "*@" + domain));
+        }
+
+        SearchControls controls = new SearchControls();
+        controls.setSearchScope(SearchControls.SUBTREE_SCOPE);
+        controls.setReturningAttributes(new String[]{"jvd", "mail"});
+        controls.setReturningObjFlag(false);
+
+        NameClassPairCallbackHandler handler = pair -> {
+            Attributes attributes = ((SearchResult) pair).getAttributes();
+            Attribute jvd = attributes.get("jvd");
+            if (jvd != null) {
+                existingDomains.add(String.valueOf(jvd.get()).toLowerCase(Locale.ROOT));
+            }
+            Attribute mail = attributes.get("mail");
+            if (mail != null) {
+                existingMails.add(String.valueOf(mail.get()).toLowerCase(Locale.ROOT));
+            }
+        };
+
+        PagedSearch.search(template, LdapUtils.baseDN().build(), filter.encode(), controls, 500, handler);
+        return new Existing(existingDomains, existingMails);
+    }
+
+    /**
+     * State of one provisioning call
+     */
+    private final class Run {
+
+        private final LdapTemplate template;
+        private final ObjectDirectoryMapper odm;
+        private final BulkJob.ProgressListener listener;
+        private final AtomicBoolean stopped = new AtomicBoolean(false);
+        private long total;
+
+        private final BulkJob.Tally tally = new BulkJob.Tally();
+
+        private Run(LdapTemplate template, BulkJob.ProgressListener listener, List<BulkJob.ItemError> parseErrors) {
+            this.template = template;
+            this.odm = template.getObjectDirectoryMapper();
+            this.listener = listener;
+            for (BulkJob.ItemError error : parseErrors) {
+                tally.fail(error.position(), error.name(), error.message());
+            }
+        }
+
+        /**
+         * Checks that do not need the directory, including duplicates within the input
+         */
+        List<Row> validate(List<Row> rows) {
+            List<Row> valid = new ArrayList<>(rows.size());
+            Set<String> seen = new HashSet<>();
+            for (Row row : rows) {
+                if (row == null) {
+                    tally.skipped.incrementAndGet();
+                    continue;
+                }
+                String error = check(row);
+                if (error != null) {
+                    fail(row, error);
+                } else if (!seen.add(row.mail().toLowerCase(Locale.ROOT))) {
+                    fail(row, "Duplicate address in input: " + row.mail());
+                } else {
+                    valid.add(row);
+                }
+            }
+            return valid;
+        }
+
+        private String check(Row row) {
+            if (row.mail() == null || !MailUtils.isValidAddress(row.mail())) {
+                return "Invalid email address format: " + row.mail();
+            }
+            if (type(row) == Type.ALIAS) {
+                if (row.destinations() == null || row.destinations().isEmpty()) {
+                    return "Alias must have at least one destination";
+                }
+                for (String destination : row.destinations()) {
+                    if (!MailUtils.isValidAddress(destination)) {
+                        return "Invalid destination email format: " + destination;
+                    }
+                }
+            } else if (row.quota() != null && !row.quota().isBlank() && !MailUtils.isValidQuotaFormat(row.quota())) {
+                return "Invalid quota format: " + row.quota();
+            } else if (row.password() != null && !row.password().isBlank() && passwordBlocklist.contains(row.password())) {
+                return "Password appears in a list of breached passwords";
+            }
+            return null;
+        }
+
+        /**
+         * Hash in parallel, then write batch by batch as soon as a batch's passwords are ready
+         */
+        void write(List<Row> rows) {
+            total = rows.size();
+            List<CompletableFuture<Void>> batches = new ArrayList<>();
+            for (int from = 0; from < rows.size(); from += batchSize) {
+                List<Row> batch = rows.subList(from, Math.min(rows.size(), from + batchSize));
+
+                List<CompletableFuture<Object>> entities = batch.stream()
+                        .map(row -> CompletableFuture.supplyAsync(() -> stopped.get() ? null : toEntity(row), hashers))
+                        .toList();
+                batches.add(CompletableFuture.allOf(entities.toArray(CompletableFuture[]::new))
+                        .thenRunAsync(() -> write(batch, entities.stream().map(CompletableFuture::join).toList()), writers)
+                        .whenComplete((ignored, error) -> {
+                            if (error != null) {
+                                log.warn("Provisioning batch failed: {}", error.getMessage());
+                                batch.forEach(row -> fail(row, "Batch failed: " + error.getMessage()));
+                            }
+                        }));
+            }
+
+            try {
+                CompletableFuture.allOf(batches.toArray(CompletableFuture[]::new)).get();
+            } catch (InterruptedException e) {
+                stopped.set(true);
+                // Let the batches being written finish so the result is accurate
+                batches.forEach(batch -> batch.handle((ignored, error) -> null).join());
+                Thread.currentThread().interrupt();
+                throw new CancellationException("Provisioning cancelled after " + tally.processed.get() + " rows");
+            } catch (ExecutionException e) {
+                // Already reported per row
+            }
+        }
+
+        private Object toEntity(Row row) {
+            String localPart = MailUtils.extractUserFromMail(row.mail());
+            if (type(row) == Type.ALIAS) {
+                JammMailAlias alias = new JammMailAlias(row.mail(), row.destinations(), localPart);
+                if (row.description() != null && !row.description().isBlank()) {
+                    alias.setDescription(row.description().trim());
+                }
+                alias.setCommonName(localPart);
+                alias.setActive(row.active());
+                return alias;
+            }
+
+            String domain = MailUtils.extractDomainFromMail(row.mail());
+            String homeDirectory = row.homeDirectory() != null && !row.homeDirectory().isBlank()
+                    ? row.homeDirectory() : "/var/vmail/" + domain + "/" + localPart;
+            JammMailAccount account = new JammMailAccount(row.mail(), homeDirectory, homeDirectory + "/");
+            if (row.password() != null && !row.password().isBlank()) {
+                account.setHashedPassword(row.password(), passwordHashingService.hash(row.password()));
+            }
+            if (row.quota() != null && !row.quota().isBlank()) {
+                account.setQuota(row.quota());
+            }
+            if (row.description() != null && !row.description().isBlank()) {
+                account.setDescription(row.description());
+            }
+            account.setCommonName(localPart);
+            account.setUid(localPart);
+            account.setActive(row.active());
+            return account;
+        }
+
+        private void write(List<Row> batch, List<Object> entities) {
+            if (stopped.get()) {
+                return;
+            }
+
+            template.executeReadWrite(ctx -> {
+                for (int i = 0; i < batch.size(); i++) {
+                    Row row = batch.get(i);
+                    try {
+                        var dn = LdapUtils.mailDN(row.mail()).build();
+                        DirContextAdapter data = new DirContextAdapter(dn);
+                        odm.mapToLdapDataEntry(entities.get(i), data);
+                        ctx.bind(dn, null, data.getAttributes());
+                        tally.created();
+                    } catch (NameAlreadyBoundException e) {
+                        fail(row, "Address already exists: " + row.mail());
+                    } catch (NamingException e) {
+                        fail(row, e.getExplanation() != null ? e.getExplanation() : e.toString());
+                    } catch (RuntimeException e) {
+                        fail(row, e.getMessage());
+                    }
+                }
+                return null;
+            });
+
+            listener.onProgress(tally.progress(total));
+        }
+
+        void fail(Row row, String message) {
+            tally.fail(row.number(), row.mail(), message);
+        }
+    }
+
+    private static Type type(Row row) {
+        if (row.type() != null) {
+            return row.type();
+        }
+        return row.destinations() == null || row.destinations().isEmpty() ? Type.ACCOUNT : Type.ALIAS;
+    }
+
+    /**
+     * Read the rows of a CSV file. Rows of types that are not provisioned are added as null,
+     * rows that cannot be read become errors.
+     */
+    static void readCsv(Reader reader, List<Row> rows, List<BulkJob.ItemError> errors) throws IOException {
+        CsvReader csv = new CsvReader(reader);
+        List<String> header = csv.readRow();
+        if (header == null) {
+            throw new IllegalArgumentException("The file is empty");
+        }
+
+        Map<String, Integer> columns = new HashMap<>();
+        for (int i = 0; i < header.size(); i++) {
+            String column = header.get(i).trim().toLowerCase(Locale.ROOT);
+            if (!DirectoryExporter.CSV_COLUMNS.contains(column) && !PASSWORD_COLUMN.equals(column)) {
+                throw new IllegalArgumentException("Unknown column '" + header.get(i) + "', expected "
+                        + String.join(", ", DirectoryExporter.CSV_COLUMNS) + " or " + PASSWORD_COLUMN);
+            }
+            columns.put(column, i);
+        }
+        if (!columns.containsKey("mail")) {
+            throw new IllegalArgumentException("The file has no mail column");
+        }
+
+        long number = 0;
+        List<String> cells;
+        while ((cells = csv.readRow()) != null) {
+            if (cells.size() == 1 && cells.get(0).isBlank()) {
+                continue; // Empty line
+            }
+            number++;
+
+            String mail = cell(cells, columns, "mail");
+            String type = cell(cells, columns, "type");
+            if (type != null && (type.equalsIgnoreCase("domain") || type.equalsIgnoreCase("postmaster"))) {
+                rows.add(null);
+                continue;
+            }
+
+            try {
+                String active = cell(cells, columns, "active");
+                String destinations = cell(cells, columns, "destinations");
+                rows.add(new Row(number,
+                        type == null ? null : Type.valueOf(type.toUpperCase(Locale.ROOT)),
+                        mail,
+                        destinations == null ? List.of() : Arrays.stream(destinations.split("[\\s;]+"))
+                                .filter(d -> !d.isEmpty()).toList(),
+                        cell(cells, columns, "home_directory"),
+                        cell(cells, columns, "quota"),
+                        cell(cells, columns, "description"),
+                        cell(cells, columns, PASSWORD_COLUMN),
+                        active == null || !(active.equalsIgnoreCase("false") || active.equals("0"))));
+            } catch (IllegalArgumentException e) {
+                errors.add(new BulkJob.ItemError(number, mail, "Unknown type: " + type));
+            }
+        }
+    }
+
+    /**
+     * The trimmed value of a cell, null if empty. Undoes the formula protection of the export.
+     */
+    private static String cell(List<String> cells, Map<String, Integer> columns, String column) {
+        Integer index = columns.get(column);
+        if (index == null || index >= cells.size()) {
+            return null;
+        }
+        String value = cells.get(index);
+        if (value.length() > 1 && value.charAt(0) == '\'' && "=+-@".indexOf(value.charAt(1)) >= 0) {
+            value = value.substring(1);
+        }
+        // Passwords are taken as they are
+        value = PASSWORD_COLUMN.equals(column) ? value : value.trim();
+        return value.isEmpty() ? null : value;
+    }
+}
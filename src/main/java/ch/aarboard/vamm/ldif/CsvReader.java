@@ -0,0 +1,118 @@
+package ch.aarboard.vamm.ldif;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads RFC 4180 CSV row by row, the counterpart of the CSV written by the {@link DirectoryExporter}.
+ * Quoted cells may contain separators, doubled quotes and line breaks. A leading UTF-8 byte order
+ * mark is ignored.
+ */
+public final class CsvReader implements Closeable {
+
+    private final Reader reader;
+    private final char separator;
+    private long line = 1;
+    private boolean first = true;
+
+    public CsvReader(Reader reader) {
+        this(reader, ',');
+    }
+
+    public CsvReader(Reader reader, char separator) {
+        // Looking ahead needs mark support
+        this.reader = reader.markSupported() ? reader : new BufferedReader(reader);
+        this.separator = separator;
+    }
+
+    /**
+     * Line number of the start of the next row, starting at 1
+     */
+    public long getLine() {
+        return line;
+    }
+
+    /**
+     * Read the next row
+     *
+     * @return The cells of the row, null at the end of the input
+     * @throws IllegalArgumentException if a quoted cell is not closed
+     */
+    public List<String> readRow() throws IOException {
+        List<String> cells = new ArrayList<>();
+        StringBuilder cell = new StringBuilder();
+        boolean quoted = false;
+        boolean any = false;
+
+        int c;
+        while ((c = next()) != -1) {
+            any = true;
+            if (quoted) {
+                if (c == '"') {
+                    int following = peek();
+                    if (following == '"') {
+                        reader.read();
+                        cell.append('"');
+                    } else {
+                        quoted = false;
+                    }
+                } else {
+                    if (c == '\n') {
+                        line++;
+                    }
+                    cell.append((char) c);
+                }
+            } else if (c == '"' && cell.isEmpty()) {
+                quoted = true;
+            } else if (c == separator) {
+                cells.add(cell.toString());
+                cell.setLength(0);
+            } else if (c == '\r' || c == '\n') {
+                if (c == '\r' && peek() == '\n') {
+                    reader.read();
+                }
+                line++;
+                cells.add(cell.toString());
+                return cells;
+            } else {
+                cell.append((char) c);
+            }
+        }
+
+        if (quoted) {
+            throw new IllegalArgumentException("Unterminated quoted value before line " + line);
+        }
+        if (!any) {
+            return null;
+        }
+        cells.add(cell.toString());
+        return cells;
+    }
+
+    private int next() throws IOException {
+        int c = reader.read();
+        if (first) {
+            first = false;
+            if (c == '\uFEFF') {
+                c = reader.read();
+            }
+        }
+        return c;
+    }
+
+    private int peek() throws IOException {
+        reader.mark(1);
+        int c = reader.read();
+        reader.reset();
+        return c;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
@@ -0,0 +1,354 @@
+package ch.aarboard.vamm.ldif;
+
+import ch.aarboard.vamm.utils.LdapUtils;
+import com.unboundid.ldap.sdk.Attribute;
+import com.unboundid.ldap.sdk.Entry;
+import com.unboundid.ldap.sdk.LDAPException;
+import com.unboundid.ldif.LDIFWriter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.SplittableRandom;
+
+/**
+ * Generates a synthetic hosting tree of domains, postmasters, accounts and aliases for scale tests.
+ *
+ * The output depends only on the {@link Settings}: the same seed gives the same entries in the
+ * same order, byte for byte, so benchmark runs on generated data can be compared. Entries are
+ * handed to a {@link Sink} parent first, domain by domain, nothing is kept in memory beyond
+ * the domain being generated.
+ *
+ * <ul>
+ *     <li>Accounts are spread over the domains by a Zipf distribution, with a skew of 0 every
+ *     domain gets the same number, with 1 the largest domain holds about a tenth of 10k accounts.</li>
+ *     <li>Aliases point to accounts of their domain, the number of destinations is geometric
+ *     with the configured mean fan-out. A share of the destinations is external.</li>
+ *     <li>Catch-all aliases ({@code @domain}) are added to a share of the domains.</li>
+ *     <li>Inactive and deleted flags are set on a share of the domains, accounts and aliases.</li>
+ * </ul>
+ *
+ * All accounts share one {@code {SSHA}} hash of {@link Settings#password()}, hashing each would
+ * dominate the generation time.
+ */
+public final class DataGenerator {
+
+    private static final String[] FIRST_NAMES = {
+            "anna", "ben", "carla", "david", "eva", "felix", "gina", "hans", "ines", "jan",
+            "karin", "lukas", "maria", "nico", "olga", "paul", "rita", "simon", "tina", "urs",
+            "vera", "walter", "yvonne", "zoe"};
+    private static final String[] LAST_NAMES = {
+            "ammann", "bauer", "keller", "meier", "mueller", "frei", "huber", "schmid", "weber", "wyss",
+            "brunner", "baumann", "fischer", "gerber", "graf", "roth", "suter", "moser", "steiner", "zbinden"};
+    private static final String[] ROLES = {
+            "info", "sales", "support", "office", "billing", "jobs", "contact", "team", "admin", "news"};
+    private static final String[] WORDS = {
+            "alpine", "bakery", "cycle", "dental", "event", "forest", "garden", "hotel", "immo", "joinery",
+            "kitchen", "lake", "media", "nordic", "optic", "pixel", "quartz", "river", "studio", "travel"};
+    private static final String[] TLDS = {"ch", "com", "net", "org", "test"};
+
+    /** Share of alias destinations outside the generated tree */
+    private static final double EXTERNAL_DESTINATIONS = 0.1;
+
+    /** Spread of the lastChange values before {@link Settings#lastChange()} */
+    private static final int LAST_CHANGE_SPREAD = 365 * 24 * 3600;
+
+    private final Settings settings;
+    private final String userPassword;
+
+    /**
+     * @param base     DN below which {@code o=hosting} lives
+     * @param seed     Seed of all random choices
+     * @param domains  Number of domains
+     * @param accounts Number of accounts over all domains
+     * @param domainSkew        Zipf exponent of the domain sizes, 0 for equal sizes
+     * @param aliasesPerAccount Aliases per account of a domain, on average
+     * @param aliasFanOut       Mean number of destinations per alias, at least 1
+     * @param catchAllRatio     Share of domains with a catch-all alias
+     * @param inactiveRatio     Share of domains, accounts and aliases with accountActive FALSE
+     * @param deletedRatio      Share of domains and accounts marked for deletion
+     * @param password          Plain text password of all accounts
+     * @param lastChange        Newest lastChange value, in epoch seconds
+     */
+    public record Settings(String base, long seed, int domains, int accounts, double domainSkew,
+                           double aliasesPerAccount, double aliasFanOut, double catchAllRatio,
+                           double inactiveRatio, double deletedRatio, String password, long lastChange) {
+
+        public Settings {
+            if (domains < 1 || accounts < 0) {
+                throw new IllegalArgumentException("At least one domain and no negative number of accounts required");
+            }
+            if (domainSkew < 0 || aliasesPerAccount < 0 || aliasFanOut < 1) {
+                throw new IllegalArgumentException("Skew and aliases per account must not be negative, fan-out must be at least 1");
+            }
+            requireRatio("Catch-all ratio", catchAllRatio);
+            requireRatio("Inactive ratio", inactiveRatio);
+            requireRatio("Deleted ratio", deletedRatio);
+        }
+
+        /**
+         * Defaults close to a typical hosting setup: skewed domain sizes, one alias per four
+         * accounts with 1.5 destinations, a catch-all on every fifth domain, 5% inactive and 1% deleted.
+         */
+        public static Settings of(int domains, int accounts) {
+            return new Settings("dc=example,dc=com", 42, domains, accounts, 1.0, 0.25, 1.5, 0.2, 0.05, 0.01,
+                    "secret", 1_700_000_000L);
+        }
+
+        public Settings withSeed(long seed) {
+            return new Settings(base, seed, domains, accounts, domainSkew, aliasesPerAccount, aliasFanOut,
+                    catchAllRatio, inactiveRatio, deletedRatio, password, lastChange);
+        }
+
+        public Settings withBase(String base) {
+            return new Settings(base, seed, domains, accounts, domainSkew, aliasesPerAccount, aliasFanOut,
+                    catchAllRatio, inactiveRatio, deletedRatio, password, lastChange);
+        }
+
+        public Settings withDistribution(double domainSkew, double aliasesPerAccount, double aliasFanOut) {
+            return new Settings(base, seed, domains, accounts, domainSkew, aliasesPerAccount, aliasFanOut,
+                    catchAllRatio, inactiveRatio, deletedRatio, password, lastChange);
+        }
+
+        public Settings withRatios(double catchAllRatio, double inactiveRatio, double deletedRatio) {
+            return new Settings(base, seed, domains, accounts, domainSkew, aliasesPerAccount, aliasFanOut,
+                    catchAllRatio, inactiveRatio, deletedRatio, password, lastChange);
+        }
+
+        private static void requireRatio(String name, double ratio) {
+            if (ratio < 0 || ratio > 1) {
+                throw new IllegalArgumentException(name + " must be between 0 and 1: " + ratio);
+            }
+        }
+    }
+
+    /**
+     * Receives the generated entries, a parent always before its children
+     */
+    @FunctionalInterface
+    public interface Sink {
+
+        void add(Entry entry) throws LDAPException, IOException;
+    }
+
+    /**
+     * Number of entries generated, the postmasters are counted separately from the aliases
+     */
+    public record Stats(long domains, long postmasters, long accounts, long aliases, long catchAlls) {
+
+        public long entries() {
+            return domains + postmasters + accounts + aliases;
+        }
+    }
+
+    public DataGenerator(Settings settings) {
+        this.settings = settings;
+        this.userPassword = ssha(settings.password(), settings.seed());
+    }
+
+    public Settings getSettings() {
+        return settings;
+    }
+
+    /**
+     * Generate the tree below {@code o=hosting}, which is not generated itself
+     */
+    public Stats generate(Sink sink) throws LDAPException, IOException {
+        SplittableRandom random = new SplittableRandom(settings.seed());
+        int[] sizes = domainSizes(random);
+        long postmasters = 0;
+        long accounts = 0;
+        long aliases = 0;
+        long catchAlls = 0;
+
+        for (int d = 0; d < sizes.length; d++) {
+            String domain = domainName(d, random);
+            String domainDn = dn(LdapUtils.domainDN(domain).build().toString());
+            sink.add(new Entry(domainDn,
+                    new Attribute("objectClass", "top", LdapUtils.JAMM_VIRTUAL_DOMAIN),
+                    new Attribute("jvd", domain),
+                    new Attribute("accountActive", flag(!chance(random, settings.inactiveRatio()))),
+                    new Attribute("delete", flag(chance(random, settings.deletedRatio()))),
+                    new Attribute("editAccounts", "TRUE"),
+                    new Attribute("editPostmasters", "TRUE"),
+                    new Attribute("lastChange", lastChange(random))));
+
+            String postmasterDn = "cn=postmaster," + domainDn;
+            sink.add(new Entry(postmasterDn,
+                    new Attribute("objectClass", "top", LdapUtils.JAMM_MAIL_ALIAS, LdapUtils.JAMM_POSTMASTER),
+                    new Attribute("cn", "postmaster"),
+                    new Attribute("mail", "postmaster@" + domain),
+                    new Attribute("maildrop", "postmaster"),
+                    new Attribute("roleOccupant", postmasterDn),
+                    new Attribute("accountActive", "TRUE"),
+                    new Attribute("lastChange", lastChange(random))));
+            postmasters++;
+
+            Set<String> used = new HashSet<>(List.of("postmaster", "abuse"));
+            List<String> mailboxes = new ArrayList<>(sizes[d]);
+            for (int i = 0; i < sizes[d]; i++) {
+                String local = unique(used, FIRST_NAMES[random.nextInt(FIRST_NAMES.length)] + "."
+                        + LAST_NAMES[random.nextInt(LAST_NAMES.length)]);
+                String mail = local + "@" + domain;
+                mailboxes.add(mail);
+                sink.add(new Entry("mail=" + mail + "," + domainDn,
+                        new Attribute("objectClass", "top", LdapUtils.JAMM_MAIL_ACCOUNT),
+                        new Attribute("mail", mail),
+                        new Attribute("homeDirectory", "/home/vmail/domains"),
+                        new Attribute("mailbox", domain + "/" + local + "/"),
+                        new Attribute("userPassword", userPassword),
+                        new Attribute("accountActive", flag(!chance(random, settings.inactiveRatio()))),
+                        new Attribute("delete", flag(chance(random, settings.deletedRatio()))),
+                        new Attribute("lastChange", lastChange(random))));
+            }
+            accounts += mailboxes.size();
+
+            int aliasCount = (int) Math.round(sizes[d] * settings.aliasesPerAccount() + random.nextDouble() - 0.5);
+            for (int i = 0; i < aliasCount; i++) {
+                String local = unique(used, ROLES[random.nextInt(ROLES.length)]);
+                String mail = local + "@" + domain;
+                sink.add(alias(mail, domainDn, destinations(random, mailboxes), random));
+            }
+            aliases += Math.max(0, aliasCount);
+
+            if (chance(random, settings.catchAllRatio())) {
+                sink.add(alias("@" + domain, domainDn, destinations(random, mailboxes), random));
+                aliases++;
+                catchAlls++;
+            }
+        }
+        return new Stats(sizes.length, postmasters, accounts, aliases, catchAlls);
+    }
+
+    /**
+     * Write the generated tree as LDIF, preceded by the {@code o=hosting} entry so the file can be
+     * loaded into an empty directory with {@code ldapadd}
+     */
+    public Stats writeLdif(OutputStream out) throws IOException {
+        LDIFWriter writer = new LDIFWriter(out);
+        try {
+            writer.writeEntry(new Entry(dn("o=hosting"),
+                    new Attribute("objectClass", "top", "organization"),
+                    new Attribute("o", "hosting")));
+            Stats stats = generate(writer::writeEntry);
+            writer.flush();
+            return stats;
+        } catch (LDAPException e) {
+            throw new IllegalStateException("Generated an invalid entry", e);
+        }
+    }
+
+    /**
+     * Split the accounts over the domains by weight {@code 1 / rank^skew}. The largest domains are
+     * not the first ones, the ranks are shuffled.
+     */
+    private int[] domainSizes(SplittableRandom random) {
+        int domains = settings.domains();
+        double[] weights = new double[domains];
+        double total = 0;
+        for (int i = 0; i < domains; i++) {
+            weights[i] = 1 / Math.pow(i + 1, settings.domainSkew());
+            total += weights[i];
+        }
+        for (int i = domains - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            double swap = weights[i];
+            weights[i] = weights[j];
+            weights[j] = swap;
+        }
+
+        int[] sizes = new int[domains];
+        int assigned = 0;
+        for (int i = 0; i < domains; i++) {
+            sizes[i] = (int) (settings.accounts() * weights[i] / total);
+            assigned += sizes[i];
+        }
+        // Rounding leaves fewer than one account per domain
+        for (int i = 0; assigned < settings.accounts(); i = (i + 1) % domains) {
+            sizes[i]++;
+            assigned++;
+        }
+        return sizes;
+    }
+
+    private Entry alias(String mail, String domainDn, List<String> destinations, SplittableRandom random) {
+        return new Entry("mail=" + mail + "," + domainDn,
+                new Attribute("objectClass", "top", LdapUtils.JAMM_MAIL_ALIAS),
+                new Attribute("mail", mail),
+                new Attribute("maildrop", destinations),
+                new Attribute("accountActive", flag(!chance(random, settings.inactiveRatio()))),
+                new Attribute("lastChange", lastChange(random)));
+    }
+
+    /**
+     * One destination plus a geometric number of further ones, so the mean is the fan-out
+     */
+    private List<String> destinations(SplittableRandom random, List<String> mailboxes) {
+        double more = 1 - 1 / settings.aliasFanOut();
+        List<String> destinations = new ArrayList<>();
+        do {
+            String destination = mailboxes.isEmpty() || chance(random, EXTERNAL_DESTINATIONS)
+                    ? "user" + random.nextInt(100_000) + "@external.test"
+                    : mailboxes.get(random.nextInt(mailboxes.size()));
+            if (!destinations.contains(destination)) {
+                destinations.add(destination);
+            }
+        } while (chance(random, more));
+        return destinations;
+    }
+
+    private String domainName(int index, SplittableRandom random) {
+        return WORDS[random.nextInt(WORDS.length)] + "-" + index + "." + TLDS[random.nextInt(TLDS.length)];
+    }
+
+    private String lastChange(SplittableRandom random) {
+        return String.valueOf(settings.lastChange() - random.nextInt(LAST_CHANGE_SPREAD));
+    }
+
+    private String dn(String relative) {
+        return settings.base().isEmpty() ? relative : relative + "," + settings.base();
+    }
+
+    private static String unique(Set<String> used, String local) {
+        String candidate = local;
+        for (int n = 2; !used.add(candidate); n++) {
+            candidate = local + n;
+        }
+        return candidate;
+    }
+
+    private static boolean chance(SplittableRandom random, double ratio) {
+        return ratio > 0 && random.nextDouble() < ratio;
+    }
+
+    private static String flag(boolean value) {
+        return value ? "TRUE" : "FALSE";
+    }
+
+    /**
+     * {@code {SSHA}} with a salt derived from the seed, so the hash is deterministic as well
+     */
+    private static String ssha(String password, long seed) {
+        byte[] salt = new byte[8];
+        new SplittableRandom(seed).nextBytes(salt);
+        try {
+            MessageDigest sha1 = MessageDigest.getInstance("SHA-1");
+            sha1.update(password.getBytes(StandardCharsets.UTF_8));
+            sha1.update(salt);
+            byte[] digest = sha1.digest();
+            byte[] hashAndSalt = new byte[digest.length + salt.length];
+            System.arraycopy(digest, 0, hashAndSalt, 0, digest.length);
+            System.arraycopy(salt, 0, hashAndSalt, digest.length, salt.length);
+            return "{SSHA}" + Base64.getEncoder().encodeToString(hashAndSalt);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-1 not available", e);
+        }
+    }
+}
@@ -0,0 +1,326 @@
+package ch.aarboard.vamm.ldif;
+
+import ch.aarboard.vamm.ldap.LdapSessionManager;
+import ch.aarboard.vamm.ldap.PagedSearch;
+import ch.aarboard.vamm.utils.LdapUtils;
+import com.unboundid.ldif.LDIFWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.ldap.NameNotFoundException;
+import org.springframework.ldap.core.LdapTemplate;
+import org.springframework.ldap.core.NameClassPairCallbackHandler;
+import org.springframework.stereotype.Component;
+
+import javax.naming.Name;
+import javax.naming.NamingEnumeration;
+import javax.naming.NamingException;
+import javax.naming.directory.Attribute;
+import javax.naming.directory.Attributes;
+import javax.naming.directory.SearchControls;
+import javax.naming.directory.SearchResult;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes a domain or the whole hosting tree as LDIF or CSV.
+ *
+ * The subtree is read with a paged search on a single connection and every entry is written
+ * to the output as soon as it arrives, the writer is flushed after each page. Nothing beyond
+ * the current page is held in memory, so the heap stays flat no matter how many entries are
+ * exported and a download starts streaming with the first page.
+ *
+ * LDIF is written with the UnboundID {@link LDIFWriter}, which takes care of base64 encoding
+ * and line folding. The plain text {@code clearPassword} attribute is never exported.
+ */
+@Component
+public class DirectoryExporter {
+
+    private static final Logger log = LoggerFactory.getLogger(DirectoryExporter.class);
+
+    /** Columns of the CSV format */
+    public static final List<String> CSV_COLUMNS = List.of(
+            "type", "mail", "domain", "active", "destinations", "mailbox", "home_directory", "quota", "description");
+
+    private static final Set<String> EXCLUDED_ATTRIBUTES = Set.of("clearpassword");
+
+    private final LdapSessionManager ldapSessionManager;
+    private final int pageSize;
+
+    public enum Format {
+        LDIF("ldif", "text/x-ldif"),
+        CSV("csv", "text/csv");
+
+        private final String extension;
+        private final String contentType;
+
+        Format(String extension, String contentType) {
+            this.extension = extension;
+            this.contentType = contentType;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+    }
+
+    @Autowired
+    public DirectoryExporter(LdapSessionManager ldapSessionManager,
+                             @Value("${jamm.ldif.export.page-size:500}") int pageSize) {
+        this.ldapSessionManager = ldapSessionManager;
+        this.pageSize = Math.max(1, pageSize);
+    }
+
+    /**
+     * Suggested file name of an export
+     *
+     * @param domain The exported domain, null for the whole tree
+     */
+    public static String fileName(String domain, Format format, boolean gzip) {
+        String name = (domain == null ? "hosting" : domain) + "." + format.getExtension();
+        return gzip ? name + ".gz" : name;
+    }
+
+    /**
+     * Export with the current user's credentials. The output stream is not closed, but
+     * a gzip stream is finished so the caller can close or reuse the underlying stream.
+     *
+     * @param domain The domain to export, null for everything below {@code o=hosting}
+     * @param format The output format
+     * @param gzip   Whether to compress the output
+     * @param out    The target stream
+     * @return The number of exported entries
+     * @throws CancellationException if the calling thread was interrupted
+     */
+    public long export(String domain, Format format, boolean gzip, OutputStream out) throws IOException {
+        return export(ldapSessionManager.createUserLdapTemplate(), domain, format, gzip, out);
+    }
+
+    /**
+     * Export with the connection of the given template, used by the {@link ExportCommand}
+     * where there is no logged-in user.
+     */
+    public long export(LdapTemplate template, String domain, Format format, boolean gzip, OutputStream out) throws IOException {
+        Name base = domain == null ? LdapUtils.baseDN().build() : LdapUtils.domainDN(domain).build();
+
+        GZIPOutputStream compressed = gzip ? new GZIPOutputStream(out, 64 * 1024) : null;
+        OutputStream target = compressed != null ? compressed : out;
+
+        EntrySink sink = format == Format.LDIF ? new LdifSink(target) : new CsvSink(target);
+        long count;
+        try {
+            count = search(template, base, sink);
+            sink.flush();
+        } catch (UncheckedIOException e) {
+            throw e.getCause(); // Typically the client aborted the download
+        }
+
+        if (compressed != null) {
+            compressed.finish();
+        }
+        out.flush();
+        log.info("Exported {} entries of {} as {}", count, base, format);
+        return count;
+    }
+
+    private long search(LdapTemplate template, Name base, EntrySink sink) {
+        SearchControls controls = new SearchControls();
+        controls.setSearchScope(SearchControls.SUBTREE_SCOPE);
+        controls.setReturningObjFlag(false);
+
+        long[] count = {0};
+        NameClassPairCallbackHandler handler = pair -> {
+            sink.write((SearchResult) pair);
+            count[0]++;
+        };
+
+        try {
+            PagedSearch.search(template, base, "(objectClass=*)", controls, pageSize, handler, () -> {
+                sink.flush();
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new CancellationException("Export of " + base + " cancelled after " + count[0] + " entries");
+                }
+            });
+        } catch (NameNotFoundException e) {
+            throw new IllegalArgumentException("Nothing to export, " + base + " does not exist", e);
+        }
+        return count[0];
+    }
+
+    private interface EntrySink {
+
+        void write(SearchResult entry) throws NamingException;
+
+        void flush();
+    }
+
+    private static final class LdifSink implements EntrySink {
+
+        private final LDIFWriter writer;
+
+        LdifSink(OutputStream out) {
+            this.writer = new LDIFWriter(out);
+        }
+
+        @Override
+        public void write(SearchResult entry) throws NamingException {
+            List<com.unboundid.ldap.sdk.Attribute> attributes = new ArrayList<>();
+            NamingEnumeration<? extends Attribute> all = entry.getAttributes().getAll();
+            while (all.hasMore()) {
+                Attribute attribute = all.next();
+                if (EXCLUDED_ATTRIBUTES.contains(attribute.getID().toLowerCase(Locale.ROOT))) {
+                    continue;
+                }
+                List<byte[]> values = new ArrayList<>();
+                NamingEnumeration<?> raw = attribute.getAll();
+                while (raw.hasMore()) {
+                    Object value = raw.next();
+                    values.add(value instanceof byte[] bytes ? bytes : String.valueOf(value).getBytes(StandardCharsets.UTF_8));
+                }
+                attributes.add(new com.unboundid.ldap.sdk.Attribute(attribute.getID(), values.toArray(byte[][]::new)));
+            }
+
+            try {
+                writer.writeEntry(new com.unboundid.ldap.sdk.Entry(entry.getNameInNamespace(), attributes));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public void flush() {
+            try {
+                writer.flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * One row per domain, account, alias and postmaster. Multi-valued destinations are
+     * joined with a space.
+     */
+    private static final class CsvSink implements EntrySink {
+
+        private final Writer writer;
+
+        CsvSink(OutputStream out) {
+            this.writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 64 * 1024);
+            writeRow(CSV_COLUMNS);
+        }
+
+        @Override
+        public void write(SearchResult entry) throws NamingException {
+            Attributes attributes = entry.getAttributes();
+            String type = type(attributes.get("objectClass"));
+            if (type == null) {
+                return; // The base entry or other non-Jamm entries
+            }
+
+            String mail = value(attributes, "mail");
+            String domain = type.equals("domain") ? value(attributes, "jvd")
+                    : mail == null ? "" : mail.substring(mail.indexOf('@') + 1);
+            writeRow(List.of(
+                    type,
+                    nullToEmpty(mail),
+                    nullToEmpty(domain),
+                    String.valueOf("TRUE".equalsIgnoreCase(value(attributes, "accountActive"))),
+                    String.join(" ", values(attributes.get("maildrop"))),
+                    nullToEmpty(value(attributes, "mailbox")),
+                    nullToEmpty(value(attributes, "homeDirectory")),
+                    nullToEmpty(value(attributes, "quota")),
+                    nullToEmpty(value(attributes, "description"))));
+        }
+
+        @Override
+        public void flush() {
+            try {
+                writer.flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private void writeRow(List<String> cells) {
+            try {
+                for (int i = 0; i < cells.size(); i++) {
+                    if (i > 0) {
+                        writer.write(',');
+                    }
+                    writer.write(escape(cells.get(i)));
+                }
+                writer.write("\r\n");
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private static String type(Attribute objectClasses) throws NamingException {
+            List<String> classes = values(objectClasses).stream().map(c -> c.toLowerCase(Locale.ROOT)).toList();
+            if (classes.contains(LdapUtils.JAMM_POSTMASTER.toLowerCase(Locale.ROOT))) {
+                return "postmaster";
+            } else if (classes.contains(LdapUtils.JAMM_VIRTUAL_DOMAIN.toLowerCase(Locale.ROOT))) {
+                return "domain";
+            } else if (classes.contains(LdapUtils.JAMM_MAIL_ACCOUNT.toLowerCase(Locale.ROOT))) {
+                return "account";
+            } else if (classes.contains(LdapUtils.JAMM_MAIL_ALIAS.toLowerCase(Locale.ROOT))) {
+                return "alias";
+            }
+            return null;
+        }
+
+        private static String value(Attributes attributes, String name) throws NamingException {
+            Attribute attribute = attributes.get(name);
+            return attribute == null || attribute.size() == 0 ? null : text(attribute.get());
+        }
+
+        private static List<String> values(Attribute attribute) throws NamingException {
+            List<String> values = new ArrayList<>();
+            if (attribute != null) {
+                NamingEnumeration<?> all = attribute.getAll();
+                while (all.hasMore()) {
+                    values.add(text(all.next()));
+                }
+            }
+            return values;
+        }
+
+        private static String text(Object value) {
+            return value instanceof byte[] bytes ? new String(bytes, StandardCharsets.UTF_8) : String.valueOf(value);
+        }
+
+        private static String nullToEmpty(String value) {
+            return value == null ? "" : value;
+        }
+
+        /**
+         * RFC 4180 quoting, plus a leading quote for values a spreadsheet would evaluate as formula
+         */
+        private static String escape(String value) {
+            if (!value.isEmpty() && "=+-@".indexOf(value.charAt(0)) >= 0) {
+                value = "'" + value;
+            }
+            if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+                return value;
+            }
+            return '"' + value.replace("\"", "\"\"") + '"';
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package ch.aarboard.vamm.ldif;
+
+import ch.aarboard.vamm.config.LdapConfig;
+import ch.aarboard.vamm.ldap.LdapSessionManager;
+import ch.aarboard.vamm.security.SecurityService;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.ldap.core.LdapTemplate;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+
+/**
+ * Command line export, runs without starting the application:
+ *
+ * <pre>
+ * java -cp vamm.jar -Dloader.main=ch.aarboard.vamm.ldif.ExportCommand \
+ *     org.springframework.boot.loader.launch.PropertiesLauncher \
+ *     --bind-dn cn=admin,dc=example,dc=com --password-file admin.pw \
+ *     --domain example.org --format csv --gzip --output example.org.csv.gz
+ * </pre>
+ *
+ * Without {@code --domain} everything below {@code o=hosting} is exported, without
+ * {@code --output} the export is written to standard output.
+ */
+public final class ExportCommand {
+
+    private static final String USAGE = """
+            Usage: ExportCommand --bind-dn <dn> (--password <password> | --password-file <file>)
+                                 [--url ldap://localhost:389] [--base dc=example,dc=com]
+                                 [--domain <domain>] [--format ldif|csv] [--gzip] [--output <file>]
+            """;
+
+    private ExportCommand() {
+    }
+
+    public static void main(String[] args) {
+        String url = "ldap://localhost:389";
+        String base = "dc=example,dc=com";
+        String bindDn = null;
+        String password = null;
+        String domain = null;
+        DirectoryExporter.Format format = DirectoryExporter.Format.LDIF;
+        boolean gzip = false;
+        Path output = null;
+
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--url" -> url = value(args, ++i);
+                    case "--base" -> base = value(args, ++i);
+                    case "--bind-dn" -> bindDn = value(args, ++i);
+                    case "--password" -> password = value(args, ++i);
+                    case "--password-file" -> password = Files.readString(Path.of(value(args, ++i)), StandardCharsets.UTF_8).strip();
+                    case "--domain" -> domain = value(args, ++i);
+                    case "--format" -> format = DirectoryExporter.Format.valueOf(value(args, ++i).toUpperCase(Locale.ROOT));
+                    case "--gzip" -> gzip = true;
+                    case "--output" -> output = Path.of(value(args, ++i));
+                    default -> throw new IllegalArgumentException("Unknown option " + args[i]);
+                }
+            }
+            if (bindDn == null || password == null) {
+                throw new IllegalArgumentException("--bind-dn and a password are required");
+            }
+        } catch (IllegalArgumentException | IOException e) {
+            System.err.println(e.getMessage());
+            System.err.print(USAGE);
+            System.exit(2);
+            return;
+        }
+
+        LdapSessionManager sessionManager = new LdapSessionManager(new LdapConfig(url, base, 5000, 60000),
+                new SecurityService(new StandardEnvironment()));
+        DirectoryExporter exporter = new DirectoryExporter(sessionManager, 500);
+
+        try {
+            LdapTemplate template = sessionManager.createLdapTemplate(bindDn, password);
+            long count;
+            if (output == null) {
+                OutputStream out = new BufferedOutputStream(System.out, 64 * 1024);
+                count = exporter.export(template, domain, format, gzip, out);
+                out.flush();
+            } else {
+                try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(output), 64 * 1024)) {
+                    count = exporter.export(template, domain, format, gzip, out);
+                }
+            }
+            System.err.println("Exported " + count + " entries");
+        } catch (Exception e) {
+            System.err.println("Export failed: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    private static String value(String[] args, int index) {
+        if (index >= args.length) {
+            throw new IllegalArgumentException("Missing value for " + args[index - 1]);
+        }
+        return args[index];
+    }
+}
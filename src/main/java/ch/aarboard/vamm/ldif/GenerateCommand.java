@@ -0,0 +1,176 @@
+package ch.aarboard.vamm.ldif;
+
+import com.unboundid.ldap.sdk.Attribute;
+import com.unboundid.ldap.sdk.Entry;
+import com.unboundid.ldap.sdk.LDAPConnection;
+import com.unboundid.ldap.sdk.LDAPException;
+import com.unboundid.ldap.sdk.LDAPURL;
+import com.unboundid.ldap.sdk.ResultCode;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Generates synthetic test data with {@link DataGenerator}, as LDIF or loaded straight into a server:
+ *
+ * <pre>
+ * java -cp vamm.jar -Dloader.main=ch.aarboard.vamm.ldif.GenerateCommand \
+ *     org.springframework.boot.loader.launch.PropertiesLauncher \
+ *     --domains 5000 --accounts 400000 --seed 7 --gzip --output scale.ldif.gz
+ * </pre>
+ *
+ * With {@code --bind-dn} the entries are added to the server at {@code --url} by a
+ * {@link BulkLoader}, {@code o=hosting} is created if it is missing. Otherwise LDIF is written
+ * to {@code --output} or standard output.
+ */
+public final class GenerateCommand {
+
+    private static final String USAGE = """
+            Usage: GenerateCommand --domains <n> --accounts <n> [--seed 42] [--base dc=example,dc=com]
+                                   [--skew 1.0] [--aliases-per-account 0.25] [--fan-out 1.5]
+                                   [--catch-all 0.2] [--inactive 0.05] [--deleted 0.01]
+                                   [--account-password secret]
+                                   [--output <file>] [--gzip]
+                                   [--bind-dn <dn> (--password <password> | --password-file <file>)
+                                    [--url ldap://localhost:389] [--window 64]]
+            """;
+
+    private GenerateCommand() {
+    }
+
+    public static void main(String[] args) {
+        Integer domains = null;
+        Integer accounts = null;
+        DataGenerator.Settings defaults = DataGenerator.Settings.of(1, 0);
+        long seed = defaults.seed();
+        String base = defaults.base();
+        double skew = defaults.domainSkew();
+        double aliasesPerAccount = defaults.aliasesPerAccount();
+        double fanOut = defaults.aliasFanOut();
+        double catchAll = defaults.catchAllRatio();
+        double inactive = defaults.inactiveRatio();
+        double deleted = defaults.deletedRatio();
+        String accountPassword = defaults.password();
+        Path output = null;
+        boolean gzip = false;
+        String url = "ldap://localhost:389";
+        String bindDn = null;
+        String password = null;
+        int window = 64;
+        DataGenerator.Settings settings;
+
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--domains" -> domains = Integer.parseInt(value(args, ++i));
+                    case "--accounts" -> accounts = Integer.parseInt(value(args, ++i));
+                    case "--seed" -> seed = Long.parseLong(value(args, ++i));
+                    case "--base" -> base = value(args, ++i);
+                    case "--skew" -> skew = Double.parseDouble(value(args, ++i));
+                    case "--aliases-per-account" -> aliasesPerAccount = Double.parseDouble(value(args, ++i));
+                    case "--fan-out" -> fanOut = Double.parseDouble(value(args, ++i));
+                    case "--catch-all" -> catchAll = Double.parseDouble(value(args, ++i));
+                    case "--inactive" -> inactive = Double.parseDouble(value(args, ++i));
+                    case "--deleted" -> deleted = Double.parseDouble(value(args, ++i));
+                    case "--account-password" -> accountPassword = value(args, ++i);
+                    case "--output" -> output = Path.of(value(args, ++i));
+                    case "--gzip" -> gzip = true;
+                    case "--url" -> url = value(args, ++i);
+                    case "--bind-dn" -> bindDn = value(args, ++i);
+                    case "--password" -> password = value(args, ++i);
+                    case "--password-file" -> password = Files.readString(Path.of(value(args, ++i)), StandardCharsets.UTF_8).strip();
+                    case "--window" -> window = Integer.parseInt(value(args, ++i));
+                    default -> throw new IllegalArgumentException("Unknown option " + args[i]);
+                }
+            }
+            if (domains == null || accounts == null) {
+                throw new IllegalArgumentException("--domains and --accounts are required");
+            }
+            if (bindDn != null && password == null) {
+                throw new IllegalArgumentException("Loading into a server requires a password");
+            }
+            settings = new DataGenerator.Settings(base, seed, domains, accounts, skew, aliasesPerAccount, fanOut,
+                    catchAll, inactive, deleted, accountPassword, defaults.lastChange());
+        } catch (IllegalArgumentException | IOException e) {
+            System.err.println(e.getMessage());
+            System.err.print(USAGE);
+            System.exit(2);
+            return;
+        }
+
+        DataGenerator generator = new DataGenerator(settings);
+        long started = System.nanoTime();
+        try {
+            DataGenerator.Stats stats;
+            if (bindDn != null) {
+                stats = load(generator, new LDAPURL(url), bindDn, password, window);
+            } else if (output == null) {
+                OutputStream out = new BufferedOutputStream(System.out, 64 * 1024);
+                stats = write(generator, gzip, out);
+                out.flush();
+            } else {
+                try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(output), 64 * 1024)) {
+                    stats = write(generator, gzip, out);
+                }
+            }
+            double seconds = (System.nanoTime() - started) / 1e9;
+            System.err.printf("Generated %d domains, %d accounts, %d aliases (%d catch-all) in %.1f s, %.0f entries/s%n",
+                    stats.domains(), stats.accounts(), stats.aliases(), stats.catchAlls(), seconds,
+                    stats.entries() / Math.max(seconds, 1e-3));
+        } catch (Exception e) {
+            System.err.println("Generation failed: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    private static DataGenerator.Stats write(DataGenerator generator, boolean gzip, OutputStream out) throws IOException {
+        if (!gzip) {
+            return generator.writeLdif(out);
+        }
+        GZIPOutputStream compressed = new GZIPOutputStream(out, 64 * 1024);
+        DataGenerator.Stats stats = generator.writeLdif(compressed);
+        compressed.finish();
+        return stats;
+    }
+
+    private static DataGenerator.Stats load(DataGenerator generator, LDAPURL url, String bindDn, String password,
+                                            int window) throws LDAPException, IOException {
+        try (LDAPConnection connection = new LDAPConnection(url.getHost(), url.getPort(), bindDn, password)) {
+            String hosting = "o=hosting," + generator.getSettings().base();
+            try {
+                connection.add(new Entry(hosting,
+                        new Attribute("objectClass", "top", "organization"),
+                        new Attribute("o", "hosting")));
+            } catch (LDAPException e) {
+                if (e.getResultCode() != ResultCode.ENTRY_ALREADY_EXISTS) {
+                    throw e;
+                }
+            }
+
+            DataGenerator.Stats stats;
+            BulkLoader.Result result;
+            try (BulkLoader loader = new BulkLoader(connection, window)) {
+                stats = generator.generate(loader);
+                loader.drain();
+                result = loader.getResult();
+            }
+            System.err.println("Added " + result.added() + " entries, " + result.failed() + " failed");
+            if (result.firstError() != null) {
+                System.err.println("First failure: " + result.firstError());
+            }
+            return stats;
+        }
+    }
+
+    private static String value(String[] args, int index) {
+        if (index >= args.length) {
+            throw new IllegalArgumentException("Missing value for " + args[index - 1]);
+        }
+        return args[index];
+    }
+}
@@ -0,0 +1,476 @@
+package ch.aarboard.vamm.ldif;
+
+import ch.aarboard.vamm.data.entries.JammMailAccount;
+import ch.aarboard.vamm.data.entries.JammMailAlias;
+import ch.aarboard.vamm.data.entries.JammPostmaster;
+import ch.aarboard.vamm.data.entries.JammVirtualDomain;
+import ch.aarboard.vamm.data.interfaces.IJammEntry;
+import ch.aarboard.vamm.ldap.LdapSessionManager;
+import ch.aarboard.vamm.security.BreachedPasswordBlocklist;
+import ch.aarboard.vamm.security.PasswordHashingService;
+import ch.aarboard.vamm.utils.LdapUtils;
+import ch.aarboard.vamm.utils.MailUtils;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.ldap.core.DirContextAdapter;
+import org.springframework.ldap.core.LdapAttributes;
+import org.springframework.ldap.core.LdapTemplate;
+import org.springframework.ldap.ldif.parser.LdifParser;
+import org.springframework.ldap.odm.core.ObjectDirectoryMapper;
+import org.springframework.stereotype.Component;
+
+import javax.naming.Name;
+import javax.naming.NameAlreadyBoundException;
+import javax.naming.NamingEnumeration;
+import javax.naming.NamingException;
+import javax.naming.directory.Attribute;
+import javax.naming.directory.Attributes;
+import javax.naming.directory.BasicAttribute;
+import javax.naming.directory.BasicAttributes;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Streams domains, accounts, aliases and postmasters from an LDIF file into the directory.
+ *
+ * The file is parsed record by record with {@link LdifParser}
+ * and cut into batches. Each batch is validated on the worker pool, its plain text passwords are
+ * checked against the {@link BreachedPasswordBlocklist} and hashed through the
+ * {@link PasswordHashingService}, so an import never takes more hashing threads than interactive
+ * password changes may. The batch is then written on one connection by the
+ * writer pool; several batches are in flight at once.
+ * The parser blocks when {@code 2 * write-concurrency} batches are pending, so memory stays
+ * constant regardless of the file size.
+ *
+ * DNs are rebuilt from the record's attributes with {@link LdapUtils}, the import does not depend
+ * on the base DN of the exporting server. Batches of domains act as barriers: later batches are
+ * only written once the domains are, so accounts never arrive before their parent. Entries of
+ * other object classes (e.g. the {@code o=hosting} base) are skipped.
+ *
+ * A failing record is reported in the {@link BulkJob.Result} and does not stop the import.
+ */
+@Component
+public class LdifImporter {
+
+    private static final Logger log = LoggerFactory.getLogger(LdifImporter.class);
+
+    private final LdapSessionManager ldapSessionManager;
+    private final BreachedPasswordBlocklist passwordBlocklist;
+    private final PasswordHashingService passwordHashingService;
+    private final int batchSize;
+    private final int writeConcurrency;
+    private final ExecutorService workers;
+    private final ExecutorService writers;
+
+    @Autowired
+    public LdifImporter(LdapSessionManager ldapSessionManager,
+                        BreachedPasswordBlocklist passwordBlocklist,
+                        PasswordHashingService passwordHashingService,
+                        @Value("${jamm.ldif.import.workers:4}") int workerCount,
+                        @Value("${jamm.ldif.import.write-concurrency:4}") int writeConcurrency,
+                        @Value("${jamm.ldif.import.batch-size:100}") int batchSize) {
+        this.ldapSessionManager = ldapSessionManager;
+        this.passwordBlocklist = passwordBlocklist;
+        this.passwordHashingService = passwordHashingService;
+        this.batchSize = Math.max(1, batchSize);
+        this.writeConcurrency = Math.max(1, writeConcurrency);
+        this.workers = BulkJob.daemonPool("ldif-import-", Math.max(1, workerCount));
+        this.writers = BulkJob.daemonPool("ldif-write-", this.writeConcurrency);
+    }
+
+    /**
+     * Import a file with the current user's credentials. Runs in the calling thread,
+     * interrupting it stops after the batches in flight.
+     *
+     * @param file     The LDIF file
+     * @param listener Receives progress after every written batch
+     * @return the outcome, errors name the record's position in the file and its DN as given there
+     * @throws CancellationException if the calling thread was interrupted
+     * @throws IOException           if the file cannot be read
+     */
+    public BulkJob.Result importFile(Path file, BulkJob.ProgressListener listener) throws IOException {
+        long started = System.currentTimeMillis();
+        long total = countRecords(file);
+        LdapTemplate template = ldapSessionManager.createUserLdapTemplate();
+        ImportRun run = new ImportRun(template, total, listener);
+
+        LdifParser parser = new LdifParser(new FileSystemResource(file));
+        long number = 0;
+        parser.open();
+        try {
+            List<ParsedRecord> batch = new ArrayList<>(batchSize);
+            boolean domainBatch = false;
+
+            while (parser.hasMoreRecords()) {
+                if (Thread.currentThread().isInterrupted()) {
+                    run.cancel();
+                }
+
+                number++;
+                ParsedRecord record;
+                try {
+                    record = new ParsedRecord(number, parser.getRecord());
+                } catch (RuntimeException e) {
+                    // Malformed record, the parser continues with the next one
+                    run.fail(new ParsedRecord(number, null), "Invalid LDIF record: " + e.getMessage());
+                    continue;
+                }
+                if (record.attributes() == null) {
+                    number--; // Trailing comments or separators, not a record
+                    continue;
+                }
+
+                boolean isDomain = EntryType.of(record.attributes()) == EntryType.DOMAIN;
+                if (!batch.isEmpty() && (batch.size() >= batchSize || isDomain != domainBatch)) {
+                    run.dispatch(batch, domainBatch);
+                    batch = new ArrayList<>(batchSize);
+                }
+                domainBatch = isDomain;
+                batch.add(record);
+            }
+            if (!batch.isEmpty()) {
+                run.dispatch(batch, domainBatch);
+            }
+            run.awaitCompletion();
+        } finally {
+            parser.close();
+        }
+
+        BulkJob.Result result = run.tally.result(number, false, System.currentTimeMillis() - started);
+        log.info("Imported {}: {} created, {} skipped, {} failed in {} ms", file.getFileName(), result.created(),
+                result.skipped(), result.failed(), result.durationMillis());
+        return result;
+    }
+
+    /**
+     * Count the records up front for the progress total. A plain line scan, cheap next to the writes.
+     */
+    private static long countRecords(Path file) throws IOException {
+        long count = 0;
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.regionMatches(true, 0, "dn:", 0, 3)) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        workers.shutdownNow();
+        writers.shutdownNow();
+    }
+
+    private enum EntryType {
+        DOMAIN, ACCOUNT, ALIAS, POSTMASTER, OTHER;
+
+        static EntryType of(Attributes attributes) {
+            Attribute objectClasses = attributes.get("objectClass");
+            if (objectClasses == null) {
+                return OTHER;
+            }
+            // Postmasters carry JammMailAlias as well, check them first
+            if (hasValue(objectClasses, LdapUtils.JAMM_POSTMASTER)) {
+                return POSTMASTER;
+            }
+            if (hasValue(objectClasses, LdapUtils.JAMM_VIRTUAL_DOMAIN)) {
+                return DOMAIN;
+            }
+            if (hasValue(objectClasses, LdapUtils.JAMM_MAIL_ACCOUNT)) {
+                return ACCOUNT;
+            }
+            if (hasValue(objectClasses, LdapUtils.JAMM_MAIL_ALIAS)) {
+                return ALIAS;
+            }
+            return OTHER;
+        }
+
+        private static boolean hasValue(Attribute attribute, String value) {
+            try {
+                NamingEnumeration<?> values = attribute.getAll();
+                while (values.hasMore()) {
+                    if (value.equalsIgnoreCase(String.valueOf(values.next()))) {
+                        return true;
+                    }
+                }
+            } catch (NamingException e) {
+                return false;
+            }
+            return false;
+        }
+    }
+
+    private record ParsedRecord(long number, LdapAttributes attributes) {
+
+        String dn() {
+            return attributes == null || attributes.getName() == null ? null : attributes.getName().toString();
+        }
+    }
+
+    /**
+     * A validated record ready to be written, or the reason it cannot be
+     */
+    private record PreparedEntry(ParsedRecord record, Name dn, Object entity, String error) {
+    }
+
+    /**
+     * State of one import call
+     */
+    private final class ImportRun {
+
+        private final LdapTemplate template;
+        private final ObjectDirectoryMapper odm;
+        private final long total;
+        private final BulkJob.ProgressListener listener;
+
+        private final int maxInFlight = writeConcurrency * 2;
+        private final Semaphore inFlight = new Semaphore(maxInFlight);
+        private final AtomicBoolean stopped = new AtomicBoolean(false);
+        private CompletableFuture<Void> barrier = CompletableFuture.completedFuture(null);
+
+        private final BulkJob.Tally tally = new BulkJob.Tally();
+
+        private ImportRun(LdapTemplate template, long total, BulkJob.ProgressListener listener) {
+            this.template = template;
+            this.odm = template.getObjectDirectoryMapper();
+            this.total = total;
+            this.listener = listener;
+        }
+
+        void dispatch(List<ParsedRecord> batch, boolean domains) {
+            try {
+                inFlight.acquire();
+            } catch (InterruptedException e) {
+                cancel();
+            }
+
+            CompletableFuture<Void> written = CompletableFuture
+                    .supplyAsync(() -> prepare(batch), workers)
+                    .thenCombine(barrier, (prepared, ignored) -> prepared)
+                    .thenAcceptAsync(this::write, writers)
+                    .whenComplete((ignored, error) -> {
+                        if (error != null) {
+                            log.warn("LDIF batch failed: {}", error.getMessage());
+                            batch.forEach(r -> fail(r, "Batch failed: " + error.getMessage()));
+                        }
+                        inFlight.release();
+                    });
+
+            if (domains) {
+                // A failed domain batch must not block the rest, its children fail on their own
+                barrier = written.exceptionally(error -> null);
+            }
+        }
+
+        void awaitCompletion() {
+            try {
+                inFlight.acquire(maxInFlight);
+                inFlight.release(maxInFlight);
+            } catch (InterruptedException e) {
+                cancel();
+            }
+        }
+
+        /**
+         * Stop dispatching, let the batches in flight finish and report the cancellation
+         */
+        void cancel() {
+            stopped.set(true);
+            inFlight.acquireUninterruptibly(maxInFlight);
+            inFlight.release(maxInFlight);
+            Thread.currentThread().interrupt();
+            throw new CancellationException("LDIF import cancelled after " + tally.processed.get() + " records");
+        }
+
+        private List<PreparedEntry> prepare(List<ParsedRecord> batch) {
+            List<PreparedEntry> prepared = new ArrayList<>(batch.size());
+            for (ParsedRecord record : batch) {
+                if (stopped.get()) {
+                    break;
+                }
+                try {
+                    prepared.add(prepare(record));
+                } catch (RuntimeException e) {
+                    prepared.add(new PreparedEntry(record, null, null, e.getMessage()));
+                }
+            }
+            return prepared;
+        }
+
+        private PreparedEntry prepare(ParsedRecord record) {
+            Attributes attributes = textValues(record.attributes());
+            EntryType type = EntryType.of(attributes);
+            if (type != EntryType.OTHER) {
+                // The mapper only accepts entries with all object classes of the entity
+                attributes.get("objectClass").add("top");
+                if (attributes.get("lastChange") == null) {
+                    attributes.put("lastChange", String.valueOf(Instant.now().getEpochSecond()));
+                }
+            }
+
+            return switch (type) {
+                case DOMAIN -> {
+                    JammVirtualDomain domain = map(attributes, record, JammVirtualDomain.class);
+                    if (!MailUtils.isValidDomainName(domain.getJvd())) {
+                        throw new IllegalArgumentException("Invalid domain name: " + domain.getJvd());
+                    }
+                    yield entry(record, LdapUtils.domainDN(domain.getJvd()).build(), domain);
+                }
+                case ACCOUNT -> {
+                    JammMailAccount account = map(attributes, record, JammMailAccount.class);
+                    requireAddress(account.getMail());
+                    if (account.getMailbox() == null || account.getMailbox().isBlank()) {
+                        throw new IllegalArgumentException("Account without mailbox: " + account.getMail());
+                    }
+                    hashPlainPassword(account);
+                    yield entry(record, LdapUtils.mailDN(account.getMail()).build(), account);
+                }
+                case ALIAS -> {
+                    JammMailAlias alias = map(attributes, record, JammMailAlias.class);
+                    requireAddress(alias.getMail());
+                    if (alias.getMaildrop() == null || alias.getMaildrop().isEmpty()) {
+                        throw new IllegalArgumentException("Alias without destination: " + alias.getMail());
+                    }
+                    yield entry(record, LdapUtils.mailDN(alias.getMail()).build(), alias);
+                }
+                case POSTMASTER -> {
+                    JammPostmaster postmaster = map(attributes, record, JammPostmaster.class);
+                    requireAddress(postmaster.getMail());
+                    String domain = MailUtils.extractDomainFromMail(postmaster.getMail());
+                    yield entry(record, LdapUtils.postmasterDN(domain).build(), postmaster);
+                }
+                case OTHER -> {
+                    tally.skipped.incrementAndGet();
+                    yield new PreparedEntry(record, null, null, null);
+                }
+            };
+        }
+
+        private <T> T map(Attributes attributes, ParsedRecord record, Class<T> type) {
+            T entity = odm.mapFromLdapDataEntry(new DirContextAdapter(attributes, record.attributes().getName()), type);
+            if (entity == null) {
+                throw new IllegalArgumentException("Record does not match the object classes of " + type.getSimpleName());
+            }
+            return entity;
+        }
+
+        private PreparedEntry entry(ParsedRecord record, Name dn, IJammEntry entity) {
+            // A new entry, nothing to assert on
+            entity.setLoadedLastChange(null);
+            return new PreparedEntry(record, dn, entity, null);
+        }
+
+        private void write(List<PreparedEntry> batch) {
+            if (stopped.get()) {
+                return;
+            }
+
+            template.executeReadWrite(ctx -> {
+                for (PreparedEntry entry : batch) {
+                    if (entry.error() != null) {
+                        fail(entry.record(), entry.error());
+                        continue;
+                    }
+                    if (entry.entity() == null) {
+                        tally.processed.incrementAndGet(); // Skipped
+                        continue;
+                    }
+
+                    try {
+                        DirContextAdapter data = new DirContextAdapter(entry.dn());
+                        odm.mapToLdapDataEntry(entry.entity(), data);
+                        ctx.bind(entry.dn(), null, data.getAttributes());
+                        tally.created();
+                    } catch (NameAlreadyBoundException e) {
+                        fail(entry.record(), "Entry already exists: " + entry.dn());
+                    } catch (javax.naming.NameNotFoundException e) {
+                        fail(entry.record(), "Parent entry does not exist: " + entry.dn());
+                    } catch (NamingException e) {
+                        fail(entry.record(), e.getExplanation() != null ? e.getExplanation() : e.toString());
+                    } catch (RuntimeException e) {
+                        fail(entry.record(), e.getMessage());
+                    }
+                }
+                return null;
+            });
+
+            listener.onProgress(tally.progress(total));
+        }
+
+        void fail(ParsedRecord record, String message) {
+            tally.fail(record.number(), record.dn(), message);
+        }
+    }
+
+    private static void requireAddress(String mail) {
+        if (mail == null || !MailUtils.isValidAddress(mail)) {
+            throw new IllegalArgumentException("Invalid mail address: " + mail);
+        }
+    }
+
+    /**
+     * Values without a {@code {SCHEME}} prefix are plain text and get hashed before they are stored.
+     * The worker waits for the hashing executor, each worker has at most one hash queued there.
+     *
+     * @throws IllegalArgumentException if the plain text password is on the breached password blocklist,
+     *                                  the record is then reported as failed
+     */
+    private void hashPlainPassword(JammMailAccount account) {
+        String password = account.getUserPassword();
+        if (password == null || password.isEmpty()) {
+            return;
+        }
+        if (password.startsWith("{PLAIN}")) {
+            password = password.substring("{PLAIN}".length());
+        } else if (password.startsWith("{")) {
+            return;
+        }
+        if (passwordBlocklist.contains(password)) {
+            throw new IllegalArgumentException("Password appears in a list of breached passwords");
+        }
+        String lastChange = account.getLastChange();
+        account.setHashedPassword(password, passwordHashingService.hash(password));
+        account.setLastChange(lastChange);
+    }
+
+    /**
+     * The parser returns base64 encoded values as byte arrays, the entities only have text attributes
+     */
+    private static Attributes textValues(Attributes source) {
+        Attributes target = new BasicAttributes(true);
+        try {
+            NamingEnumeration<? extends Attribute> all = source.getAll();
+            while (all.hasMore()) {
+                Attribute attribute = all.next();
+                BasicAttribute copy = new BasicAttribute(attribute.getID());
+                NamingEnumeration<?> values = attribute.getAll();
+                while (values.hasMore()) {
+                    Object value = values.next();
+                    copy.add(value instanceof byte[] bytes ? new String(bytes, StandardCharsets.UTF_8) : value);
+                }
+                target.put(copy);
+            }
+        } catch (NamingException e) {
+            throw new IllegalArgumentException("Unreadable record: " + e.getMessage(), e);
+        }
+        return target;
+    }
+}
@@ -0,0 +1,254 @@
+package ch.aarboard.vamm.monitoring;
+
+import ch.aarboard.vamm.ldap.LdapOperation;
+import ch.aarboard.vamm.ldap.LdapOperationObserver;
+import com.unboundid.ldap.sdk.Filter;
+import com.unboundid.ldap.sdk.LDAPException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Profiles the searches sent to the directory by the shape of their filter, the filter with its
+ * values replaced by {@code ?}: {@code (&(objectClass=JammMailAccount)(mail=*term*))} is counted as
+ * {@code (&(mail=*?*)(objectClass=JammMailAccount))}. Object class values are kept, they tell the
+ * entity apart.
+ *
+ * Searches slower than {@code jamm.ldap.slow-query-threshold} milliseconds are logged to the
+ * {@code ch.aarboard.vamm.monitoring.FilterProfiler.slow} logger, by their shape: the values are
+ * mail addresses and search terms of the users.
+ *
+ * The actuator endpoint {@code /actuator/ldapfilters} lists the shapes, most expensive first, and
+ * {@code /actuator/ldapfilters/indexes} suggests OpenLDAP {@code olcDbIndex} settings for the
+ * attributes that cost the most search time, with the match types they are searched by.
+ */
+@Component
+@Endpoint(id = "ldapfilters")
+public class FilterProfiler implements LdapOperationObserver {
+
+    private static final Logger slowLog = LoggerFactory.getLogger(FilterProfiler.class.getName() + ".slow");
+
+    /** Shapes beyond this are counted together, a bug building filters from values must not fill the heap */
+    static final int MAX_SHAPES = 1000;
+    static final String OTHER_SHAPES = "(other)";
+
+    private final long slowNanos;
+    private final String databaseDn;
+    private final int maxIndexes;
+    private final Instant since = Instant.now();
+
+    private final Map<String, ShapeStats> shapes = new ConcurrentHashMap<>();
+    private final Map<String, AttributeStats> attributes = new ConcurrentHashMap<>();
+
+    /**
+     * What was seen of one filter shape
+     *
+     * @param meanMillis Mean time including reading the results
+     */
+    public record ShapeReport(String shape, long searches, double totalMillis, double meanMillis, double maxMillis,
+                              long results, long slow) {
+    }
+
+    private static final class ShapeStats {
+        private final LongAdder searches = new LongAdder();
+        private final LongAdder nanos = new LongAdder();
+        private final AtomicLong maxNanos = new AtomicLong();
+        private final LongAdder results = new LongAdder();
+        private final LongAdder slow = new LongAdder();
+    }
+
+    private static final class AttributeStats {
+        private final LongAdder nanos = new LongAdder();
+        private final Map<String, LongAdder> matches = new ConcurrentHashMap<>();
+    }
+
+    public FilterProfiler(@Value("${jamm.ldap.slow-query-threshold:500}") long slowQueryThreshold,
+                          @Value("${jamm.ldap.profiler.database-dn:olcDatabase={1}mdb,cn=config}") String databaseDn,
+                          @Value("${jamm.ldap.profiler.max-indexes:10}") int maxIndexes) {
+        this.slowNanos = TimeUnit.MILLISECONDS.toNanos(slowQueryThreshold);
+        this.databaseDn = databaseDn;
+        this.maxIndexes = maxIndexes;
+    }
+
+    @Override
+    public void completed(LdapOperation operation) {
+        if (operation.type() != LdapOperation.Type.SEARCH || operation.filter() == null) {
+            return;
+        }
+        Shape shape = shape(operation.filter());
+        boolean slow = operation.nanos() >= slowNanos;
+
+        ShapeStats stats = shapes.get(shape.text());
+        if (stats == null) {
+            stats = shapes.size() < MAX_SHAPES
+                    ? shapes.computeIfAbsent(shape.text(), s -> new ShapeStats())
+                    : shapes.computeIfAbsent(OTHER_SHAPES, s -> new ShapeStats());
+        }
+        stats.searches.increment();
+        stats.nanos.add(operation.nanos());
+        stats.maxNanos.accumulateAndGet(operation.nanos(), Math::max);
+        stats.results.add(operation.results());
+        if (slow) {
+            stats.slow.increment();
+            slowLog.warn("Slow LDAP search took {} ms, {} results: filter {}",
+                    TimeUnit.NANOSECONDS.toMillis(operation.nanos()), operation.results(), shape.text());
+        }
+
+        // Each attribute is charged the whole search, the server may need any of them to narrow it down
+        shape.matches().forEach((attribute, matches) -> {
+            AttributeStats attributeStats = attributes.computeIfAbsent(attribute, a -> new AttributeStats());
+            attributeStats.nanos.add(operation.nanos());
+            for (String match : matches) {
+                attributeStats.matches.computeIfAbsent(match, m -> new LongAdder()).increment();
+            }
+        });
+    }
+
+    /**
+     * The filter shapes seen, most total time first
+     */
+    @ReadOperation
+    public List<ShapeReport> shapes() {
+        return shapes.entrySet().stream()
+                .map(e -> {
+                    ShapeStats stats = e.getValue();
+                    long searches = stats.searches.sum();
+                    long nanos = stats.nanos.sum();
+                    return new ShapeReport(e.getKey(), searches, nanos / 1e6, searches == 0 ? 0 : nanos / 1e6 / searches,
+                            stats.maxNanos.get() / 1e6, stats.results.sum(), stats.slow.sum());
+                })
+                .sorted(Comparator.comparingDouble(ShapeReport::totalMillis).reversed())
+                .toList();
+    }
+
+    /**
+     * @param report Only {@code indexes} is known
+     * @return LDIF modifying the database's {@code olcDbIndex}, or null to answer 404
+     */
+    @ReadOperation(produces = "text/plain")
+    public String report(@Selector String report) {
+        return "indexes".equals(report) ? indexLdif() : null;
+    }
+
+    /**
+     * Suggested {@code olcDbIndex} values for the attributes that cost the most search time, as
+     * LDIF to apply with {@code ldapmodify -c -Y EXTERNAL -H ldapi:///}. Each index is a change of
+     * its own, so one that exists already is rejected by the server without the others. The object
+     * class is left out, every OpenLDAP database indexes it.
+     */
+    public String indexLdif() {
+        List<Map.Entry<String, AttributeStats>> hottest = attributes.entrySet().stream()
+                .filter(e -> !"objectclass".equals(e.getKey()))
+                .sorted(Comparator.comparingLong((Map.Entry<String, AttributeStats> e) -> e.getValue().nanos.sum()).reversed())
+                .limit(maxIndexes)
+                .toList();
+
+        StringBuilder ldif = new StringBuilder();
+        ldif.append("# Suggested indexes from ").append(shapes.values().stream().mapToLong(s -> s.searches.sum()).sum())
+                .append(" searches since ").append(since).append(", most search time first\n");
+        for (Map.Entry<String, AttributeStats> entry : hottest) {
+            Map<String, Long> matches = new TreeMap<>();
+            entry.getValue().matches.forEach((match, count) -> matches.put(match, count.sum()));
+            ldif.append("# ").append(entry.getKey()).append(": ")
+                    .append(String.format(Locale.ROOT, "%.1f", entry.getValue().nanos.sum() / 1e6)).append(" ms, ")
+                    .append(matches).append('\n');
+        }
+        if (hottest.isEmpty()) {
+            return ldif.toString();
+        }
+
+        for (Map.Entry<String, AttributeStats> entry : hottest) {
+            ldif.append('\n');
+            ldif.append("dn: ").append(databaseDn).append('\n');
+            ldif.append("changetype: modify\n");
+            ldif.append("add: olcDbIndex\n");
+            ldif.append("olcDbIndex: ").append(entry.getKey()).append(' ')
+                    .append(String.join(",", new TreeMap<>(entry.getValue().matches).keySet())).append('\n');
+        }
+        return ldif.toString();
+    }
+
+    /**
+     * A normalized filter and the index match types it uses per attribute
+     *
+     * @param matches Lower case attribute name to {@code eq}, {@code sub}, {@code pres} or {@code approx}
+     */
+    record Shape(String text, Map<String, List<String>> matches) {
+    }
+
+    static Shape shape(String filter) {
+        try {
+            Map<String, List<String>> matches = new TreeMap<>();
+            String text = shape(Filter.create(filter), matches);
+            return new Shape(text, matches);
+        } catch (LDAPException e) {
+            return new Shape(filter, Map.of());
+        }
+    }
+
+    private static String shape(Filter filter, Map<String, List<String>> matches) {
+        String attribute = filter.getAttributeName();
+        return switch (filter.getFilterType()) {
+            case Filter.FILTER_TYPE_AND, Filter.FILTER_TYPE_OR -> {
+                String[] components = Arrays.stream(filter.getComponents()).map(c -> shape(c, matches)).sorted()
+                        .toArray(String[]::new);
+                yield "(" + (filter.getFilterType() == Filter.FILTER_TYPE_AND ? "&" : "|") + String.join("", components) + ")";
+            }
+            case Filter.FILTER_TYPE_NOT -> "(!" + shape(filter.getNOTComponent(), matches) + ")";
+            case Filter.FILTER_TYPE_EQUALITY -> {
+                match(matches, attribute, "eq");
+                yield "(" + attribute + "=" + ("objectClass".equalsIgnoreCase(attribute) ? filter.getAssertionValue() : "?") + ")";
+            }
+            case Filter.FILTER_TYPE_SUBSTRING -> {
+                match(matches, attribute, "sub");
+                yield "(" + attribute + "=" + (filter.getSubInitialString() != null ? "?" : "") + "*"
+                        + (filter.getSubAnyStrings().length > 0 ? "?*" : "")
+                        + (filter.getSubFinalString() != null ? "?" : "") + ")";
+            }
+            case Filter.FILTER_TYPE_PRESENCE -> {
+                // Every entry has an object class, the server answers that without an index
+                if (!"objectClass".equalsIgnoreCase(attribute)) {
+                    match(matches, attribute, "pres");
+                }
+                yield "(" + attribute + "=*)";
+            }
+            case Filter.FILTER_TYPE_GREATER_OR_EQUAL -> {
+                match(matches, attribute, "eq");
+                yield "(" + attribute + ">=?)";
+            }
+            case Filter.FILTER_TYPE_LESS_OR_EQUAL -> {
+                match(matches, attribute, "eq");
+                yield "(" + attribute + "<=?)";
+            }
+            case Filter.FILTER_TYPE_APPROXIMATE_MATCH -> {
+                match(matches, attribute, "approx");
+                yield "(" + attribute + "~=?)";
+            }
+            default -> "(" + (attribute != null ? attribute : "") + ":" + filter.getMatchingRuleID() + ":=?)";
+        };
+    }
+
+    private static void match(Map<String, List<String>> matches, String attribute, String match) {
+        List<String> types = matches.computeIfAbsent(attribute.toLowerCase(Locale.ROOT), a -> new ArrayList<>());
+        if (!types.contains(match)) {
+            types.add(match);
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package ch.aarboard.vamm.monitoring;
+
+import ch.aarboard.vamm.ldap.LdapOperation;
+import ch.aarboard.vamm.ldap.LdapOperationObserver;
+import com.vaadin.flow.router.Route;
+import com.vaadin.flow.server.ServiceInitEvent;
+import com.vaadin.flow.server.VaadinServiceInitListener;
+import org.springframework.stereotype.Component;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Emits Java Flight Recorder events for every LDAP request ({@link LdapRequestEvent}) and every
+ * navigation to a view ({@link ViewLoadEvent}), so a recording of a slow production instance
+ * shows which views sent which requests. Summarise a recording with {@link FlightRecordingSummary}.
+ *
+ * The view load starts with the UI's before enter listeners, before the view is created, and ends
+ * when the navigation completed. LDAP requests made on the same thread in between are counted for
+ * the view and carry its route. Views load their data in the background, so work handed to another
+ * thread takes the view load along with {@link #fork()}; the view load then ends when the navigation
+ * and all of its background work completed.
+ *
+ * Nothing is done while no recording is running.
+ */
+@Component
+public class FlightRecorderEvents implements LdapOperationObserver, VaadinServiceInitListener {
+
+    /** The view being loaded on this thread */
+    private static final ThreadLocal<ViewLoad> CURRENT = new ThreadLocal<>();
+
+    private static final class ViewLoad {
+        private final ViewLoadEvent event;
+        private final AtomicInteger calls = new AtomicInteger();
+        private final AtomicLong nanos = new AtomicLong();
+        /** The navigation itself and each forked background task that did not complete yet */
+        private final AtomicInteger pending = new AtomicInteger(1);
+
+        private ViewLoad(ViewLoadEvent event) {
+            this.event = event;
+        }
+
+        private void release() {
+            if (pending.decrementAndGet() > 0) {
+                return;
+            }
+            event.end();
+            if (event.shouldCommit()) {
+                event.ldapCalls = calls.get();
+                event.ldapTime = nanos.get();
+                event.commit();
+            }
+        }
+    }
+
+    /**
+     * The view load of the thread that called {@link #fork()}, carried over to a background task.
+     * The view load does not end before the fork is closed.
+     */
+    public static final class Fork implements AutoCloseable {
+
+        private static final Fork NONE = new Fork(null);
+
+        private final ViewLoad load;
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        private Fork(ViewLoad load) {
+            this.load = load;
+        }
+
+        /**
+         * Run the task with the LDAP requests it makes counted for the view load
+         */
+        public void run(Runnable task) {
+            if (load == null) {
+                task.run();
+                return;
+            }
+            ViewLoad previous = CURRENT.get();
+            CURRENT.set(load);
+            try {
+                task.run();
+            } finally {
+                if (previous != null) {
+                    CURRENT.set(previous);
+                } else {
+                    CURRENT.remove();
+                }
+            }
+        }
+
+        /**
+         * Release the view load, also when the task never ran. Closing more than once has no effect.
+         */
+        @Override
+        public void close() {
+            if (load != null && closed.compareAndSet(false, true)) {
+                load.release();
+            }
+        }
+    }
+
+    @Override
+    public void serviceInit(ServiceInitEvent event) {
+        event.getSource().addUIInitListener(init -> {
+            init.getUI().addBeforeEnterListener(enter -> viewStarted(route(enter.getNavigationTarget()),
+                    enter.getRouteParameters().get("domain").orElse(null)));
+            init.getUI().addAfterNavigationListener(after -> viewFinished());
+        });
+    }
+
+    /**
+     * Start recording a view load on this thread, replacing one that never finished, for example
+     * because the navigation was rerouted
+     */
+    static void viewStarted(String route, String domain) {
+        ViewLoadEvent event = new ViewLoadEvent();
+        if (!event.isEnabled()) {
+            CURRENT.remove();
+            return;
+        }
+        event.route = route;
+        event.domain = domain;
+        event.begin();
+        CURRENT.set(new ViewLoad(event));
+    }
+
+    static void viewFinished() {
+        ViewLoad load = CURRENT.get();
+        if (load == null) {
+            return;
+        }
+        CURRENT.remove();
+        load.release();
+    }
+
+    /**
+     * Carry the view being loaded on this thread over to a background task. Returns a fork that does
+     * nothing if no view is being loaded.
+     */
+    public static Fork fork() {
+        ViewLoad load = CURRENT.get();
+        if (load == null) {
+            return Fork.NONE;
+        }
+        load.pending.incrementAndGet();
+        return new Fork(load);
+    }
+
+    @Override
+    public void completed(LdapOperation operation) {
+        ViewLoad load = CURRENT.get();
+        if (load != null) {
+            load.calls.incrementAndGet();
+            load.nanos.addAndGet(operation.nanos());
+        }
+
+        LdapRequestEvent event = new LdapRequestEvent();
+        if (event.isEnabled()) {
+            event.type = operation.type().name().toLowerCase(Locale.ROOT);
+            event.baseDn = operation.dn();
+            event.filter = operation.filter();
+            event.results = operation.results();
+            event.bytes = operation.bytes();
+            event.elapsed = operation.nanos();
+            event.failure = operation.failed() ? operation.failure().getClass().getSimpleName() : null;
+            event.route = load != null ? load.event.route : null;
+            event.commit();
+        }
+    }
+
+    static String route(Class<?> view) {
+        Route route = view.getAnnotation(Route.class);
+        return route != null ? route.value() : view.getSimpleName();
+    }
+}
@@ -0,0 +1,171 @@
+package ch.aarboard.vamm.monitoring;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Summarises the LDAP cost per route from a flight recording with the events of
+ * {@link FlightRecorderEvents}:
+ *
+ * <pre>
+ * jcmd &lt;pid&gt; JFR.start name=vamm duration=10m filename=vamm.jfr
+ * java -cp vamm.jar -Dloader.main=ch.aarboard.vamm.monitoring.FlightRecordingSummary \
+ *     org.springframework.boot.loader.launch.PropertiesLauncher vamm.jfr
+ * </pre>
+ *
+ * Routes are sorted by the total time of their LDAP requests. Requests made outside of a view
+ * load, by jobs or the login for example, are listed as {@value #NO_ROUTE}.
+ */
+public final class FlightRecordingSummary {
+
+    static final String NO_ROUTE = "(no view)";
+
+    private static final String USAGE = """
+            Usage: FlightRecordingSummary <recording.jfr>
+            """;
+
+    /**
+     * Everything recorded for one route
+     */
+    static final class RouteCost {
+        private final String route;
+        private final List<Long> loadNanos = new ArrayList<>();
+        private long loadCalls;
+        private long requests;
+        private long requestNanos;
+        private long results;
+        private long bytes;
+        private long failures;
+        private final Map<String, Long> requestsByType = new TreeMap<>();
+
+        private RouteCost(String route) {
+            this.route = route;
+        }
+
+        String route() {
+            return route;
+        }
+
+        int loads() {
+            return loadNanos.size();
+        }
+
+        /** LDAP calls per load as counted by the view load events */
+        double callsPerLoad() {
+            return loads() == 0 ? 0 : (double) loadCalls / loads();
+        }
+
+        long loadPercentile(double percentile) {
+            if (loadNanos.isEmpty()) {
+                return 0;
+            }
+            List<Long> sorted = loadNanos.stream().sorted().toList();
+            return sorted.get((int) Math.min(sorted.size() - 1, Math.ceil(percentile * sorted.size()) - 1));
+        }
+
+        long requests() {
+            return requests;
+        }
+
+        long requestNanos() {
+            return requestNanos;
+        }
+
+        long results() {
+            return results;
+        }
+
+        long bytes() {
+            return bytes;
+        }
+
+        long failures() {
+            return failures;
+        }
+
+        Map<String, Long> requestsByType() {
+            return requestsByType;
+        }
+    }
+
+    private FlightRecordingSummary() {
+    }
+
+    public static void main(String[] args) {
+        if (args.length != 1) {
+            System.err.print(USAGE);
+            System.exit(2);
+            return;
+        }
+        try {
+            print(summarize(Path.of(args[0])), System.out);
+        } catch (IOException e) {
+            System.err.println("Reading " + args[0] + " failed: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Read a recording, most expensive route first
+     */
+    static List<RouteCost> summarize(Path recording) throws IOException {
+        Map<String, RouteCost> routes = new LinkedHashMap<>();
+        try (RecordingFile file = new RecordingFile(recording)) {
+            while (file.hasMoreEvents()) {
+                RecordedEvent event = file.readEvent();
+                switch (event.getEventType().getName()) {
+                    case ViewLoadEvent.NAME -> {
+                        RouteCost cost = routes.computeIfAbsent(route(event), RouteCost::new);
+                        cost.loadNanos.add(event.getDuration().toNanos());
+                        cost.loadCalls += event.getInt("ldapCalls");
+                    }
+                    case LdapRequestEvent.NAME -> {
+                        RouteCost cost = routes.computeIfAbsent(route(event), RouteCost::new);
+                        cost.requests++;
+                        cost.requestNanos += event.getLong("elapsed");
+                        cost.results += event.getLong("results");
+                        cost.bytes += event.getLong("bytes");
+                        if (event.getString("failure") != null) {
+                            cost.failures++;
+                        }
+                        cost.requestsByType.merge(event.getString("type"), 1L, Long::sum);
+                    }
+                    default -> {
+                    }
+                }
+            }
+        }
+        return routes.values().stream()
+                .sorted(Comparator.comparingLong(RouteCost::requestNanos).reversed())
+                .toList();
+    }
+
+    private static String route(RecordedEvent event) {
+        String route = event.getString("route");
+        return route != null ? route : NO_ROUTE;
+    }
+
+    static void print(List<RouteCost> costs, PrintStream out) {
+        out.printf("%-36s %6s %9s %9s %10s %9s %10s %8s %10s %8s  %s%n", "route", "loads", "p50 ms", "p95 ms",
+                "calls/load", "requests", "ldap ms", "results", "kB", "failed", "by type");
+        for (RouteCost cost : costs) {
+            StringBuilder types = new StringBuilder();
+            cost.requestsByType().forEach((type, count) ->
+                    types.append(types.isEmpty() ? "" : ", ").append(type).append(' ').append(count));
+            out.printf("%-36s %6d %9.1f %9.1f %10.1f %9d %10.1f %8d %10.1f %8d  %s%n", cost.route(), cost.loads(),
+                    cost.loadPercentile(0.5) / 1e6, cost.loadPercentile(0.95) / 1e6, cost.callsPerLoad(),
+                    cost.requests(), cost.requestNanos() / 1e6, cost.results(), cost.bytes() / 1024.0,
+                    cost.failures(), types);
+        }
+    }
+}
@@ -0,0 +1,226 @@
+package ch.aarboard.vamm.monitoring;
+
+import ch.aarboard.vamm.ldap.LdapOperation;
+import ch.aarboard.vamm.ldap.LdapOperationObserver;
+import com.vaadin.flow.component.UI;
+import com.vaadin.flow.server.ServiceInitEvent;
+import com.vaadin.flow.server.VaadinRequest;
+import com.vaadin.flow.server.VaadinRequestInterceptor;
+import com.vaadin.flow.server.VaadinResponse;
+import com.vaadin.flow.server.VaadinServiceInitListener;
+import com.vaadin.flow.server.VaadinSession;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.StringJoiner;
+
+/**
+ * Counts the LDAP requests made while handling a Vaadin request and during a call into one of the
+ * management services, and warns when a budget is exceeded: {@code jamm.ldap.budget.request} and
+ * {@code jamm.ldap.budget.service}. Each time the counter {@code jamm.ldap.budget.exceeded},
+ * tagged with the {@code kind} (request, service) and {@code name} (the service method), is
+ * incremented.
+ *
+ * The warning breaks the requests down by type and names the most repeated filter shape, which
+ * points at the loop when one request per entry is made. Only requests on the calling thread are
+ * counted, work handed to an executor is not. Service calls made by another service are part of
+ * the outer call.
+ *
+ * Tests check a budget with {@link Scope#open}, every {@code LdapCallBudget} registered with the
+ * session manager counts for the scopes open on the thread.
+ */
+@Aspect
+@Component
+public class LdapCallBudget implements LdapOperationObserver, VaadinServiceInitListener {
+
+    private static final Logger log = LoggerFactory.getLogger(LdapCallBudget.class);
+
+    /** Filters remembered per scope to find the most repeated shape */
+    private static final int MAX_FILTERS = 200;
+
+    private static final ThreadLocal<Scope> CURRENT = new ThreadLocal<>();
+
+    private final MeterRegistry registry;
+    private final int requestBudget;
+    private final int serviceBudget;
+
+    /**
+     * The LDAP requests made on one thread between {@link #open} and {@link #close}, scopes nest
+     */
+    public static final class Scope implements AutoCloseable {
+        private final String kind;
+        private final String name;
+        private final int budget;
+        private final Scope parent;
+        private final long[] byType = new long[LdapOperation.Type.values().length];
+        private final Map<String, Integer> filters = new HashMap<>();
+        private long calls;
+        private boolean closed;
+
+        private Scope(String kind, String name, int budget, Scope parent) {
+            this.kind = kind;
+            this.name = name;
+            this.budget = budget;
+            this.parent = parent;
+        }
+
+        /**
+         * Start counting the LDAP requests of this thread
+         *
+         * @param kind   What is counted, like request or service
+         * @param budget The number of requests that is still fine
+         */
+        public static Scope open(String kind, String name, int budget) {
+            Scope scope = new Scope(kind, name, budget, CURRENT.get());
+            CURRENT.set(scope);
+            return scope;
+        }
+
+        private void record(LdapOperation operation) {
+            calls++;
+            byType[operation.type().ordinal()]++;
+            if (operation.filter() != null && (filters.size() < MAX_FILTERS || filters.containsKey(operation.filter()))) {
+                filters.merge(operation.filter(), 1, Integer::sum);
+            }
+        }
+
+        public long calls() {
+            return calls;
+        }
+
+        public int budget() {
+            return budget;
+        }
+
+        public boolean exceeded() {
+            return calls > budget;
+        }
+
+        /**
+         * The requests by type and the most repeated filter shape, for messages
+         */
+        public String summary() {
+            StringJoiner types = new StringJoiner(", ");
+            for (LdapOperation.Type type : LdapOperation.Type.values()) {
+                if (byType[type.ordinal()] > 0) {
+                    types.add(type.name().toLowerCase(Locale.ROOT) + " " + byType[type.ordinal()]);
+                }
+            }
+            Map<String, Integer> shapes = new HashMap<>();
+            filters.forEach((filter, count) -> shapes.merge(FilterProfiler.shape(filter).text(), count, Integer::sum));
+            return shapes.entrySet().stream()
+                    .max(Comparator.comparingInt(Map.Entry::getValue))
+                    .filter(e -> e.getValue() > 1)
+                    .map(e -> types + ", " + e.getValue() + " searches " + e.getKey())
+                    .orElse(types.toString());
+        }
+
+        /**
+         * Stop counting, the requests still count for the enclosing scopes
+         */
+        @Override
+        public void close() {
+            if (!closed) {
+                closed = true;
+                CURRENT.set(parent);
+            }
+        }
+    }
+
+    @Autowired
+    public LdapCallBudget(MeterRegistry registry,
+                          @Value("${jamm.ldap.budget.request:100}") int requestBudget,
+                          @Value("${jamm.ldap.budget.service:50}") int serviceBudget) {
+        this.registry = registry;
+        this.requestBudget = requestBudget;
+        this.serviceBudget = serviceBudget;
+    }
+
+    @Override
+    public void completed(LdapOperation operation) {
+        for (Scope scope = CURRENT.get(); scope != null; scope = scope.parent) {
+            scope.record(operation);
+        }
+    }
+
+    @Override
+    public void serviceInit(ServiceInitEvent event) {
+        event.addVaadinRequestInterceptor(new VaadinRequestInterceptor() {
+            @Override
+            public void requestStart(VaadinRequest request, VaadinResponse response) {
+                // Left over if a previous request on this thread never ended
+                CURRENT.remove();
+                Scope.open("request", "request", requestBudget);
+            }
+
+            @Override
+            public void handleException(VaadinRequest request, VaadinResponse response, VaadinSession session,
+                                        Exception exception) {
+            }
+
+            @Override
+            public void requestEnd(VaadinRequest request, VaadinResponse response, VaadinSession session) {
+                Scope scope = CURRENT.get();
+                if (scope != null && scope.kind.equals("request")) {
+                    scope.close();
+                    check(scope, location(request, session));
+                }
+            }
+        });
+    }
+
+    /**
+     * The view the request was for, {@code v-uiId} is sent with every request of a UI
+     */
+    private static String location(VaadinRequest request, VaadinSession session) {
+        String uiId = request.getParameter("v-uiId");
+        if (session != null && uiId != null) {
+            try {
+                UI ui = session.getUIById(Integer.parseInt(uiId));
+                if (ui != null) {
+                    return "/" + ui.getActiveViewLocation().getPathWithQueryParameters();
+                }
+            } catch (NumberFormatException e) {
+                // Not from a UI
+            }
+        }
+        return Objects.toString(request.getPathInfo(), "/");
+    }
+
+    @Around("execution(public * ch.aarboard.vamm.services.*Service.*(..))")
+    public Object countService(ProceedingJoinPoint call) throws Throwable {
+        for (Scope scope = CURRENT.get(); scope != null; scope = scope.parent) {
+            if (scope.kind.equals("service")) {
+                return call.proceed();
+            }
+        }
+        String name = call.getSignature().getDeclaringType().getSimpleName() + "." + call.getSignature().getName();
+        Scope scope = Scope.open("service", name, serviceBudget);
+        try {
+            return call.proceed();
+        } finally {
+            scope.close();
+            check(scope, name);
+        }
+    }
+
+    private void check(Scope scope, String description) {
+        if (scope.exceeded()) {
+            log.warn("{} {} made {} LDAP requests, budget {}: {}", scope.kind, description, scope.calls,
+                    scope.budget, scope.summary());
+            registry.counter("jamm.ldap.budget.exceeded", "kind", scope.kind, "name", scope.name).increment();
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package ch.aarboard.vamm.monitoring;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * One LDAP round trip, recorded by {@link FlightRecorderEvents}.
+ *
+ * The event is committed when the request has finished, its time is in {@code elapsed} and not in
+ * the event's own duration.
+ */
+@Name(LdapRequestEvent.NAME)
+@Label("LDAP Request")
+@Category({"VAMM", "LDAP"})
+@Description("A request sent to the directory")
+@StackTrace(false)
+class LdapRequestEvent extends jdk.jfr.Event {
+
+    static final String NAME = "ch.aarboard.vamm.LdapRequest";
+
+    @Label("Type")
+    String type;
+
+    @Label("Base DN")
+    @Description("The DN the request was made on, the search base for searches")
+    String baseDn;
+
+    @Label("Filter")
+    String filter;
+
+    @Label("Results")
+    long results;
+
+    @Label("Bytes")
+    @Description("Approximate size of the returned entries")
+    @DataAmount
+    long bytes;
+
+    @Label("Elapsed")
+    @Timespan(Timespan.NANOSECONDS)
+    long elapsed;
+
+    @Label("Failure")
+    String failure;
+
+    @Label("Route")
+    @Description("The route of the view being loaded on this thread, if any")
+    String route;
+}
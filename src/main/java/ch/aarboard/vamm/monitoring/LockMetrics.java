@@ -0,0 +1,57 @@
+package ch.aarboard.vamm.monitoring;
+
+import ch.aarboard.vamm.concurrent.StripedLockRegistry;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Publishes the contention counters of the {@link StripedLockRegistry}:
+ *
+ * <ul>
+ *     <li>{@code jamm.locks.acquisitions}, {@code jamm.locks.contended}: counters of stripes taken,
+ *     and of those that had to wait</li>
+ *     <li>{@code jamm.locks.wait}: counter of the time spent waiting, in seconds</li>
+ *     <li>{@code jamm.locks.wait.max}: longest single wait since startup</li>
+ *     <li>{@code jamm.locks.waiting}: threads waiting for a stripe right now</li>
+ *     <li>{@code jamm.locks.stripes}: number of stripes, to judge collisions by</li>
+ * </ul>
+ *
+ * The values are read from {@link StripedLockRegistry#getStats()} when the registry is scraped.
+ */
+@Component
+public class LockMetrics implements MeterBinder {
+
+    private final StripedLockRegistry locks;
+
+    public LockMetrics(StripedLockRegistry locks) {
+        this.locks = locks;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("jamm.locks.acquisitions", locks, l -> l.getStats().acquisitions())
+                .description("Lock stripes acquired")
+                .register(registry);
+        FunctionCounter.builder("jamm.locks.contended", locks, l -> l.getStats().contended())
+                .description("Lock stripe acquisitions that had to wait")
+                .register(registry);
+        FunctionCounter.builder("jamm.locks.wait", locks, l -> l.getStats().totalWaitNanos() / 1e9)
+                .description("Time spent waiting for lock stripes")
+                .baseUnit("seconds")
+                .register(registry);
+        TimeGauge.builder("jamm.locks.wait.max", locks, TimeUnit.NANOSECONDS, l -> l.getStats().maxWaitNanos())
+                .description("Longest wait for a lock stripe")
+                .register(registry);
+        Gauge.builder("jamm.locks.waiting", locks, l -> l.getStats().currentlyWaiting())
+                .description("Threads waiting for a lock stripe")
+                .register(registry);
+        Gauge.builder("jamm.locks.stripes", locks, StripedLockRegistry::getStripeCount)
+                .register(registry);
+    }
+}
@@ -0,0 +1,140 @@
+package ch.aarboard.vamm.monitoring;
+
+import ch.aarboard.vamm.config.LdapConfig;
+import ch.aarboard.vamm.ldap.LdapOperation;
+import ch.aarboard.vamm.ldap.LdapOperationObserver;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.stereotype.Component;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times every public method of the repositories and management services, and every LDAP request
+ * they send. Meters, all tagged with the {@code endpoint} (host:port of the directory):
+ *
+ * <ul>
+ *     <li>{@code jamm.repository}, {@code jamm.service}: timers by {@code operation} (the method),
+ *     {@code entity} (account, alias, postmaster, domain) and {@code outcome}</li>
+ *     <li>{@code jamm.repository.results}: entries returned by repository methods returning lists</li>
+ *     <li>{@code jamm.ldap.requests}: timer by request {@code type} and {@code outcome}</li>
+ *     <li>{@code jamm.ldap.errors}: counter by request {@code type} and {@code exception}</li>
+ * </ul>
+ *
+ * The repositories log and swallow LDAP errors, returning an empty result. To tell such a call
+ * from a genuinely empty one, the LDAP requests made during the call are watched: the outcome is
+ * {@code error} if one of them failed, other than with "no such object", or the method threw,
+ * {@code empty} for an empty Optional or collection and {@code success} otherwise.
+ */
+@Aspect
+@Component
+public class OperationMetrics implements LdapOperationObserver {
+
+    private static final double[] PERCENTILES = {0.5, 0.95, 0.99};
+
+    /** Failed requests seen on this thread, a call compares the count before and after */
+    private static final ThreadLocal<long[]> FAILURES = ThreadLocal.withInitial(() -> new long[1]);
+
+    private final MeterRegistry registry;
+    private final String endpoint;
+
+    public OperationMetrics(MeterRegistry registry, LdapConfig ldapConfig) {
+        this.registry = registry;
+        this.endpoint = endpoint(ldapConfig.getUrl());
+    }
+
+    static String endpoint(String url) {
+        try {
+            URI uri = URI.create(url);
+            return uri.getHost() + ":" + (uri.getPort() > 0 ? uri.getPort() : "ldaps".equals(uri.getScheme()) ? 636 : 389);
+        } catch (IllegalArgumentException e) {
+            return url;
+        }
+    }
+
+    @Around("execution(public * ch.aarboard.vamm.data.repositories.*Repository.*(..))")
+    public Object timeRepository(ProceedingJoinPoint call) throws Throwable {
+        return time("jamm.repository", call, true);
+    }
+
+    @Around("execution(public * ch.aarboard.vamm.services.*Service.*(..))")
+    public Object timeService(ProceedingJoinPoint call) throws Throwable {
+        return time("jamm.service", call, false);
+    }
+
+    private Object time(String name, ProceedingJoinPoint call, boolean countResults) throws Throwable {
+        String operation = call.getSignature().getName();
+        String entity = entity(call.getSignature().getDeclaringType().getSimpleName());
+        long failuresBefore = FAILURES.get()[0];
+        long started = System.nanoTime();
+        String outcome = "error";
+        try {
+            Object result = call.proceed();
+            if (FAILURES.get()[0] == failuresBefore) {
+                outcome = isEmpty(result) ? "empty" : "success";
+            }
+            if (countResults && result instanceof Collection<?> collection) {
+                DistributionSummary.builder(name + ".results")
+                        .tags("operation", operation, "entity", entity)
+                        .publishPercentileHistogram()
+                        .register(registry)
+                        .record(collection.size());
+            }
+            return result;
+        } finally {
+            timer(name, "operation", operation, "entity", entity, "outcome", outcome)
+                    .record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @Override
+    public void completed(LdapOperation operation) {
+        String type = operation.type().name().toLowerCase(Locale.ROOT);
+        String outcome = !operation.failed() ? "success" : operation.notFound() ? "not_found" : "error";
+        timer("jamm.ldap.requests", "type", type, "outcome", outcome)
+                .record(operation.nanos(), TimeUnit.NANOSECONDS);
+        if (outcome.equals("error")) {
+            FAILURES.get()[0]++;
+            registry.counter("jamm.ldap.errors", "type", type,
+                    "exception", operation.failure().getClass().getSimpleName(), "endpoint", endpoint).increment();
+        }
+    }
+
+    private Timer timer(String name, String... tags) {
+        return Timer.builder(name)
+                .tags(tags)
+                .tag("endpoint", endpoint)
+                .publishPercentiles(PERCENTILES)
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofMillis(1))
+                .maximumExpectedValue(Duration.ofSeconds(30))
+                .register(registry);
+    }
+
+    private static boolean isEmpty(Object result) {
+        return result instanceof Optional<?> optional && optional.isEmpty()
+                || result instanceof Collection<?> collection && collection.isEmpty();
+    }
+
+    static String entity(String type) {
+        if (type.contains("MailAccount")) {
+            return "account";
+        } else if (type.contains("MailAlias")) {
+            return "alias";
+        } else if (type.contains("Postmaster")) {
+            return "postmaster";
+        } else if (type.contains("VirtualDomain")) {
+            return "domain";
+        }
+        return type;
+    }
+}
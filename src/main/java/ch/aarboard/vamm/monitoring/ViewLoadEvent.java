@@ -0,0 +1,36 @@
+package ch.aarboard.vamm.monitoring;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Navigation to a view, from before entering it until the navigation completed, recorded by
+ * {@link FlightRecorderEvents}. Covers the view's constructor and {@code beforeEnter}.
+ */
+@Name(ViewLoadEvent.NAME)
+@Label("View Load")
+@Category({"VAMM", "Vaadin"})
+@Description("Navigation to a view and the LDAP requests it made")
+@StackTrace(false)
+class ViewLoadEvent extends jdk.jfr.Event {
+
+    static final String NAME = "ch.aarboard.vamm.ViewLoad";
+
+    @Label("Route")
+    @Description("The route template, like domain/:domain")
+    String route;
+
+    @Label("Domain")
+    String domain;
+
+    @Label("LDAP Calls")
+    int ldapCalls;
+
+    @Label("LDAP Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long ldapTime;
+}
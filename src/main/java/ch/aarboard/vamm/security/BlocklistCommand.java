@@ -0,0 +1,130 @@
+package ch.aarboard.vamm.security;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Converts a text list of SHA-1 hashes into the file read by {@link BreachedPasswordBlocklist}:
+ *
+ * <pre>
+ * java -cp vamm.jar -Dloader.main=ch.aarboard.vamm.security.BlocklistCommand \
+ *     org.springframework.boot.loader.launch.PropertiesLauncher \
+ *     --input pwned-passwords-sha1-ordered-by-hash.txt.gz --output breached.bin --record-bytes 8
+ * </pre>
+ *
+ * Each input line starts with the 40 hex digits of a hash, anything after a {@code :} (the
+ * Have I Been Pwned occurrence count) is ignored. The input must be sorted by hash; hashes that
+ * share the stored prefix are written once.
+ */
+public final class BlocklistCommand {
+
+    private static final String USAGE = """
+            Usage: BlocklistCommand --input <file|-> --output <file> [--record-bytes 20]
+            """;
+
+    private BlocklistCommand() {
+    }
+
+    public static void main(String[] args) {
+        String input = null;
+        Path output = null;
+        int recordBytes = BreachedPasswordBlocklist.SHA1_LENGTH;
+
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--input" -> input = value(args, ++i);
+                    case "--output" -> output = Path.of(value(args, ++i));
+                    case "--record-bytes" -> recordBytes = Integer.parseInt(value(args, ++i));
+                    default -> throw new IllegalArgumentException("Unknown option " + args[i]);
+                }
+            }
+            if (input == null || output == null) {
+                throw new IllegalArgumentException("--input and --output are required");
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.print(USAGE);
+            System.exit(2);
+            return;
+        }
+
+        try (InputStream in = open(input);
+             BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.US_ASCII), 1 << 16);
+             OutputStream out = new BufferedOutputStream(Files.newOutputStream(output), 1 << 16)) {
+            long count = convert(reader, out, recordBytes);
+            System.err.println("Wrote " + count + " entries of " + recordBytes + " bytes");
+        } catch (Exception e) {
+            System.err.println("Conversion failed: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Write the sorted hash prefixes of the lines
+     *
+     * @return the number of records written
+     * @throws IllegalArgumentException if a line is no hash or the lines are not sorted
+     */
+    static long convert(BufferedReader reader, OutputStream out, int recordBytes) throws IOException {
+        if (recordBytes < 1 || recordBytes > BreachedPasswordBlocklist.SHA1_LENGTH) {
+            throw new IllegalArgumentException("Record length must be between 1 and "
+                    + BreachedPasswordBlocklist.SHA1_LENGTH + ": " + recordBytes);
+        }
+
+        HexFormat hex = HexFormat.of();
+        byte[] previous = null;
+        long count = 0;
+        long lineNumber = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            line = line.strip();
+            if (line.isEmpty()) {
+                continue;
+            }
+            int end = line.indexOf(':');
+            String digits = end < 0 ? line : line.substring(0, end);
+            if (digits.length() != 2 * BreachedPasswordBlocklist.SHA1_LENGTH) {
+                throw new IllegalArgumentException("Line " + lineNumber + " is no SHA-1 hash");
+            }
+
+            byte[] record = hex.parseHex(digits, 0, 2 * recordBytes);
+            if (previous != null) {
+                int comparison = Arrays.compareUnsigned(previous, record);
+                if (comparison > 0) {
+                    throw new IllegalArgumentException("Line " + lineNumber + " is out of order, the input must be sorted by hash");
+                }
+                if (comparison == 0) {
+                    continue;
+                }
+            }
+            out.write(record);
+            previous = record;
+            count++;
+        }
+        return count;
+    }
+
+    private static InputStream open(String input) throws IOException {
+        InputStream in = "-".equals(input) ? System.in : Files.newInputStream(Path.of(input));
+        return input.endsWith(".gz") ? new GZIPInputStream(in, 1 << 16) : in;
+    }
+
+    private static String value(String[] args, int index) {
+        if (index >= args.length) {
+            throw new IllegalArgumentException("Missing value for " + args[index - 1]);
+        }
+        return args[index];
+    }
+}
@@ -0,0 +1,167 @@
+package ch.aarboard.vamm.security;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Check of new passwords against a local corpus of breached passwords, such as the Have I Been
+ * Pwned list.
+ *
+ * The file holds the SHA-1 hashes of the passwords (of their UTF-8 bytes), sorted ascending,
+ * each cut to the first {@code jamm.password.blocklist.record-bytes} bytes and stored back to
+ * back without separators. 8 bytes keep a list of a billion entries at 8 GB with practically no
+ * false positives. {@link BlocklistCommand} converts the text download into this format.
+ *
+ * The file is memory-mapped and binary searched, so it takes no heap and a check costs a SHA-1
+ * and a few dozen page reads that the OS page cache keeps hot. Without a configured file every
+ * password passes.
+ */
+@Component
+public class BreachedPasswordBlocklist {
+
+    private static final Logger log = LoggerFactory.getLogger(BreachedPasswordBlocklist.class);
+
+    static final int SHA1_LENGTH = 20;
+
+    /** A single mapping is limited to 2 GB, larger files are mapped in chunks */
+    private static final long MAX_CHUNK_BYTES = Integer.MAX_VALUE;
+
+    private static final ThreadLocal<MessageDigest> SHA1 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-1 is not available", e);
+        }
+    });
+
+    private final int recordBytes;
+    private final long chunkBytes;
+    private final long entries;
+    private final MappedByteBuffer[] chunks;
+
+    @Autowired
+    public BreachedPasswordBlocklist(@Value("${jamm.password.blocklist.file:}") String file,
+                                     @Value("${jamm.password.blocklist.record-bytes:20}") int recordBytes) {
+        this(file == null || file.isBlank() ? null : Path.of(file), recordBytes, MAX_CHUNK_BYTES);
+    }
+
+    /**
+     * @param file        The blocklist, null to accept every password
+     * @param recordBytes Length of each stored hash prefix
+     * @param maxChunk    Largest single mapping, smaller values are for tests
+     * @throws IllegalStateException if the file cannot be mapped or its size does not fit the record length
+     */
+    BreachedPasswordBlocklist(Path file, int recordBytes, long maxChunk) {
+        if (recordBytes < 1 || recordBytes > SHA1_LENGTH) {
+            throw new IllegalArgumentException("Record length must be between 1 and " + SHA1_LENGTH + ": " + recordBytes);
+        }
+        this.recordBytes = recordBytes;
+        // Records must not straddle two mappings
+        this.chunkBytes = Math.max(1, maxChunk / recordBytes) * recordBytes;
+
+        if (file == null) {
+            this.entries = 0;
+            this.chunks = new MappedByteBuffer[0];
+            return;
+        }
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size % recordBytes != 0) {
+                throw new IllegalStateException("Size of " + file + " is not a multiple of " + recordBytes + " bytes");
+            }
+            this.entries = size / recordBytes;
+            int chunkCount = (int) ((size + chunkBytes - 1) / chunkBytes);
+            this.chunks = new MappedByteBuffer[chunkCount];
+            for (int i = 0; i < chunkCount; i++) {
+                long offset = i * chunkBytes;
+                // The mapping stays valid after the channel is closed
+                chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, offset, Math.min(chunkBytes, size - offset));
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not map the password blocklist " + file, e);
+        }
+        log.info("Password blocklist {} with {} entries of {} bytes mapped", file, entries, recordBytes);
+    }
+
+    public boolean isEnabled() {
+        return entries > 0;
+    }
+
+    /**
+     * @return the number of hashes in the list
+     */
+    public long size() {
+        return entries;
+    }
+
+    /**
+     * @return true if the password is in the list
+     */
+    public boolean contains(String plainPassword) {
+        if (entries == 0 || plainPassword == null) {
+            return false;
+        }
+        MessageDigest digest = SHA1.get();
+        digest.reset();
+        return containsHash(digest.digest(plainPassword.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Reject a password from the list
+     *
+     * @throws IllegalArgumentException if the password is in the list
+     */
+    public void check(String plainPassword) {
+        if (contains(plainPassword)) {
+            throw new IllegalArgumentException("This password appears in a list of breached passwords, please choose another one");
+        }
+    }
+
+    /**
+     * Binary search over the records, comparing only the stored prefix of the hash
+     */
+    boolean containsHash(byte[] hash) {
+        long low = 0;
+        long high = entries - 1;
+        while (low <= high) {
+            long middle = (low + high) >>> 1;
+            int comparison = compare(middle, hash);
+            if (comparison < 0) {
+                low = middle + 1;
+            } else if (comparison > 0) {
+                high = middle - 1;
+            } else {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private int compare(long index, byte[] hash) {
+        long offset = index * recordBytes;
+        MappedByteBuffer chunk = chunks[(int) (offset / chunkBytes)];
+        int position = (int) (offset % chunkBytes);
+        for (int i = 0; i < recordBytes; i++) {
+            // Absolute reads do not touch the buffer position, the mapping is shared by all threads
+            int stored = chunk.get(position + i) & 0xff;
+            int wanted = hash[i] & 0xff;
+            if (stored != wanted) {
+                return stored - wanted;
+            }
+        }
+        return 0;
+    }
+}
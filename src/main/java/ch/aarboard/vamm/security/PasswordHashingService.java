@@ -0,0 +1,202 @@
+package ch.aarboard.vamm.security;
+
+import ch.aarboard.vamm.config.AsyncConfig;
+import ch.aarboard.vamm.utils.Argon2PasswordHasher;
+import ch.aarboard.vamm.utils.PasswordHasher;
+import ch.aarboard.vamm.utils.PasswordUtils;
+import ch.aarboard.vamm.utils.PasswordUtils.PasswordScheme;
+import ch.aarboard.vamm.utils.Pbkdf2PasswordHasher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+
+/**
+ * Configures the password scheme at startup and runs hashing on a bounded executor.
+ *
+ * If new passwords are hashed with PBKDF2 or Argon2, the work factors of that scheme are
+ * calibrated on this hardware so one hash takes about {@code jamm.password.target-ms}, but never
+ * drop below the OWASP recommendations. Fixed values can be configured instead. The configured
+ * hasher is registered with {@link PasswordUtils}, so entities and imports hash with it as well.
+ * The other schemes are only needed to verify existing hashes, which carry their own work
+ * factors, so they are neither calibrated nor reconfigured.
+ *
+ * Interactive paths hash through {@link #hash(String)}, which waits for a slot on the
+ * {@link AsyncConfig#PASSWORD_HASH_EXECUTOR}. A burst of expensive hashes therefore occupies at
+ * most that pool, not every request thread.
+ */
+@Service
+public class PasswordHashingService {
+
+    private static final Logger log = LoggerFactory.getLogger(PasswordHashingService.class);
+
+    private static final String CALIBRATION_PASSWORD = "calibration-password";
+
+    private final AsyncTaskExecutor executor;
+    private final int concurrency;
+    private final long timeoutMillis;
+    private final List<Calibration> calibrations = new ArrayList<>();
+
+    /**
+     * Outcome of calibrating one scheme
+     *
+     * @param parameters     The chosen work factors, as stored in the hash
+     * @param measuredMillis The time of one hash with these parameters
+     */
+    public record Calibration(PasswordScheme scheme, String parameters, double measuredMillis) {
+    }
+
+    public PasswordHashingService(@Qualifier(AsyncConfig.PASSWORD_HASH_EXECUTOR) AsyncTaskExecutor executor,
+                                  @Value("${jamm.password.scheme:SSHA}") String scheme,
+                                  @Value("${jamm.password.target-ms:100}") long targetMillis,
+                                  @Value("${jamm.password.timeout-ms:10000}") long timeoutMillis,
+                                  @Value("${jamm.password.pbkdf2.iterations:0}") int pbkdf2Iterations,
+                                  @Value("${jamm.password.argon2.memory-kib:19456}") int argon2MemoryKib,
+                                  @Value("${jamm.password.argon2.iterations:0}") int argon2Iterations,
+                                  @Value("${jamm.password.argon2.parallelism:1}") int argon2Parallelism) {
+        this.executor = executor;
+        this.concurrency = executor instanceof ThreadPoolTaskExecutor pool ? pool.getMaxPoolSize() : 1;
+        this.timeoutMillis = timeoutMillis;
+
+        PasswordScheme active = PasswordScheme.valueOf(scheme.trim().toUpperCase(Locale.ROOT).replace('-', '_'));
+        double targetNanos = TimeUnit.MILLISECONDS.toNanos(targetMillis);
+
+        if (active == PasswordScheme.PBKDF2_SHA512) {
+            Pbkdf2PasswordHasher pbkdf2 = pbkdf2Iterations > 0
+                    ? new Pbkdf2PasswordHasher(pbkdf2Iterations)
+                    : new Pbkdf2PasswordHasher(calibrate(targetNanos, 20_000, PasswordUtils.DEFAULT_PBKDF2_ITERATIONS,
+                            1_000, Pbkdf2PasswordHasher::new));
+            register(pbkdf2, "i=" + pbkdf2.getIterations(), targetMillis);
+        } else if (active == PasswordScheme.ARGON2) {
+            Argon2PasswordHasher argon2 = argon2Iterations > 0
+                    ? new Argon2PasswordHasher(argon2MemoryKib, argon2Iterations, argon2Parallelism)
+                    : new Argon2PasswordHasher(argon2MemoryKib, calibrate(targetNanos, 1, PasswordUtils.DEFAULT_ARGON2_ITERATIONS, 1,
+                            t -> new Argon2PasswordHasher(argon2MemoryKib, t, argon2Parallelism)), argon2Parallelism);
+            register(argon2, "m=" + argon2.getMemoryKib() + ",t=" + argon2.getIterations() + ",p=" + argon2.getParallelism(),
+                    targetMillis);
+        }
+
+        PasswordUtils.setDefaultScheme(active);
+        log.info("New passwords are hashed with {}", active);
+    }
+
+    /**
+     * Pick the work factor for a scheme whose cost grows linearly with it: time a hash at the
+     * probe factor and scale to the target.
+     *
+     * @param probe   Work factor to measure with, cheap enough to run a few times
+     * @param minimum Lowest factor ever chosen
+     * @param step    The result is rounded up to a multiple of this
+     * @param hasher  Creates a hasher for a work factor
+     */
+    static int calibrate(double targetNanos, int probe, int minimum, int step, IntFunction<PasswordHasher> hasher) {
+        PasswordHasher probeHasher = hasher.apply(probe);
+        long fastest = Long.MAX_VALUE;
+        // The first runs include class loading and JIT, take the fastest
+        for (int i = 0; i < 3; i++) {
+            long start = System.nanoTime();
+            probeHasher.hash(CALIBRATION_PASSWORD);
+            fastest = Math.min(fastest, System.nanoTime() - start);
+        }
+
+        double nanosPerUnit = (double) Math.max(1, fastest) / probe;
+        long factor = (long) Math.ceil(targetNanos / nanosPerUnit / step) * step;
+        return (int) Math.min(Integer.MAX_VALUE, Math.max(minimum, factor));
+    }
+
+    private void register(PasswordHasher hasher, String parameters, long targetMillis) {
+        long start = System.nanoTime();
+        hasher.hash(CALIBRATION_PASSWORD);
+        double millis = (System.nanoTime() - start) / 1_000_000.0;
+
+        PasswordUtils.register(hasher);
+        calibrations.add(new Calibration(hasher.scheme(), parameters, millis));
+        if (millis > targetMillis * 2) {
+            log.warn("{} with {} takes {} ms per hash, above the target of {} ms", hasher.scheme(), parameters,
+                    Math.round(millis), targetMillis);
+        } else {
+            log.info("{} uses {}, {} ms per hash", hasher.scheme(), parameters, Math.round(millis));
+        }
+    }
+
+    /**
+     * @return the work factors chosen at startup, empty unless the scheme has tunable work factors
+     */
+    public List<Calibration> getCalibrations() {
+        return List.copyOf(calibrations);
+    }
+
+    /**
+     * @return the hashes that run at once on the hashing executor. Bulk callers keep at most this
+     * many outstanding, so they keep the threads busy without filling the queue.
+     */
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    /**
+     * Hash with the default scheme on the hashing executor
+     */
+    public CompletableFuture<String> hashAsync(String plainPassword) {
+        PasswordScheme scheme = PasswordUtils.getDefaultScheme();
+        return submit(() -> PasswordUtils.hashPassword(plainPassword, scheme));
+    }
+
+    /**
+     * Hash with the default scheme, waiting for the hashing executor
+     *
+     * @throws IllegalStateException if the executor is saturated or the hash takes too long
+     */
+    public String hash(String plainPassword) {
+        return await(hashAsync(plainPassword));
+    }
+
+    /**
+     * Verify on the hashing executor, waiting for the result
+     *
+     * @throws IllegalStateException if the executor is saturated or the verification takes too long
+     */
+    public boolean verify(String userPassword, String plainPassword) {
+        return await(submit(() -> PasswordUtils.verifyPassword(userPassword, plainPassword)));
+    }
+
+    private <T> CompletableFuture<T> submit(Supplier<T> task) {
+        try {
+            return CompletableFuture.supplyAsync(task, executor);
+        } catch (TaskRejectedException e) {
+            throw new IllegalStateException("Too many passwords are being processed, please try again", e);
+        }
+    }
+
+    private <T> T await(CompletableFuture<T> future) {
+        try {
+            return future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while processing the password", e);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            throw new IllegalStateException("Processing the password took too long, please try again", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+}
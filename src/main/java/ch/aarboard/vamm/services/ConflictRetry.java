@@ -0,0 +1,37 @@
+package ch.aarboard.vamm.services;
+
+import ch.aarboard.vamm.ldap.EntryConflictException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.function.Supplier;
+
+/**
+ * Retries a read-modify-write when the conditional update lost against a concurrent write.
+ *
+ * Every attempt has to load the entry again and reapply the change, so the change is merged
+ * onto whatever the other writer stored. Only use it for changes that are expressed as an
+ * intent (set a flag, add a destination), never for whole entities edited in a form.
+ */
+final class ConflictRetry {
+
+    private static final Logger log = LoggerFactory.getLogger(ConflictRetry.class);
+
+    static final int MAX_ATTEMPTS = 3;
+
+    private ConflictRetry() {
+    }
+
+    static <T> T run(String target, Supplier<T> attempt) {
+        EntryConflictException last = null;
+        for (int i = 1; i <= MAX_ATTEMPTS; i++) {
+            try {
+                return attempt.get();
+            } catch (EntryConflictException e) {
+                log.debug("Conflict on {} (attempt {}/{}), reloading", target, i, MAX_ATTEMPTS);
+                last = e;
+            }
+        }
+        throw last;
+    }
+}
@@ -1,14 +1,23 @@
 package ch.aarboard.vamm.services;
 
+import ch.aarboard.vamm.concurrent.StripedLockRegistry;
 import ch.aarboard.vamm.data.entries.JammMailAccount;
+import ch.aarboard.vamm.data.entries.JammMailAlias;
 import ch.aarboard.vamm.data.repositories.JammMailAccountRepository;
 import ch.aarboard.vamm.data.repositories.JammMailAliasRepository;
 import ch.aarboard.vamm.data.repositories.JammVirtualDomainRepository;
+import ch.aarboard.vamm.index.DestinationIndex;
+import ch.aarboard.vamm.ldap.EntryConflictException;
+import ch.aarboard.vamm.security.BreachedPasswordBlocklist;
+import ch.aarboard.vamm.security.PasswordHashingService;
 import ch.aarboard.vamm.utils.MailUtils;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 
 @Service
 public class JammMailAccountManagementService {
@@ -16,13 +25,45 @@ public class JammMailAccountManagementService {
     private JammMailAccountRepository mailAccountRepository;
     private JammMailAliasRepository mailAliasRepository;
     private JammVirtualDomainRepository virtualDomainRepository;
+    private StripedLockRegistry lockRegistry;
+    private PasswordHashingService passwordHashingService;
+    private BreachedPasswordBlocklist passwordBlocklist;
+    private DestinationIndex destinationIndex;
+    private JammMailAliasManagemeentService aliasManagementService;
+
+    /**
+     * The aliases changed by removing a deleted account from their destinations
+     *
+     * @param updated The aliases still delivering elsewhere
+     * @param deleted The aliases deleted because the account was their only destination
+     * @param skipped The system aliases, left delivering to the deleted account
+     * @param failed  The aliases that could not be changed, the account is deleted nevertheless
+     */
+    public record AliasCleanup(List<String> updated, List<String> deleted, List<String> skipped,
+                               List<AliasFailure> failed) {
+
+        static final AliasCleanup NONE = new AliasCleanup(List.of(), List.of(), List.of(), List.of());
+    }
+
+    public record AliasFailure(String alias, String message) {
+    }
 
     public JammMailAccountManagementService(@Lazy JammMailAccountRepository mailAccountRepository,
                                             @Lazy JammMailAliasRepository mailAliasRepository,
-                                            @Lazy JammVirtualDomainRepository virtualDomainRepository) {
+                                            @Lazy JammVirtualDomainRepository virtualDomainRepository,
+                                            StripedLockRegistry lockRegistry,
+                                            PasswordHashingService passwordHashingService,
+                                            BreachedPasswordBlocklist passwordBlocklist,
+                                            DestinationIndex destinationIndex,
+                                            JammMailAliasManagemeentService aliasManagementService) {
         this.mailAccountRepository = mailAccountRepository;
         this.mailAliasRepository = mailAliasRepository;
         this.virtualDomainRepository = virtualDomainRepository;
+        this.lockRegistry = lockRegistry;
+        this.passwordHashingService = passwordHashingService;
+        this.passwordBlocklist = passwordBlocklist;
+        this.destinationIndex = destinationIndex;
+        this.aliasManagementService = aliasManagementService;
     }
 
     public int getAccountCount(String domainName) {
@@ -55,6 +96,22 @@ public class JammMailAccountManagementService {
             throw new IllegalArgumentException("Invalid email address format: " + email);
         }
 
+        // Extract domain and validate it exists
+        String domain = MailUtils.extractDomainFromMail(email);
+        validateDomainExists(domain);
+
+        // Hash once the request is known to be valid, but before taking the lock:
+        // an expensive scheme must not hold up other creates
+        String hashedPassword = password != null && !password.trim().isEmpty()
+                ? hashNewPassword(password) : null;
+
+        // The existence checks and the add must not interleave with another create of the same address
+        return lockRegistry.withLocks(() -> createAccountLocked(email, domain, password, hashedPassword, homeDirectory,
+                quota, description), StripedLockRegistry.mailKey(email));
+    }
+
+    private JammMailAccount createAccountLocked(String email, String domain, String password, String hashedPassword,
+                                                String homeDirectory, String quota, String description) {
         // Check if account already exists
         if (mailAccountRepository.existsByEmail(email)) {
             throw new IllegalArgumentException("Account already exists: " + email);
@@ -62,10 +119,6 @@ public class JammMailAccountManagementService {
             throw new IllegalArgumentException("Email is already used as an alias: " + email);
         }
 
-        // Extract domain and validate it exists
-        String domain = MailUtils.extractDomainFromMail(email);
-        validateDomainExists(domain);
-
         // Create account with required fields
         String accountName = MailUtils.extractUserFromMail(email);
         String defaultHomeDir = homeDirectory != null ? homeDirectory : "/var/vmail/" + domain + "/" + accountName;
@@ -73,8 +126,8 @@ public class JammMailAccountManagementService {
 
         JammMailAccount account = new JammMailAccount(email, defaultHomeDir, defaultMailbox);
 
-        if (password != null && !password.trim().isEmpty()) {
-            account.setPasswordSecure(password);
+        if (hashedPassword != null) {
+            account.setHashedPassword(password, hashedPassword);
         }
 
         if (quota != null && !quota.trim().isEmpty()) {
@@ -88,15 +141,19 @@ public class JammMailAccountManagementService {
         account.setCommonName(accountName);
         account.setUid(accountName);
 
-        return mailAccountRepository.save(account);
+        return mailAccountRepository.create(account);
     }
 
+    /**
+     * Save an edited account. The write only succeeds if the entry was not changed or deleted since
+     * the account was loaded, the caller has to reload and let the user redo the edit otherwise.
+     *
+     * @throws ch.aarboard.vamm.ldap.EntryConflictException if the entry was changed concurrently
+     */
     public JammMailAccount updateAccount(JammMailAccount account) {
-        if (!mailAccountRepository.existsByEmail(account.getMail())) {
-            throw new IllegalArgumentException("Account not found: " + account.getMail());
+        if (account.getLoadedLastChange() == null) {
+            throw new IllegalArgumentException("Account was not loaded from the directory: " + account.getMail());
         }
-
-        account.updateLastChange();
         return mailAccountRepository.save(account);
     }
 
@@ -105,12 +162,16 @@ public class JammMailAccountManagementService {
             throw new IllegalArgumentException("Password cannot be empty");
         }
 
-        JammMailAccount account = getAccount(email);
-
-        account.setPasswordSecure(newPassword);
-        account.updateLastChange();
+        String hashedPassword = hashNewPassword(newPassword);
+        return modifyAccount(email, account -> account.setHashedPassword(newPassword, hashedPassword));
+    }
 
-        return mailAccountRepository.save(account);
+    /**
+     * Reject breached passwords, then hash with the default scheme
+     */
+    private String hashNewPassword(String plainPassword) {
+        passwordBlocklist.check(plainPassword);
+        return passwordHashingService.hash(plainPassword);
     }
 
     public JammMailAccount setAccountQuota(String email, String quota) {
@@ -119,40 +180,56 @@ public class JammMailAccountManagementService {
             throw new IllegalArgumentException("Invalid quota format: " + quota);
         }
 
-        JammMailAccount account = getAccount(email);
-
-        account.setQuota(quota);
-        account.updateLastChange();
-
-        return mailAccountRepository.save(account);
+        return modifyAccount(email, account -> account.setQuota(quota));
     }
 
     public JammMailAccount toggleAccountStatus(String email) {
-        JammMailAccount account = getAccount(email);
-
-        account.setActive(!account.isActive());
-        account.updateLastChange();
+        return modifyAccount(email, account -> account.setActive(!account.isActive()));
+    }
 
-        return mailAccountRepository.save(account);
+    /**
+     * Toggle an account that was already loaded, e.g. a grid row. Writes once without reading it again.
+     * If the account was changed in the meantime, the resulting state is applied to the current entry.
+     */
+    public JammMailAccount toggleAccountStatus(JammMailAccount account) {
+        boolean active = !account.isActive();
+        account.setActive(active);
+
+        try {
+            return mailAccountRepository.save(account);
+        } catch (EntryConflictException e) {
+            account.setActive(!active);
+            return modifyAccount(account.getMail(), current -> current.setActive(active));
+        } catch (RuntimeException e) {
+            account.setActive(!active); // Keep the caller's copy in sync with the directory
+            throw e;
+        }
     }
 
     public JammMailAccount markAccountForDeletion(String email) {
-        JammMailAccount account = getAccount(email);
-
-        account.setMarkedForDeletion(true);
-        account.setActive(false);
-        account.updateLastChange();
-
-        return mailAccountRepository.save(account);
+        return modifyAccount(email, account -> {
+            account.setMarkedForDeletion(true);
+            account.setActive(false);
+        });
     }
 
     public JammMailAccount restoreAccountFromDeletion(String email) {
-        JammMailAccount account = getAccount(email);
-        account.setMarkedForDeletion(false);
-        account.setActive(true);
-        account.updateLastChange();
+        return modifyAccount(email, account -> {
+            account.setMarkedForDeletion(false);
+            account.setActive(true);
+        });
+    }
 
-        return mailAccountRepository.save(account);
+    /**
+     * Load the account, apply the change and save it. A concurrent write makes the save
+     * fail, the change is then applied again to the freshly loaded account.
+     */
+    private JammMailAccount modifyAccount(String email, Consumer<JammMailAccount> change) {
+        return ConflictRetry.run(email, () -> {
+            JammMailAccount account = getAccount(email);
+            change.accept(account);
+            return mailAccountRepository.save(account);
+        });
     }
 
     public void deleteAccount(String email) {
@@ -163,6 +240,78 @@ public class JammMailAccountManagementService {
         mailAccountRepository.deleteByEmail(email);
     }
 
+    /**
+     * Delete the account, and with removeFromAliases also remove it from the destinations of
+     * the aliases delivering to it, so they don't bounce. An alias left without destination is
+     * deleted as well. Only aliases of the given domains are changed, system aliases never.
+     * An alias that cannot be changed is reported in the result, the others are still cleaned up.
+     *
+     * @param domains The domains whose aliases may be changed, e.g. those the user can access
+     */
+    public AliasCleanup deleteAccount(String email, boolean removeFromAliases, Predicate<String> domains) {
+        deleteAccount(email);
+        if (!removeFromAliases) {
+            return AliasCleanup.NONE;
+        }
+
+        List<String> updated = new ArrayList<>();
+        List<String> deleted = new ArrayList<>();
+        List<String> skipped = new ArrayList<>();
+        List<AliasFailure> failed = new ArrayList<>();
+        for (String aliasEmail : getAliasesDeliveringTo(email, domains)) {
+            try {
+                switch (removeFromAlias(aliasEmail, email)) {
+                    case UPDATED -> updated.add(aliasEmail);
+                    case DELETED -> deleted.add(aliasEmail);
+                    case SKIPPED -> skipped.add(aliasEmail);
+                    case UNCHANGED -> {
+                    }
+                }
+            } catch (RuntimeException e) {
+                failed.add(new AliasFailure(aliasEmail, e.getMessage()));
+            }
+        }
+        return new AliasCleanup(updated, deleted, skipped, failed);
+    }
+
+    private enum Removal { UPDATED, DELETED, SKIPPED, UNCHANGED }
+
+    private Removal removeFromAlias(String aliasEmail, String email) {
+        JammMailAlias alias = mailAliasRepository.findByEmail(aliasEmail).orElse(null);
+        if (alias == null) {
+            return Removal.UNCHANGED;
+        }
+        if (alias.isSystemAlias()) {
+            return Removal.SKIPPED;
+        }
+        List<String> matching = alias.getDestinations().stream()
+                .filter(destination -> destination.strip().equalsIgnoreCase(email))
+                .toList();
+        // Changed since it was looked up
+        if (matching.isEmpty()) {
+            return Removal.UNCHANGED;
+        }
+        if (matching.size() == alias.getDestinations().size()) {
+            aliasManagementService.deleteAlias(aliasEmail);
+            return Removal.DELETED;
+        }
+        matching.forEach(destination -> aliasManagementService.removeDestination(aliasEmail, destination));
+        return Removal.UPDATED;
+    }
+
+    /**
+     * The addresses of the aliases of the given domains delivering to an address, in alphabetical
+     * order. Comes from the {@link DestinationIndex}, until it is built from a search over all domains.
+     */
+    public List<String> getAliasesDeliveringTo(String email, Predicate<String> domains) {
+        List<String> aliases = destinationIndex.isReady()
+                ? destinationIndex.aliasesDeliveringTo(email)
+                : mailAliasRepository.findByDestination(email).stream().map(JammMailAlias::getMail).sorted().toList();
+        return aliases.stream()
+                .filter(alias -> domains.test(MailUtils.extractDomainFromMail(alias)))
+                .toList();
+    }
+
     public void deleteAllAccountsInDomain(String domainName) {
         validateDomainExists(domainName);
         mailAccountRepository.deleteAllByDomain(domainName);
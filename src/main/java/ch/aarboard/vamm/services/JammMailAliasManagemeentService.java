@@ -1,14 +1,17 @@
 package ch.aarboard.vamm.services;
 
+import ch.aarboard.vamm.concurrent.StripedLockRegistry;
 import ch.aarboard.vamm.data.entries.JammMailAlias;
 import ch.aarboard.vamm.data.repositories.JammMailAccountRepository;
 import ch.aarboard.vamm.data.repositories.JammMailAliasRepository;
 import ch.aarboard.vamm.data.repositories.JammVirtualDomainRepository;
+import ch.aarboard.vamm.ldap.EntryConflictException;
 import ch.aarboard.vamm.utils.MailUtils;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
+import java.util.function.Consumer;
 
 @Service
 public class JammMailAliasManagemeentService {
@@ -16,13 +19,16 @@ public class JammMailAliasManagemeentService {
     public JammMailAliasRepository mailAliasRepository;
     public JammMailAccountRepository mailAccountRepository;
     public JammVirtualDomainRepository virtualDomainRepository;
+    private StripedLockRegistry lockRegistry;
 
     public JammMailAliasManagemeentService(@Lazy JammMailAliasRepository mailAliasRepository,
                                            @Lazy JammMailAccountRepository mailAccountRepository,
-                                           @Lazy JammVirtualDomainRepository virtualDomainRepository) {
+                                           @Lazy JammVirtualDomainRepository virtualDomainRepository,
+                                           StripedLockRegistry lockRegistry) {
         this.mailAliasRepository = mailAliasRepository;
         this.mailAccountRepository = mailAccountRepository;
         this.virtualDomainRepository = virtualDomainRepository;
+        this.lockRegistry = lockRegistry;
     }
 
     public int getAliasCount(String domainName) {
@@ -54,6 +60,12 @@ public class JammMailAliasManagemeentService {
     }
 
     public JammMailAlias createAlias(String aliasEmail, List<String> destinations, String description) {
+        // The existence checks and the add must not interleave with another create of the same address
+        return lockRegistry.withLocks(() -> createAliasLocked(aliasEmail, destinations, description),
+                StripedLockRegistry.mailKey(aliasEmail));
+    }
+
+    private JammMailAlias createAliasLocked(String aliasEmail, List<String> destinations, String description) {
         // Validate alias email format
         if (!MailUtils.isValidAddress(aliasEmail)) {
             throw new IllegalArgumentException("Invalid alias email format: " + aliasEmail);
@@ -91,7 +103,7 @@ public class JammMailAliasManagemeentService {
         // Set common name
         alias.setCommonName(MailUtils.extractUserFromMail(aliasEmail));
 
-        return mailAliasRepository.save(alias);
+        return mailAliasRepository.create(alias);
     }
 
     public JammMailAlias createCatchAllAlias(String domainName, List<String> destinations, String description) {
@@ -107,12 +119,16 @@ public class JammMailAliasManagemeentService {
         return createAlias(catchAllEmail, destinations, description);
     }
 
+    /**
+     * Save an edited alias. The write only succeeds if the entry was not changed or deleted since
+     * the alias was loaded, the caller has to reload and let the user redo the edit otherwise.
+     *
+     * @throws ch.aarboard.vamm.ldap.EntryConflictException if the entry was changed concurrently
+     */
     public JammMailAlias updateAlias(JammMailAlias alias) {
-        if (!mailAliasRepository.existsByEmail(alias.getMail())) {
-            throw new IllegalArgumentException("Alias not found: " + alias.getMail());
+        if (alias.getLoadedLastChange() == null) {
+            throw new IllegalArgumentException("Alias was not loaded from the directory: " + alias.getMail());
         }
-
-        alias.updateLastChange();
         return mailAliasRepository.save(alias);
     }
 
@@ -120,34 +136,55 @@ public class JammMailAliasManagemeentService {
         if (!MailUtils.isValidAddress(destination)) {
             throw new IllegalArgumentException("Invalid destination email format: " + destination);
         }
-        JammMailAlias alias = getAlias(aliasEmail);
-        alias.addDestination(destination);
-
-        return mailAliasRepository.save(alias);
+        return modifyAlias(aliasEmail, alias -> alias.addDestination(destination));
     }
 
     public JammMailAlias removeDestination(String aliasEmail, String destination) {
-        JammMailAlias alias = getAlias(aliasEmail);
-
-        if (!alias.removeDestination(destination)) {
-            throw new IllegalArgumentException("Destination not found in alias: " + destination);
-        }
-
-        // Don't allow removing all destinations
-        if (alias.getDestinations().isEmpty()) {
-            throw new IllegalArgumentException("Alias must have at least one destination");
-        }
+        return modifyAlias(aliasEmail, alias -> {
+            if (!alias.removeDestination(destination)) {
+                throw new IllegalArgumentException("Destination not found in alias: " + destination);
+            }
 
-        return mailAliasRepository.save(alias);
+            // Don't allow removing all destinations
+            if (alias.getDestinations().isEmpty()) {
+                throw new IllegalArgumentException("Alias must have at least one destination");
+            }
+        });
     }
 
     public JammMailAlias toggleAliasStatus(String aliasEmail) {
-        JammMailAlias alias = getAlias(aliasEmail);
+        return modifyAlias(aliasEmail, alias -> alias.setActive(!alias.isActive()));
+    }
 
-        alias.setActive(!alias.isActive());
-        alias.updateLastChange();
+    /**
+     * Toggle an alias that was already loaded, e.g. a grid row. Writes once without reading it again.
+     * If the alias was changed in the meantime, the resulting state is applied to the current entry.
+     */
+    public JammMailAlias toggleAliasStatus(JammMailAlias alias) {
+        boolean active = !alias.isActive();
+        alias.setActive(active);
+
+        try {
+            return mailAliasRepository.save(alias);
+        } catch (EntryConflictException e) {
+            alias.setActive(!active);
+            return modifyAlias(alias.getMail(), current -> current.setActive(active));
+        } catch (RuntimeException e) {
+            alias.setActive(!active); // Keep the caller's copy in sync with the directory
+            throw e;
+        }
+    }
 
-        return mailAliasRepository.save(alias);
+    /**
+     * Load the alias, apply the change and save it. A concurrent write makes the save
+     * fail, the change is then applied again to the freshly loaded alias.
+     */
+    private JammMailAlias modifyAlias(String aliasEmail, Consumer<JammMailAlias> change) {
+        return ConflictRetry.run(aliasEmail, () -> {
+            JammMailAlias alias = getAlias(aliasEmail);
+            change.accept(alias);
+            return mailAliasRepository.save(alias);
+        });
     }
 
     public void deleteAlias(String aliasEmail) {
@@ -1,16 +1,20 @@
 package ch.aarboard.vamm.services;
 
+import ch.aarboard.vamm.concurrent.StripedLockRegistry;
 import ch.aarboard.vamm.data.entries.JammPostmaster;
 import ch.aarboard.vamm.data.entries.JammVirtualDomain;
 import ch.aarboard.vamm.data.repositories.JammMailAccountRepository;
 import ch.aarboard.vamm.data.repositories.JammMailAliasRepository;
 import ch.aarboard.vamm.data.repositories.JammPostmasterRepository;
 import ch.aarboard.vamm.data.repositories.JammVirtualDomainRepository;
+import ch.aarboard.vamm.ldap.SubtreeDeletionEngine;
+import ch.aarboard.vamm.utils.LdapUtils;
 import ch.aarboard.vamm.utils.MailUtils;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
+import java.util.Map;
 
 @Service
 public class JammVirtualDomainManagementService {
@@ -19,16 +23,22 @@ public class JammVirtualDomainManagementService {
     private JammMailAccountRepository mailAccountRepository;
     private JammMailAliasRepository mailAliasRepository;
     private JammPostmasterRepository postmasterRepository;
+    private StripedLockRegistry lockRegistry;
+    private SubtreeDeletionEngine subtreeDeletionEngine;
 
     public JammVirtualDomainManagementService(
             @Lazy JammVirtualDomainRepository virtualDomainRepository,
             @Lazy JammMailAccountRepository mailAccountRepository,
             @Lazy JammMailAliasRepository mailAliasRepository,
-            @Lazy JammPostmasterRepository postmasterRepository) {
+            @Lazy JammPostmasterRepository postmasterRepository,
+            StripedLockRegistry lockRegistry,
+            SubtreeDeletionEngine subtreeDeletionEngine) {
         this.virtualDomainRepository = virtualDomainRepository;
         this.mailAccountRepository = mailAccountRepository;
         this.mailAliasRepository = mailAliasRepository;
         this.postmasterRepository = postmasterRepository;
+        this.lockRegistry = lockRegistry;
+        this.subtreeDeletionEngine = subtreeDeletionEngine;
     }
 
     public int getDomainCount() {
@@ -46,11 +56,13 @@ public class JammVirtualDomainManagementService {
     public List<JammVirtualDomain> getAllDomainsWithStats() {
         List<JammVirtualDomain> domains = virtualDomainRepository.findAll();
 
-        // Populate statistics for each domain
+        // Populate statistics for each domain, counted for all domains at once
+        Map<String, Integer> accountCounts = mailAccountRepository.countAllByDomain();
+        Map<String, Integer> aliasCounts = mailAliasRepository.countAllByDomainExcludingSystem();
         for (JammVirtualDomain domain : domains) {
             String domainName = domain.getJvd();
-            domain.setAccountCount(mailAccountRepository.countByDomain(domainName));
-            domain.setAliasCount(mailAliasRepository.countByDomainExcludingSystem(domainName));
+            domain.setAccountCount(accountCounts.getOrDefault(domainName, 0));
+            domain.setAliasCount(aliasCounts.getOrDefault(domainName, 0));
         }
 
         return domains;
@@ -75,6 +87,12 @@ public class JammVirtualDomainManagementService {
     }
 
     public JammVirtualDomain createDomain(String domainName, String description) {
+        // The existence checks and the add must not interleave with another create of the same domain
+        return lockRegistry.withLocks(() -> createDomainLocked(domainName, description),
+                StripedLockRegistry.domainKey(domainName));
+    }
+
+    private JammVirtualDomain createDomainLocked(String domainName, String description) {
         // Check if domain already exists
         if (virtualDomainRepository.existsByName(domainName)) {
             throw new IllegalArgumentException("Domain already exists: " + domainName);
@@ -93,16 +111,22 @@ public class JammVirtualDomainManagementService {
             domain.setDescription(description.trim());
         }
 
-        domain = virtualDomainRepository.save(domain);
+        domain = virtualDomainRepository.create(domain);
 
         // Create default postmaster
         JammPostmaster postmaster = new JammPostmaster(domainName);
         postmaster.setDescription("Default postmaster for " + domainName);
-        postmasterRepository.save(postmaster);
+        postmasterRepository.create(postmaster);
 
         return domain;
     }
 
+    /**
+     * Save an edited domain. The write only succeeds if the entry was not changed since the
+     * domain was loaded, the caller has to reload and let the user redo the edit otherwise.
+     *
+     * @throws ch.aarboard.vamm.ldap.EntryConflictException if the entry was changed concurrently
+     */
     public JammVirtualDomain updateDomain(JammVirtualDomain domain) {
         if (!virtualDomainRepository.existsByName(domain.getJvd())) {
             throw new IllegalArgumentException("Domain not found: " + domain.getJvd());
@@ -112,67 +136,81 @@ public class JammVirtualDomainManagementService {
     }
 
     public JammVirtualDomain toggleDomainStatus(String domainName) {
-        JammVirtualDomain domain = getDomainNoStats(domainName);
-        if (domain.isActive()) {
-            domain.deactivate();
-        } else {
-            domain.activate();
-        }
-
-        return virtualDomainRepository.save(domain);
+        return ConflictRetry.run(domainName, () -> {
+            JammVirtualDomain domain = getDomainNoStats(domainName);
+            if (domain.isActive()) {
+                domain.deactivate();
+            } else {
+                domain.activate();
+            }
+
+            return virtualDomainRepository.save(domain);
+        });
     }
 
     public JammVirtualDomain activateDomain(String domainName) {
-        JammVirtualDomain domain = getDomainNoStats(domainName);
-        if (domain.isActive()) {
-            throw new IllegalArgumentException("Domain is already active: " + domainName);
-        }
+        return ConflictRetry.run(domainName, () -> {
+            JammVirtualDomain domain = getDomainNoStats(domainName);
+            if (domain.isActive()) {
+                throw new IllegalArgumentException("Domain is already active: " + domainName);
+            }
 
-        domain.activate();
-        return virtualDomainRepository.save(domain);
+            domain.activate();
+            return virtualDomainRepository.save(domain);
+        });
     }
 
     public JammVirtualDomain deactivateDomain(String domainName) {
-        JammVirtualDomain domain = getDomainNoStats(domainName);
-        if (!domain.isActive()) {
-            throw new IllegalArgumentException("Domain is already inactive: " + domainName);
-        }
+        return ConflictRetry.run(domainName, () -> {
+            JammVirtualDomain domain = getDomainNoStats(domainName);
+            if (!domain.isActive()) {
+                throw new IllegalArgumentException("Domain is already inactive: " + domainName);
+            }
 
-        domain.deactivate();
-        return virtualDomainRepository.save(domain);
+            domain.deactivate();
+            return virtualDomainRepository.save(domain);
+        });
     }
 
     public JammVirtualDomain markDomainForDeletion(String domainName) {
-        JammVirtualDomain domain = getDomainNoStats(domainName);
-        if (domain.isMarkedForDeletion()) {
-            throw new IllegalArgumentException("Domain is already marked for deletion: " + domainName);
-        }
-
-        domain.setMarkedForDeletion(true);
-        return virtualDomainRepository.save(domain);
+        return ConflictRetry.run(domainName, () -> {
+            JammVirtualDomain domain = getDomainNoStats(domainName);
+            if (domain.isMarkedForDeletion()) {
+                throw new IllegalArgumentException("Domain is already marked for deletion: " + domainName);
+            }
+
+            domain.setMarkedForDeletion(true);
+            return virtualDomainRepository.save(domain);
+        });
     }
 
     public JammVirtualDomain unmarkDomainForDeletion(String domainName) {
-        JammVirtualDomain domain = getDomainNoStats(domainName);
-        if (!domain.isMarkedForDeletion()) {
-            throw new IllegalArgumentException("Domain is not marked for deletion: " + domainName);
-        }
-
-        domain.setMarkedForDeletion(false);
-        return virtualDomainRepository.save(domain);
+        return ConflictRetry.run(domainName, () -> {
+            JammVirtualDomain domain = getDomainNoStats(domainName);
+            if (!domain.isMarkedForDeletion()) {
+                throw new IllegalArgumentException("Domain is not marked for deletion: " + domainName);
+            }
+
+            domain.setMarkedForDeletion(false);
+            return virtualDomainRepository.save(domain);
+        });
     }
 
     public void deleteDomain(String domainName) {
+        deleteDomain(domainName, SubtreeDeletionEngine.ProgressListener.NONE);
+    }
+
+    /**
+     * Delete a domain with all accounts, aliases and the postmaster below it.
+     *
+     * @param listener Receives the progress of the deletion
+     */
+    public SubtreeDeletionEngine.Result deleteDomain(String domainName, SubtreeDeletionEngine.ProgressListener listener) {
         if (!virtualDomainRepository.existsByName(domainName)) {
             throw new IllegalArgumentException("Domain not found: " + domainName);
         }
 
-        // Delete all associated data
-        mailAccountRepository.deleteAllByDomain(domainName);
-        mailAliasRepository.deleteAllByDomain(domainName);
-        postmasterRepository.deleteByDomain(domainName);
-
-        // Finally delete the domain
-        virtualDomainRepository.deleteByName(domainName);
+        // Everything of a domain lives below its entry, remove the whole subtree at once
+        return subtreeDeletionEngine.deleteSubtree(LdapUtils.domainDN(domainName).build(), listener);
     }
 }
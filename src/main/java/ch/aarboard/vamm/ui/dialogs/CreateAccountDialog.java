@@ -1,5 +1,6 @@
 package ch.aarboard.vamm.ui.dialogs;
 
+import ch.aarboard.vamm.data.entries.JammMailAccount;
 import ch.aarboard.vamm.events.DomainContentChangedEvent;
 import ch.aarboard.vamm.services.JammMailAccountManagementService;
 import com.vaadin.flow.component.button.Button;
@@ -17,10 +18,12 @@ import com.vaadin.flow.component.textfield.TextArea;
 import com.vaadin.flow.component.textfield.TextField;
 import org.springframework.context.ApplicationEventPublisher;
 
+import java.util.function.Consumer;
+
 public class CreateAccountDialog extends Dialog {
 
     private final JammMailAccountManagementService accountService;
-    private final Runnable onSuccess;
+    private final Consumer<JammMailAccount> onSuccess;
     private final ApplicationEventPublisher eventPublisher;
 
     private final TextField emailField;
@@ -30,7 +33,7 @@ public class CreateAccountDialog extends Dialog {
 
     private String selectedDomain;
 
-    public CreateAccountDialog(JammMailAccountManagementService accountService, Runnable onSuccess, ApplicationEventPublisher eventPublisher) {
+    public CreateAccountDialog(JammMailAccountManagementService accountService, Consumer<JammMailAccount> onSuccess, ApplicationEventPublisher eventPublisher) {
         this.accountService = accountService;
         this.onSuccess = onSuccess;
         this.eventPublisher = eventPublisher;
@@ -93,7 +96,7 @@ public class CreateAccountDialog extends Dialog {
                 email = email + "@" + selectedDomain;
             }
 
-            accountService.createAccount(
+            JammMailAccount created = accountService.createAccount(
                     email,
                     passwordField.getValue(),
                     null, // Use default home directory
@@ -106,9 +109,9 @@ public class CreateAccountDialog extends Dialog {
 
             close();
             clearForm();
-            eventPublisher.publishEvent(new DomainContentChangedEvent(this, selectedDomain, DomainContentChangedEvent.ContentType.ACCOUNT_CREATED));
+            eventPublisher.publishEvent(new DomainContentChangedEvent(this, selectedDomain, DomainContentChangedEvent.ContentType.ACCOUNT_CREATED, email));
             if (onSuccess != null) {
-                onSuccess.run();
+                onSuccess.accept(created);
             }
 
         } catch (Exception e) {
@@ -1,9 +1,12 @@
 package ch.aarboard.vamm.ui.dialogs;
 
+import ch.aarboard.vamm.data.entries.JammMailAlias;
 import ch.aarboard.vamm.events.DomainContentChangedEvent;
+import ch.aarboard.vamm.index.AddressAutocomplete;
 import ch.aarboard.vamm.services.JammMailAliasManagemeentService;
 import com.vaadin.flow.component.button.Button;
 import com.vaadin.flow.component.button.ButtonVariant;
+import com.vaadin.flow.component.combobox.ComboBox;
 import com.vaadin.flow.component.dialog.Dialog;
 import com.vaadin.flow.component.formlayout.FormLayout;
 import com.vaadin.flow.component.html.H2;
@@ -21,25 +24,34 @@ import org.springframework.context.ApplicationEventPublisher;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 public class CreateAliasDialog extends Dialog {
 
     private final JammMailAliasManagemeentService aliasManagementService;
-    private final Runnable onSuccess;
+    private final Consumer<JammMailAlias> onSuccess;
     private final ApplicationEventPublisher eventPublisher;
+    private final AddressAutocomplete addressAutocomplete;
+    private final Predicate<String> accessibleDomains;
 
     private final TextField aliasEmailField;
     private final VerticalLayout destinationsLayout;
     private final TextArea descriptionField;
 
     private String selectedDomain;
-    private final List<TextField> destinationFields = new ArrayList<>();
+    private final List<ComboBox<String>> destinationFields = new ArrayList<>();
 
-    public CreateAliasDialog(JammMailAliasManagemeentService aliasManagementService, Runnable onSuccess, ApplicationEventPublisher eventPublisher) {
+    public CreateAliasDialog(JammMailAliasManagemeentService aliasManagementService, Consumer<JammMailAlias> onSuccess,
+                             ApplicationEventPublisher eventPublisher, AddressAutocomplete addressAutocomplete,
+                             Predicate<String> accessibleDomains) {
         this.aliasManagementService = aliasManagementService;
         this.onSuccess = onSuccess;
         this.eventPublisher = eventPublisher;
+        this.addressAutocomplete = addressAutocomplete;
+        this.accessibleDomains = accessibleDomains;
 
         setModal(true);
         setDraggable(true);
@@ -101,10 +113,21 @@ public class CreateAliasDialog extends Dialog {
     }
 
     private void addDestinationField() {
-        TextField destinationField = new TextField();
+        // Suggests the known addresses of the domains the user may see, any other address can be typed in
+        ComboBox<String> destinationField = new ComboBox<>();
         destinationField.setPlaceholder("destination@example.com");
         destinationField.setWidthFull();
         destinationField.setRequired(true);
+        destinationField.setAllowCustomValue(true);
+        destinationField.addCustomValueSetListener(e -> destinationField.setValue(e.getDetail().trim()));
+        destinationField.setItems(query -> {
+            String prefix = query.getFilter().orElse("");
+            if (prefix.isBlank()) {
+                return Stream.empty();
+            }
+            return addressAutocomplete.completeAddress(prefix, query.getOffset() + query.getLimit(), accessibleDomains).stream()
+                    .skip(query.getOffset());
+        });
 
         Button removeButton = new Button(new Icon(VaadinIcon.MINUS));
         removeButton.addThemeVariants(ButtonVariant.LUMO_SMALL, ButtonVariant.LUMO_TERTIARY, ButtonVariant.LUMO_ERROR);
@@ -123,7 +146,7 @@ public class CreateAliasDialog extends Dialog {
         updateRemoveButtonStates();
     }
 
-    private void removeDestinationField(TextField fieldToRemove) {
+    private void removeDestinationField(ComboBox<String> fieldToRemove) {
         // Find and remove the field and its layout
         destinationFields.remove(fieldToRemove);
 
@@ -163,11 +186,11 @@ public class CreateAliasDialog extends Dialog {
             }
 
             List<String> destinations = destinationFields.stream()
-                    .map(TextField::getValue)
+                    .map(ComboBox::getValue)
                     .filter(value -> value != null && !value.trim().isEmpty())
                     .collect(Collectors.toList());
 
-            aliasManagementService.createAlias(
+            JammMailAlias created = aliasManagementService.createAlias(
                     aliasEmail,
                     destinations,
                     descriptionField.getValue().trim().isEmpty() ? null : descriptionField.getValue()
@@ -178,9 +201,9 @@ public class CreateAliasDialog extends Dialog {
 
             close();
             clearForm();
-            eventPublisher.publishEvent(new DomainContentChangedEvent(this, selectedDomain, DomainContentChangedEvent.ContentType.ALIAS_CREATED));
+            eventPublisher.publishEvent(new DomainContentChangedEvent(this, selectedDomain, DomainContentChangedEvent.ContentType.ALIAS_CREATED, aliasEmail));
             if (onSuccess != null) {
-                onSuccess.run();
+                onSuccess.accept(created);
             }
 
         } catch (Exception e) {
@@ -202,7 +225,7 @@ public class CreateAliasDialog extends Dialog {
 
         // Validate destinations
         List<String> destinations = destinationFields.stream()
-                .map(TextField::getValue)
+                .map(ComboBox::getValue)
                 .filter(value -> value != null && !value.trim().isEmpty())
                 .collect(Collectors.toList());
 
@@ -213,7 +236,7 @@ public class CreateAliasDialog extends Dialog {
         }
 
         // Validate each destination field
-        for (TextField field : destinationFields) {
+        for (ComboBox<String> field : destinationFields) {
             String value = field.getValue();
             if (value != null && !value.trim().isEmpty()) {
                 if (!value.contains("@")) {
@@ -1,5 +1,6 @@
 package ch.aarboard.vamm.ui.dialogs;
 
+import ch.aarboard.vamm.data.entries.JammVirtualDomain;
 import ch.aarboard.vamm.services.JammVirtualDomainManagementService;
 import ch.aarboard.vamm.utils.MailUtils;
 import com.vaadin.flow.component.button.Button;
@@ -15,10 +16,12 @@ import com.vaadin.flow.data.binder.Binder;
 import com.vaadin.flow.data.binder.ValidationException;
 import com.vaadin.flow.data.validator.StringLengthValidator;
 
+import java.util.function.Consumer;
+
 public class CreateDomainDialog extends Dialog {
 
     private final JammVirtualDomainManagementService domainManagementService;
-    private final Runnable onSuccess;
+    private final Consumer<JammVirtualDomain> onSuccess;
 
     private final TextField domainNameField;
     private final TextArea descriptionField;
@@ -26,7 +29,7 @@ public class CreateDomainDialog extends Dialog {
     private final Button cancelButton;
     private final Binder<DomainFormData> binder;
 
-    public CreateDomainDialog(JammVirtualDomainManagementService domainManagementService, Runnable onSuccess) {
+    public CreateDomainDialog(JammVirtualDomainManagementService domainManagementService, Consumer<JammVirtualDomain> onSuccess) {
         this.domainManagementService = domainManagementService;
         this.onSuccess = onSuccess;
 
@@ -101,7 +104,7 @@ public class CreateDomainDialog extends Dialog {
             binder.writeBean(formData);
 
             // Create domain through service
-            domainManagementService.createDomain(formData.getDomainName().trim(), formData.getDescription());
+            JammVirtualDomain created = domainManagementService.createDomain(formData.getDomainName().trim(), formData.getDescription());
 
             // Show success notification
             Notification.show("Domain '" + formData.getDomainName() + "' created successfully!",
@@ -109,7 +112,7 @@ public class CreateDomainDialog extends Dialog {
                     .addThemeVariants(NotificationVariant.LUMO_SUCCESS);
 
             // Refresh parent view and close dialog
-            onSuccess.run();
+            onSuccess.accept(created);
             close();
 
         } catch (ValidationException e) {
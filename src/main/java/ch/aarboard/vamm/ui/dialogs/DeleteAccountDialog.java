@@ -0,0 +1,113 @@
+package ch.aarboard.vamm.ui.dialogs;
+
+import ch.aarboard.vamm.events.DomainContentChangedEvent;
+import ch.aarboard.vamm.services.JammMailAccountManagementService;
+import ch.aarboard.vamm.services.JammMailAccountManagementService.AliasCleanup;
+import ch.aarboard.vamm.services.JammMailAccountManagementService.AliasFailure;
+import ch.aarboard.vamm.utils.MailUtils;
+import com.vaadin.flow.component.checkbox.Checkbox;
+import com.vaadin.flow.component.confirmdialog.ConfirmDialog;
+import com.vaadin.flow.component.html.ListItem;
+import com.vaadin.flow.component.html.Span;
+import com.vaadin.flow.component.html.UnorderedList;
+import com.vaadin.flow.component.notification.Notification;
+import com.vaadin.flow.component.notification.NotificationVariant;
+import com.vaadin.flow.component.orderedlayout.VerticalLayout;
+import org.springframework.context.ApplicationEventPublisher;
+
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Confirms deleting an account. Lists the aliases of the accessible domains delivering to it,
+ * which would bounce afterwards, and offers to remove the account from them.
+ */
+public class DeleteAccountDialog extends ConfirmDialog {
+
+    /** Aliases listed by name at most, the rest are counted */
+    private static final int MAX_LISTED = 20;
+
+    private final JammMailAccountManagementService accountManagementService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final String mail;
+    private final Predicate<String> accessibleDomains;
+    private final Consumer<AliasCleanup> onDeleted;
+
+    public DeleteAccountDialog(JammMailAccountManagementService accountManagementService,
+                               ApplicationEventPublisher eventPublisher, String mail,
+                               Predicate<String> accessibleDomains, Consumer<AliasCleanup> onDeleted) {
+        this.accountManagementService = accountManagementService;
+        this.eventPublisher = eventPublisher;
+        this.mail = mail;
+        this.accessibleDomains = accessibleDomains;
+        this.onDeleted = onDeleted;
+
+        setHeader("Delete Account");
+        setCancelable(true);
+        setConfirmText("Delete");
+        setConfirmButtonTheme("error primary");
+
+        Span question = new Span("Are you sure you want to delete account '" + mail +
+                "'? This action cannot be undone.");
+        List<String> aliases = accountManagementService.getAliasesDeliveringTo(mail, accessibleDomains);
+        if (aliases.isEmpty()) {
+            setText(question);
+            addConfirmListener(e -> delete(false));
+            return;
+        }
+
+        UnorderedList list = new UnorderedList();
+        aliases.stream().limit(MAX_LISTED).forEach(alias -> list.add(new ListItem(alias)));
+        if (aliases.size() > MAX_LISTED) {
+            list.add(new ListItem("and " + (aliases.size() - MAX_LISTED) + " more"));
+        }
+        Checkbox removeFromAliases = new Checkbox("Also remove it from these aliases, deleting those left without destination", true);
+
+        VerticalLayout content = new VerticalLayout(question,
+                new Span(aliases.size() == 1 ? "1 alias delivers to it:" : aliases.size() + " aliases deliver to it:"),
+                list, removeFromAliases);
+        content.setPadding(false);
+        content.setSpacing(false);
+        setText(content);
+        addConfirmListener(e -> delete(removeFromAliases.getValue()));
+    }
+
+    private void delete(boolean removeFromAliases) {
+        AliasCleanup cleanup;
+        try {
+            cleanup = accountManagementService.deleteAccount(mail, removeFromAliases, accessibleDomains);
+        } catch (Exception e) {
+            Notification.show("Error deleting account: " + e.getMessage(), 5000, Notification.Position.BOTTOM_END)
+                    .addThemeVariants(NotificationVariant.LUMO_ERROR);
+            return;
+        }
+
+        eventPublisher.publishEvent(new DomainContentChangedEvent(this, MailUtils.extractDomainFromMail(mail),
+                DomainContentChangedEvent.ContentType.ACCOUNT_DELETED, mail));
+        cleanup.updated().forEach(alias -> eventPublisher.publishEvent(new DomainContentChangedEvent(this,
+                MailUtils.extractDomainFromMail(alias), DomainContentChangedEvent.ContentType.ALIAS_UPDATED, alias)));
+        cleanup.deleted().forEach(alias -> eventPublisher.publishEvent(new DomainContentChangedEvent(this,
+                MailUtils.extractDomainFromMail(alias), DomainContentChangedEvent.ContentType.ALIAS_DELETED, alias)));
+
+        String message = "Account " + mail + " has been deleted";
+        int changed = cleanup.updated().size() + cleanup.deleted().size();
+        if (changed > 0) {
+            message += ", removed from " + changed + (changed == 1 ? " alias" : " aliases");
+        }
+        Notification.show(message, 3000, Notification.Position.BOTTOM_END)
+                .addThemeVariants(NotificationVariant.LUMO_SUCCESS);
+        if (!cleanup.skipped().isEmpty()) {
+            Notification.show("System aliases still deliver to it: " + String.join(", ", cleanup.skipped()),
+                    5000, Notification.Position.BOTTOM_END).addThemeVariants(NotificationVariant.LUMO_CONTRAST);
+        }
+        if (!cleanup.failed().isEmpty()) {
+            AliasFailure first = cleanup.failed().getFirst();
+            Notification.show("Could not remove it from " + cleanup.failed().size()
+                            + (cleanup.failed().size() == 1 ? " alias" : " aliases")
+                            + ", first " + first.alias() + ": " + first.message(),
+                    5000, Notification.Position.BOTTOM_END).addThemeVariants(NotificationVariant.LUMO_ERROR);
+        }
+        onDeleted.accept(cleanup);
+    }
+}
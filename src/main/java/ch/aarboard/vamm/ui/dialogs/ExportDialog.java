@@ -0,0 +1,117 @@
+package ch.aarboard.vamm.ui.dialogs;
+
+import ch.aarboard.vamm.ldif.DirectoryExporter;
+import com.vaadin.flow.component.button.Button;
+import com.vaadin.flow.component.button.ButtonVariant;
+import com.vaadin.flow.component.checkbox.Checkbox;
+import com.vaadin.flow.component.combobox.ComboBox;
+import com.vaadin.flow.component.dialog.Dialog;
+import com.vaadin.flow.component.formlayout.FormLayout;
+import com.vaadin.flow.component.html.Anchor;
+import com.vaadin.flow.component.icon.Icon;
+import com.vaadin.flow.component.icon.VaadinIcon;
+import com.vaadin.flow.component.orderedlayout.HorizontalLayout;
+import com.vaadin.flow.component.radiobutton.RadioButtonGroup;
+import com.vaadin.flow.server.StreamResource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Exports a domain or the whole tree as a download. The export is written straight into the
+ * HTTP response by the {@link DirectoryExporter} while the browser receives it.
+ */
+public class ExportDialog extends Dialog {
+
+    private static final Logger log = LoggerFactory.getLogger(ExportDialog.class);
+
+    private static final String ALL_DOMAINS = "All domains";
+
+    private final DirectoryExporter directoryExporter;
+
+    private final ComboBox<String> scope;
+    private final RadioButtonGroup<DirectoryExporter.Format> format;
+    private final Checkbox gzip;
+    private final Anchor download;
+
+    public ExportDialog(DirectoryExporter directoryExporter) {
+        this.directoryExporter = directoryExporter;
+
+        setHeaderTitle("Export");
+        setModal(true);
+        setDraggable(true);
+
+        scope = new ComboBox<>("Domain");
+        scope.setAllowCustomValue(false);
+        scope.setWidthFull();
+
+        format = new RadioButtonGroup<>("Format");
+        format.setItems(DirectoryExporter.Format.values());
+        format.setValue(DirectoryExporter.Format.LDIF);
+
+        gzip = new Checkbox("Compress with gzip");
+
+        FormLayout formLayout = new FormLayout(scope, format, gzip);
+        formLayout.setResponsiveSteps(new FormLayout.ResponsiveStep("0", 1));
+
+        Button downloadButton = new Button("Download", new Icon(VaadinIcon.DOWNLOAD));
+        downloadButton.addThemeVariants(ButtonVariant.LUMO_PRIMARY);
+        download = new Anchor();
+        download.getElement().setAttribute("download", true);
+        download.add(downloadButton);
+
+        scope.addValueChangeListener(e -> updateDownload());
+        format.addValueChangeListener(e -> updateDownload());
+        gzip.addValueChangeListener(e -> updateDownload());
+
+        Button closeButton = new Button("Close", e -> close());
+
+        HorizontalLayout buttonLayout = new HorizontalLayout(closeButton, download);
+        buttonLayout.setJustifyContentMode(HorizontalLayout.JustifyContentMode.END);
+
+        add(formLayout, buttonLayout);
+    }
+
+    /**
+     * Open the dialog with the given domains to choose from
+     *
+     * @param domains  The domains which can be exported
+     * @param selected The preselected domain, null to export everything
+     */
+    public void open(Collection<String> domains, String selected) {
+        scope.setItems(concat(domains));
+        scope.setValue(selected != null && domains.contains(selected) ? selected : ALL_DOMAINS);
+        updateDownload();
+        super.open();
+    }
+
+    private static List<String> concat(Collection<String> domains) {
+        List<String> items = new ArrayList<>(domains.size() + 1);
+        items.add(ALL_DOMAINS);
+        items.addAll(domains);
+        return items;
+    }
+
+    private void updateDownload() {
+        String domain = ALL_DOMAINS.equals(scope.getValue()) ? null : scope.getValue();
+        DirectoryExporter.Format selectedFormat = format.getValue() != null ? format.getValue() : DirectoryExporter.Format.LDIF;
+        boolean compressed = gzip.getValue();
+
+        String fileName = DirectoryExporter.fileName(domain, selectedFormat, compressed);
+        StreamResource resource = new StreamResource(fileName, (out, session) -> {
+            // Runs in the download request, the user's authentication is available there as well
+            try {
+                directoryExporter.export(domain, selectedFormat, compressed, out);
+            } catch (RuntimeException e) {
+                log.error("Export of {} failed", fileName, e);
+                throw e;
+            }
+        });
+        resource.setContentType(compressed ? "application/gzip" : selectedFormat.getContentType());
+        resource.setCacheTime(0);
+        download.setHref(resource);
+    }
+}
@@ -0,0 +1,131 @@
+package ch.aarboard.vamm.ui.dialogs;
+
+import ch.aarboard.vamm.jobs.JobService;
+import ch.aarboard.vamm.ldif.BulkJob;
+import ch.aarboard.vamm.ldif.LdifImporter;
+import com.vaadin.flow.component.button.Button;
+import com.vaadin.flow.component.button.ButtonVariant;
+import com.vaadin.flow.component.dialog.Dialog;
+import com.vaadin.flow.component.html.Paragraph;
+import com.vaadin.flow.component.notification.Notification;
+import com.vaadin.flow.component.notification.NotificationVariant;
+import com.vaadin.flow.component.orderedlayout.HorizontalLayout;
+import com.vaadin.flow.component.upload.Upload;
+import com.vaadin.flow.component.upload.receivers.FileBuffer;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Uploads an LDIF file and hands it to the {@link LdifImporter} as a background job.
+ * The uploaded file is kept in a temporary file until the job is done.
+ */
+public class ImportLdifDialog extends Dialog {
+
+    /** Job type of LDIF imports */
+    public static final String IMPORT_JOB = "ldif-import";
+
+    private final JobService jobService;
+    private final LdifImporter ldifImporter;
+
+    private final Upload upload;
+    private final Button importButton;
+    private FileBuffer buffer;
+    private Path uploadedFile;
+    private String uploadedName;
+
+    public ImportLdifDialog(JobService jobService, LdifImporter ldifImporter) {
+        this.jobService = jobService;
+        this.ldifImporter = ldifImporter;
+
+        setHeaderTitle("Import LDIF");
+        setModal(true);
+        setDraggable(true);
+
+        Paragraph help = new Paragraph("Domains, accounts, aliases and postmasters are created from the file. "
+                + "Plain text passwords are hashed, existing entries are reported and left unchanged.");
+
+        importButton = new Button("Import");
+        importButton.addThemeVariants(ButtonVariant.LUMO_PRIMARY);
+        importButton.setEnabled(false);
+        importButton.addClickListener(e -> startImport());
+
+        buffer = new FileBuffer();
+        upload = new Upload(buffer);
+        upload.setAcceptedFileTypes(".ldif", "text/plain", "text/x-ldif");
+        upload.setMaxFiles(1);
+        upload.addSucceededListener(e -> {
+            uploadedFile = buffer.getFileData().getFile().toPath();
+            uploadedName = e.getFileName();
+            importButton.setEnabled(true);
+        });
+        upload.addFileRejectedListener(e ->
+                Notification.show(e.getErrorMessage(), 5000, Notification.Position.BOTTOM_END)
+                        .addThemeVariants(NotificationVariant.LUMO_ERROR));
+
+        Button cancelButton = new Button("Cancel");
+        cancelButton.addClickListener(e -> {
+            discardUpload();
+            close();
+        });
+
+        HorizontalLayout buttonLayout = new HorizontalLayout(cancelButton, importButton);
+        buttonLayout.setJustifyContentMode(HorizontalLayout.JustifyContentMode.END);
+
+        add(help, upload, buttonLayout);
+    }
+
+    @Override
+    public void open() {
+        reset();
+        super.open();
+    }
+
+    private void startImport() {
+        Path file = uploadedFile;
+        String name = uploadedName;
+        if (file == null) {
+            return;
+        }
+
+        try {
+            jobService.submit(IMPORT_JOB, name, "Import " + name, context -> {
+                try {
+                    BulkJob.Result result = ldifImporter.importFile(file,
+                            progress -> context.progress(progress.processed(), progress.total()));
+                    context.message(result.summary("record"));
+                } finally {
+                    Files.deleteIfExists(file);
+                }
+            });
+            uploadedFile = null; // Owned by the job now
+
+            Notification.show("Importing " + name + " in the background", 3000, Notification.Position.BOTTOM_END)
+                    .addThemeVariants(NotificationVariant.LUMO_CONTRAST);
+            close();
+        } catch (Exception e) {
+            Notification.show("Error starting import: " + e.getMessage(), 5000, Notification.Position.BOTTOM_END)
+                    .addThemeVariants(NotificationVariant.LUMO_ERROR);
+        }
+    }
+
+    private void reset() {
+        discardUpload();
+        buffer = new FileBuffer();
+        upload.setReceiver(buffer);
+        upload.clearFileList();
+        importButton.setEnabled(false);
+    }
+
+    private void discardUpload() {
+        if (uploadedFile != null) {
+            try {
+                Files.deleteIfExists(uploadedFile);
+            } catch (IOException ignored) {
+                // Temporary file, cleaned up by the OS otherwise
+            }
+            uploadedFile = null;
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package ch.aarboard.vamm.ui.dialogs;
+
+import ch.aarboard.vamm.jobs.JobService;
+import ch.aarboard.vamm.ldif.BulkJob;
+import ch.aarboard.vamm.ldif.CsvProvisioner;
+import ch.aarboard.vamm.ldif.DirectoryExporter;
+import com.vaadin.flow.component.button.Button;
+import com.vaadin.flow.component.button.ButtonVariant;
+import com.vaadin.flow.component.checkbox.Checkbox;
+import com.vaadin.flow.component.dialog.Dialog;
+import com.vaadin.flow.component.html.Paragraph;
+import com.vaadin.flow.component.notification.Notification;
+import com.vaadin.flow.component.notification.NotificationVariant;
+import com.vaadin.flow.component.orderedlayout.HorizontalLayout;
+import com.vaadin.flow.component.upload.Upload;
+import com.vaadin.flow.component.upload.receivers.FileBuffer;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Uploads a CSV file of accounts and aliases and hands it to the {@link CsvProvisioner} as a
+ * background job, optionally as a dry run. The summary is shown in the jobs view.
+ */
+public class ProvisionCsvDialog extends Dialog {
+
+    /** Job type of CSV provisioning */
+    public static final String PROVISION_JOB = "csv-provision";
+
+    private final JobService jobService;
+    private final CsvProvisioner csvProvisioner;
+
+    private final Upload upload;
+    private final Checkbox dryRun;
+    private final Button importButton;
+    private FileBuffer buffer;
+    private Path uploadedFile;
+    private String uploadedName;
+
+    public ProvisionCsvDialog(JobService jobService, CsvProvisioner csvProvisioner) {
+        this.jobService = jobService;
+        this.csvProvisioner = csvProvisioner;
+
+        setHeaderTitle("Import CSV");
+        setModal(true);
+        setDraggable(true);
+
+        Paragraph help = new Paragraph("One account or alias per row with the columns "
+                + String.join(", ", DirectoryExporter.CSV_COLUMNS) + " and " + CsvProvisioner.PASSWORD_COLUMN
+                + ", only mail is required. Existing addresses are reported and left unchanged.");
+
+        dryRun = new Checkbox("Dry run, only check the file");
+
+        importButton = new Button("Import");
+        importButton.addThemeVariants(ButtonVariant.LUMO_PRIMARY);
+        importButton.setEnabled(false);
+        importButton.addClickListener(e -> startImport());
+
+        buffer = new FileBuffer();
+        upload = new Upload(buffer);
+        upload.setAcceptedFileTypes(".csv", "text/csv", "text/plain");
+        upload.setMaxFiles(1);
+        upload.addSucceededListener(e -> {
+            uploadedFile = buffer.getFileData().getFile().toPath();
+            uploadedName = e.getFileName();
+            importButton.setEnabled(true);
+        });
+        upload.addFileRejectedListener(e ->
+                Notification.show(e.getErrorMessage(), 5000, Notification.Position.BOTTOM_END)
+                        .addThemeVariants(NotificationVariant.LUMO_ERROR));
+
+        Button cancelButton = new Button("Cancel");
+        cancelButton.addClickListener(e -> {
+            discardUpload();
+            close();
+        });
+
+        HorizontalLayout buttonLayout = new HorizontalLayout(cancelButton, importButton);
+        buttonLayout.setJustifyContentMode(HorizontalLayout.JustifyContentMode.END);
+
+        add(help, upload, dryRun, buttonLayout);
+    }
+
+    @Override
+    public void open() {
+        reset();
+        super.open();
+    }
+
+    private void startImport() {
+        Path file = uploadedFile;
+        String name = uploadedName;
+        boolean checkOnly = dryRun.getValue();
+        if (file == null) {
+            return;
+        }
+
+        try {
+            jobService.submit(PROVISION_JOB, name, (checkOnly ? "Check " : "Import ") + name, context -> {
+                try {
+                    BulkJob.Result result = csvProvisioner.provisionFile(file, checkOnly,
+                            progress -> context.progress(progress.processed(), progress.total()));
+                    context.message(result.summary("row"));
+                } finally {
+                    Files.deleteIfExists(file);
+                }
+            });
+            uploadedFile = null; // Owned by the job now
+
+            Notification.show((checkOnly ? "Checking " : "Importing ") + name + " in the background", 3000,
+                            Notification.Position.BOTTOM_END)
+                    .addThemeVariants(NotificationVariant.LUMO_CONTRAST);
+            close();
+        } catch (Exception e) {
+            Notification.show("Error starting import: " + e.getMessage(), 5000, Notification.Position.BOTTOM_END)
+                    .addThemeVariants(NotificationVariant.LUMO_ERROR);
+        }
+    }
+
+    private void reset() {
+        discardUpload();
+        buffer = new FileBuffer();
+        upload.setReceiver(buffer);
+        upload.clearFileList();
+        dryRun.setValue(false);
+        importButton.setEnabled(false);
+    }
+
+    private void discardUpload() {
+        if (uploadedFile != null) {
+            try {
+                Files.deleteIfExists(uploadedFile);
+            } catch (IOException ignored) {
+                // Temporary file, cleaned up by the OS otherwise
+            }
+            uploadedFile = null;
+        }
+    }
+}
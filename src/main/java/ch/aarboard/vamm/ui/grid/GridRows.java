@@ -0,0 +1,126 @@
+package ch.aarboard.vamm.ui.grid;
+
+import com.vaadin.flow.component.grid.Grid;
+import com.vaadin.flow.data.provider.DataProvider;
+import com.vaadin.flow.data.provider.ListDataProvider;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Function;
+
+/**
+ * Single-row updates for in-memory grids, so a view can apply the result of one
+ * mutation without reloading every row from LDAP.
+ *
+ * Entities do not implement equals/hashCode, rows are therefore matched with an
+ * explicit identifier function (e.g. the mail address or domain name). The grid's data
+ * provider uses the same function as item id, so a freshly loaded instance re-renders
+ * the row of the one it replaces.
+ */
+public final class GridRows {
+
+    private GridRows() {
+    }
+
+    /**
+     * Set the items of a grid backed by a mutable list, which the other methods rely on.
+     *
+     * @param identifier The id of a row, must be the one passed to the other methods
+     */
+    public static <T> void setItems(Grid<T> grid, Collection<T> items, Function<T, ?> identifier) {
+        grid.setItems(new ListDataProvider<>(new ArrayList<>(items)) {
+            @Override
+            public Object getId(T item) {
+                return identifier.apply(item);
+            }
+        });
+    }
+
+    /**
+     * Replace the row with the same identifier and re-render it.
+     *
+     * @return true if a matching row was found
+     */
+    public static <T> boolean replace(Grid<T> grid, T updated, Function<T, ?> identifier) {
+        List<T> rows = rows(grid);
+        if (rows == null) {
+            return false;
+        }
+
+        Object id = identifier.apply(updated);
+        for (int i = 0; i < rows.size(); i++) {
+            if (Objects.equals(identifier.apply(rows.get(i)), id)) {
+                rows.set(i, updated);
+                grid.getDataProvider().refreshItem(updated);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Append a row, or replace it if a row with the same identifier already exists.
+     */
+    public static <T> void add(Grid<T> grid, T item, Function<T, ?> identifier) {
+        if (!replace(grid, item, identifier)) {
+            grid.getListDataView().addItem(item);
+        }
+    }
+
+    /**
+     * Remove the row with the same identifier.
+     *
+     * @return true if a matching row was removed
+     */
+    public static <T> boolean remove(Grid<T> grid, T item, Function<T, ?> identifier) {
+        List<T> rows = rows(grid);
+        if (rows == null) {
+            return false;
+        }
+
+        Object id = identifier.apply(item);
+        boolean removed = rows.removeIf(row -> Objects.equals(identifier.apply(row), id));
+        if (removed) {
+            grid.getDataProvider().refreshAll();
+        }
+        return removed;
+    }
+
+    /**
+     * Remove the row with the given identifier, for callers that only know the id.
+     *
+     * @return true if a matching row was removed
+     */
+    public static <T> boolean removeById(Grid<T> grid, Object id, Function<T, ?> identifier) {
+        List<T> rows = rows(grid);
+        if (rows == null) {
+            return false;
+        }
+
+        boolean removed = rows.removeIf(row -> Objects.equals(identifier.apply(row), id));
+        if (removed) {
+            grid.getDataProvider().refreshAll();
+        }
+        return removed;
+    }
+
+    /**
+     * Number of rows currently held by the grid
+     */
+    public static <T> int count(Grid<T> grid) {
+        List<T> rows = rows(grid);
+        return rows == null ? 0 : rows.size();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> List<T> rows(Grid<T> grid) {
+        DataProvider<T, ?> provider = grid.getDataProvider();
+        if (provider instanceof ListDataProvider<?> listProvider
+                && listProvider.getItems() instanceof List<?> list) {
+            return (List<T>) list;
+        }
+        return null;
+    }
+}
@@ -2,15 +2,22 @@ package ch.aarboard.vamm.ui.layouts;
 
 import ch.aarboard.vamm.data.entries.JammMailAccount;
 import ch.aarboard.vamm.data.entries.JammMailAlias;
-import ch.aarboard.vamm.events.DomainContentChangedEvent;
+import ch.aarboard.vamm.events.DomainContentBroadcaster;
+import ch.aarboard.vamm.events.DomainContentChangedEvent.ContentType;
+import ch.aarboard.vamm.events.DomainContentDelta;
+import ch.aarboard.vamm.index.AddressSearchIndex;
 import ch.aarboard.vamm.security.SecurityService;
 import ch.aarboard.vamm.services.JammMailAccountManagementService;
 import ch.aarboard.vamm.services.JammMailAliasManagemeentService;
+import ch.aarboard.vamm.ui.loading.ViewDataLoader;
+import ch.aarboard.vamm.utils.MailUtils;
 import com.vaadin.flow.component.Component;
+import com.vaadin.flow.component.DetachEvent;
 import com.vaadin.flow.component.UI;
 import com.vaadin.flow.component.applayout.AppLayout;
 import com.vaadin.flow.component.button.Button;
 import com.vaadin.flow.component.button.ButtonVariant;
+import com.vaadin.flow.component.combobox.ComboBox;
 import com.vaadin.flow.component.html.Div;
 import com.vaadin.flow.component.html.Hr;
 import com.vaadin.flow.component.html.Span;
@@ -25,6 +32,7 @@ import com.vaadin.flow.router.BeforeEnterObserver;
 import com.vaadin.flow.router.Layout;
 import com.vaadin.flow.server.menu.MenuConfiguration;
 import com.vaadin.flow.server.menu.MenuEntry;
+import com.vaadin.flow.shared.Registration;
 import com.vaadin.flow.spring.annotation.SpringComponent;
 import com.vaadin.flow.spring.annotation.UIScope;
 import com.vaadin.flow.theme.lumo.LumoUtility;
@@ -32,14 +40,14 @@ import jakarta.annotation.security.PermitAll;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.annotation.Lazy;
-import org.springframework.context.event.EventListener;
-import org.springframework.scheduling.annotation.Async;
+import org.springframework.security.core.context.SecurityContext;
 import org.springframework.security.core.context.SecurityContextHolder;
 
 import java.util.List;
 import java.util.Optional;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.stream.Stream;
 
 @Layout
 @PermitAll
@@ -48,11 +56,19 @@ import java.util.regex.Pattern;
 public class MainLayout extends AppLayout implements BeforeEnterObserver {
 
     private final ApplicationContext applicationContext;
+    private final DomainContentBroadcaster broadcaster;
+    private final ViewDataLoader viewDataLoader;
 
     private SideNav mainNav;
     private VerticalLayout dynamicNavContainer;
     private String currentDomain = null;
     private boolean isDomainContext = false;
+    private Registration domainSubscription;
+    // Broadcasts arrive on a thread without a user, reloads run with the subscriber's context
+    private SecurityContext subscriberContext;
+    private ViewDataLoader.PendingLoad navigationLoad;
+    private List<JammMailAccount> navigationAccounts = List.of();
+    private List<JammMailAlias> navigationAliases = List.of();
 
     // Lazy-loaded services
     @Autowired
@@ -68,8 +84,15 @@ public class MainLayout extends AppLayout implements BeforeEnterObserver {
     private SecurityService securityService;
 
     @Autowired
-    public MainLayout(ApplicationContext applicationContext) {
+    @Lazy
+    private AddressSearchIndex addressSearchIndex;
+
+    @Autowired
+    public MainLayout(ApplicationContext applicationContext, DomainContentBroadcaster broadcaster,
+                      ViewDataLoader viewDataLoader) {
         this.applicationContext = applicationContext;
+        this.broadcaster = broadcaster;
+        this.viewDataLoader = viewDataLoader;
 
         setPrimarySection(Section.DRAWER);
 
@@ -84,17 +107,45 @@ public class MainLayout extends AppLayout implements BeforeEnterObserver {
         mainNav = createMainSideNav();
         dynamicNavContainer.add(mainNav);
 
-        addToDrawer(createHeader(), new Scroller(dynamicNavContainer), createUserMenu());
+        addToDrawer(createHeader(), createSearchBox(), new Scroller(dynamicNavContainer), createUserMenu());
     }
 
-    @EventListener
-    @Async
-    public void handleDomainContentChanged(DomainContentChangedEvent event) {
-        // Only update if this layout is currently showing the affected domain
-        if (isDomainContext && event.getDomainName().equals(currentDomain)) {
-            // Use UI.access to safely update the UI from a background thread
-            getUI().ifPresent(ui -> ui.access(this::updateDynamicNavigation));
+    /**
+     * Called once per coalescing window with all changes of the displayed domain,
+     * already inside {@code UI.access} but on the broadcaster's thread. Only the lists
+     * named in the delta are reloaded, in the background and as the subscribed user.
+     */
+    private void handleDomainContentChanged(DomainContentDelta delta) {
+        if (!isDomainContext || !delta.domainName().equalsIgnoreCase(currentDomain)) {
+            return;
+        }
+        boolean accountsChanged = delta.contains(
+                ContentType.ACCOUNT_CREATED, ContentType.ACCOUNT_UPDATED, ContentType.ACCOUNT_DELETED);
+        boolean aliasesChanged = delta.contains(
+                ContentType.ALIAS_CREATED, ContentType.ALIAS_UPDATED, ContentType.ALIAS_DELETED);
+        if (!accountsChanged && !aliasesChanged) {
+            return;
         }
+
+        cancelNavigationLoad();
+        String domain = currentDomain;
+        List<JammMailAccount> accounts = navigationAccounts;
+        List<JammMailAlias> aliases = navigationAliases;
+        navigationLoad = viewDataLoader.load(getUI().orElseThrow(), subscriberContext,
+                () -> new NavigationContent(
+                        accountsChanged ? loadAccounts(domain) : accounts,
+                        aliasesChanged ? loadAliases(domain) : aliases),
+                content -> {
+                    if (domain.equals(currentDomain)) {
+                        showDynamicNavigation(content.accounts(), content.aliases());
+                    }
+                },
+                e -> {
+                    // Both loaders report their own errors, the navigation stays as it is
+                });
+    }
+
+    private record NavigationContent(List<JammMailAccount> accounts, List<JammMailAlias> aliases) {
     }
 
 
@@ -102,6 +153,36 @@ public class MainLayout extends AppLayout implements BeforeEnterObserver {
     public void beforeEnter(BeforeEnterEvent event) {
         String location = event.getLocation().getPath();
         updateNavigationForLocation(location);
+        updateDomainSubscription(event.getUI());
+    }
+
+    @Override
+    protected void onDetach(DetachEvent detachEvent) {
+        removeDomainSubscription();
+        cancelNavigationLoad();
+        super.onDetach(detachEvent);
+    }
+
+    private void updateDomainSubscription(UI ui) {
+        removeDomainSubscription();
+        if (isDomainContext && currentDomain != null) {
+            subscriberContext = SecurityContextHolder.getContext();
+            domainSubscription = broadcaster.register(currentDomain, ui, this::handleDomainContentChanged);
+        }
+    }
+
+    private void cancelNavigationLoad() {
+        if (navigationLoad != null) {
+            navigationLoad.cancel();
+            navigationLoad = null;
+        }
+    }
+
+    private void removeDomainSubscription() {
+        if (domainSubscription != null) {
+            domainSubscription.remove();
+            domainSubscription = null;
+        }
     }
 
     private void updateNavigationForLocation(String location) {
@@ -115,6 +196,7 @@ public class MainLayout extends AppLayout implements BeforeEnterObserver {
 
             currentDomain = extractedDomain;
             isDomainContext = newIsDomainContext;
+            cancelNavigationLoad();
             updateDynamicNavigation();
         }
     }
@@ -131,6 +213,17 @@ public class MainLayout extends AppLayout implements BeforeEnterObserver {
     }
 
     private void updateDynamicNavigation() {
+        if (isDomainContext && currentDomain != null) {
+            showDynamicNavigation(loadAccounts(currentDomain), loadAliases(currentDomain));
+        } else {
+            showDynamicNavigation(List.of(), List.of());
+        }
+    }
+
+    private void showDynamicNavigation(List<JammMailAccount> accounts, List<JammMailAlias> aliases) {
+        navigationAccounts = accounts;
+        navigationAliases = aliases;
+
         // Clear existing dynamic navigation
         dynamicNavContainer.removeAll();
 
@@ -139,11 +232,29 @@ public class MainLayout extends AppLayout implements BeforeEnterObserver {
 
         if (isDomainContext && currentDomain != null) {
             // Add domain-specific navigation
-            dynamicNavContainer.add(createDomainNavigation());
+            dynamicNavContainer.add(createDomainNavigation(accounts, aliases));
+        }
+    }
+
+    private List<JammMailAccount> loadAccounts(String domain) {
+        try {
+            return getAccountService().getAccountsByDomain(domain);
+        } catch (Exception e) {
+            System.err.println("Error loading accounts for navigation: " + e.getMessage());
+            return List.of();
+        }
+    }
+
+    private List<JammMailAlias> loadAliases(String domain) {
+        try {
+            return getAliasService().getAliasesByDomain(domain);
+        } catch (Exception e) {
+            System.err.println("Error loading aliases for navigation: " + e.getMessage());
+            return List.of();
         }
     }
 
-    private Component createDomainNavigation() {
+    private Component createDomainNavigation(List<JammMailAccount> accounts, List<JammMailAlias> aliases) {
         VerticalLayout domainSection = new VerticalLayout();
         domainSection.setPadding(false);
         domainSection.setSpacing(false);
@@ -187,23 +298,13 @@ public class MainLayout extends AppLayout implements BeforeEnterObserver {
         domainSection.add(domainNav);
 
         // Add accounts section
-        try {
-            List<JammMailAccount> accounts = getAccountService().getAccountsByDomain(currentDomain);
-            if (!accounts.isEmpty()) {
-                domainSection.add(createAccountsNavigation(accounts));
-            }
-        } catch (Exception e) {
-            System.err.println("Error loading accounts for navigation: " + e.getMessage());
+        if (!accounts.isEmpty()) {
+            domainSection.add(createAccountsNavigation(accounts));
         }
 
         // Add aliases section
-        try {
-            List<JammMailAlias> aliases = getAliasService().getAliasesByDomain(currentDomain);
-            if (!aliases.isEmpty()) {
-                domainSection.add(createAliasesNavigation(aliases));
-            }
-        } catch (Exception e) {
-            System.err.println("Error loading aliases for navigation: " + e.getMessage());
+        if (!aliases.isEmpty()) {
+            domainSection.add(createAliasesNavigation(aliases));
         }
 
         return domainSection;
@@ -339,6 +440,46 @@ public class MainLayout extends AppLayout implements BeforeEnterObserver {
         return header;
     }
 
+    /**
+     * Finds accounts and aliases of all accessible domains in the {@link AddressSearchIndex}
+     */
+    private Component createSearchBox() {
+        ComboBox<AddressSearchIndex.Match> search = new ComboBox<>();
+        // The index is empty until the indexer scanned the directory, and without jamm.index.bind-dn for good
+        Runnable showReadiness = () -> search.setPlaceholder(addressSearchIndex.isReady()
+                ? "Search addresses" : "Address index not ready");
+        showReadiness.run();
+        search.addFocusListener(e -> showReadiness.run());
+        search.setPrefixComponent(new Icon(VaadinIcon.SEARCH));
+        search.setClearButtonVisible(true);
+        search.setWidthFull();
+        search.addClassNames(LumoUtility.Padding.Horizontal.MEDIUM);
+        search.setItemLabelGenerator(match -> match.field().equals("mail")
+                ? match.mail()
+                : match.mail() + " (" + match.field() + ": " + match.value() + ")");
+        search.setItems(query -> {
+            String term = query.getFilter().orElse("");
+            if (term.strip().length() < 2 || !addressSearchIndex.isReady()) {
+                return Stream.empty();
+            }
+            int limit = query.getOffset() + query.getLimit();
+            return addressSearchIndex.search(term, limit, securityService::canAccessDomain)
+                    .matches().stream()
+                    .skip(query.getOffset());
+        });
+        search.addValueChangeListener(event -> {
+            AddressSearchIndex.Match match = event.getValue();
+            if (match == null || match.domain() == null) {
+                return;
+            }
+            String local = MailUtils.extractUserFromMail(match.mail());
+            String kind = match.kind() == AddressSearchIndex.Kind.ACCOUNT ? "account" : "alias";
+            search.clear();
+            UI.getCurrent().navigate("domain/" + match.domain() + "/" + kind + "/" + local);
+        });
+        return search;
+    }
+
     private SideNav createMainSideNav() {
         var nav = new SideNav();
         nav.setWidthFull();
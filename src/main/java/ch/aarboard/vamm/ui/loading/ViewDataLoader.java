@@ -0,0 +1,148 @@
+package ch.aarboard.vamm.ui.loading;
+
+import ch.aarboard.vamm.config.AsyncConfig;
+import ch.aarboard.vamm.monitoring.FlightRecorderEvents;
+import com.vaadin.flow.component.UI;
+import com.vaadin.flow.function.SerializableConsumer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+/**
+ * Runs view data loading on a background executor and pushes the result back
+ * into the UI with {@link UI#access}. Views render their placeholders first and
+ * keep the returned {@link PendingLoad} so that a superseded load can be cancelled.
+ */
+@Component
+public class ViewDataLoader {
+
+    private static final Logger log = LoggerFactory.getLogger(ViewDataLoader.class);
+
+    private final AsyncTaskExecutor executor;
+
+    public ViewDataLoader(@Qualifier(AsyncConfig.VIEW_LOAD_EXECUTOR) AsyncTaskExecutor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Load data in the background and deliver it to the given UI.
+     * The security context of the calling thread is propagated so the LDAP
+     * session is opened with the credentials of the current user, and so is the
+     * view being loaded so that its LDAP requests are counted for it.
+     *
+     * @param ui       The UI that receives the result
+     * @param loader   The (blocking) data access to run in the background
+     * @param onLoaded Called inside {@code UI.access} with the loaded data
+     * @param onError  Called inside {@code UI.access} if the loader failed
+     * @return A handle that allows cancelling the load
+     */
+    public <T> PendingLoad load(UI ui, Supplier<T> loader,
+                                SerializableConsumer<T> onLoaded,
+                                SerializableConsumer<Exception> onError) {
+        return load(ui, SecurityContextHolder.getContext(), loader, onLoaded, onError);
+    }
+
+    /**
+     * Load data in the background with the given security context instead of the one of
+     * the calling thread. Used when the load is triggered from a thread that has no user,
+     * e.g. a broadcast delivered to a UI that captured its context when it subscribed.
+     *
+     * @see #load(UI, Supplier, SerializableConsumer, SerializableConsumer)
+     */
+    public <T> PendingLoad load(UI ui, SecurityContext securityContext, Supplier<T> loader,
+                                SerializableConsumer<T> onLoaded,
+                                SerializableConsumer<Exception> onError) {
+        FlightRecorderEvents.Fork viewLoad = FlightRecorderEvents.fork();
+        PendingLoad pending = new PendingLoad(viewLoad);
+
+        try {
+            Future<?> future = executor.submit(() -> viewLoad.run(() -> {
+                if (pending.isCancelled()) {
+                    return;
+                }
+                SecurityContextHolder.setContext(securityContext);
+                try {
+                    T result = loader.get();
+                    deliver(ui, pending, () -> onLoaded.accept(result));
+                } catch (Exception e) {
+                    log.debug("Background load failed: {}", e.getMessage());
+                    deliver(ui, pending, () -> onError.accept(e));
+                } finally {
+                    SecurityContextHolder.clearContext();
+                    viewLoad.close();
+                }
+            }));
+            pending.attach(future);
+        } catch (TaskRejectedException e) {
+            log.warn("View load rejected, executor saturated: {}", e.getMessage());
+            viewLoad.close();
+            onError.accept(e);
+        }
+        return pending;
+    }
+
+    private void deliver(UI ui, PendingLoad pending, Runnable command) {
+        if (pending.isCancelled()) {
+            return;
+        }
+        try {
+            // Re-check inside the session lock: cancel() is called from UI code holding the same lock
+            ui.access(() -> {
+                if (!pending.isCancelled()) {
+                    command.run();
+                }
+            });
+        } catch (Exception e) {
+            log.debug("Could not deliver view data, UI detached: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Handle for a background load. Cancelling prevents the result from being applied
+     * and interrupts the worker if the load has not completed yet.
+     */
+    public static final class PendingLoad {
+
+        private volatile boolean cancelled = false;
+        private volatile Future<?> future;
+        private final FlightRecorderEvents.Fork viewLoad;
+
+        private PendingLoad(FlightRecorderEvents.Fork viewLoad) {
+            this.viewLoad = viewLoad;
+        }
+
+        private void attach(Future<?> future) {
+            this.future = future;
+            if (cancelled) {
+                future.cancel(true);
+            }
+        }
+
+        public void cancel() {
+            cancelled = true;
+            Future<?> f = future;
+            if (f != null) {
+                f.cancel(true);
+            }
+            // A task cancelled before it started never closes the view load itself
+            viewLoad.close();
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        public boolean isDone() {
+            Future<?> f = future;
+            return cancelled || (f != null && f.isDone());
+        }
+    }
+}
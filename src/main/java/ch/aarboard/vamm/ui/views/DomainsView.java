@@ -1,11 +1,27 @@
 package ch.aarboard.vamm.ui.views;
 
 import ch.aarboard.vamm.data.entries.JammVirtualDomain;
+import ch.aarboard.vamm.index.AddressAutocomplete;
+import ch.aarboard.vamm.jobs.JobRecord;
+import ch.aarboard.vamm.jobs.JobService;
+import ch.aarboard.vamm.jobs.JobStatus;
+import ch.aarboard.vamm.ldif.CsvProvisioner;
+import ch.aarboard.vamm.ldif.DirectoryExporter;
+import ch.aarboard.vamm.ldif.LdifImporter;
+import ch.aarboard.vamm.security.SecurityService;
 import ch.aarboard.vamm.services.JammVirtualDomainManagementService;
 import ch.aarboard.vamm.ui.dialogs.CreateDomainDialog;
+import ch.aarboard.vamm.ui.dialogs.ExportDialog;
+import ch.aarboard.vamm.ui.dialogs.ImportLdifDialog;
+import ch.aarboard.vamm.ui.dialogs.ProvisionCsvDialog;
+import ch.aarboard.vamm.ui.grid.GridRows;
+import ch.aarboard.vamm.ui.loading.ViewDataLoader;
 import ch.aarboard.vamm.ui.layouts.breadcrumbs.BreadcrumbLayout;
+import com.vaadin.flow.component.AttachEvent;
+import com.vaadin.flow.component.DetachEvent;
 import com.vaadin.flow.component.button.Button;
 import com.vaadin.flow.component.button.ButtonVariant;
+import com.vaadin.flow.component.combobox.ComboBox;
 import com.vaadin.flow.component.confirmdialog.ConfirmDialog;
 import com.vaadin.flow.component.dependency.Uses;
 import com.vaadin.flow.component.grid.GridVariant;
@@ -18,10 +34,12 @@ import com.vaadin.flow.component.notification.Notification;
 import com.vaadin.flow.component.notification.NotificationVariant;
 import com.vaadin.flow.component.orderedlayout.HorizontalLayout;
 import com.vaadin.flow.component.orderedlayout.VerticalLayout;
+import com.vaadin.flow.component.progressbar.ProgressBar;
 import com.vaadin.flow.data.renderer.ComponentRenderer;
 import com.vaadin.flow.router.Menu;
 import com.vaadin.flow.router.PageTitle;
 import com.vaadin.flow.router.Route;
+import com.vaadin.flow.shared.Registration;
 import com.vaadin.flow.theme.lumo.LumoUtility;
 import jakarta.annotation.security.PermitAll;
 import jakarta.annotation.security.RolesAllowed;
@@ -40,13 +58,36 @@ import java.time.format.DateTimeFormatter;
 @RolesAllowed("ROLE_SITE_ADMIN")
 public class DomainsView extends VerticalLayout {
 
+    /** Job type of background domain deletions */
+    public static final String DELETE_DOMAIN_JOB = "domain-delete";
+
     private final JammVirtualDomainManagementService domainService;
+    private final ViewDataLoader viewDataLoader;
+    private final JobService jobService;
+    private final AddressAutocomplete addressAutocomplete;
+    private final SecurityService securityService;
     private final Grid<JammVirtualDomain> grid;
+    private final ProgressBar loadingIndicator;
     private CreateDomainDialog createDomainDialog;
-
-
-    public DomainsView(@Autowired JammVirtualDomainManagementService domainService) {
+    private final ImportLdifDialog importLdifDialog;
+    private final ProvisionCsvDialog provisionCsvDialog;
+    private final ExportDialog exportDialog;
+    private ViewDataLoader.PendingLoad pendingLoad;
+    private Registration jobRegistration;
+
+    public DomainsView(@Autowired JammVirtualDomainManagementService domainService,
+                       @Autowired ViewDataLoader viewDataLoader,
+                       @Autowired JobService jobService,
+                       @Autowired LdifImporter ldifImporter,
+                       @Autowired CsvProvisioner csvProvisioner,
+                       @Autowired DirectoryExporter directoryExporter,
+                       @Autowired AddressAutocomplete addressAutocomplete,
+                       @Autowired SecurityService securityService) {
         this.domainService = domainService;
+        this.viewDataLoader = viewDataLoader;
+        this.jobService = jobService;
+        this.addressAutocomplete = addressAutocomplete;
+        this.securityService = securityService;
 
         setSizeFull();
         addClassNames("domains-view");
@@ -54,14 +95,38 @@ public class DomainsView extends VerticalLayout {
 
         createHeader();
 
+        loadingIndicator = new ProgressBar();
+        loadingIndicator.setIndeterminate(true);
+        loadingIndicator.setVisible(false);
+        add(loadingIndicator);
+
         grid = createGrid();
         add(grid);
 
-        // Load data
-        refreshGrid();
+        // Data is loaded in the background once the view is attached
 
         // Create dialog
-        createDomainDialog = new CreateDomainDialog(domainService, this::refreshGrid);
+        createDomainDialog = new CreateDomainDialog(domainService, this::domainCreated);
+        importLdifDialog = new ImportLdifDialog(jobService, ldifImporter);
+        provisionCsvDialog = new ProvisionCsvDialog(jobService, csvProvisioner);
+        exportDialog = new ExportDialog(directoryExporter);
+    }
+
+    @Override
+    protected void onAttach(AttachEvent attachEvent) {
+        super.onAttach(attachEvent);
+        jobRegistration = jobService.register(attachEvent.getUI(), this::jobUpdated);
+        refreshGrid();
+    }
+
+    @Override
+    protected void onDetach(DetachEvent detachEvent) {
+        cancelPendingLoad();
+        if (jobRegistration != null) {
+            jobRegistration.remove();
+            jobRegistration = null;
+        }
+        super.onDetach(detachEvent);
     }
 
     private void createHeader() {
@@ -72,10 +137,21 @@ public class DomainsView extends VerticalLayout {
         createButton.addThemeVariants(ButtonVariant.LUMO_PRIMARY);
         createButton.addClickListener(e -> createDomainDialog.open());
 
+        Button importButton = new Button("Import LDIF", new Icon(VaadinIcon.UPLOAD));
+        importButton.addClickListener(e -> importLdifDialog.open());
+
+        Button provisionButton = new Button("Import CSV", new Icon(VaadinIcon.FILE_TABLE));
+        provisionButton.addClickListener(e -> provisionCsvDialog.open());
+
+        Button exportButton = new Button("Export", new Icon(VaadinIcon.DOWNLOAD));
+        exportButton.addClickListener(e -> exportDialog.open(
+                grid.getGenericDataView().getItems().map(JammVirtualDomain::getJvd).sorted().toList(), null));
+
         Button refreshButton = new Button("Refresh", new Icon(VaadinIcon.REFRESH));
         refreshButton.addClickListener(e -> refreshGrid());
 
-        HorizontalLayout header = new HorizontalLayout(new HorizontalLayout(title, createButton), refreshButton);
+        HorizontalLayout header = new HorizontalLayout(new HorizontalLayout(title, createButton, importButton, provisionButton, exportButton),
+                new HorizontalLayout(createDomainJump(), refreshButton));
         header.setWidthFull();
         header.setJustifyContentMode(JustifyContentMode.BETWEEN);
         header.setAlignItems(Alignment.CENTER);
@@ -84,10 +160,35 @@ public class DomainsView extends VerticalLayout {
         add(header);
     }
 
+    /**
+     * Opens a domain by name without waiting for the grid, completed from the directory index
+     */
+    private ComboBox<String> createDomainJump() {
+        ComboBox<String> jump = new ComboBox<>();
+        // The index is empty until the indexer scanned the directory, and without jamm.index.bind-dn for good
+        Runnable showReadiness = () -> jump.setPlaceholder(addressAutocomplete.isReady()
+                ? "Go to domain" : "Domain index not ready");
+        showReadiness.run();
+        jump.addFocusListener(e -> showReadiness.run());
+        jump.setPrefixComponent(new Icon(VaadinIcon.SEARCH));
+        jump.setClearButtonVisible(true);
+        jump.setItems(query -> addressAutocomplete.completeDomain(query.getFilter().orElse(""),
+                query.getOffset() + query.getLimit(), securityService::canAccessDomain).stream().skip(query.getOffset()));
+        jump.addValueChangeListener(e -> {
+            if (e.getValue() != null) {
+                String domain = e.getValue();
+                jump.clear();
+                getUI().ifPresent(ui -> ui.navigate("domain/" + domain));
+            }
+        });
+        return jump;
+    }
+
     private Grid<JammVirtualDomain> createGrid() {
         Grid<JammVirtualDomain> domainGrid = new Grid<>(JammVirtualDomain.class, false);
         domainGrid.addThemeVariants(GridVariant.LUMO_ROW_STRIPES, GridVariant.LUMO_WRAP_CELL_CONTENT);
         domainGrid.setSizeFull();
+        domainGrid.setEmptyStateText("Loading domains...");
 
         // Domain name column with status indicator
         domainGrid.addColumn(new ComponentRenderer<>(domain -> {
@@ -189,7 +290,11 @@ public class DomainsView extends VerticalLayout {
     private void toggleDomainStatus(JammVirtualDomain domain) {
         try {
             JammVirtualDomain updatedDomain = domainService.toggleDomainStatus(domain.getJvd());
-            refreshGrid();
+
+            // Toggling does not touch the content, keep the counts of the row
+            updatedDomain.setAccountCount(domain.getAccountCount());
+            updatedDomain.setAliasCount(domain.getAliasCount());
+            GridRows.replace(grid, updatedDomain, JammVirtualDomain::getJvd);
 
             String action = updatedDomain.isActive() ? "activated" : "deactivated";
             Notification.show("Domain " + domain.getJvd() + " has been " + action, 3000, Notification.Position.BOTTOM_END)
@@ -220,25 +325,77 @@ public class DomainsView extends VerticalLayout {
     }
 
     private void deleteDomain(JammVirtualDomain domain) {
+        String domainName = domain.getJvd();
         try {
-            domainService.deleteDomain(domain.getJvd());
-            refreshGrid();
+            // Large domains take minutes to delete, run it as a job and follow it in the jobs view
+            jobService.submit(DELETE_DOMAIN_JOB, domainName, "Delete domain " + domainName,
+                    context -> domainService.deleteDomain(domainName,
+                            progress -> context.progress(progress.deleted(), progress.total())));
 
-            Notification.show("Domain " + domain.getJvd() + " has been deleted", 3000, Notification.Position.BOTTOM_END)
-                    .addThemeVariants(NotificationVariant.LUMO_SUCCESS);
+            Notification.show("Deleting domain " + domainName + " in the background", 3000, Notification.Position.BOTTOM_END)
+                    .addThemeVariants(NotificationVariant.LUMO_CONTRAST);
         } catch (Exception e) {
             Notification.show("Error deleting domain: " + e.getMessage(), 5000, Notification.Position.BOTTOM_END)
                     .addThemeVariants(NotificationVariant.LUMO_ERROR);
         }
     }
 
-    private void refreshGrid() {
-        var items = domainService.getAllDomainsWithStats();
-        try {
-            grid.setItems(items);
-        } catch (Exception e) {
-            Notification.show("Error loading domains: " + e.getMessage(), 5000, Notification.Position.BOTTOM_END)
+    private void jobUpdated(JobRecord job) {
+        if (!job.isFinished()) {
+            return;
+        }
+        if (ImportLdifDialog.IMPORT_JOB.equals(job.type()) || ProvisionCsvDialog.PROVISION_JOB.equals(job.type())) {
+            // An import touches any number of domains, reload the counts
+            refreshGrid();
+            return;
+        }
+        if (!DELETE_DOMAIN_JOB.equals(job.type())) {
+            return;
+        }
+
+        if (job.status() == JobStatus.SUCCEEDED) {
+            if (GridRows.removeById(grid, job.subject(), JammVirtualDomain::getJvd)) {
+                Notification.show("Domain " + job.subject() + " has been deleted", 3000, Notification.Position.BOTTOM_END)
+                        .addThemeVariants(NotificationVariant.LUMO_SUCCESS);
+            }
+        } else if (job.status() == JobStatus.FAILED) {
+            Notification.show("Error deleting domain " + job.subject() + ": " + job.message(), 5000, Notification.Position.BOTTOM_END)
                     .addThemeVariants(NotificationVariant.LUMO_ERROR);
+        } else {
+            // Cancelled part way, some accounts may be gone already
+            refreshGrid();
+        }
+    }
+
+    private void refreshGrid() {
+        getUI().ifPresent(ui -> {
+            // A newer refresh supersedes whatever is still in flight
+            cancelPendingLoad();
+            loadingIndicator.setVisible(true);
+
+            pendingLoad = viewDataLoader.load(ui, domainService::getAllDomainsWithStats,
+                    items -> {
+                        loadingIndicator.setVisible(false);
+                        grid.setEmptyStateText("No domains found");
+                        GridRows.setItems(grid, items, JammVirtualDomain::getJvd);
+                    },
+                    e -> {
+                        loadingIndicator.setVisible(false);
+                        grid.setEmptyStateText("Domains could not be loaded");
+                        Notification.show("Error loading domains: " + e.getMessage(), 5000, Notification.Position.BOTTOM_END)
+                                .addThemeVariants(NotificationVariant.LUMO_ERROR);
+                    });
+        });
+    }
+
+    private void domainCreated(JammVirtualDomain domain) {
+        GridRows.add(grid, domain, JammVirtualDomain::getJvd);
+    }
+
+    private void cancelPendingLoad() {
+        if (pendingLoad != null) {
+            pendingLoad.cancel();
+            pendingLoad = null;
         }
     }
 }
@@ -0,0 +1,173 @@
+package ch.aarboard.vamm.ui.views;
+
+import ch.aarboard.vamm.jobs.JobRecord;
+import ch.aarboard.vamm.jobs.JobService;
+import ch.aarboard.vamm.ui.grid.GridRows;
+import com.vaadin.flow.component.AttachEvent;
+import com.vaadin.flow.component.DetachEvent;
+import com.vaadin.flow.component.button.Button;
+import com.vaadin.flow.component.button.ButtonVariant;
+import com.vaadin.flow.component.grid.Grid;
+import com.vaadin.flow.component.grid.GridVariant;
+import com.vaadin.flow.component.html.H2;
+import com.vaadin.flow.component.html.Span;
+import com.vaadin.flow.component.icon.Icon;
+import com.vaadin.flow.component.icon.VaadinIcon;
+import com.vaadin.flow.component.notification.Notification;
+import com.vaadin.flow.component.orderedlayout.HorizontalLayout;
+import com.vaadin.flow.component.orderedlayout.VerticalLayout;
+import com.vaadin.flow.component.progressbar.ProgressBar;
+import com.vaadin.flow.data.renderer.ComponentRenderer;
+import com.vaadin.flow.router.Menu;
+import com.vaadin.flow.router.PageTitle;
+import com.vaadin.flow.router.Route;
+import com.vaadin.flow.shared.Registration;
+import com.vaadin.flow.theme.lumo.LumoUtility;
+import jakarta.annotation.security.PermitAll;
+import jakarta.annotation.security.RolesAllowed;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.vaadin.lineawesome.LineAwesomeIconUrl;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+
+@PageTitle("Jobs")
+@Route("jobs")
+@Menu(order = 3, icon = LineAwesomeIconUrl.TASKS_SOLID)
+@PermitAll
+@RolesAllowed("ROLE_SITE_ADMIN")
+public class JobsView extends VerticalLayout {
+
+    private final JobService jobService;
+    private final Grid<JobRecord> grid;
+    private Registration jobRegistration;
+
+    public JobsView(@Autowired JobService jobService) {
+        this.jobService = jobService;
+
+        setSizeFull();
+        addClassNames("jobs-view");
+
+        createHeader();
+
+        grid = createGrid();
+        add(grid);
+    }
+
+    @Override
+    protected void onAttach(AttachEvent attachEvent) {
+        super.onAttach(attachEvent);
+        // Register before reading the list, an update in between is then applied twice rather than lost
+        jobRegistration = jobService.register(attachEvent.getUI(), job -> GridRows.add(grid, job, JobRecord::id));
+        refreshGrid();
+    }
+
+    @Override
+    protected void onDetach(DetachEvent detachEvent) {
+        if (jobRegistration != null) {
+            jobRegistration.remove();
+            jobRegistration = null;
+        }
+        super.onDetach(detachEvent);
+    }
+
+    private void createHeader() {
+        H2 title = new H2("Jobs");
+        title.addClassNames(LumoUtility.Margin.Bottom.NONE, LumoUtility.Margin.Top.SMALL);
+
+        Button refreshButton = new Button("Refresh", new Icon(VaadinIcon.REFRESH));
+        refreshButton.addClickListener(e -> refreshGrid());
+
+        HorizontalLayout header = new HorizontalLayout(title, refreshButton);
+        header.setWidthFull();
+        header.setJustifyContentMode(JustifyContentMode.BETWEEN);
+        header.setAlignItems(Alignment.CENTER);
+        header.addClassNames(LumoUtility.Padding.Bottom.MEDIUM);
+
+        add(header);
+    }
+
+    private Grid<JobRecord> createGrid() {
+        Grid<JobRecord> jobGrid = new Grid<>(JobRecord.class, false);
+        jobGrid.addThemeVariants(GridVariant.LUMO_ROW_STRIPES, GridVariant.LUMO_WRAP_CELL_CONTENT);
+        jobGrid.setSizeFull();
+        jobGrid.setEmptyStateText("No jobs have been run");
+
+        jobGrid.addColumn(JobRecord::description)
+                .setHeader("Job").setAutoWidth(true).setFlexGrow(1);
+
+        jobGrid.addColumn(new ComponentRenderer<>(job -> {
+            Span status = new Span(job.status().name().toLowerCase(Locale.ROOT));
+            status.getElement().getThemeList().add(switch (job.status()) {
+                case SUCCEEDED -> "badge success";
+                case FAILED, INTERRUPTED -> "badge error";
+                case RUNNING -> "badge";
+                default -> "badge contrast";
+            });
+            return status;
+        })).setHeader("Status").setAutoWidth(true);
+
+        jobGrid.addColumn(new ComponentRenderer<>(job -> {
+            ProgressBar bar = new ProgressBar();
+            double fraction = job.fraction();
+            if (fraction < 0) {
+                bar.setIndeterminate(!job.isFinished());
+            } else {
+                bar.setValue(fraction);
+            }
+
+            String text = job.total() > 0 ? job.processed() + " / " + job.total() : String.valueOf(job.processed());
+            VerticalLayout layout = new VerticalLayout(bar, new Span(text));
+            layout.setPadding(false);
+            layout.setSpacing(false);
+            return layout;
+        })).setHeader("Progress").setWidth("14em").setFlexGrow(0);
+
+        jobGrid.addColumn(job -> String.format("%.0f / s", job.throughput()))
+                .setHeader("Throughput").setAutoWidth(true);
+
+        jobGrid.addColumn(job -> job.startedAt() == null ? "-" : LocalDateTime.ofInstant(job.startedAt(), ZoneId.systemDefault())
+                        .format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss")))
+                .setHeader("Started").setAutoWidth(true);
+
+        jobGrid.addColumn(job -> formatDuration(job.duration()))
+                .setHeader("Duration").setAutoWidth(true);
+
+        jobGrid.addColumn(JobRecord::owner)
+                .setHeader("User").setAutoWidth(true);
+
+        jobGrid.addColumn(JobRecord::message)
+                .setHeader("Message").setFlexGrow(1);
+
+        jobGrid.addColumn(new ComponentRenderer<>(job -> {
+            Button cancelButton = new Button("Cancel", new Icon(VaadinIcon.STOP));
+            cancelButton.addThemeVariants(ButtonVariant.LUMO_SMALL, ButtonVariant.LUMO_TERTIARY, ButtonVariant.LUMO_ERROR);
+            cancelButton.setEnabled(!job.isFinished());
+            cancelButton.addClickListener(e -> {
+                if (jobService.cancel(job.id())) {
+                    cancelButton.setEnabled(false);
+                    Notification.show("Cancelling " + job.description(), 3000, Notification.Position.BOTTOM_END);
+                }
+            });
+            return cancelButton;
+        })).setHeader("Actions").setAutoWidth(true).setFlexGrow(0);
+
+        return jobGrid;
+    }
+
+    private void refreshGrid() {
+        // Jobs are held in memory by the service, no background load needed
+        GridRows.setItems(grid, jobService.getJobs(), JobRecord::id);
+    }
+
+    private static String formatDuration(Duration duration) {
+        long seconds = duration.toSeconds();
+        if (seconds < 60) {
+            return seconds + "s";
+        }
+        return String.format("%dm %02ds", seconds / 60, seconds % 60);
+    }
+}
@@ -4,13 +4,21 @@ import ch.aarboard.vamm.data.entries.JammMailAccount;
 import ch.aarboard.vamm.data.entries.JammMailAlias;
 import ch.aarboard.vamm.data.entries.JammVirtualDomain;
 import ch.aarboard.vamm.events.DomainContentChangedEvent;
+import ch.aarboard.vamm.index.AddressAutocomplete;
+import ch.aarboard.vamm.security.SecurityService;
 import ch.aarboard.vamm.services.JammMailAccountManagementService;
+import ch.aarboard.vamm.services.JammMailAccountManagementService.AliasCleanup;
 import ch.aarboard.vamm.services.JammMailAliasManagemeentService;
 import ch.aarboard.vamm.services.JammVirtualDomainManagementService;
 import ch.aarboard.vamm.ui.dialogs.CreateAccountDialog;
 import ch.aarboard.vamm.ui.dialogs.CreateAliasDialog;
+import ch.aarboard.vamm.ui.dialogs.DeleteAccountDialog;
+import ch.aarboard.vamm.ui.grid.GridRows;
 import ch.aarboard.vamm.ui.layouts.breadcrumbs.BreadcrumbItem;
 import ch.aarboard.vamm.ui.layouts.breadcrumbs.BreadcrumbLayout;
+import ch.aarboard.vamm.ui.loading.ViewDataLoader;
+import ch.aarboard.vamm.utils.MailUtils;
+import com.vaadin.flow.component.DetachEvent;
 import com.vaadin.flow.component.grid.Grid;
 import com.vaadin.flow.router.PageTitle;
 import com.vaadin.flow.router.Route;
@@ -34,6 +42,7 @@ import com.vaadin.flow.component.notification.Notification;
 import com.vaadin.flow.component.notification.NotificationVariant;
 import com.vaadin.flow.component.orderedlayout.HorizontalLayout;
 import com.vaadin.flow.component.orderedlayout.VerticalLayout;
+import com.vaadin.flow.component.progressbar.ProgressBar;
 import com.vaadin.flow.data.renderer.ComponentRenderer;
 import com.vaadin.flow.router.*;
 import com.vaadin.flow.theme.lumo.LumoUtility;
@@ -53,6 +62,9 @@ public class ManageDomainView extends BreadcrumbLayout implements BeforeEnterObs
     private final JammMailAliasManagemeentService aliasManagementService;
     private final JammVirtualDomainManagementService domainManagementService;
     private final ApplicationEventPublisher eventPublisher;
+    private final ViewDataLoader viewDataLoader;
+    private final AddressAutocomplete addressAutocomplete;
+    private final SecurityService securityService;
 
     private final Grid<JammMailAccount> accountGrid;
     private final Grid<JammMailAlias> aliasGrid;
@@ -62,10 +74,12 @@ public class ManageDomainView extends BreadcrumbLayout implements BeforeEnterObs
 
     private String currentDomainName = null;
     private JammVirtualDomain currentDomain = null;
+    private ViewDataLoader.PendingLoad pendingLoad;
 
     // UI Components
     private H1 pageTitle;
     private Span domainStats;
+    private ProgressBar loadingIndicator;
     private Button createAccountBtn;
     private Button createAliasBtn;
 
@@ -74,13 +88,19 @@ public class ManageDomainView extends BreadcrumbLayout implements BeforeEnterObs
             @Autowired JammMailAccountManagementService accountManagementService,
             @Autowired JammMailAliasManagemeentService aliasManagementService,
             @Autowired JammVirtualDomainManagementService domainManagementService,
-            @Autowired ApplicationEventPublisher eventPublisher) {
+            @Autowired ApplicationEventPublisher eventPublisher,
+            @Autowired ViewDataLoader viewDataLoader,
+            @Autowired AddressAutocomplete addressAutocomplete,
+            @Autowired SecurityService securityService) {
         super(List.of(new BreadcrumbItem("Domains", "domains")));
 
         this.accountManagementService = accountManagementService;
         this.aliasManagementService = aliasManagementService;
         this.domainManagementService = domainManagementService;
         this.eventPublisher = eventPublisher;
+        this.viewDataLoader = viewDataLoader;
+        this.addressAutocomplete = addressAutocomplete;
+        this.securityService = securityService;
 
         setSizeFull();
         addClassName("manage-domain-view");
@@ -111,25 +131,78 @@ public class ManageDomainView extends BreadcrumbLayout implements BeforeEnterObs
             return;
         }
 
-        try {
-            // Validate domain exists and load domain info
-            currentDomain = domainManagementService.getDomain(currentDomainName);
-            if (currentDomain == null) {
-                Notification.show("Domain not found: " + currentDomainName, 5000, Notification.Position.BOTTOM_END)
-                        .addThemeVariants(NotificationVariant.LUMO_ERROR);
-                event.forwardTo(DomainsView.class);
-                return;
-            }
+        // Render the shell right away, the data follows through server push
+        currentDomain = null;
+        showLoadingState();
+        loadDomain(event.getUI());
+    }
 
-            // Update UI with domain info
-            updateContent();
-            enableControls(true);
-            refreshGrids();
+    @Override
+    protected void onDetach(DetachEvent detachEvent) {
+        cancelPendingLoad();
+        super.onDetach(detachEvent);
+    }
 
-        } catch (Exception e) {
-            Notification.show("Error loading domain: " + e.getMessage(), 5000, Notification.Position.BOTTOM_END)
-                    .addThemeVariants(NotificationVariant.LUMO_ERROR);
-            event.forwardTo(DomainsView.class);
+    /**
+     * Snapshot of everything the view needs, fetched in one background task.
+     */
+    private record DomainContent(JammVirtualDomain domain, List<JammMailAccount> accounts, List<JammMailAlias> aliases) {
+    }
+
+    private void loadDomain(UI ui) {
+        // Quick navigation between domains supersedes the previous load
+        cancelPendingLoad();
+
+        String domainName = currentDomainName;
+        pendingLoad = viewDataLoader.load(ui,
+                () -> new DomainContent(
+                        domainManagementService.getDomainNoStats(domainName),
+                        accountManagementService.getAccountsByDomain(domainName),
+                        aliasManagementService.getAliasesByDomain(domainName)),
+                this::applyContent,
+                e -> {
+                    loadingIndicator.setVisible(false);
+                    if (e instanceof IllegalArgumentException) {
+                        Notification.show("Domain not found: " + domainName, 5000, Notification.Position.BOTTOM_END)
+                                .addThemeVariants(NotificationVariant.LUMO_ERROR);
+                    } else {
+                        Notification.show("Error loading domain: " + e.getMessage(), 5000, Notification.Position.BOTTOM_END)
+                                .addThemeVariants(NotificationVariant.LUMO_ERROR);
+                    }
+                    ui.navigate(DomainsView.class);
+                });
+    }
+
+    private void applyContent(DomainContent content) {
+        currentDomain = content.domain();
+
+        accountGrid.setEmptyStateText("No accounts in this domain");
+        aliasGrid.setEmptyStateText("No aliases in this domain");
+        GridRows.setItems(accountGrid, content.accounts(), JammMailAccount::getMail);
+        GridRows.setItems(aliasGrid, content.aliases(), JammMailAlias::getMail);
+
+        loadingIndicator.setVisible(false);
+        updateContent();
+        enableControls(true);
+    }
+
+    private void showLoadingState() {
+        pageTitle.setText("Manage " + currentDomainName);
+        updateBreadcrumb();
+        domainStats.setText("Loading...");
+        loadingIndicator.setVisible(true);
+        enableControls(false);
+
+        accountGrid.setEmptyStateText("Loading accounts...");
+        aliasGrid.setEmptyStateText("Loading aliases...");
+        GridRows.setItems(accountGrid, List.of(), JammMailAccount::getMail);
+        GridRows.setItems(aliasGrid, List.of(), JammMailAlias::getMail);
+    }
+
+    private void cancelPendingLoad() {
+        if (pendingLoad != null) {
+            pendingLoad.cancel();
+            pendingLoad = null;
         }
     }
 
@@ -147,7 +220,11 @@ public class ManageDomainView extends BreadcrumbLayout implements BeforeEnterObs
         domainStats = new Span();
         domainStats.addClassNames(LumoUtility.TextColor.SECONDARY, LumoUtility.FontSize.MEDIUM);
 
-        VerticalLayout header = new VerticalLayout(pageTitle, domainStats);
+        loadingIndicator = new ProgressBar();
+        loadingIndicator.setIndeterminate(true);
+        loadingIndicator.setVisible(false);
+
+        VerticalLayout header = new VerticalLayout(pageTitle, domainStats, loadingIndicator);
         header.setPadding(false);
         header.setSpacing(false);
         header.addClassNames(LumoUtility.Margin.Bottom.LARGE);
@@ -161,13 +238,10 @@ public class ManageDomainView extends BreadcrumbLayout implements BeforeEnterObs
 
             updateBreadcrumb();
 
-            // Load fresh stats
-            int accountCount = accountManagementService.getAccountCount(currentDomainName);
-            int aliasCount = aliasManagementService.getAliasCount(currentDomainName);
-
+            // Counts follow the grids, which are kept up to date row by row
             domainStats.setText(String.format("%d accounts • %d aliases • %s",
-                    accountCount,
-                    aliasCount,
+                    GridRows.count(accountGrid),
+                    GridRows.count(aliasGrid),
                     currentDomain.isActive() ? "Active" : "Inactive"));
         }
     }
@@ -419,35 +493,6 @@ public class ManageDomainView extends BreadcrumbLayout implements BeforeEnterObs
         return actions;
     }
 
-    // Event handlers
-    private void refreshGrids() {
-        if (currentDomainName != null) {
-            refreshAccountGrid();
-            refreshAliasGrid();
-            updateContent(); // Refresh stats
-        }
-    }
-
-    private void refreshAccountGrid() {
-        try {
-            List<JammMailAccount> accounts = accountManagementService.getAccountsByDomain(currentDomainName);
-            accountGrid.setItems(accounts);
-        } catch (Exception e) {
-            Notification.show("Error loading accounts: " + e.getMessage(), 5000, Notification.Position.BOTTOM_END)
-                    .addThemeVariants(NotificationVariant.LUMO_ERROR);
-        }
-    }
-
-    private void refreshAliasGrid() {
-        try {
-            List<JammMailAlias> aliases = aliasManagementService.getAliasesByDomain(currentDomainName);
-            aliasGrid.setItems(aliases);
-        } catch (Exception e) {
-            Notification.show("Error loading aliases: " + e.getMessage(), 5000, Notification.Position.BOTTOM_END)
-                    .addThemeVariants(NotificationVariant.LUMO_ERROR);
-        }
-    }
-
     private void enableControls(boolean enabled) {
 //        accountSearchField.setEnabled(enabled);
 //        aliasSearchField.setEnabled(enabled);
@@ -458,20 +503,25 @@ public class ManageDomainView extends BreadcrumbLayout implements BeforeEnterObs
     // Account actions
     private void openCreateAccountDialog() {
         if (createAccountDialog == null) {
-            createAccountDialog = new CreateAccountDialog(accountManagementService, this::refreshGrids, eventPublisher);
+            createAccountDialog = new CreateAccountDialog(accountManagementService, this::accountCreated, eventPublisher);
         }
         createAccountDialog.setDomain(currentDomainName);
         createAccountDialog.open();
     }
 
+    private void accountCreated(JammMailAccount account) {
+        GridRows.add(accountGrid, account, JammMailAccount::getMail);
+        updateContent();
+    }
+
     private void toggleAccountStatus(JammMailAccount account) {
         try {
-            accountManagementService.toggleAccountStatus(account.getMail());
-            refreshGrids();
+            JammMailAccount updated = accountManagementService.toggleAccountStatus(account);
+            GridRows.replace(accountGrid, updated, JammMailAccount::getMail);
 
-            eventPublisher.publishEvent(new DomainContentChangedEvent(this, account.getDomain(), DomainContentChangedEvent.ContentType.ACCOUNT_UPDATED));
+            eventPublisher.publishEvent(new DomainContentChangedEvent(this, account.getDomain(), DomainContentChangedEvent.ContentType.ACCOUNT_UPDATED, account.getMail()));
 
-            String action = account.isActive() ? "deactivated" : "activated";
+            String action = updated.isActive() ? "activated" : "deactivated";
             Notification.show("Account " + account.getMail() + " has been " + action, 3000, Notification.Position.BOTTOM_END)
                     .addThemeVariants(NotificationVariant.LUMO_SUCCESS);
         } catch (Exception e) {
@@ -481,51 +531,48 @@ public class ManageDomainView extends BreadcrumbLayout implements BeforeEnterObs
     }
 
     private void confirmDeleteAccount(JammMailAccount account) {
-        ConfirmDialog dialog = new ConfirmDialog();
-        dialog.setHeader("Delete Account");
-        dialog.setText("Are you sure you want to delete account '" + account.getMail() +
-                "'? This action cannot be undone.");
-
-        dialog.setCancelable(true);
-        dialog.setConfirmText("Delete");
-        dialog.setConfirmButtonTheme("error primary");
-
-        dialog.addConfirmListener(e -> deleteAccount(account));
-        dialog.open();
+        new DeleteAccountDialog(accountManagementService, eventPublisher, account.getMail(),
+                securityService::canAccessDomain, cleanup -> accountDeleted(account, cleanup)).open();
     }
 
-    private void deleteAccount(JammMailAccount account) {
-        try {
-            accountManagementService.deleteAccount(account.getMail());
-            refreshGrids();
-
-            eventPublisher.publishEvent(new DomainContentChangedEvent(this, account.getDomain(), DomainContentChangedEvent.ContentType.ACCOUNT_UPDATED));
-
-            Notification.show("Account " + account.getMail() + " has been deleted", 3000, Notification.Position.BOTTOM_END)
-                    .addThemeVariants(NotificationVariant.LUMO_SUCCESS);
-        } catch (Exception e) {
-            Notification.show("Error deleting account: " + e.getMessage(), 5000, Notification.Position.BOTTOM_END)
-                    .addThemeVariants(NotificationVariant.LUMO_ERROR);
-        }
+    private void accountDeleted(JammMailAccount account, AliasCleanup cleanup) {
+        GridRows.remove(accountGrid, account, JammMailAccount::getMail);
+        cleanup.deleted().forEach(mail -> GridRows.removeById(aliasGrid, mail, JammMailAlias::getMail));
+        cleanup.updated().stream()
+                .filter(mail -> currentDomainName.equalsIgnoreCase(MailUtils.extractDomainFromMail(mail)))
+                .forEach(mail -> {
+                    try {
+                        GridRows.replace(aliasGrid, aliasManagementService.getAlias(mail), JammMailAlias::getMail);
+                    } catch (IllegalArgumentException e) {
+                        GridRows.removeById(aliasGrid, mail, JammMailAlias::getMail);
+                    }
+                });
+        updateContent();
     }
 
     // Alias actions
     private void openCreateAliasDialog() {
         if (createAliasDialog == null) {
-            createAliasDialog = new CreateAliasDialog(aliasManagementService, this::refreshGrids, eventPublisher);
+            createAliasDialog = new CreateAliasDialog(aliasManagementService, this::aliasCreated, eventPublisher,
+                    addressAutocomplete, securityService::canAccessDomain);
         }
         createAliasDialog.setDomain(currentDomainName);
         createAliasDialog.open();
     }
 
+    private void aliasCreated(JammMailAlias alias) {
+        GridRows.add(aliasGrid, alias, JammMailAlias::getMail);
+        updateContent();
+    }
+
     private void toggleAliasStatus(JammMailAlias alias) {
         try {
-            aliasManagementService.toggleAliasStatus(alias.getMail());
-            refreshGrids();
+            JammMailAlias updated = aliasManagementService.toggleAliasStatus(alias);
+            GridRows.replace(aliasGrid, updated, JammMailAlias::getMail);
 
-            eventPublisher.publishEvent(new DomainContentChangedEvent(this, alias.getDomain(), DomainContentChangedEvent.ContentType.ALIAS_UPDATED));
+            eventPublisher.publishEvent(new DomainContentChangedEvent(this, alias.getDomain(), DomainContentChangedEvent.ContentType.ALIAS_UPDATED, alias.getMail()));
 
-            String action = alias.isActive() ? "deactivated" : "activated";
+            String action = updated.isActive() ? "activated" : "deactivated";
             Notification.show("Alias " + alias.getMail() + " has been " + action, 3000, Notification.Position.BOTTOM_END)
                     .addThemeVariants(NotificationVariant.LUMO_SUCCESS);
         } catch (Exception e) {
@@ -551,9 +598,10 @@ public class ManageDomainView extends BreadcrumbLayout implements BeforeEnterObs
     private void deleteAlias(JammMailAlias alias) {
         try {
             aliasManagementService.deleteAlias(alias.getMail());
-            refreshGrids();
+            GridRows.remove(aliasGrid, alias, JammMailAlias::getMail);
+            updateContent();
 
-            eventPublisher.publishEvent(new DomainContentChangedEvent(this, alias.getDomain(), DomainContentChangedEvent.ContentType.ALIAS_UPDATED));
+            eventPublisher.publishEvent(new DomainContentChangedEvent(this, alias.getDomain(), DomainContentChangedEvent.ContentType.ALIAS_DELETED, alias.getMail()));
 
             Notification.show("Alias " + alias.getMail() + " has been deleted", 3000, Notification.Position.BOTTOM_END)
                     .addThemeVariants(NotificationVariant.LUMO_SUCCESS);
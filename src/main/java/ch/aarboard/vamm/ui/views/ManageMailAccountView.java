@@ -2,13 +2,14 @@ package ch.aarboard.vamm.ui.views;
 
 import ch.aarboard.vamm.data.entries.JammMailAccount;
 import ch.aarboard.vamm.events.DomainContentChangedEvent;
+import ch.aarboard.vamm.security.SecurityService;
 import ch.aarboard.vamm.services.JammMailAccountManagementService;
+import ch.aarboard.vamm.ui.dialogs.DeleteAccountDialog;
 import ch.aarboard.vamm.ui.layouts.breadcrumbs.BreadcrumbItem;
 import ch.aarboard.vamm.ui.layouts.breadcrumbs.BreadcrumbLayout;
 import com.vaadin.flow.component.UI;
 import com.vaadin.flow.component.button.Button;
 import com.vaadin.flow.component.button.ButtonVariant;
-import com.vaadin.flow.component.confirmdialog.ConfirmDialog;
 import com.vaadin.flow.component.formlayout.FormLayout;
 import com.vaadin.flow.component.html.H1;
 import com.vaadin.flow.component.icon.Icon;
@@ -39,6 +40,7 @@ public class ManageMailAccountView extends BreadcrumbLayout implements BeforeEnt
 
     private final JammMailAccountManagementService accountService;
     private final ApplicationEventPublisher eventPublisher;
+    private final SecurityService securityService;
 
     private String domainName;
     private String username;
@@ -49,10 +51,12 @@ public class ManageMailAccountView extends BreadcrumbLayout implements BeforeEnt
     private HorizontalLayout breadcrumbLayout;
 
     public ManageMailAccountView(@Autowired JammMailAccountManagementService accountService,
-                                 @Autowired ApplicationEventPublisher eventPublisher) {
+                                 @Autowired ApplicationEventPublisher eventPublisher,
+                                 @Autowired SecurityService securityService) {
         super(List.of(new BreadcrumbItem("Domains", "domains")));
         this.accountService = accountService;
         this.eventPublisher = eventPublisher;
+        this.securityService = securityService;
 
         setSizeFull();
         addClassName("account-detail-view");
@@ -143,31 +147,8 @@ public class ManageMailAccountView extends BreadcrumbLayout implements BeforeEnt
     }
 
     private void confirmDelete() {
-        ConfirmDialog dialog = new ConfirmDialog();
-        dialog.setHeader("Delete Account");
-        dialog.setText("Are you sure you want to delete account '" + account.getMail() +
-                "'? This action cannot be undone.");
-
-        dialog.setCancelable(true);
-        dialog.setConfirmText("Delete");
-        dialog.setConfirmButtonTheme("error primary");
-
-        dialog.addConfirmListener(e -> deleteAccount());
-        dialog.open();
-    }
-
-    private void deleteAccount() {
-        try {
-            accountService.deleteAccount(account.getMail());
-            eventPublisher.publishEvent(new DomainContentChangedEvent(this, domainName, DomainContentChangedEvent.ContentType.ACCOUNT_DELETED));
-            UI.getCurrent().navigate("domain/" + domainName);
-
-            Notification.show("Account " + account.getMail() + " has been deleted", 3000, Notification.Position.BOTTOM_END)
-                    .addThemeVariants(NotificationVariant.LUMO_SUCCESS);
-        } catch (Exception e) {
-            Notification.show("Error deleting account: " + e.getMessage(), 5000, Notification.Position.BOTTOM_END)
-                    .addThemeVariants(NotificationVariant.LUMO_ERROR);
-        }
+        new DeleteAccountDialog(accountService, eventPublisher, account.getMail(), securityService::canAccessDomain,
+                cleanup -> UI.getCurrent().navigate("domain/" + domainName)).open();
     }
 
     private void updateContent() {
@@ -245,10 +226,9 @@ public class ManageMailAccountView extends BreadcrumbLayout implements BeforeEnt
 
     private void toggleAccountStatus() {
         try {
-            accountService.toggleAccountStatus(account.getMail());
-            account = accountService.getAccount(account.getMail()); // Reload
+            account = accountService.toggleAccountStatus(account);
             updateContent();
-            eventPublisher.publishEvent(new DomainContentChangedEvent(this, domainName, DomainContentChangedEvent.ContentType.ACCOUNT_UPDATED));
+            eventPublisher.publishEvent(new DomainContentChangedEvent(this, domainName, DomainContentChangedEvent.ContentType.ACCOUNT_UPDATED, account.getMail()));
 
             String action = account.isActive() ? "activated" : "deactivated";
             Notification.show("Account has been " + action, 3000, Notification.Position.BOTTOM_END)
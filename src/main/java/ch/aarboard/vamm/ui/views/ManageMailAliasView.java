@@ -244,7 +244,7 @@ public class ManageMailAliasView extends BreadcrumbLayout implements BeforeEnter
     private void deleteAccount() {
         try {
             aliasService.deleteAlias(alias.getMail());
-            eventPublisher.publishEvent(new DomainContentChangedEvent(this, domainName, DomainContentChangedEvent.ContentType.ALIAS_DELETED));
+            eventPublisher.publishEvent(new DomainContentChangedEvent(this, domainName, DomainContentChangedEvent.ContentType.ALIAS_DELETED, alias.getMail()));
             UI.getCurrent().navigate("domain/" + domainName);
 
             Notification.show("Alias " + alias.getMail() + " has been deleted", 3000, Notification.Position.BOTTOM_END)
@@ -257,10 +257,9 @@ public class ManageMailAliasView extends BreadcrumbLayout implements BeforeEnter
 
     private void toggleAliasStatus() {
         try {
-            aliasService.toggleAliasStatus(alias.getMail());
-            alias = aliasService.getAlias(alias.getMail()); // Reload
+            alias = aliasService.toggleAliasStatus(alias);
             updateContent();
-            eventPublisher.publishEvent(new DomainContentChangedEvent(this, domainName, DomainContentChangedEvent.ContentType.ALIAS_UPDATED));
+            eventPublisher.publishEvent(new DomainContentChangedEvent(this, domainName, DomainContentChangedEvent.ContentType.ALIAS_UPDATED, alias.getMail()));
 
             String action = alias.isActive() ? "activated" : "deactivated";
             Notification.show("Alias has been " + action, 3000, Notification.Position.BOTTOM_END)
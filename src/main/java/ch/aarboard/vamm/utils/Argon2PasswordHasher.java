@@ -0,0 +1,70 @@
+package ch.aarboard.vamm.utils;
+
+import org.springframework.security.crypto.argon2.Argon2PasswordEncoder;
+
+/**
+ * Argon2id in the format of the OpenLDAP argon2 module: {@code {ARGON2}} followed by the PHC string
+ * {@code $argon2id$v=19$m=<KiB>,t=<iterations>,p=<lanes>$<salt>$<hash>}. The parameters are stored
+ * with each hash, memory and iterations are the work factors.
+ */
+public final class Argon2PasswordHasher implements PasswordHasher {
+
+    private static final int SALT_LENGTH = 16;
+    private static final int HASH_LENGTH = 32;
+
+    private final int memoryKib;
+    private final int iterations;
+    private final int parallelism;
+    private final Argon2PasswordEncoder encoder;
+
+    public Argon2PasswordHasher(int memoryKib, int iterations, int parallelism) {
+        if (memoryKib < 8 * parallelism || iterations < 1 || parallelism < 1) {
+            throw new IllegalArgumentException("Invalid Argon2 parameters: m=" + memoryKib + ", t=" + iterations
+                    + ", p=" + parallelism);
+        }
+        this.memoryKib = memoryKib;
+        this.iterations = iterations;
+        this.parallelism = parallelism;
+        this.encoder = new Argon2PasswordEncoder(SALT_LENGTH, HASH_LENGTH, parallelism, memoryKib, iterations);
+    }
+
+    public int getMemoryKib() {
+        return memoryKib;
+    }
+
+    public int getIterations() {
+        return iterations;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    @Override
+    public PasswordUtils.PasswordScheme scheme() {
+        return PasswordUtils.PasswordScheme.ARGON2;
+    }
+
+    @Override
+    public String hash(String plainPassword) {
+        return scheme().getPrefix() + encoder.encode(plainPassword);
+    }
+
+    @Override
+    public boolean verify(String userPassword, String plainPassword) {
+        try {
+            return encoder.matches(plainPassword, userPassword.substring(scheme().getPrefix().length()));
+        } catch (RuntimeException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public boolean needsRehash(String userPassword) {
+        try {
+            return encoder.upgradeEncoding(userPassword.substring(scheme().getPrefix().length()));
+        } catch (RuntimeException e) {
+            return false;
+        }
+    }
+}
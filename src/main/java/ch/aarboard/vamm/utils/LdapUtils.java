@@ -2,6 +2,10 @@ package ch.aarboard.vamm.utils;
 
 import org.springframework.ldap.support.LdapNameBuilder;
 
+import javax.naming.Name;
+import javax.naming.ldap.Rdn;
+import java.time.Instant;
+
 public class LdapUtils {
 
     public static final String JAMM_MAIL_ACCOUNT = "JammMailAccount";
@@ -76,6 +80,22 @@ public class LdapUtils {
         return domainDN(domain).add("cn", "postmaster");
     }
 
+    /**
+     * Finds the domain an entry belongs to from the jvd component of its DN.
+     *
+     * @param dn the DN of an entry below o=hosting
+     * @return the domain, or null if the DN is not below a domain
+     */
+    public static String domainOf(Name dn) {
+        for (int i = 0; i < dn.size(); i++) {
+            String component = dn.get(i);
+            if (component.regionMatches(true, 0, "jvd=", 0, 4)) {
+                return Rdn.unescapeValue(component.substring(4)).toString();
+            }
+        }
+        return null;
+    }
+
     /**
      * Escapes special characters in a search term for LDAP queries.
      * This method escapes characters that have special meaning in LDAP search filters.
@@ -104,4 +124,22 @@ public class LdapUtils {
         return escaped.toString();
     }
 
+    /**
+     * Computes the next lastChange value: the current epoch second, but at least one above
+     * the previous value so two writes within the same second still differ.
+     *
+     * @param previous the lastChange value stored in the directory, may be null
+     * @return the new lastChange value
+     */
+    public static String nextLastChange(String previous) {
+        long now = Instant.now().getEpochSecond();
+        if (previous != null) {
+            try {
+                now = Math.max(now, Long.parseLong(previous.trim()) + 1);
+            } catch (NumberFormatException e) {
+                // Foreign value, the current time is as good as it gets
+            }
+        }
+        return String.valueOf(now);
+    }
 }
@@ -0,0 +1,36 @@
+package ch.aarboard.vamm.utils;
+
+/**
+ * Implementation of one {@link PasswordUtils.PasswordScheme}. Implementations are registered with
+ * {@link PasswordUtils#register(PasswordHasher)} and must be thread-safe.
+ */
+public interface PasswordHasher {
+
+    /**
+     * @return the scheme this hasher implements
+     */
+    PasswordUtils.PasswordScheme scheme();
+
+    /**
+     * Hash a password
+     * @param plainPassword the plain text password
+     * @return the hashed password including the scheme prefix
+     */
+    String hash(String plainPassword);
+
+    /**
+     * Verify a plain text password against a stored value of this scheme
+     * @param userPassword the stored hashed password including the scheme prefix
+     * @param plainPassword the plain text password to verify
+     * @return true if the passwords match, false otherwise or if the stored value is malformed
+     */
+    boolean verify(String userPassword, String plainPassword);
+
+    /**
+     * Whether a stored value was hashed with a lower work factor than this hasher uses now
+     * @param userPassword the stored hashed password including the scheme prefix
+     */
+    default boolean needsRehash(String userPassword) {
+        return false;
+    }
+}
@@ -1,19 +1,70 @@
 package ch.aarboard.vamm.utils;
 
 import java.nio.charset.StandardCharsets;
+import java.security.DigestException;
 import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
 import java.util.Base64;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiPredicate;
+import java.util.function.Function;
 
 /**
  * Utility class for password hashing and verification.
- * Provides methods to hash passwords using different schemes (SSHA, SHA, MD5)
- * and verify them against plain text passwords.
+ * Provides methods to hash passwords using different schemes (SSHA, SHA, MD5, SSHA512,
+ * PBKDF2-SHA512, Argon2) and verify them against plain text passwords.
+ *
+ * Every scheme is implemented by a {@link PasswordHasher}. The tunable schemes are registered
+ * with default work factors, the one new passwords are hashed with is replaced by a calibrated
+ * instance at startup, see
+ * {@link ch.aarboard.vamm.security.PasswordHashingService}.
+ *
+ * Digests are kept per thread and salts come from one shared non-blocking {@link SecureRandom},
+ * so hashing in bulk does not create a digest or seed a generator per password. Verification
+ * compares against the decoded stored value in place without copying salt or hash.
  *
  * @author fokklz
  */
 public class PasswordUtils {
 
+    private static final int SHA1_LENGTH = 20;
+    private static final int SHA512_LENGTH = 64;
+    private static final int SALT_LENGTH = 8;
+
+    /** OWASP recommendation for PBKDF2-HMAC-SHA512 */
+    public static final int DEFAULT_PBKDF2_ITERATIONS = 210_000;
+    /** OWASP recommendation for Argon2id: 19 MiB, two passes, one lane */
+    public static final int DEFAULT_ARGON2_MEMORY_KIB = 19_456;
+    public static final int DEFAULT_ARGON2_ITERATIONS = 2;
+    public static final int DEFAULT_ARGON2_PARALLELISM = 1;
+
+    private static final SecureRandom RANDOM = createRandom();
+
+    private static final ThreadLocal<MessageDigest> SHA1 = ThreadLocal.withInitial(() -> newDigest("SHA-1"));
+    private static final ThreadLocal<MessageDigest> MD5 = ThreadLocal.withInitial(() -> newDigest("MD5"));
+    private static final ThreadLocal<MessageDigest> SHA512 = ThreadLocal.withInitial(() -> newDigest("SHA-512"));
+
+    // Scratch space for the digest computed during verification, large enough for SHA-512
+    private static final ThreadLocal<byte[]> VERIFY_BUFFER = ThreadLocal.withInitial(() -> new byte[SHA512_LENGTH]);
+
+    private static final Map<PasswordScheme, PasswordHasher> HASHERS = new ConcurrentHashMap<>();
+
+    private static volatile PasswordScheme defaultScheme = PasswordScheme.SSHA;
+
+    static {
+        register(new BuiltInHasher(PasswordScheme.PLAIN, plain -> PasswordScheme.PLAIN.getPrefix() + plain,
+                (stored, plain) -> stored.substring(PasswordScheme.PLAIN.getPrefix().length()).equals(plain)));
+        register(new BuiltInHasher(PasswordScheme.SSHA, PasswordUtils::hashPasswordSsha, PasswordUtils::verifyPasswordSsha));
+        register(new BuiltInHasher(PasswordScheme.SHA, PasswordUtils::hashPasswordSha, PasswordUtils::verifyPasswordSha));
+        register(new BuiltInHasher(PasswordScheme.MD5, PasswordUtils::hashPasswordMd5, PasswordUtils::verifyPasswordMd5));
+        register(new BuiltInHasher(PasswordScheme.SSHA512, PasswordUtils::hashPasswordSsha512, PasswordUtils::verifyPasswordSsha512));
+        register(new Pbkdf2PasswordHasher(DEFAULT_PBKDF2_ITERATIONS));
+        register(new Argon2PasswordHasher(DEFAULT_ARGON2_MEMORY_KIB, DEFAULT_ARGON2_ITERATIONS, DEFAULT_ARGON2_PARALLELISM));
+    }
+
     /**
      * Enum representing different password hashing schemes.
      * Each scheme has a prefix that is used to identify the hashing method.
@@ -22,7 +73,10 @@ public class PasswordUtils {
         PLAIN("{PLAIN}"),
         SSHA("{SSHA}"),
         SHA("{SHA}"),
-        MD5("{MD5}");
+        MD5("{MD5}"),
+        SSHA512("{SSHA512}"),
+        PBKDF2_SHA512("{PBKDF2-SHA512}"),
+        ARGON2("{ARGON2}");
 
         private final String prefix;
 
@@ -33,6 +87,114 @@ public class PasswordUtils {
         public String getPrefix() {
             return prefix;
         }
+
+        /**
+         * Determine the scheme of a stored password
+         * @param userPassword the stored hashed password
+         * @return the scheme, null if the value has no known prefix
+         */
+        public static PasswordScheme of(String userPassword) {
+            if (userPassword == null) {
+                return null;
+            }
+            for (PasswordScheme scheme : values()) {
+                if (userPassword.startsWith(scheme.prefix)) {
+                    return scheme;
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * A scheme implemented by static methods of this class
+     */
+    private record BuiltInHasher(PasswordScheme scheme, Function<String, String> hasher,
+                                 BiPredicate<String, String> verifier) implements PasswordHasher {
+
+        @Override
+        public String hash(String plainPassword) {
+            return hasher.apply(plainPassword);
+        }
+
+        @Override
+        public boolean verify(String userPassword, String plainPassword) {
+            return verifier.test(userPassword, plainPassword);
+        }
+    }
+
+    /**
+     * Register the implementation of a scheme, replacing the current one
+     * @param hasher the implementation
+     */
+    public static void register(PasswordHasher hasher) {
+        HASHERS.put(hasher.scheme(), hasher);
+    }
+
+    /**
+     * @param scheme the scheme
+     * @return the current implementation of the scheme
+     */
+    public static PasswordHasher getHasher(PasswordScheme scheme) {
+        return Objects.requireNonNull(HASHERS.get(scheme), "No hasher registered for " + scheme);
+    }
+
+    /**
+     * @return the scheme new passwords are hashed with, SSHA unless configured otherwise
+     */
+    public static PasswordScheme getDefaultScheme() {
+        return defaultScheme;
+    }
+
+    public static void setDefaultScheme(PasswordScheme scheme) {
+        defaultScheme = Objects.requireNonNull(scheme);
+    }
+
+    /**
+     * Fill a new array with bytes of the shared generator, for salts
+     */
+    static byte[] randomBytes(int length) {
+        byte[] bytes = new byte[length];
+        RANDOM.nextBytes(bytes);
+        return bytes;
+    }
+
+    /**
+     * Prefers the non-blocking native generator, reads from /dev/urandom and never waits for entropy
+     */
+    private static SecureRandom createRandom() {
+        try {
+            return SecureRandom.getInstance("NativePRNGNonBlocking");
+        } catch (NoSuchAlgorithmException e) {
+            return new SecureRandom();
+        }
+    }
+
+    private static MessageDigest newDigest(String algorithm) {
+        try {
+            return MessageDigest.getInstance(algorithm);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(algorithm + " is not available", e);
+        }
+    }
+
+    /**
+     * Hash a password with the given scheme
+     * @param plainPassword the plain text password
+     * @param scheme the scheme to hash with
+     * @return the hashed password including the scheme prefix
+     */
+    public static String hashPassword(String plainPassword, PasswordScheme scheme) {
+        return getHasher(scheme).hash(plainPassword);
+    }
+
+    /**
+     * Hash a password with the default scheme
+     * @param plainPassword the plain text password
+     * @return the hashed password including the scheme prefix
+     */
+    public static String hashPassword(String plainPassword) {
+        return hashPassword(plainPassword, defaultScheme);
     }
 
     /**
@@ -42,21 +204,19 @@ public class PasswordUtils {
      */
     public static String hashPasswordSsha(String plainPassword) {
         try {
-            // Generate random salt
-            SecureRandom random = new SecureRandom();
-            byte[] salt = new byte[8];
-            random.nextBytes(salt);
+            // Hash and salt share one buffer: the hash goes first, the random salt after it
+            byte[] hashPlusSalt = new byte[SHA1_LENGTH + SALT_LENGTH];
+            long salt = RANDOM.nextLong();
+            for (int i = 0; i < SALT_LENGTH; i++) {
+                hashPlusSalt[SHA1_LENGTH + i] = (byte) (salt >>> (8 * i));
+            }
 
             // Create SHA-1 hash of password + salt
-            MessageDigest md = MessageDigest.getInstance("SHA-1");
+            MessageDigest md = SHA1.get();
+            md.reset();
             md.update(plainPassword.getBytes(StandardCharsets.UTF_8));
-            md.update(salt);
-            byte[] hash = md.digest();
-
-            // Combine hash + salt and encode in base64
-            byte[] hashPlusSalt = new byte[hash.length + salt.length];
-            System.arraycopy(hash, 0, hashPlusSalt, 0, hash.length);
-            System.arraycopy(salt, 0, hashPlusSalt, hash.length, salt.length);
+            md.update(hashPlusSalt, SHA1_LENGTH, SALT_LENGTH);
+            md.digest(hashPlusSalt, 0, SHA1_LENGTH);
 
             return PasswordScheme.SSHA.getPrefix() + Base64.getEncoder().encodeToString(hashPlusSalt);
 
@@ -65,6 +225,32 @@ public class PasswordUtils {
         }
     }
 
+    /**
+     * Generate salted SHA-512 hash, as the OpenLDAP pw-sha2 module
+     * @param plainPassword the plain text password
+     * @return the hashed password
+     */
+    public static String hashPasswordSsha512(String plainPassword) {
+        try {
+            byte[] hashPlusSalt = new byte[SHA512_LENGTH + SALT_LENGTH];
+            long salt = RANDOM.nextLong();
+            for (int i = 0; i < SALT_LENGTH; i++) {
+                hashPlusSalt[SHA512_LENGTH + i] = (byte) (salt >>> (8 * i));
+            }
+
+            MessageDigest md = SHA512.get();
+            md.reset();
+            md.update(plainPassword.getBytes(StandardCharsets.UTF_8));
+            md.update(hashPlusSalt, SHA512_LENGTH, SALT_LENGTH);
+            md.digest(hashPlusSalt, 0, SHA512_LENGTH);
+
+            return PasswordScheme.SSHA512.getPrefix() + Base64.getEncoder().encodeToString(hashPlusSalt);
+
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to hash password with SSHA512", e);
+        }
+    }
+
     /**
      * Generate SHA-1 hash
      * @param plainPassword the plain text password
@@ -72,7 +258,8 @@ public class PasswordUtils {
      */
     public static String hashPasswordSha(String plainPassword) {
         try {
-            MessageDigest md = MessageDigest.getInstance("SHA-1");
+            MessageDigest md = SHA1.get();
+            md.reset();
             byte[] hash = md.digest(plainPassword.getBytes(StandardCharsets.UTF_8));
             return PasswordScheme.SHA.getPrefix() + Base64.getEncoder().encodeToString(hash);
         } catch (Exception e) {
@@ -87,7 +274,8 @@ public class PasswordUtils {
      */
     public static String hashPasswordMd5(String plainPassword) {
         try {
-            MessageDigest md = MessageDigest.getInstance("MD5");
+            MessageDigest md = MD5.get();
+            md.reset();
             byte[] hash = md.digest(plainPassword.getBytes(StandardCharsets.UTF_8));
             return PasswordScheme.MD5.getPrefix() + Base64.getEncoder().encodeToString(hash);
         } catch (Exception e) {
@@ -109,22 +297,13 @@ public class PasswordUtils {
         }
 
         // Determine the scheme used
-        if (userPassword.startsWith(PasswordScheme.SSHA.getPrefix())) {
-            return verifyPasswordSsha(userPassword, plainPassword);
-        } else if (userPassword.startsWith(PasswordScheme.SHA.getPrefix())) {
-            return verifyPasswordSha(userPassword, plainPassword);
-        } else if (userPassword.startsWith(PasswordScheme.MD5.getPrefix())) {
-            return verifyPasswordMd5(userPassword, plainPassword);
-        } else if (userPassword.startsWith(PasswordScheme.PLAIN.getPrefix())) {
-            String storedPassword = userPassword.substring(PasswordScheme.PLAIN.getPrefix().length());
-            return storedPassword.equals(plainPassword);
-        }
-
-        return false;
+        PasswordScheme scheme = PasswordScheme.of(userPassword);
+        return scheme != null && getHasher(scheme).verify(userPassword, plainPassword);
     }
 
     /**
      * Verify a plain text password against a stored hashed password. for SSHA scheme.
+     * The salt is everything after the 20 byte hash, usually 8 bytes.
      *
      * @param userPassword the stored hashed password
      * @param plainPassword the plain text password to verify
@@ -134,22 +313,48 @@ public class PasswordUtils {
         try {
             String hashString = userPassword.substring(PasswordScheme.SSHA.getPrefix().length());
             byte[] hashPlusSalt = Base64.getDecoder().decode(hashString);
+            if (hashPlusSalt.length <= SHA1_LENGTH) {
+                return false;
+            }
 
-            // Extract salt (last 8 bytes)
-            byte[] salt = new byte[8];
-            System.arraycopy(hashPlusSalt, hashPlusSalt.length - 8, salt, 0, 8);
+            // Calculate hash of provided password with the stored salt, read in place
+            MessageDigest md = SHA1.get();
+            md.reset();
+            md.update(plainPassword.getBytes(StandardCharsets.UTF_8));
+            md.update(hashPlusSalt, SHA1_LENGTH, hashPlusSalt.length - SHA1_LENGTH);
+            byte[] calculatedHash = VERIFY_BUFFER.get();
+            md.digest(calculatedHash, 0, SHA1_LENGTH);
 
-            // Extract hash (first bytes)
-            byte[] storedHash = new byte[hashPlusSalt.length - 8];
-            System.arraycopy(hashPlusSalt, 0, storedHash, 0, storedHash.length);
+            return constantTimeEquals(hashPlusSalt, calculatedHash, SHA1_LENGTH);
 
-            // Calculate hash of provided password with stored salt
-            MessageDigest md = MessageDigest.getInstance("SHA-1");
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    /**
+     * Verify a plain text password against a stored hashed password for SSHA512 scheme.
+     *
+     * @param userPassword the stored hashed password
+     * @param plainPassword the plain text password to verify
+     * @return true if the passwords match, false otherwise
+     */
+    public static boolean verifyPasswordSsha512(String userPassword, String plainPassword) {
+        try {
+            String hashString = userPassword.substring(PasswordScheme.SSHA512.getPrefix().length());
+            byte[] hashPlusSalt = Base64.getDecoder().decode(hashString);
+            if (hashPlusSalt.length <= SHA512_LENGTH) {
+                return false;
+            }
+
+            MessageDigest md = SHA512.get();
+            md.reset();
             md.update(plainPassword.getBytes(StandardCharsets.UTF_8));
-            md.update(salt);
-            byte[] calculatedHash = md.digest();
+            md.update(hashPlusSalt, SHA512_LENGTH, hashPlusSalt.length - SHA512_LENGTH);
+            byte[] calculatedHash = VERIFY_BUFFER.get();
+            md.digest(calculatedHash, 0, SHA512_LENGTH);
 
-            return MessageDigest.isEqual(storedHash, calculatedHash);
+            return constantTimeEquals(hashPlusSalt, calculatedHash, SHA512_LENGTH);
 
         } catch (Exception e) {
             return false;
@@ -168,10 +373,7 @@ public class PasswordUtils {
             String hashString = userPassword.substring(PasswordScheme.SHA.getPrefix().length());
             byte[] storedHash = Base64.getDecoder().decode(hashString);
 
-            MessageDigest md = MessageDigest.getInstance("SHA-1");
-            byte[] calculatedHash = md.digest(plainPassword.getBytes(StandardCharsets.UTF_8));
-
-            return MessageDigest.isEqual(storedHash, calculatedHash);
+            return verifyUnsalted(SHA1.get(), storedHash, plainPassword);
         } catch (Exception e) {
             return false;
         }
@@ -190,13 +392,36 @@ public class PasswordUtils {
             String hashString = userPassword.substring(PasswordScheme.MD5.getPrefix().length());
             byte[] storedHash = Base64.getDecoder().decode(hashString);
 
-            MessageDigest md = MessageDigest.getInstance("MD5");
-            byte[] calculatedHash = md.digest(plainPassword.getBytes(StandardCharsets.UTF_8));
-
-            return MessageDigest.isEqual(storedHash, calculatedHash);
+            return verifyUnsalted(MD5.get(), storedHash, plainPassword);
         } catch (Exception e) {
             return false;
         }
     }
 
+    private static boolean verifyUnsalted(MessageDigest md, byte[] storedHash, String plainPassword) throws DigestException {
+        int length = md.getDigestLength();
+        if (storedHash.length != length) {
+            return false;
+        }
+
+        md.reset();
+        md.update(plainPassword.getBytes(StandardCharsets.UTF_8));
+        byte[] calculatedHash = VERIFY_BUFFER.get();
+        md.digest(calculatedHash, 0, length);
+
+        return constantTimeEquals(storedHash, calculatedHash, length);
+    }
+
+    /**
+     * Compare the first bytes of two arrays without stopping at the first difference,
+     * like {@link MessageDigest#isEqual} but over a prefix
+     */
+    private static boolean constantTimeEquals(byte[] a, byte[] b, int length) {
+        int difference = 0;
+        for (int i = 0; i < length; i++) {
+            difference |= a[i] ^ b[i];
+        }
+        return difference == 0;
+    }
+
 }
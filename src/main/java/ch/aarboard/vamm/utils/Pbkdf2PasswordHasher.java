@@ -0,0 +1,102 @@
+package ch.aarboard.vamm.utils;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Base64;
+
+/**
+ * PBKDF2 with HMAC-SHA512 in the format of the OpenLDAP pw-pbkdf2 module:
+ * {@code {PBKDF2-SHA512}<iterations>$<salt>$<hash>}, salt and hash in adapted base64
+ * ({@code .} instead of {@code +}, no padding). The iteration count is the work factor.
+ */
+public final class Pbkdf2PasswordHasher implements PasswordHasher {
+
+    private static final int SALT_LENGTH = 16;
+    private static final int HASH_LENGTH = 64;
+
+    private static final ThreadLocal<SecretKeyFactory> FACTORY = ThreadLocal.withInitial(() -> {
+        try {
+            return SecretKeyFactory.getInstance("PBKDF2WithHmacSHA512");
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("PBKDF2WithHmacSHA512 is not available", e);
+        }
+    });
+
+    private final int iterations;
+
+    public Pbkdf2PasswordHasher(int iterations) {
+        if (iterations < 1) {
+            throw new IllegalArgumentException("Iterations must be positive: " + iterations);
+        }
+        this.iterations = iterations;
+    }
+
+    public int getIterations() {
+        return iterations;
+    }
+
+    @Override
+    public PasswordUtils.PasswordScheme scheme() {
+        return PasswordUtils.PasswordScheme.PBKDF2_SHA512;
+    }
+
+    @Override
+    public String hash(String plainPassword) {
+        byte[] salt = PasswordUtils.randomBytes(SALT_LENGTH);
+        byte[] hash = derive(plainPassword, salt, iterations, HASH_LENGTH);
+        return scheme().getPrefix() + iterations + "$" + encode(salt) + "$" + encode(hash);
+    }
+
+    @Override
+    public boolean verify(String userPassword, String plainPassword) {
+        try {
+            String[] parts = userPassword.substring(scheme().getPrefix().length()).split("\\$");
+            if (parts.length != 3) {
+                return false;
+            }
+            int storedIterations = Integer.parseInt(parts[0]);
+            byte[] salt = decode(parts[1]);
+            byte[] storedHash = decode(parts[2]);
+            if (storedIterations < 1 || storedHash.length == 0) {
+                return false;
+            }
+
+            byte[] calculatedHash = derive(plainPassword, salt, storedIterations, storedHash.length);
+            return MessageDigest.isEqual(storedHash, calculatedHash);
+        } catch (RuntimeException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public boolean needsRehash(String userPassword) {
+        try {
+            String rest = userPassword.substring(scheme().getPrefix().length());
+            return Integer.parseInt(rest.substring(0, rest.indexOf('$'))) < iterations;
+        } catch (RuntimeException e) {
+            return false;
+        }
+    }
+
+    private static byte[] derive(String plainPassword, byte[] salt, int iterations, int length) {
+        // The JDK implementation encodes the characters as UTF-8, like OpenLDAP
+        PBEKeySpec spec = new PBEKeySpec(plainPassword.toCharArray(), salt, iterations, length * 8);
+        try {
+            return FACTORY.get().generateSecret(spec).getEncoded();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Failed to hash password with PBKDF2", e);
+        } finally {
+            spec.clearPassword();
+        }
+    }
+
+    private static String encode(byte[] bytes) {
+        return Base64.getEncoder().withoutPadding().encodeToString(bytes).replace('+', '.');
+    }
+
+    private static byte[] decode(String value) {
+        return Base64.getDecoder().decode(value.replace('.', '+'));
+    }
+}
@@ -1,36 +1,64 @@
 package ch.aarboard.vamm.base;
 
-import ch.aarboard.vamm.config.LdapConfig;
+import ch.aarboard.vamm.data.repositories.JammMailAccountRepository;
+import ch.aarboard.vamm.data.repositories.JammMailAliasRepository;
+import ch.aarboard.vamm.data.repositories.JammPostmasterRepository;
+import ch.aarboard.vamm.data.repositories.JammVirtualDomainRepository;
+import ch.aarboard.vamm.ldap.InMemoryJammDirectory;
 import ch.aarboard.vamm.ldap.LdapSessionManager;
 import ch.aarboard.vamm.security.SecurityService;
+import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.TestInstance;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
-import org.springframework.ldap.core.LdapTemplate;
 import org.springframework.test.context.ActiveProfiles;
 
+import java.util.List;
+
+/**
+ * Repository tests run against their own {@link InMemoryJammDirectory} with the sample data,
+ * so test classes do not see each other's entries and can run in parallel.
+ */
 @SpringBootTest
-@ActiveProfiles("test")
+@ActiveProfiles({"test", "embedded-ldap"})
 @TestInstance(TestInstance.Lifecycle.PER_CLASS)
 public abstract class AbstractRepositoryTest {
 
-    @Autowired
-    protected LdapConfig ldapConfig;
-
     @Autowired
     protected SecurityService securityService;
 
+    protected InMemoryJammDirectory directory;
+
     protected LdapSessionManager ldapSessionManager;
 
+    protected JammVirtualDomainRepository virtualDomainRepository;
+
+    protected JammMailAccountRepository mailAccountRepository;
+
+    protected JammMailAliasRepository mailAliasRepository;
+
+    protected JammPostmasterRepository postmasterRepository;
+
     @BeforeAll
-    public void setUp() {
+    public void setUp() throws Exception {
+        directory = new InMemoryJammDirectory();
+        directory.importLdif(InMemoryJammDirectory.SAMPLE_FILE);
+
         ldapSessionManager = new LdapSessionManager(
-                ldapConfig,
-                securityService
+                directory.ldapConfig(),
+                securityService,
+                List.of(LdapCallAssertions.observer())
         );
 
-        String baseDn = ldapConfig.getBase();
-        LdapTemplate ldapTemplate = ldapSessionManager.createUserLdapTemplate();
+        virtualDomainRepository = new JammVirtualDomainRepository(ldapSessionManager);
+        mailAccountRepository = new JammMailAccountRepository(ldapSessionManager);
+        mailAliasRepository = new JammMailAliasRepository(ldapSessionManager);
+        postmasterRepository = new JammPostmasterRepository(ldapSessionManager);
+    }
+
+    @AfterAll
+    public void stopDirectory() {
+        directory.close();
     }
-}
\ No newline at end of file
+}
@@ -1,35 +1,54 @@
 package ch.aarboard.vamm.base;
 
-import ch.aarboard.vamm.config.LdapConfig;
+import ch.aarboard.vamm.concurrent.StripedLockRegistry;
 import ch.aarboard.vamm.data.entries.JammVirtualDomain;
 import ch.aarboard.vamm.data.repositories.JammMailAccountRepository;
 import ch.aarboard.vamm.data.repositories.JammMailAliasRepository;
 import ch.aarboard.vamm.data.repositories.JammPostmasterRepository;
 import ch.aarboard.vamm.data.repositories.JammVirtualDomainRepository;
+import ch.aarboard.vamm.index.DestinationIndex;
+import ch.aarboard.vamm.ldap.InMemoryJammDirectory;
 import ch.aarboard.vamm.ldap.LdapSessionManager;
+import ch.aarboard.vamm.ldap.SubtreeDeletionEngine;
+import ch.aarboard.vamm.security.BreachedPasswordBlocklist;
+import ch.aarboard.vamm.security.PasswordHashingService;
 import ch.aarboard.vamm.security.SecurityService;
 import ch.aarboard.vamm.services.JammMailAccountManagementService;
 import ch.aarboard.vamm.services.JammMailAliasManagemeentService;
 import ch.aarboard.vamm.services.JammVirtualDomainManagementService;
+import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.TestInstance;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.context.ActiveProfiles;
 
+import java.util.List;
+
+/**
+ * Service tests run against their own {@link InMemoryJammDirectory} with the sample data,
+ * so test classes do not see each other's entries and can run in parallel.
+ */
 @SpringBootTest
-@ActiveProfiles("test")
+@ActiveProfiles({"test", "embedded-ldap"})
 @TestInstance(TestInstance.Lifecycle.PER_CLASS)
 public abstract class AbstractServiceTest {
 
     @Autowired
-    protected LdapConfig ldapConfig;
+    protected SecurityService securityService;
 
     @Autowired
-    protected SecurityService securityService;
+    protected PasswordHashingService passwordHashingService;
+
+    @Autowired
+    protected BreachedPasswordBlocklist passwordBlocklist;
+
+    protected InMemoryJammDirectory directory;
 
     protected LdapSessionManager ldapSessionManager;
 
+    private SubtreeDeletionEngine subtreeDeletionEngine;
+
     protected JammVirtualDomainRepository virtualDomainRepository;
 
     protected JammMailAccountRepository mailAccountRepository;
@@ -46,10 +65,14 @@ public abstract class AbstractServiceTest {
 
 
     @BeforeAll
-    public void setUp() {
+    public void setUp() throws Exception {
+        directory = new InMemoryJammDirectory();
+        directory.importLdif(InMemoryJammDirectory.SAMPLE_FILE);
+
         ldapSessionManager = new LdapSessionManager(
-                ldapConfig,
-                securityService
+                directory.ldapConfig(),
+                securityService,
+                List.of(LdapCallAssertions.observer())
         );
 
         virtualDomainRepository = new JammVirtualDomainRepository(ldapSessionManager);
@@ -57,24 +80,41 @@ public abstract class AbstractServiceTest {
         mailAliasRepository = new JammMailAliasRepository(ldapSessionManager);
         postmasterRepository = new JammPostmasterRepository(ldapSessionManager);
 
+        StripedLockRegistry lockRegistry = new StripedLockRegistry(64);
+        subtreeDeletionEngine = new SubtreeDeletionEngine(ldapSessionManager, 4, 50,
+                System.getProperty("java.io.tmpdir") + "/vamm-delete-test-" + directory.getPort());
+
         virtualDomainManagementService = new JammVirtualDomainManagementService(
                 virtualDomainRepository,
                 mailAccountRepository,
                 mailAliasRepository,
-                postmasterRepository
+                postmasterRepository,
+                lockRegistry,
+                subtreeDeletionEngine
         );
 
-        mailAccountManagementService = new JammMailAccountManagementService(
-                mailAccountRepository,
+        mailAliasManagementService = new JammMailAliasManagemeentService(
                 mailAliasRepository,
-                virtualDomainRepository
+                mailAccountRepository,
+                virtualDomainRepository,
+                lockRegistry
         );
 
-        mailAliasManagementService = new JammMailAliasManagemeentService(
-                mailAliasRepository,
+        mailAccountManagementService = new JammMailAccountManagementService(
                 mailAccountRepository,
-                virtualDomainRepository
+                mailAliasRepository,
+                virtualDomainRepository,
+                lockRegistry,
+                passwordHashingService,
+                passwordBlocklist,
+                new DestinationIndex(),
+                mailAliasManagementService
         );
+    }
 
+    @AfterAll
+    public void stopDirectory() {
+        subtreeDeletionEngine.shutdown();
+        directory.close();
     }
 }
\ No newline at end of file
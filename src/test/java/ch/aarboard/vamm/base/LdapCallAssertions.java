@@ -0,0 +1,45 @@
+package ch.aarboard.vamm.base;
+
+import ch.aarboard.vamm.ldap.LdapOperationObserver;
+import ch.aarboard.vamm.monitoring.LdapCallBudget;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.function.Executable;
+import org.junit.jupiter.api.function.ThrowingSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * Fails a test when code makes more LDAP requests than expected, binds included. Only counts with
+ * a session manager that has {@link #observer()} registered, like the ones of the base tests.
+ */
+public final class LdapCallAssertions {
+
+    private static final LdapCallBudget OBSERVER = new LdapCallBudget(new SimpleMeterRegistry(), Integer.MAX_VALUE,
+            Integer.MAX_VALUE);
+
+    private LdapCallAssertions() {
+    }
+
+    public static LdapOperationObserver observer() {
+        return OBSERVER;
+    }
+
+    public static void assertLdapCalls(int max, Executable work) {
+        assertLdapCalls(max, () -> {
+            work.execute();
+            return null;
+        });
+    }
+
+    public static <T> T assertLdapCalls(int max, ThrowingSupplier<T> work) {
+        T result;
+        try (LdapCallBudget.Scope scope = LdapCallBudget.Scope.open("test", "test", max)) {
+            result = assertDoesNotThrow(work);
+            if (scope.exceeded()) {
+                fail("Expected at most " + max + " LDAP requests but " + scope.calls() + " were made: " + scope.summary());
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,87 @@
+package ch.aarboard.vamm.benchmarks;
+
+import ch.aarboard.vamm.index.AddressSearchIndex;
+import ch.aarboard.vamm.index.DirectoryIndex;
+import ch.aarboard.vamm.index.IndexEntry;
+import ch.aarboard.vamm.ldif.DataGenerator;
+import com.unboundid.ldap.sdk.Attribute;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of a search in the {@link AddressSearchIndex} over 100k and 1M generated accounts plus
+ * their aliases, for terms matching a few entries ({@code anna.keller}), many ({@code meier}),
+ * a two character prefix ({@code ri}) and none. The index is filled directly, without a
+ * directory.
+ *
+ * <pre>
+ * mvn -Pbenchmarks test -Djmh.include=AddressSearchBenchmark -Djmh.args="-p accounts=100000"
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class AddressSearchBenchmark {
+
+    @Param({"100000", "1000000"})
+    public int accounts;
+
+    @Param({"anna.keller", "meier", "ri", "nobody"})
+    public String term;
+
+    private AddressSearchIndex index;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        index = new AddressSearchIndex(5_000);
+        DirectoryIndex.Rebuild rebuild = index.rebuild();
+        new DataGenerator(DataGenerator.Settings.of(Math.max(1, accounts / 100), accounts))
+                .generate(entry -> {
+                    Map<String, List<String>> attributes = new HashMap<>();
+                    for (Attribute attribute : entry.getAttributes()) {
+                        attributes.put(attribute.getName().toLowerCase(Locale.ROOT), Arrays.asList(attribute.getValues()));
+                    }
+                    rebuild.add(new IndexEntry(IndexEntry.normalizeDn(entry.getDN()), attributes));
+                });
+        rebuild.commit();
+    }
+
+    @Benchmark
+    public AddressSearchIndex.SearchResult search() {
+        return index.search(term, 20, domain -> true);
+    }
+
+    @Benchmark
+    public AddressSearchIndex.SearchResult searchOneDomainInTen() {
+        return index.search(term, 20, domain -> domain.hashCode() % 10 == 0);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(AddressSearchBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,99 @@
+package ch.aarboard.vamm.benchmarks;
+
+import ch.aarboard.vamm.index.AddressAutocomplete;
+import ch.aarboard.vamm.index.DirectoryIndex;
+import ch.aarboard.vamm.index.IndexEntry;
+import ch.aarboard.vamm.ldif.DataGenerator;
+import com.unboundid.ldap.sdk.Attribute;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of completing addresses in the {@link AddressAutocomplete} over 100k and 1M generated
+ * accounts plus their aliases: a single letter, a first name, a whole local part and a prefix
+ * nothing starts with. The setup prints the footprint, the trie's estimate and the heap the index
+ * actually took.
+ *
+ * <pre>
+ * mvn -Pbenchmarks test -Djmh.include=AutocompleteBenchmark -Djmh.args="-p accounts=100000"
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class AutocompleteBenchmark {
+
+    @Param({"100000", "1000000"})
+    public int accounts;
+
+    @Param({"a", "rita.", "rita.roth@", "qq"})
+    public String prefix;
+
+    private AddressAutocomplete autocomplete;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        long before = usedHeap();
+        autocomplete = new AddressAutocomplete(Long.MAX_VALUE);
+        DirectoryIndex.Rebuild rebuild = autocomplete.rebuild();
+        new DataGenerator(DataGenerator.Settings.of(Math.max(1, accounts / 100), accounts))
+                .generate(entry -> {
+                    Map<String, List<String>> attributes = new HashMap<>();
+                    for (Attribute attribute : entry.getAttributes()) {
+                        attributes.put(attribute.getName().toLowerCase(Locale.ROOT), Arrays.asList(attribute.getValues()));
+                    }
+                    rebuild.add(new IndexEntry(IndexEntry.normalizeDn(entry.getDN()), attributes));
+                });
+        rebuild.commit();
+        long used = usedHeap() - before;
+        System.out.printf("%n%d keys, estimated %,d bytes, heap %,d bytes, %.1f bytes per key%n",
+                autocomplete.size(), autocomplete.footprint(), used, (double) used / autocomplete.size());
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    @Benchmark
+    public List<String> completeAddress() {
+        return autocomplete.completeAddress(prefix, 20, domain -> true);
+    }
+
+    @Benchmark
+    public List<String> completeDomain() {
+        return autocomplete.completeDomain(prefix, 20, domain -> true);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(AutocompleteBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,104 @@
+package ch.aarboard.vamm.benchmarks;
+
+import ch.aarboard.vamm.security.BreachedPasswordBlocklist;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of a blocklist check against a list of random 8 byte hash prefixes, with 4 threads as
+ * during bulk provisioning. The list is written to a temporary file of {@code entries * 8} bytes.
+ *
+ * Run with {@code mvn test-compile} and the main method, or through the JMH launcher on the test classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class BreachedPasswordBlocklistBenchmark {
+
+    private static final String BREACHED = "password123";
+
+    @Param({"1000000", "50000000"})
+    public int entries;
+
+    private Path file;
+    private BreachedPasswordBlocklist blocklist;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        long[] prefixes = new long[entries];
+        SplittableRandom random = new SplittableRandom(42);
+        for (int i = 1; i < entries; i++) {
+            prefixes[i] = random.nextLong();
+        }
+        byte[] hash = MessageDigest.getInstance("SHA-1").digest(BREACHED.getBytes(StandardCharsets.UTF_8));
+        prefixes[0] = ByteBuffer.wrap(hash).getLong();
+
+        // Flip the sign bit so the signed sort gives the unsigned byte order of the file
+        for (int i = 0; i < entries; i++) {
+            prefixes[i] ^= Long.MIN_VALUE;
+        }
+        Arrays.parallelSort(prefixes);
+
+        file = Files.createTempFile("blocklist-benchmark", ".bin");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 1 << 16))) {
+            for (long prefix : prefixes) {
+                out.writeLong(prefix ^ Long.MIN_VALUE);
+            }
+        }
+        blocklist = new BreachedPasswordBlocklist(file.toString(), 8);
+        if (!blocklist.contains(BREACHED)) {
+            throw new IllegalStateException("Benchmark list is broken");
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public boolean hit() {
+        return blocklist.contains(BREACHED);
+    }
+
+    @Benchmark
+    public boolean miss() {
+        return blocklist.contains("correct horse battery staple");
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(BreachedPasswordBlocklistBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
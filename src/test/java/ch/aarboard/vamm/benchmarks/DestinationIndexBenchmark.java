@@ -0,0 +1,105 @@
+package ch.aarboard.vamm.benchmarks;
+
+import ch.aarboard.vamm.index.DestinationIndex;
+import ch.aarboard.vamm.index.DirectoryIndex;
+import ch.aarboard.vamm.index.IndexEntry;
+import ch.aarboard.vamm.ldif.DataGenerator;
+import com.unboundid.ldap.sdk.Attribute;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of listing the aliases delivering to an account with the {@link DestinationIndex}, over
+ * 100k and 1M generated accounts plus their aliases, and of updating an alias in it. The setup
+ * prints the heap the index took.
+ *
+ * <pre>
+ * mvn -Pbenchmarks test -Djmh.include=DestinationIndexBenchmark -Djmh.args="-p accounts=100000"
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class DestinationIndexBenchmark {
+
+    @Param({"100000", "1000000"})
+    public int accounts;
+
+    private DestinationIndex index;
+    private final List<String> destinations = new ArrayList<>();
+    private final List<IndexEntry> aliases = new ArrayList<>();
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        long before = usedHeap();
+        index = new DestinationIndex();
+        DirectoryIndex.Rebuild rebuild = index.rebuild();
+        new DataGenerator(DataGenerator.Settings.of(Math.max(1, accounts / 100), accounts))
+                .generate(entry -> {
+                    Map<String, List<String>> attributes = new HashMap<>();
+                    for (Attribute attribute : entry.getAttributes()) {
+                        attributes.put(attribute.getName().toLowerCase(Locale.ROOT), Arrays.asList(attribute.getValues()));
+                    }
+                    IndexEntry indexEntry = new IndexEntry(IndexEntry.normalizeDn(entry.getDN()), attributes);
+                    rebuild.add(indexEntry);
+                    if (aliases.size() < 10_000 && indexEntry.hasObjectClass("JammMailAlias")
+                            && !indexEntry.hasObjectClass("JammPostmaster")) {
+                        aliases.add(indexEntry);
+                        destinations.addAll(indexEntry.values("maildrop"));
+                    }
+                });
+        rebuild.commit();
+        long used = usedHeap() - before;
+        System.out.printf("%n%d aliases, heap %,d bytes, %.1f bytes per alias%n",
+                index.size(), used, (double) used / index.size());
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    @Benchmark
+    public List<String> aliasesDeliveringTo() {
+        return index.aliasesDeliveringTo(destinations.get(ThreadLocalRandom.current().nextInt(destinations.size())));
+    }
+
+    @Benchmark
+    public void update() {
+        index.update(aliases.get(ThreadLocalRandom.current().nextInt(aliases.size())));
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(DestinationIndexBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
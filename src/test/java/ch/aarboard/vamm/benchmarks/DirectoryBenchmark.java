@@ -0,0 +1,239 @@
+package ch.aarboard.vamm.benchmarks;
+
+import ch.aarboard.vamm.concurrent.StripedLockRegistry;
+import ch.aarboard.vamm.data.entries.JammMailAccount;
+import ch.aarboard.vamm.data.entries.JammVirtualDomain;
+import ch.aarboard.vamm.data.repositories.JammMailAccountRepository;
+import ch.aarboard.vamm.data.repositories.JammMailAliasRepository;
+import ch.aarboard.vamm.data.repositories.JammPostmasterRepository;
+import ch.aarboard.vamm.data.repositories.JammVirtualDomainRepository;
+import ch.aarboard.vamm.index.DestinationIndex;
+import ch.aarboard.vamm.ldap.InMemoryJammDirectory;
+import ch.aarboard.vamm.ldap.LdapSessionManager;
+import ch.aarboard.vamm.ldap.SubtreeDeletionEngine;
+import ch.aarboard.vamm.security.BreachedPasswordBlocklist;
+import ch.aarboard.vamm.security.PasswordHashingService;
+import ch.aarboard.vamm.security.SecurityService;
+import ch.aarboard.vamm.services.JammMailAccountManagementService;
+import ch.aarboard.vamm.services.JammMailAliasManagemeentService;
+import ch.aarboard.vamm.services.JammVirtualDomainManagementService;
+import com.unboundid.ldap.sdk.Attribute;
+import com.unboundid.ldap.sdk.Entry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Latency of the repository and service hot paths against an {@link InMemoryJammDirectory} with
+ * 1k, 10k and 100k entries. Domains hold 100 entries each, four accounts to one alias, so the
+ * per-domain calls see the same domain size at every scale while the directory-wide ones grow.
+ *
+ * The server runs in the benchmark JVM, the numbers include the LDAP protocol and the ODM
+ * mapping but no network. Run them through the {@code benchmarks} profile, which writes the
+ * results as JSON:
+ *
+ * <pre>
+ * mvn -Pbenchmarks test -Djmh.include=DirectoryBenchmark -Djmh.args="-p entries=1000"
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DirectoryBenchmark {
+
+    private static final int ENTRIES_PER_DOMAIN = 100;
+    private static final String LAST_CHANGE = "1700000000";
+
+    @Param({"1000", "10000", "100000"})
+    public int entries;
+
+    private InMemoryJammDirectory directory;
+    private ThreadPoolTaskExecutor hashExecutor;
+    private SubtreeDeletionEngine subtreeDeletionEngine;
+
+    private JammMailAccountRepository accountRepository;
+    private JammMailAliasRepository aliasRepository;
+    private JammVirtualDomainManagementService domainService;
+    private JammMailAccountManagementService accountService;
+
+    private String[] accounts;
+    private String typicalDomain;
+    private String createDomain;
+    private final AtomicLong created = new AtomicLong();
+
+    /**
+     * An account per thread that is saved over and over, each save returns the stored state
+     */
+    @State(Scope.Thread)
+    public static class SavedAccount {
+        JammMailAccount account;
+        long saves;
+
+        @Setup(Level.Iteration)
+        public void load(DirectoryBenchmark benchmark) {
+            String mail = benchmark.accounts[ThreadLocalRandom.current().nextInt(benchmark.accounts.length)];
+            account = benchmark.accountRepository.findByEmail(mail).orElseThrow();
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        directory = new InMemoryJammDirectory();
+        int domains = Math.max(1, entries / ENTRIES_PER_DOMAIN);
+        int accountsPerDomain = ENTRIES_PER_DOMAIN * 4 / 5;
+        accounts = new String[domains * accountsPerDomain];
+        for (int d = 0; d < domains; d++) {
+            String domain = "domain" + d + ".test";
+            seedDomain(domain);
+            for (int i = 0; i < ENTRIES_PER_DOMAIN; i++) {
+                String mail = "user" + i + "@" + domain;
+                if (i < accountsPerDomain) {
+                    seedAccount(mail, domain);
+                    accounts[d * accountsPerDomain + i] = mail;
+                } else {
+                    seedAlias(mail, domain, "user" + (i - accountsPerDomain) + "@" + domain);
+                }
+            }
+        }
+        typicalDomain = "domain0.test";
+        createDomain = "created.test";
+        seedDomain(createDomain);
+
+        LdapSessionManager sessionManager = new LdapSessionManager(directory.ldapConfig(),
+                new SecurityService(new StandardEnvironment()));
+        JammVirtualDomainRepository domainRepository = new JammVirtualDomainRepository(sessionManager);
+        accountRepository = new JammMailAccountRepository(sessionManager);
+        aliasRepository = new JammMailAliasRepository(sessionManager);
+        JammPostmasterRepository postmasterRepository = new JammPostmasterRepository(sessionManager);
+        StripedLockRegistry lockRegistry = new StripedLockRegistry(64);
+        subtreeDeletionEngine = new SubtreeDeletionEngine(sessionManager, 4, 200,
+                System.getProperty("java.io.tmpdir") + "/vamm-delete-benchmark");
+
+        hashExecutor = new ThreadPoolTaskExecutor();
+        hashExecutor.setCorePoolSize(2);
+        hashExecutor.setMaxPoolSize(2);
+        hashExecutor.initialize();
+        // Fixed, cheap work factors skip the calibration, new passwords use SSHA
+        PasswordHashingService hashingService = new PasswordHashingService(hashExecutor, "SSHA", 100, 10_000,
+                1_000, 1_024, 1, 1);
+
+        domainService = new JammVirtualDomainManagementService(domainRepository, accountRepository, aliasRepository,
+                postmasterRepository, lockRegistry, subtreeDeletionEngine);
+        accountService = new JammMailAccountManagementService(accountRepository, aliasRepository, domainRepository,
+                lockRegistry, hashingService, new BreachedPasswordBlocklist("", 20),
+                new DestinationIndex(),
+                new JammMailAliasManagemeentService(aliasRepository, accountRepository, domainRepository, lockRegistry));
+    }
+
+    private void seedDomain(String domain) throws Exception {
+        String domainDn = "jvd=" + domain + ",o=hosting," + InMemoryJammDirectory.BASE;
+        directory.add(new Entry(domainDn,
+                new Attribute("objectClass", "top", "JammVirtualDomain"),
+                new Attribute("jvd", domain),
+                new Attribute("accountActive", "TRUE"),
+                new Attribute("delete", "FALSE"),
+                new Attribute("editAccounts", "TRUE"),
+                new Attribute("editPostmasters", "TRUE"),
+                new Attribute("lastChange", LAST_CHANGE)));
+        String postmasterDn = "cn=postmaster," + domainDn;
+        directory.add(new Entry(postmasterDn,
+                new Attribute("objectClass", "top", "JammMailAlias", "JammPostmaster"),
+                new Attribute("cn", "postmaster"),
+                new Attribute("mail", "postmaster@" + domain),
+                new Attribute("maildrop", "postmaster"),
+                new Attribute("roleOccupant", postmasterDn),
+                new Attribute("accountActive", "TRUE"),
+                new Attribute("lastChange", LAST_CHANGE)));
+    }
+
+    private void seedAccount(String mail, String domain) throws Exception {
+        directory.add(new Entry("mail=" + mail + ",jvd=" + domain + ",o=hosting," + InMemoryJammDirectory.BASE,
+                new Attribute("objectClass", "top", "JammMailAccount"),
+                new Attribute("mail", mail),
+                new Attribute("homeDirectory", "/home/vmail/domains"),
+                new Attribute("mailbox", domain + "/" + mail.substring(0, mail.indexOf('@')) + "/"),
+                new Attribute("userPassword", "{SSHA}tCNGqyJLk/uvKpCa4vga5GB2gWoxMjM0NTY3OA=="),
+                new Attribute("accountActive", "TRUE"),
+                new Attribute("delete", "FALSE"),
+                new Attribute("lastChange", LAST_CHANGE)));
+    }
+
+    private void seedAlias(String mail, String domain, String destination) throws Exception {
+        directory.add(new Entry("mail=" + mail + ",jvd=" + domain + ",o=hosting," + InMemoryJammDirectory.BASE,
+                new Attribute("objectClass", "top", "JammMailAlias"),
+                new Attribute("mail", mail),
+                new Attribute("maildrop", destination),
+                new Attribute("accountActive", "TRUE"),
+                new Attribute("lastChange", LAST_CHANGE)));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        subtreeDeletionEngine.shutdown();
+        hashExecutor.shutdown();
+        directory.close();
+    }
+
+    @Benchmark
+    public Optional<JammMailAccount> findByEmail() {
+        return accountRepository.findByEmail(accounts[ThreadLocalRandom.current().nextInt(accounts.length)]);
+    }
+
+    @Benchmark
+    public List<JammMailAccount> findByDomain() {
+        return accountRepository.findByDomain(typicalDomain);
+    }
+
+    @Benchmark
+    public int countByDomain() {
+        return accountRepository.countByDomain(typicalDomain);
+    }
+
+    @Benchmark
+    public JammMailAccount save(SavedAccount state) {
+        state.account.setDescription("Saved " + state.saves++);
+        state.account = accountRepository.save(state.account);
+        return state.account;
+    }
+
+    @Benchmark
+    public List<JammVirtualDomain> getAllDomainsWithStats() {
+        return domainService.getAllDomainsWithStats();
+    }
+
+    @Benchmark
+    public JammMailAccount createAccount() {
+        String mail = "new" + created.incrementAndGet() + "@" + createDomain;
+        return accountService.createAccount(mail, "benchmark-secret", "/home/vmail/domains", null, null);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(DirectoryBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,65 @@
+package ch.aarboard.vamm.benchmarks;
+
+import ch.aarboard.vamm.utils.PasswordUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hashing and verification throughput of every password scheme with 4 threads, as during
+ * bulk provisioning. Add {@code -prof gc} to the JMH arguments to see the allocation rate.
+ *
+ * Run with {@code mvn test-compile} and the main method, or through the JMH launcher on the test classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class PasswordUtilsBenchmark {
+
+    @Param({"PLAIN", "SSHA", "SHA", "MD5"})
+    public PasswordUtils.PasswordScheme scheme;
+
+    private static final String PASSWORD = "correct horse battery staple";
+
+    private String stored;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        stored = PasswordUtils.hashPassword(PASSWORD, scheme);
+    }
+
+    @Benchmark
+    public String hash() {
+        return PasswordUtils.hashPassword(PASSWORD, scheme);
+    }
+
+    @Benchmark
+    public boolean verify() {
+        return PasswordUtils.verifyPassword(stored, PASSWORD);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(PasswordUtilsBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
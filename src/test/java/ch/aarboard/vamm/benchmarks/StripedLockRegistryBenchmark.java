@@ -0,0 +1,73 @@
+package ch.aarboard.vamm.benchmarks;
+
+import ch.aarboard.vamm.concurrent.StripedLockRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the lock registry with 8 threads, from fully disjoint keys (the common
+ * case in bulk provisioning) to every thread creating the same address.
+ *
+ * Run with {@code mvn test-compile} and the main method, or through the JMH launcher on the test classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(8)
+public class StripedLockRegistryBenchmark {
+
+    /** Number of distinct addresses the threads pick from, 1 means full contention */
+    @Param({"1", "16", "100000"})
+    public int addresses;
+
+    private StripedLockRegistry registry;
+    private String[] keys;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        registry = new StripedLockRegistry(64);
+        keys = new String[addresses];
+        for (int i = 0; i < addresses; i++) {
+            keys[i] = StripedLockRegistry.mailKey("user" + i + "@example.com");
+        }
+    }
+
+    @Benchmark
+    public void singleKey(Blackhole blackhole) {
+        String key = keys[ThreadLocalRandom.current().nextInt(addresses)];
+        registry.withLocks(() -> blackhole.consume(key), key);
+    }
+
+    @Benchmark
+    public void addressAndDomain(Blackhole blackhole) {
+        String key = keys[ThreadLocalRandom.current().nextInt(addresses)];
+        registry.withLocks(() -> blackhole.consume(key), key, StripedLockRegistry.domainKey("example.com"));
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(StripedLockRegistryBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,165 @@
+package ch.aarboard.vamm.concurrent;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Stress tests in the spirit of jcstress: many threads hammer the same keys with
+ * deliberately unsafe check-then-act code, the registry has to make it safe.
+ */
+class StripedLockRegistryTest {
+
+    private static final int THREADS = 16;
+
+    private StripedLockRegistry registry;
+
+    @BeforeEach
+    void setUp() {
+        registry = new StripedLockRegistry(64);
+    }
+
+    private void runConcurrently(Runnable task) throws InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        for (int t = 0; t < THREADS; t++) {
+            pool.execute(() -> {
+                try { start.await(); } catch (InterruptedException e) { return; }
+                task.run();
+            });
+        }
+        start.countDown();
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(60, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void stripeCountIsRoundedToPowerOfTwo() {
+        assertEquals(64, new StripedLockRegistry(64).getStripeCount());
+        assertEquals(128, new StripedLockRegistry(100).getStripeCount());
+        assertEquals(1, new StripedLockRegistry(1).getStripeCount());
+        assertThrows(IllegalArgumentException.class, () -> new StripedLockRegistry(0));
+    }
+
+    @Test
+    void keysAreNormalized() {
+        assertEquals(StripedLockRegistry.mailKey("user@example.com"), StripedLockRegistry.mailKey(" User@Example.COM "));
+        assertNotEquals(StripedLockRegistry.mailKey("example.com"), StripedLockRegistry.domainKey("example.com"));
+    }
+
+    @Test
+    void noLostUpdatesUnderContention() throws InterruptedException {
+        int increments = 20_000;
+        long[] counters = new long[8];
+
+        runConcurrently(() -> {
+            for (int i = 0; i < increments; i++) {
+                int slot = i % counters.length;
+                registry.withLocks(() -> counters[slot]++, "counter:" + slot);
+            }
+        });
+
+        long total = 0;
+        for (long counter : counters) {
+            total += counter;
+        }
+        assertEquals((long) THREADS * increments, total);
+    }
+
+    @Test
+    void checkThenActCreatesEachAddressOnce() throws InterruptedException {
+        int addresses = 2_000;
+        // Thread-safe map, but containsKey + put is not atomic: exactly the race of exists + create
+        Map<String, String> directory = new ConcurrentHashMap<>();
+        AtomicInteger created = new AtomicInteger();
+
+        runConcurrently(() -> {
+            for (int i = 0; i < addresses; i++) {
+                // Mixed case on purpose, the account and alias flows see different spellings
+                String mail = (i % 2 == 0 ? "User" : "user") + i + "@Example.com";
+                registry.withLocks(() -> {
+                    String dn = mail.toLowerCase();
+                    if (!directory.containsKey(dn)) {
+                        Thread.onSpinWait();
+                        directory.put(dn, Thread.currentThread().getName());
+                        created.incrementAndGet();
+                    }
+                }, StripedLockRegistry.mailKey(mail));
+            }
+        });
+
+        assertEquals(addresses, created.get());
+        assertEquals(addresses, directory.size());
+    }
+
+    @Test
+    void opposingKeyOrderDoesNotDeadlock() {
+        assertTimeoutPreemptively(Duration.ofSeconds(30), () -> {
+            AtomicInteger turn = new AtomicInteger();
+            runConcurrently(() -> {
+                boolean reversed = turn.getAndIncrement() % 2 == 0;
+                for (int i = 0; i < 10_000; i++) {
+                    String a = StripedLockRegistry.mailKey("a" + (i % 50) + "@example.com");
+                    String b = StripedLockRegistry.domainKey("example" + (i % 7) + ".com");
+                    if (reversed) {
+                        registry.withLocks(() -> { }, b, a);
+                    } else {
+                        registry.withLocks(() -> { }, a, b);
+                    }
+                }
+            });
+        });
+    }
+
+    @Test
+    void contentionIsCounted() throws InterruptedException {
+        String key = StripedLockRegistry.mailKey("busy@example.com");
+        CountDownLatch held = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        Thread holder = new Thread(() -> registry.withLocks(() -> {
+            held.countDown();
+            try { release.await(); } catch (InterruptedException e) { Thread.currentThread().interrupt(); }
+        }, key));
+        holder.start();
+        held.await();
+
+        Thread waiter = new Thread(() -> registry.withLocks(() -> { }, key));
+        waiter.start();
+        while (registry.getStats().currentlyWaiting() == 0) {
+            Thread.onSpinWait();
+        }
+        release.countDown();
+        holder.join();
+        waiter.join();
+
+        StripedLockRegistry.LockStats stats = registry.getStats();
+        assertEquals(2, stats.acquisitions());
+        assertEquals(1, stats.contended());
+        assertEquals(0, stats.currentlyWaiting());
+        assertTrue(stats.maxWaitNanos() > 0);
+        assertEquals(0.5, stats.contentionRatio());
+    }
+
+    @Test
+    void lockIsReleasedWhenTheActionFails() {
+        String key = StripedLockRegistry.mailKey("failing@example.com");
+
+        assertThrows(IllegalStateException.class, () -> registry.withLocks(() -> {
+            throw new IllegalStateException("boom");
+        }, key));
+
+        assertEquals("done", registry.withLocks(() -> "done", key));
+        assertEquals(0, registry.getStats().contended());
+    }
+}
@@ -3,12 +3,14 @@ package ch.aarboard.vamm.data.repositories;
 import ch.aarboard.vamm.base.AbstractRepositoryTest;
 import ch.aarboard.vamm.data.entries.JammMailAccount;
 import ch.aarboard.vamm.data.entries.JammVirtualDomain;
+import ch.aarboard.vamm.utils.LdapUtils;
 import org.junit.jupiter.api.MethodOrderer;
 import org.junit.jupiter.api.Order;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.TestMethodOrder;
-import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.ldap.core.AttributesMapper;
 
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.Optional;
 
@@ -17,15 +19,18 @@ import static org.junit.jupiter.api.Assertions.*;
 @TestMethodOrder(MethodOrderer.OrderAnnotation.class)
 public class JammMailAccountRepositoryTest extends AbstractRepositoryTest {
 
-    @Autowired
-    private JammMailAccountRepository mailAccountRepository;
-
-    @Autowired
-    private JammVirtualDomainRepository virtualDomainRepository;
-
     private static final String TEST_EMAIL = "test.user@example.com";
     private static final String UPDATED_NAME = "Updated Test User";
 
+    /**
+     * JNDI returns userPassword as binary, read it raw instead of through the entity
+     */
+    private String storedPassword(String mail) {
+        Object value = ldapSessionManager.createUserLdapTemplate().lookup(LdapUtils.mailDN(mail).build(),
+                (AttributesMapper<Object>) attributes -> attributes.get("userPassword").get());
+        return value instanceof byte[] bytes ? new String(bytes, StandardCharsets.UTF_8) : String.valueOf(value);
+    }
+
     @Test
     @Order(1)
     public void testCreateMailAccount() {
@@ -74,6 +79,22 @@ public class JammMailAccountRepositoryTest extends AbstractRepositoryTest {
 
     @Test
     @Order(4)
+    public void testUpdateKeepsPasswordTheReaderCouldNotSee() {
+        JammMailAccount account = mailAccountRepository.findByEmail(TEST_EMAIL).orElseThrow();
+        account.setUserPassword("{SSHA}c2VjcmV0c2FsdHNhbHQ=");
+        account = mailAccountRepository.save(account);
+
+        // As loaded by a bind the ACLs deny reading userPassword
+        account.setUserPassword(null);
+        account.setCommonName("Without Password");
+        mailAccountRepository.save(account);
+
+        assertEquals("{SSHA}c2VjcmV0c2FsdHNhbHQ=", storedPassword(TEST_EMAIL));
+        assertEquals("Without Password", mailAccountRepository.findByEmail(TEST_EMAIL).orElseThrow().getCommonName());
+    }
+
+    @Test
+    @Order(5)
     public void testDeleteMailAccount() {
         Optional<JammMailAccount> accountToDelete = mailAccountRepository.findByEmail(TEST_EMAIL);
         assertTrue(accountToDelete.isPresent());
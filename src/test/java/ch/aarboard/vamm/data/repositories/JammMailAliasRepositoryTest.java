@@ -7,7 +7,6 @@ import org.junit.jupiter.api.MethodOrderer;
 import org.junit.jupiter.api.Order;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.TestMethodOrder;
-import org.springframework.beans.factory.annotation.Autowired;
 
 import java.util.List;
 
@@ -16,12 +15,6 @@ import static org.junit.jupiter.api.Assertions.*;
 @TestMethodOrder(MethodOrderer.OrderAnnotation.class)
 public class JammMailAliasRepositoryTest extends AbstractRepositoryTest {
 
-    @Autowired
-    private JammMailAliasRepository mailAliasRepository;
-
-    @Autowired
-    private JammVirtualDomainRepository virtualDomainRepository;
-
     private static final String TEST_ALIAS = "test.alias@example.com";
     private static final String TEST_DESTINATION = "destination@example.com";
     private static final String UPDATED_DESTINATION = "updated.destination@example.com";
@@ -7,7 +7,6 @@ import org.junit.jupiter.api.MethodOrderer;
 import org.junit.jupiter.api.Order;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.TestMethodOrder;
-import org.springframework.beans.factory.annotation.Autowired;
 
 import java.util.List;
 import java.util.Optional;
@@ -17,12 +16,6 @@ import static org.junit.jupiter.api.Assertions.*;
 @TestMethodOrder(MethodOrderer.OrderAnnotation.class)
 public class JammPostmasterRepositoryTest extends AbstractRepositoryTest {
 
-    @Autowired
-    private JammPostmasterRepository postmasterRepository;
-
-    @Autowired
-    private JammVirtualDomainRepository virtualDomainRepository;
-
     private static final String TEST_DOMAIN = "example.com";
     private static final String TEST_USER_DN = "cn=testuser,ou=users,dc=example,dc=com";
     private static final String UPDATED_USER_DN = "cn=updateduser,ou=users,dc=example,dc=com";
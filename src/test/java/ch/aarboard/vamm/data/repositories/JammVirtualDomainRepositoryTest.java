@@ -6,7 +6,6 @@ import org.junit.jupiter.api.MethodOrderer;
 import org.junit.jupiter.api.Order;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.TestMethodOrder;
-import org.springframework.beans.factory.annotation.Autowired;
 
 import java.util.List;
 import java.util.Optional;
@@ -16,9 +15,6 @@ import static org.junit.jupiter.api.Assertions.*;
 @TestMethodOrder(MethodOrderer.OrderAnnotation.class)
 public class JammVirtualDomainRepositoryTest extends AbstractRepositoryTest {
 
-    @Autowired
-    private JammVirtualDomainRepository virtualDomainRepository;
-
     private static final String TEST_DOMAIN = "test-domain.com";
     private static final String SECOND_DOMAIN = "second-domain.com";
 
@@ -0,0 +1,142 @@
+package ch.aarboard.vamm.events;
+
+import ch.aarboard.vamm.events.DomainContentChangedEvent.ContentType;
+import com.vaadin.flow.shared.Registration;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DomainContentBroadcasterTest {
+
+    private static final long WINDOW_MS = 100;
+
+    private DomainContentBroadcaster broadcaster;
+
+    @BeforeEach
+    void setUp() {
+        broadcaster = new DomainContentBroadcaster(WINDOW_MS);
+    }
+
+    @AfterEach
+    void tearDown() {
+        broadcaster.shutdown();
+    }
+
+    /**
+     * Collects the deltas of a subscriber and counts down once per change they carry
+     */
+    private static final class Received implements Consumer<DomainContentDelta> {
+        private final List<DomainContentDelta> deltas = new CopyOnWriteArrayList<>();
+        private final CountDownLatch changes;
+
+        private Received(int expectedChanges) {
+            changes = new CountDownLatch(expectedChanges);
+        }
+
+        @Override
+        public void accept(DomainContentDelta delta) {
+            deltas.add(delta);
+            for (int i = 0; i < delta.totalChanges(); i++) {
+                changes.countDown();
+            }
+        }
+
+        private void await() throws InterruptedException {
+            assertTrue(changes.await(5, TimeUnit.SECONDS), "Changes not delivered: " + changes.getCount() + " missing");
+        }
+    }
+
+    @Test
+    void burstOfEventsIsDeliveredAsOneDelta() throws InterruptedException {
+        Received received = new Received(1000);
+        broadcaster.register("example.com", Runnable::run, received);
+
+        for (int i = 0; i < 1000; i++) {
+            broadcaster.publish("example.com", ContentType.ACCOUNT_CREATED, "user" + i + "@example.com");
+        }
+        received.await();
+
+        assertEquals(1, received.deltas.size());
+        DomainContentDelta delta = received.deltas.get(0);
+        assertEquals(1000, delta.totalChanges());
+        assertTrue(delta.contains(ContentType.ACCOUNT_CREATED));
+        assertFalse(delta.contains(ContentType.ALIAS_CREATED));
+        assertEquals(DomainContentBroadcaster.MAX_MAILS_PER_DELTA, delta.mails().size());
+        assertTrue(delta.mailsTruncated());
+    }
+
+    @Test
+    void onlySubscribersOfTheAffectedDomainAreNotified() throws InterruptedException {
+        Received first = new Received(1);
+        List<DomainContentDelta> second = new CopyOnWriteArrayList<>();
+        broadcaster.register("first.com", Runnable::run, first);
+        broadcaster.register("second.com", Runnable::run, second::add);
+
+        broadcaster.publish("FIRST.com", ContentType.ALIAS_UPDATED, "alias@first.com");
+        first.await();
+
+        assertEquals(1, first.deltas.size());
+        assertEquals("first.com", first.deltas.get(0).domainName());
+        assertEquals(List.of(), second);
+    }
+
+    @Test
+    void removedRegistrationReceivesNothing() throws InterruptedException {
+        List<DomainContentDelta> received = new CopyOnWriteArrayList<>();
+        Registration registration = broadcaster.register("example.com", Runnable::run, received::add);
+        assertEquals(1, broadcaster.getSubscriberCount("example.com"));
+
+        registration.remove();
+        assertEquals(0, broadcaster.getSubscriberCount("example.com"));
+
+        // Still subscribed, shows when the window was delivered
+        Received remaining = new Received(1);
+        broadcaster.register("example.com", Runnable::run, remaining);
+        broadcaster.publish("example.com", ContentType.ACCOUNT_DELETED, "user@example.com");
+        remaining.await();
+
+        assertTrue(received.isEmpty());
+    }
+
+    @Test
+    void concurrentPublishersLoseNoEvents() throws InterruptedException {
+        int threads = 8;
+        int eventsPerThread = 500;
+        Received received = new Received(threads * eventsPerThread);
+        broadcaster.register("example.com", Runnable::run, received);
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        for (int t = 0; t < threads; t++) {
+            pool.execute(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                for (int i = 0; i < eventsPerThread; i++) {
+                    broadcaster.publish("example.com", ContentType.ALIAS_CREATED, null);
+                }
+            });
+        }
+        start.countDown();
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+        received.await();
+
+        int total = received.deltas.stream().mapToInt(DomainContentDelta::totalChanges).sum();
+        assertEquals(threads * eventsPerThread, total);
+        assertTrue(received.deltas.size() < threads * eventsPerThread);
+    }
+}
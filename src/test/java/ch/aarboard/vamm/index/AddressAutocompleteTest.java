@@ -0,0 +1,95 @@
+package ch.aarboard.vamm.index;
+
+import ch.aarboard.vamm.data.entries.JammMailAccount;
+import ch.aarboard.vamm.data.entries.JammVirtualDomain;
+import ch.aarboard.vamm.data.repositories.JammMailAccountRepository;
+import ch.aarboard.vamm.data.repositories.JammMailAliasRepository;
+import ch.aarboard.vamm.data.repositories.JammVirtualDomainRepository;
+import ch.aarboard.vamm.ldap.InMemoryJammDirectory;
+import ch.aarboard.vamm.ldap.LdapOperationObserver;
+import ch.aarboard.vamm.ldap.LdapSessionManager;
+import ch.aarboard.vamm.security.SecurityService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.env.StandardEnvironment;
+
+import java.util.List;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AddressAutocompleteTest {
+
+    private static final Predicate<String> ALL = domain -> true;
+
+    private InMemoryJammDirectory directory;
+    private LdapSessionManager sessionManager;
+    private DirectoryIndexer indexer;
+
+    @BeforeEach
+    void startDirectory() throws Exception {
+        directory = new InMemoryJammDirectory();
+        directory.importLdif(InMemoryJammDirectory.SAMPLE_FILE);
+    }
+
+    @AfterEach
+    void stopDirectory() {
+        indexer.shutdown();
+        directory.close();
+    }
+
+    private AddressAutocomplete index(long maxBytes) {
+        AddressAutocomplete autocomplete = new AddressAutocomplete(maxBytes);
+        DirectoryIndexer[] observed = new DirectoryIndexer[1];
+        LdapOperationObserver observer = operation -> observed[0].completed(operation);
+        sessionManager = new LdapSessionManager(directory.ldapConfig(),
+                new SecurityService(new StandardEnvironment()), List.of(observer));
+        indexer = new DirectoryIndexer(sessionManager, directory.ldapConfig().getBase(),
+                InMemoryJammDirectory.ADMIN_DN, InMemoryJammDirectory.ADMIN_PASSWORD, List.of(autocomplete), 100, 0);
+        observed[0] = indexer;
+        indexer.rebuild();
+        return autocomplete;
+    }
+
+    @Test
+    void completesAddressesAndDomains() throws Exception {
+        AddressAutocomplete autocomplete = index(1 << 20);
+
+        assertEquals(List.of("abuse@info.test", "aubrey@info.test"), autocomplete.completeAddress("a", 10, ALL));
+        assertEquals(List.of("postmaster@info.test"), autocomplete.completeAddress("Post", 10, ALL));
+        assertEquals(List.of("info.test"), autocomplete.completeDomain("in", 10, ALL));
+        assertTrue(autocomplete.footprint() > 0);
+
+        JammVirtualDomainRepository domains = new JammVirtualDomainRepository(sessionManager);
+        JammVirtualDomain domain = new JammVirtualDomain("other.test");
+        domains.create(domain);
+        JammMailAccountRepository accounts = new JammMailAccountRepository(sessionManager);
+        accounts.create(new JammMailAccount("anna@other.test", "/home/vmail/domains", "other.test/anna/"));
+        indexer.sync();
+
+        assertEquals(List.of("abuse@info.test", "anna@other.test", "aubrey@info.test"),
+                autocomplete.completeAddress("a", 10, ALL));
+        assertEquals(List.of("other.test"), autocomplete.completeDomain("o", 10, ALL));
+
+        Predicate<String> infoOnly = "info.test"::equals;
+        assertEquals(List.of("abuse@info.test", "aubrey@info.test"), autocomplete.completeAddress("a", 10, infoOnly));
+        assertEquals(List.of(), autocomplete.completeDomain("o", 10, infoOnly));
+
+        new JammMailAliasRepository(sessionManager).deleteByEmail("abuse@info.test");
+        accounts.deleteByEmail("anna@other.test");
+        domains.delete(domain);
+        indexer.sync();
+
+        assertEquals(List.of("aubrey@info.test"), autocomplete.completeAddress("a", 10, ALL));
+        assertEquals(List.of(), autocomplete.completeDomain("o", 10, ALL));
+    }
+
+    @Test
+    void staysBelowItsMemoryBound() {
+        AddressAutocomplete autocomplete = index(100);
+
+        assertTrue(autocomplete.isReady());
+        assertTrue(autocomplete.size() < 5, "indexed " + autocomplete.size());
+    }
+}
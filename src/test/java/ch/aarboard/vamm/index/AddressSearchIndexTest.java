@@ -0,0 +1,118 @@
+package ch.aarboard.vamm.index;
+
+import ch.aarboard.vamm.data.entries.JammMailAccount;
+import ch.aarboard.vamm.data.entries.JammMailAlias;
+import ch.aarboard.vamm.data.repositories.JammMailAccountRepository;
+import ch.aarboard.vamm.data.repositories.JammMailAliasRepository;
+import ch.aarboard.vamm.ldap.InMemoryJammDirectory;
+import ch.aarboard.vamm.ldap.LdapOperationObserver;
+import ch.aarboard.vamm.ldap.LdapSessionManager;
+import ch.aarboard.vamm.security.SecurityService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.env.StandardEnvironment;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AddressSearchIndexTest {
+
+    private InMemoryJammDirectory directory;
+    private AddressSearchIndex index;
+    private DirectoryIndexer indexer;
+    private JammMailAccountRepository accounts;
+    private JammMailAliasRepository aliases;
+
+    @BeforeEach
+    void startDirectory() throws Exception {
+        directory = new InMemoryJammDirectory();
+        directory.importLdif(InMemoryJammDirectory.SAMPLE_FILE);
+
+        index = new AddressSearchIndex(20_000);
+        // The indexer observes the session manager it reads with
+        DirectoryIndexer[] observed = new DirectoryIndexer[1];
+        LdapOperationObserver observer = operation -> observed[0].completed(operation);
+        LdapSessionManager sessionManager = new LdapSessionManager(directory.ldapConfig(),
+                new SecurityService(new StandardEnvironment()), List.of(observer));
+        indexer = new DirectoryIndexer(sessionManager, directory.ldapConfig().getBase(),
+                InMemoryJammDirectory.ADMIN_DN, InMemoryJammDirectory.ADMIN_PASSWORD, List.of(index), 2, 0);
+        observed[0] = indexer;
+        accounts = new JammMailAccountRepository(sessionManager);
+        aliases = new JammMailAliasRepository(sessionManager);
+    }
+
+    @AfterEach
+    void stopDirectory() {
+        indexer.shutdown();
+        directory.close();
+    }
+
+    private List<String> search(String term) {
+        return index.search(term, 10, domain -> true).matches().stream()
+                .map(AddressSearchIndex.Match::mail)
+                .toList();
+    }
+
+    @Test
+    void findsAccountsAndAliasesOfAllDomains() {
+        assertFalse(index.isReady());
+        assertEquals(List.of(), search("info"));
+
+        // Pages of two entries
+        indexer.rebuild();
+
+        assertTrue(index.isReady());
+        assertEquals(List.of("dave@info.test"), search("dave"));
+        // A destination of the alias
+        AddressSearchIndex.Match match = index.search("pager", 10, domain -> true).matches().getFirst();
+        assertEquals("mark@info.test", match.mail());
+        assertEquals(AddressSearchIndex.Kind.ALIAS, match.kind());
+        assertEquals("info.test", match.domain());
+        assertEquals("maildrop", match.field());
+        assertEquals("markl@pager.test", match.value());
+
+        assertTrue(search("@info.test").containsAll(List.of("abuse@info.test", "dave@info.test", "keith@info.test")));
+        assertEquals(List.of(), search("nobody"));
+        assertEquals(List.of(), index.search("dave", 10, domain -> !domain.equals("info.test")).matches());
+    }
+
+    @Test
+    void ranksWholeValuesAndPrefixesFirst() {
+        indexer.rebuild();
+
+        // Two characters only match at the start
+        assertEquals(List.of("keith@info.test"), search("ke"));
+        assertEquals(List.of(), search("ei"));
+        // An entry ranks by its best value, here the destination matching exactly
+        assertEquals("aubrey@info.test", search("aubrey").getFirst());
+        // Case does not matter
+        assertEquals(List.of("keith@info.test"), search("KEITH@INFO.TEST"));
+    }
+
+    @Test
+    void followsWritesMadeThroughTheSessionManager() throws Exception {
+        indexer.rebuild();
+
+        JammMailAccount account = new JammMailAccount("zoe@info.test", "/home/vmail/domains", "info.test/zoe/");
+        account.setCommonName("Zoe Example");
+        accounts.create(account);
+        aliases.create(new JammMailAlias("sales@info.test", List.of("zoe@info.test"), "Sales"));
+        indexer.sync();
+
+        assertEquals(List.of("zoe@info.test", "sales@info.test"), search("zoe"));
+        assertEquals(List.of("zoe@info.test"), search("example"));
+
+        JammMailAccount saved = accounts.findByEmail("zoe@info.test").orElseThrow();
+        saved.setCommonName("Zoe Renamed");
+        accounts.save(saved);
+        indexer.sync();
+        assertEquals(List.of(), search("example"));
+        assertEquals(List.of("zoe@info.test"), search("renamed"));
+
+        accounts.deleteByEmail("zoe@info.test");
+        indexer.sync();
+        assertEquals(List.of("sales@info.test"), search("zoe"));
+    }
+}
@@ -0,0 +1,111 @@
+package ch.aarboard.vamm.index;
+
+import ch.aarboard.vamm.data.entries.JammMailAlias;
+import ch.aarboard.vamm.data.entries.JammVirtualDomain;
+import ch.aarboard.vamm.data.repositories.JammMailAliasRepository;
+import ch.aarboard.vamm.data.repositories.JammVirtualDomainRepository;
+import ch.aarboard.vamm.ldap.InMemoryJammDirectory;
+import ch.aarboard.vamm.ldap.LdapOperationObserver;
+import ch.aarboard.vamm.ldap.LdapSessionManager;
+import ch.aarboard.vamm.ldap.SubtreeDeletionEngine;
+import ch.aarboard.vamm.security.SecurityService;
+import ch.aarboard.vamm.utils.LdapUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.env.StandardEnvironment;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DestinationIndexTest {
+
+    private InMemoryJammDirectory directory;
+    private LdapSessionManager sessionManager;
+    private DirectoryIndexer indexer;
+    private DestinationIndex index;
+
+    @BeforeEach
+    void startDirectory() throws Exception {
+        directory = new InMemoryJammDirectory();
+        directory.importLdif(InMemoryJammDirectory.SAMPLE_FILE);
+
+        index = new DestinationIndex();
+        DirectoryIndexer[] observed = new DirectoryIndexer[1];
+        LdapOperationObserver observer = operation -> observed[0].completed(operation);
+        sessionManager = new LdapSessionManager(directory.ldapConfig(),
+                new SecurityService(new StandardEnvironment()), List.of(observer));
+        indexer = new DirectoryIndexer(sessionManager, directory.ldapConfig().getBase(),
+                InMemoryJammDirectory.ADMIN_DN, InMemoryJammDirectory.ADMIN_PASSWORD, List.of(index), 2, 0);
+        observed[0] = indexer;
+        indexer.rebuild();
+    }
+
+    @AfterEach
+    void stopDirectory() {
+        indexer.shutdown();
+        directory.close();
+    }
+
+    @Test
+    void findsAliasesByDestination() throws Exception {
+        assertTrue(index.isReady());
+        assertEquals(List.of("mark@info.test"), index.aliasesDeliveringTo("MAL@otherdomain.test"));
+        assertEquals(List.of("abuse@info.test"), index.aliasesDeliveringTo("postmaster"));
+        assertEquals(List.of(), index.aliasesDeliveringTo("nobody@info.test"));
+
+        JammMailAliasRepository aliases = new JammMailAliasRepository(sessionManager);
+        aliases.create(new JammMailAlias("sales@info.test", "mal@otherdomain.test", "keith@info.test"));
+        JammMailAlias mark = aliases.findByEmail("mark@info.test").orElseThrow();
+        mark.setDestinations(List.of("markl@pager.test"));
+        aliases.save(mark);
+        indexer.sync();
+
+        assertEquals(List.of("sales@info.test"), index.aliasesDeliveringTo("mal@otherdomain.test"));
+        assertEquals(List.of("sales@info.test"), index.aliasesDeliveringTo("keith@info.test"));
+        assertEquals(List.of("mark@info.test"), index.aliasesDeliveringTo("markl@pager.test"));
+
+        aliases.deleteByEmail("sales@info.test");
+        indexer.sync();
+
+        assertEquals(List.of(), index.aliasesDeliveringTo("keith@info.test"));
+    }
+
+    @Test
+    void staysNotReadyWithoutBindDn() throws Exception {
+        DestinationIndex unbuilt = new DestinationIndex();
+        DirectoryIndexer disabled = new DirectoryIndexer(sessionManager, directory.ldapConfig().getBase(), "", "",
+                List.of(unbuilt), 2, 0);
+        try {
+            disabled.start();
+            disabled.sync();
+            assertFalse(disabled.isEnabled());
+            assertFalse(unbuilt.isReady());
+        } finally {
+            disabled.shutdown();
+        }
+    }
+
+    @Test
+    void forgetsTheAliasesOfADeletedDomain() throws Exception {
+        JammVirtualDomainRepository domains = new JammVirtualDomainRepository(sessionManager);
+        JammVirtualDomain domain = new JammVirtualDomain("other.test");
+        domains.create(domain);
+        new JammMailAliasRepository(sessionManager).create(new JammMailAlias("all@other.test", "dave@info.test"));
+        indexer.sync();
+        assertEquals(List.of("all@other.test"), index.aliasesDeliveringTo("dave@info.test"));
+
+        SubtreeDeletionEngine deletionEngine = new SubtreeDeletionEngine(sessionManager, 1, 10,
+                System.getProperty("java.io.tmpdir") + "/vamm-delete-test-" + directory.getPort());
+        try {
+            deletionEngine.deleteSubtree(LdapUtils.domainDN("other.test").build(), SubtreeDeletionEngine.ProgressListener.NONE);
+        } finally {
+            deletionEngine.shutdown();
+        }
+        indexer.sync();
+
+        assertEquals(List.of(), index.aliasesDeliveringTo("dave@info.test"));
+        assertEquals(List.of("abuse@info.test"), index.aliasesDeliveringTo("postmaster"));
+    }
+}
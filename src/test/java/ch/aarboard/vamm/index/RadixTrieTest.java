@@ -0,0 +1,83 @@
+package ch.aarboard.vamm.index;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RadixTrieTest {
+
+    private static List<String> complete(RadixTrie trie, String prefix) {
+        return trie.complete(prefix, 10, 1000, key -> true);
+    }
+
+    @Test
+    void completesInByteOrder() {
+        RadixTrie trie = new RadixTrie();
+        for (String key : List.of("anna@a.test", "ann@a.test", "anton@a.test", "ben@b.test", "anna@b.test")) {
+            assertTrue(trie.add(key));
+        }
+        assertFalse(trie.add("ANNA@a.test"));
+        assertEquals(5, trie.size());
+
+        assertEquals(List.of("ann@a.test", "anna@a.test", "anna@b.test", "anton@a.test"), complete(trie, "an"));
+        assertEquals(List.of("anna@a.test", "anna@b.test"), complete(trie, "anna"));
+        // A prefix ending inside a node's label
+        assertEquals(List.of("anton@a.test"), complete(trie, "ant"));
+        assertEquals(List.of("ben@b.test"), complete(trie, "B"));
+        assertEquals(List.of(), complete(trie, "anx"));
+        assertEquals(List.of(), complete(trie, "anna@b.test.ch"));
+        assertEquals(5, complete(trie, "").size());
+
+        assertEquals(List.of("ann@a.test", "anna@a.test"), trie.complete("an", 2, 1000, key -> true));
+        assertEquals(List.of("anna@b.test"), trie.complete("an", 10, 1000, key -> key.endsWith("@b.test")));
+        // Gives up after visiting the first keys
+        assertEquals(List.of(), trie.complete("an", 10, 2, key -> key.endsWith("@b.test")));
+    }
+
+    @Test
+    void keepsNonAsciiKeys() {
+        RadixTrie trie = new RadixTrie();
+        trie.add("jürg@zürich.test");
+        trie.add("jörg@zürich.test");
+        trie.add("josé@zürich.test");
+
+        assertEquals(List.of("josé@zürich.test", "jörg@zürich.test", "jürg@zürich.test"), complete(trie, "j"));
+        assertEquals(List.of("jürg@zürich.test"), complete(trie, "Jü"));
+    }
+
+    @Test
+    void removingMergesNodesAgain() {
+        RadixTrie trie = new RadixTrie();
+        long empty = trie.footprint();
+        trie.add("anna@a.test");
+        long one = trie.footprint();
+        trie.add("anton@a.test");
+        trie.add("ann@a.test");
+        assertTrue(trie.footprint() > one);
+
+        assertFalse(trie.remove("an"));
+        assertTrue(trie.remove("anton@a.test"));
+        assertTrue(trie.remove("ann@a.test"));
+        assertFalse(trie.remove("ann@a.test"));
+        assertEquals(1, trie.size());
+        assertEquals(List.of("anna@a.test"), complete(trie, "a"));
+        assertEquals(one, trie.footprint());
+
+        trie.remove("anna@a.test");
+        assertEquals(empty, trie.footprint());
+        assertEquals(List.of(), complete(trie, ""));
+    }
+
+    @Test
+    void removesByCondition() {
+        RadixTrie trie = new RadixTrie();
+        List.of("a@x.test", "b@x.test", "a@y.test", "c@y.test").forEach(trie::add);
+
+        trie.removeIf(key -> key.endsWith("@x.test"));
+
+        assertEquals(List.of("a@y.test", "c@y.test"), complete(trie, ""));
+        assertEquals(2, trie.size());
+    }
+}
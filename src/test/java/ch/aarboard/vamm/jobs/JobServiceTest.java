@@ -0,0 +1,167 @@
+package ch.aarboard.vamm.jobs;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JobServiceTest {
+
+    @TempDir
+    Path directory;
+
+    private ThreadPoolTaskExecutor executor;
+    private JobStore store;
+    private JobService jobService;
+
+    @BeforeEach
+    void setUp() {
+        executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(1);
+        executor.setMaxPoolSize(1);
+        executor.setQueueCapacity(10);
+        // Jobs count as finished before their record is written, let them complete before the directory goes
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(5);
+        executor.initialize();
+        store = new JobStore(directory.toString());
+        jobService = new JobService(executor, store, 1000, 200);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdown();
+    }
+
+    private JobRecord awaitFinished(String id) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (System.currentTimeMillis() < deadline) {
+            JobRecord job = jobService.getJob(id).orElseThrow();
+            if (job.isFinished()) {
+                return job;
+            }
+            Thread.sleep(10);
+        }
+        fail("Job " + id + " did not finish");
+        return null;
+    }
+
+    @Test
+    void jobRunsAndReportsProgress() throws Exception {
+        List<JobRecord> updates = new CopyOnWriteArrayList<>();
+        CountDownLatch succeeded = new CountDownLatch(1);
+        jobService.register(Runnable::run, update -> {
+            updates.add(update);
+            if (update.status() == JobStatus.SUCCEEDED) {
+                succeeded.countDown();
+            }
+        });
+
+        JobRecord queued = jobService.submit("test", "example.com", "Test job", context -> {
+            for (int i = 1; i <= 1000; i++) {
+                context.progress(i, 1000);
+            }
+        });
+        JobRecord finished = awaitFinished(queued.id());
+
+        assertEquals(JobStatus.SUCCEEDED, finished.status());
+        assertEquals(1000, finished.processed());
+        assertEquals(1.0, finished.fraction());
+        assertNotNull(finished.startedAt());
+        assertNotNull(finished.finishedAt());
+
+        // The record is finished before the listeners hear of it
+        assertTrue(succeeded.await(5, TimeUnit.SECONDS), "No final update");
+        // Throttled: queued, running, first progress, completed progress, succeeded
+        assertTrue(updates.size() < 10, "Too many updates: " + updates.size());
+        assertEquals(JobStatus.SUCCEEDED, updates.get(updates.size() - 1).status());
+    }
+
+    @Test
+    void failedJobKeepsTheError() throws Exception {
+        JobRecord queued = jobService.submit("test", "example.com", "Failing job", context -> {
+            throw new IllegalStateException("Directory unavailable");
+        });
+        JobRecord finished = awaitFinished(queued.id());
+
+        assertEquals(JobStatus.FAILED, finished.status());
+        assertEquals("Directory unavailable", finished.message());
+    }
+
+    @Test
+    void runningJobCanBeCancelled() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        JobRecord queued = jobService.submit("test", "example.com", "Endless job", context -> {
+            started.countDown();
+            while (true) {
+                context.checkCancelled();
+                Thread.sleep(5);
+            }
+        });
+
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        assertTrue(jobService.cancel(queued.id()));
+
+        assertEquals(JobStatus.CANCELLED, awaitFinished(queued.id()).status());
+        assertFalse(jobService.cancel(queued.id()));
+    }
+
+    @Test
+    void queuedJobCanBeCancelled() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        JobRecord blocking = jobService.submit("test", "a", "Blocking job", context -> release.await());
+        JobRecord waiting = jobService.submit("test", "b", "Waiting job", context -> fail("Must not run"));
+
+        assertTrue(jobService.cancel(waiting.id()));
+        assertEquals(JobStatus.CANCELLED, jobService.getJob(waiting.id()).orElseThrow().status());
+
+        release.countDown();
+        assertEquals(JobStatus.SUCCEEDED, awaitFinished(blocking.id()).status());
+        assertEquals(JobStatus.CANCELLED, jobService.getJob(waiting.id()).orElseThrow().status());
+    }
+
+    @Test
+    void unfinishedJobsAreInterruptedAfterRestart() {
+        JobRecord running = new JobRecord("job-1", "test", "example.com", "Old job", "admin",
+                JobStatus.RUNNING, Instant.now(), Instant.now(), null, 10, 100, null);
+        store.save(running);
+
+        JobService restarted = new JobService(executor, store, 1000, 200);
+
+        JobRecord restored = restarted.getJob("job-1").orElseThrow();
+        assertEquals(JobStatus.INTERRUPTED, restored.status());
+        assertEquals(10, restored.processed());
+        assertNotNull(restored.finishedAt());
+        assertEquals(JobStatus.INTERRUPTED, store.loadAll().get(0).status());
+    }
+
+    @Test
+    void oldFinishedJobsArePruned() throws Exception {
+        JobService limited = new JobService(executor, store, 1000, 2);
+        for (int i = 0; i < 5; i++) {
+            awaitFinished(limited, limited.submit("test", "s" + i, "Job " + i, context -> { }).id());
+        }
+        executor.shutdown();
+
+        assertEquals(2, limited.getJobs().size());
+        assertEquals(2, store.loadAll().size());
+    }
+
+    private static void awaitFinished(JobService service, String id) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (service.getJob(id).map(j -> !j.isFinished()).orElse(false)) {
+            assertTrue(System.currentTimeMillis() < deadline, "Job " + id + " did not finish");
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package ch.aarboard.vamm.ldap;
+
+import com.unboundid.ldap.listener.InMemoryDirectoryServerSnapshot;
+import com.unboundid.ldap.sdk.Attribute;
+import com.unboundid.ldap.sdk.Entry;
+import com.unboundid.ldap.sdk.LDAPException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InMemoryJammDirectoryTest {
+
+    private static final String INFO_TEST = "jvd=info.test,o=hosting," + InMemoryJammDirectory.BASE;
+
+    private InMemoryJammDirectory directory;
+
+    @BeforeEach
+    void startDirectory() throws Exception {
+        directory = new InMemoryJammDirectory();
+    }
+
+    @AfterEach
+    void stopDirectory() {
+        directory.close();
+    }
+
+    @Test
+    void sampleDataIsLoaded() throws Exception {
+        int added = directory.importLdif(InMemoryJammDirectory.SAMPLE_FILE);
+
+        assertTrue(added > 0);
+        assertEquals(added + 2, directory.countEntries());
+        assertTrue(directory.getServer().entryExists(INFO_TEST));
+        assertEquals(0, directory.importLdif(InMemoryJammDirectory.SAMPLE_FILE), "existing entries are skipped");
+    }
+
+    @Test
+    void entriesAreCheckedAgainstTheSchema() {
+        LDAPException e = assertThrows(LDAPException.class, () -> directory.add(new Entry(
+                "jvd=broken.test,o=hosting," + InMemoryJammDirectory.BASE,
+                new Attribute("objectClass", "top", "JammVirtualDomain"),
+                new Attribute("jvd", "broken.test"),
+                new Attribute("noSuchAttribute", "x"))));
+        assertNotNull(e.getResultCode());
+    }
+
+    @Test
+    void restoreUndoesChanges() throws Exception {
+        directory.importLdif(InMemoryJammDirectory.SAMPLE_FILE);
+        int entries = directory.countEntries();
+        InMemoryDirectoryServerSnapshot snapshot = directory.snapshot();
+
+        directory.getServer().delete("mail=abuse@info.test," + INFO_TEST);
+        directory.add(new Entry("mail=new@info.test," + INFO_TEST,
+                new Attribute("objectClass", "top", "JammMailAlias"),
+                new Attribute("mail", "new@info.test"),
+                new Attribute("maildrop", "postmaster"),
+                new Attribute("accountActive", "TRUE"),
+                new Attribute("lastChange", "1700000000")));
+        directory.restore(snapshot);
+
+        assertEquals(entries, directory.countEntries());
+        assertTrue(directory.getServer().entryExists("mail=abuse@info.test," + INFO_TEST));
+        assertFalse(directory.getServer().entryExists("mail=new@info.test," + INFO_TEST));
+    }
+
+    @Test
+    void directoriesListenOnDifferentPorts() throws Exception {
+        try (InMemoryJammDirectory other = new InMemoryJammDirectory()) {
+            assertNotEquals(directory.getPort(), other.getPort());
+            assertEquals("ldap://localhost:" + other.getPort(), other.ldapConfig().getUrl());
+        }
+    }
+}
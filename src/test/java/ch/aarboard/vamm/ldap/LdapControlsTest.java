@@ -0,0 +1,46 @@
+package ch.aarboard.vamm.ldap;
+
+import com.unboundid.ldap.sdk.ReadOnlyEntry;
+import com.unboundid.ldap.sdk.controls.PostReadResponseControl;
+import org.junit.jupiter.api.Test;
+
+import javax.naming.directory.Attributes;
+import javax.naming.ldap.BasicControl;
+import javax.naming.ldap.Control;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LdapControlsTest {
+
+    @Test
+    void postReadRequestIsNotCritical() {
+        Control control = LdapControls.postRead();
+
+        assertEquals(LdapControls.POST_READ_OID, control.getID());
+        assertFalse(control.isCritical());
+        assertNotNull(control.getEncodedValue());
+    }
+
+    @Test
+    void postReadEntryIsDecoded() throws Exception {
+        ReadOnlyEntry entry = new ReadOnlyEntry("dn: mail=user@example.com,jvd=example.com,o=hosting,dc=example,dc=com",
+                "objectClass: JammMailAccount",
+                "mail: user@example.com",
+                "accountActive: TRUE");
+        PostReadResponseControl response = new PostReadResponseControl(entry);
+        Control control = new BasicControl(response.getOID(), false, response.getValue().getValue());
+
+        Optional<Attributes> attributes = LdapControls.postReadEntry(new Control[]{control});
+
+        assertTrue(attributes.isPresent());
+        assertEquals("user@example.com", attributes.get().get("mail").get());
+        assertEquals("TRUE", attributes.get().get("accountActive").get());
+    }
+
+    @Test
+    void missingResponseControlYieldsEmpty() throws Exception {
+        assertTrue(LdapControls.postReadEntry(null).isEmpty());
+        assertTrue(LdapControls.postReadEntry(new Control[0]).isEmpty());
+    }
+}
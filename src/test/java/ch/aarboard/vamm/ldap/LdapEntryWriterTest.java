@@ -0,0 +1,162 @@
+package ch.aarboard.vamm.ldap;
+
+import ch.aarboard.vamm.data.entries.JammMailAlias;
+import ch.aarboard.vamm.data.repositories.JammMailAliasRepository;
+import ch.aarboard.vamm.security.SecurityService;
+import com.unboundid.ldap.listener.interceptor.InMemoryInterceptedModifyRequest;
+import com.unboundid.ldap.listener.interceptor.InMemoryOperationInterceptor;
+import com.unboundid.ldap.sdk.Attribute;
+import com.unboundid.ldap.sdk.Entry;
+import com.unboundid.ldap.sdk.LDAPException;
+import com.unboundid.ldap.sdk.ResultCode;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.ldap.core.ContextSource;
+import org.springframework.ldap.core.LdapTemplate;
+
+import javax.naming.directory.DirContext;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Updates of mapped entities, mostly against a server that fails every assertion, as OpenLDAP
+ * does for lastChange without an EQUALITY rule.
+ */
+class LdapEntryWriterTest {
+
+    private final AtomicInteger rejectedAssertions = new AtomicInteger();
+    private volatile boolean rejectAssertions = true;
+
+    private InMemoryJammDirectory directory;
+    private LdapSessionManager sessionManager;
+    private JammMailAliasRepository aliases;
+
+    @BeforeEach
+    void startDirectory() throws Exception {
+        directory = new InMemoryJammDirectory(InMemoryJammDirectory.SCHEMA_FILE, 0, new InMemoryOperationInterceptor() {
+            @Override
+            public void processModifyRequest(InMemoryInterceptedModifyRequest request) throws LDAPException {
+                if (rejectAssertions && request.getRequest().hasControl(LdapControls.ASSERTION_OID)) {
+                    rejectedAssertions.incrementAndGet();
+                    throw new LDAPException(ResultCode.ASSERTION_FAILED);
+                }
+            }
+        });
+        directory.importLdif(InMemoryJammDirectory.SAMPLE_FILE);
+        sessionManager = new LdapSessionManager(directory.ldapConfig(),
+                new SecurityService(new StandardEnvironment()), List.of());
+        aliases = new JammMailAliasRepository(sessionManager);
+    }
+
+    @AfterEach
+    void stopDirectory() {
+        directory.close();
+    }
+
+    @Test
+    void unusableAssertionFallsBackToCompare() {
+        assertTrue(sessionManager.createEntryWriter().isAssertionSupported());
+
+        JammMailAlias alias = aliases.findByEmail("abuse@info.test").orElseThrow();
+        alias.setDescription("First edit");
+        aliases.save(alias);
+
+        assertEquals(1, rejectedAssertions.get());
+        assertEquals("First edit", aliases.findByEmail("abuse@info.test").orElseThrow().getDescription());
+        assertFalse(sessionManager.createEntryWriter().isAssertionSupported());
+
+        alias = aliases.findByEmail("abuse@info.test").orElseThrow();
+        alias.setDescription("Second edit");
+        aliases.save(alias);
+
+        assertEquals(1, rejectedAssertions.get(), "the control is left out after the first failure");
+        assertEquals("Second edit", aliases.findByEmail("abuse@info.test").orElseThrow().getDescription());
+    }
+
+    @Test
+    void readOnlyAttributesSurviveAnUpdate() throws Exception {
+        rejectAssertions = false;
+        directory.add(new Entry("mail=system@info.test,jvd=info.test,o=hosting," + InMemoryJammDirectory.BASE,
+                new Attribute("objectClass", "top", "JammMailAlias"),
+                new Attribute("mail", "system@info.test"),
+                new Attribute("maildrop", "postmaster"),
+                new Attribute("accountActive", "TRUE"),
+                new Attribute("lastChange", "1044310841"),
+                new Attribute("systemAlias", "TRUE")));
+
+        JammMailAlias alias = aliases.findByEmail("system@info.test").orElseThrow();
+        assertTrue(alias.isSystemAlias());
+        alias.setDescription("Edited");
+        aliases.save(alias);
+
+        assertTrue(aliases.findByEmail("system@info.test").orElseThrow().isSystemAlias());
+        assertEquals("TRUE", directory.getServer().getEntry("mail=system@info.test,jvd=info.test,o=hosting,"
+                + InMemoryJammDirectory.BASE).getAttributeValue("systemAlias"));
+
+        JammMailAlias plain = aliases.findByEmail("abuse@info.test").orElseThrow();
+        assertFalse(plain.isSystemAlias());
+        plain.setDescription("Edited");
+        aliases.save(plain);
+        assertFalse(aliases.findByEmail("abuse@info.test").orElseThrow().isSystemAlias());
+    }
+
+    @Test
+    void changedEntryIsStillAConflict() {
+        JammMailAlias first = aliases.findByEmail("abuse@info.test").orElseThrow();
+        JammMailAlias second = aliases.findByEmail("abuse@info.test").orElseThrow();
+        first.setDescription("First edit");
+        aliases.save(first);
+
+        second.setDescription("Second edit");
+        assertThrows(EntryConflictException.class, () -> aliases.save(second));
+        assertEquals("First edit", aliases.findByEmail("abuse@info.test").orElseThrow().getDescription());
+    }
+
+    @Test
+    void controlsAreNeverDroppedSilently() {
+        ContextSource real = sessionManager.createLdapTemplate(InMemoryJammDirectory.ADMIN_DN,
+                InMemoryJammDirectory.ADMIN_PASSWORD).getContextSource();
+        LdapTemplate plainContexts = new LdapTemplate(new ContextSource() {
+            @Override
+            public DirContext getReadOnlyContext() {
+                return plain(real.getReadOnlyContext());
+            }
+
+            @Override
+            public DirContext getReadWriteContext() {
+                return plain(real.getReadWriteContext());
+            }
+
+            @Override
+            public DirContext getContext(String principal, String credentials) {
+                return plain(real.getContext(principal, credentials));
+            }
+        });
+        LdapEntryWriter writer = new LdapEntryWriter(plainContexts, false, true);
+
+        JammMailAlias alias = aliases.findByEmail("abuse@info.test").orElseThrow();
+        alias.setDescription("Unchecked edit");
+        assertThrows(IllegalStateException.class, () -> writer.update(alias));
+        assertNotEquals("Unchecked edit", aliases.findByEmail("abuse@info.test").orElseThrow().getDescription());
+    }
+
+    /**
+     * Hides the {@code LdapContext} side of a context, as a pooling or proxying context source might
+     */
+    private static DirContext plain(DirContext context) {
+        return (DirContext) Proxy.newProxyInstance(DirContext.class.getClassLoader(), new Class<?>[]{DirContext.class},
+                (proxy, method, args) -> {
+                    try {
+                        return method.invoke(context, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+    }
+}
@@ -0,0 +1,154 @@
+package ch.aarboard.vamm.ldif;
+
+import ch.aarboard.vamm.base.AbstractServiceTest;
+import ch.aarboard.vamm.data.entries.JammMailAccount;
+import ch.aarboard.vamm.data.entries.JammMailAlias;
+import ch.aarboard.vamm.utils.LdapUtils;
+import ch.aarboard.vamm.utils.PasswordUtils;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.MethodOrderer;
+import org.junit.jupiter.api.Order;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestMethodOrder;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.ldap.core.AttributesMapper;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+public class CsvProvisionerTest extends AbstractServiceTest {
+
+    private static final String TEST_DOMAIN = "test-csv-provision.com";
+
+    @TempDir
+    Path directory;
+
+    @BeforeAll
+    public void createDomain() {
+        virtualDomainManagementService.createDomain(TEST_DOMAIN, "CSV provisioning");
+    }
+
+    private CsvProvisioner newProvisioner() {
+        return new CsvProvisioner(ldapSessionManager, passwordBlocklist, passwordHashingService, 2, 2);
+    }
+
+    private Path writeCsv() throws Exception {
+        String csv = """
+                mail,password,quota,description,destinations,active
+                first@%1$s,first-secret,100M,"First, with comma",,
+                second@%1$s,second-secret,,,,false
+                third@%1$s,,,,,
+                team@%1$s,,,Team,"first@%1$s;second@%1$s",
+                first@%1$s,again,,,,
+                broken,,,,,
+                someone@missing-csv-domain.com,,,,,
+                """.formatted(TEST_DOMAIN);
+
+        Path file = directory.resolve("accounts.csv");
+        Files.writeString(file, csv);
+        return file;
+    }
+
+    /**
+     * JNDI returns userPassword as binary, read it raw instead of through the entity
+     */
+    private String storedPassword(String mail) {
+        Object value = ldapSessionManager.createUserLdapTemplate().lookup(LdapUtils.mailDN(mail).build(),
+                (AttributesMapper<Object>) attributes -> attributes.get("userPassword").get());
+        return value instanceof byte[] bytes ? new String(bytes, StandardCharsets.UTF_8) : String.valueOf(value);
+    }
+
+    @Test
+    @Order(1)
+    public void testDryRunWritesNothing() throws Exception {
+        CsvProvisioner provisioner = newProvisioner();
+        try {
+            BulkJob.Result result = provisioner.provisionFile(writeCsv(), true, BulkJob.ProgressListener.NONE);
+
+            assertTrue(result.dryRun());
+            assertEquals(7, result.read());
+            assertEquals(4, result.created());
+            assertEquals(3, result.failed());
+        } finally {
+            provisioner.shutdown();
+        }
+
+        assertFalse(mailAccountRepository.existsByEmail("first@" + TEST_DOMAIN));
+    }
+
+    @Test
+    @Order(2)
+    public void testProvisioning() throws Exception {
+        CsvProvisioner provisioner = newProvisioner();
+        BulkJob.Result result;
+        try {
+            result = provisioner.provisionFile(writeCsv(), false, BulkJob.ProgressListener.NONE);
+        } finally {
+            provisioner.shutdown();
+        }
+
+        assertEquals(4, result.created());
+        assertEquals(3, result.failed());
+        List<BulkJob.ItemError> errors = result.errors();
+        assertEquals(5, errors.get(0).position());
+        assertTrue(errors.get(0).message().startsWith("Duplicate address"));
+        assertTrue(errors.get(1).message().startsWith("Invalid email address"));
+        assertTrue(errors.get(2).message().startsWith("Domain does not exist"));
+
+        JammMailAccount first = mailAccountManagementService.getAccount("first@" + TEST_DOMAIN);
+        assertEquals("100M", first.getQuota());
+        assertEquals("First, with comma", first.getDescription());
+        assertEquals("/var/vmail/" + TEST_DOMAIN + "/first/", first.getMailbox());
+        assertTrue(PasswordUtils.verifyPassword(storedPassword("first@" + TEST_DOMAIN), "first-secret"));
+
+        assertFalse(mailAccountManagementService.getAccount("second@" + TEST_DOMAIN).isActive());
+        assertTrue(mailAccountManagementService.getAccount("third@" + TEST_DOMAIN).isActive());
+
+        JammMailAlias team = mailAliasManagementService.getAlias("team@" + TEST_DOMAIN);
+        assertEquals(List.of("first@" + TEST_DOMAIN, "second@" + TEST_DOMAIN), team.getDestinations());
+    }
+
+    @Test
+    @Order(3)
+    public void testExistingAddressesAreReported() throws Exception {
+        CsvProvisioner provisioner = newProvisioner();
+        try {
+            BulkJob.Result result = provisioner.provisionFile(writeCsv(), false, BulkJob.ProgressListener.NONE);
+
+            assertEquals(0, result.created());
+            assertEquals(7, result.failed());
+            assertTrue(result.errors().get(0).message().startsWith("Address already exists"));
+        } finally {
+            provisioner.shutdown();
+        }
+    }
+
+    @Test
+    public void testUnknownColumnIsRejected() throws Exception {
+        Path file = directory.resolve("unknown.csv");
+        Files.writeString(file, "mail,shoe_size\nsomeone@" + TEST_DOMAIN + ",42\n");
+
+        CsvProvisioner provisioner = newProvisioner();
+        try {
+            assertThrows(IllegalArgumentException.class,
+                    () -> provisioner.provisionFile(file, true, BulkJob.ProgressListener.NONE));
+        } finally {
+            provisioner.shutdown();
+        }
+    }
+
+    @AfterAll
+    public void cleanup() {
+        try {
+            virtualDomainManagementService.deleteDomain(TEST_DOMAIN);
+        } catch (Exception ignored) {
+            // Domain was not created
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package ch.aarboard.vamm.ldif;
+
+import ch.aarboard.vamm.ldap.InMemoryJammDirectory;
+import ch.aarboard.vamm.utils.PasswordUtils;
+import com.unboundid.ldap.sdk.Entry;
+import com.unboundid.ldap.sdk.LDAPConnection;
+import com.unboundid.ldap.sdk.SearchScope;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DataGeneratorTest {
+
+    private static final DataGenerator.Settings SETTINGS = DataGenerator.Settings.of(50, 2000);
+
+    private static byte[] ldif(DataGenerator.Settings settings) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new DataGenerator(settings).writeLdif(out);
+        return out.toByteArray();
+    }
+
+    @Test
+    void sameSeedGivesSameOutput() throws Exception {
+        byte[] first = ldif(SETTINGS);
+
+        assertArrayEquals(first, ldif(SETTINGS));
+        assertFalse(Arrays.equals(first, ldif(SETTINGS.withSeed(43))));
+    }
+
+    @Test
+    void entriesFollowTheSettings() throws Exception {
+        List<Entry> entries = new ArrayList<>();
+        DataGenerator.Stats stats = new DataGenerator(SETTINGS.withRatios(0.5, 0.1, 0)).generate(entries::add);
+
+        assertEquals(50, stats.domains());
+        assertEquals(50, stats.postmasters());
+        assertEquals(2000, stats.accounts());
+        assertEquals(stats.entries(), entries.size());
+        assertTrue(stats.aliases() > 400 && stats.aliases() < 600, "aliases " + stats.aliases());
+        assertTrue(stats.catchAlls() > 10 && stats.catchAlls() < 40, "catch-alls " + stats.catchAlls());
+
+        long inactive = entries.stream().filter(e -> "FALSE".equals(e.getAttributeValue("accountActive"))).count();
+        assertTrue(inactive > 0.05 * entries.size() && inactive < 0.15 * entries.size(), "inactive " + inactive);
+        assertTrue(entries.stream().noneMatch(e -> "TRUE".equals(e.getAttributeValue("delete"))));
+
+        Entry account = entries.stream().filter(e -> e.hasObjectClass("JammMailAccount")).findFirst().orElseThrow();
+        assertTrue(PasswordUtils.verifyPassword(account.getAttributeValue("userPassword"), "secret"));
+    }
+
+    @Test
+    void skewMakesDomainsUneven() throws Exception {
+        int[] even = largestAndSmallestDomain(SETTINGS.withDistribution(0, 0, 1));
+        int[] skewed = largestAndSmallestDomain(SETTINGS.withDistribution(1.5, 0, 1));
+
+        assertTrue(even[0] - even[1] <= 1);
+        assertTrue(skewed[0] > 10 * skewed[1], skewed[0] + " vs " + skewed[1]);
+    }
+
+    private static int[] largestAndSmallestDomain(DataGenerator.Settings settings) throws Exception {
+        List<Integer> sizes = new ArrayList<>();
+        new DataGenerator(settings).generate(entry -> {
+            if (entry.hasObjectClass("JammVirtualDomain")) {
+                sizes.add(0);
+            } else if (entry.hasObjectClass("JammMailAccount")) {
+                sizes.set(sizes.size() - 1, sizes.getLast() + 1);
+            }
+        });
+        return new int[]{sizes.stream().max(Integer::compare).orElseThrow(), sizes.stream().min(Integer::compare).orElseThrow()};
+    }
+
+    @Test
+    void generatedEntriesMatchTheSchema() throws Exception {
+        try (InMemoryJammDirectory directory = new InMemoryJammDirectory()) {
+            DataGenerator.Stats stats = new DataGenerator(SETTINGS).generate(directory::add);
+
+            assertEquals(stats.entries() + 2, directory.countEntries());
+        }
+    }
+
+    @Test
+    void bulkLoaderAddsEverything() throws Exception {
+        try (InMemoryJammDirectory directory = new InMemoryJammDirectory();
+             LDAPConnection connection = new LDAPConnection("localhost", directory.getPort(),
+                     InMemoryJammDirectory.ADMIN_DN, InMemoryJammDirectory.ADMIN_PASSWORD)) {
+            DataGenerator.Stats stats;
+            BulkLoader.Result result;
+            try (BulkLoader loader = new BulkLoader(connection, 16)) {
+                stats = new DataGenerator(SETTINGS).generate(loader);
+                loader.drain();
+                result = loader.getResult();
+            }
+
+            assertEquals(stats.entries(), result.added());
+            assertEquals(0, result.failed());
+            assertEquals(stats.accounts(), connection.search(InMemoryJammDirectory.BASE, SearchScope.SUB,
+                    "(objectClass=JammMailAccount)", "1.1").getEntryCount());
+
+            // A second run only finds existing entries
+            try (BulkLoader loader = new BulkLoader(connection, 16)) {
+                new DataGenerator(SETTINGS).generate(loader);
+                loader.drain();
+                result = loader.getResult();
+            }
+            assertEquals(0, result.added());
+            assertEquals(stats.entries(), result.failed());
+            assertNotNull(result.firstError());
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package ch.aarboard.vamm.ldif;
+
+import ch.aarboard.vamm.base.AbstractServiceTest;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DirectoryExporterTest extends AbstractServiceTest {
+
+    private static final String TEST_DOMAIN = "test-export.com";
+
+    @BeforeAll
+    public void createEntries() {
+        virtualDomainManagementService.createDomain(TEST_DOMAIN, "Export, \"quoted\"");
+        mailAccountManagementService.createAccount("first@" + TEST_DOMAIN, "secret", "/var/vmail/" + TEST_DOMAIN + "/first", null, "First");
+        mailAliasManagementService.createAlias("alias@" + TEST_DOMAIN,
+                List.of("first@" + TEST_DOMAIN, "other@example.org"), "Alias");
+    }
+
+    private DirectoryExporter newExporter() {
+        // Small pages so the test crosses page boundaries
+        return new DirectoryExporter(ldapSessionManager, 2);
+    }
+
+    @Test
+    public void testLdifExport() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long count = newExporter().export(TEST_DOMAIN, DirectoryExporter.Format.LDIF, false, out);
+        String ldif = out.toString(StandardCharsets.UTF_8);
+
+        // Domain, postmaster, abuse alias, account and alias
+        assertTrue(count >= 4, "Exported " + count);
+        assertTrue(ldif.contains("dn: jvd=" + TEST_DOMAIN + ",o=hosting,dc=example,dc=com"));
+        assertTrue(ldif.contains("dn: mail=first@" + TEST_DOMAIN + ",jvd=" + TEST_DOMAIN));
+        assertTrue(ldif.contains("maildrop: other@example.org"));
+        assertFalse(ldif.toLowerCase().contains("clearpassword"));
+    }
+
+    @Test
+    public void testCompressedCsvExport() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long count = newExporter().export(TEST_DOMAIN, DirectoryExporter.Format.CSV, true, out);
+
+        String csv;
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(out.toByteArray()))) {
+            csv = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+        List<String> lines = csv.lines().toList();
+
+        assertEquals(String.join(",", DirectoryExporter.CSV_COLUMNS), lines.get(0));
+        assertEquals(count, lines.size() - 1);
+        assertTrue(lines.contains("domain,," + TEST_DOMAIN + ",true,,,,,\"Export, \"\"quoted\"\"\""), csv);
+        assertTrue(lines.stream().anyMatch(line -> line.startsWith("alias,alias@" + TEST_DOMAIN + "," + TEST_DOMAIN
+                + ",true,first@" + TEST_DOMAIN + " other@example.org,")), csv);
+        assertTrue(lines.stream().anyMatch(line -> line.startsWith("account,first@" + TEST_DOMAIN + ",")), csv);
+    }
+
+    @Test
+    public void testMissingDomainIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> newExporter().export("missing-export.com",
+                DirectoryExporter.Format.LDIF, false, new ByteArrayOutputStream()));
+    }
+
+    @AfterAll
+    public void cleanup() {
+        try {
+            virtualDomainManagementService.deleteDomain(TEST_DOMAIN);
+        } catch (Exception ignored) {
+            // Domain was not created
+        }
+    }
+}
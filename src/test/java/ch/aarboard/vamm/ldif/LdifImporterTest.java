@@ -0,0 +1,194 @@
+package ch.aarboard.vamm.ldif;
+
+import ch.aarboard.vamm.base.AbstractServiceTest;
+import ch.aarboard.vamm.data.entries.JammMailAlias;
+import ch.aarboard.vamm.security.BreachedPasswordBlocklist;
+import ch.aarboard.vamm.utils.LdapUtils;
+import ch.aarboard.vamm.utils.PasswordUtils;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.MethodOrderer;
+import org.junit.jupiter.api.Order;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestMethodOrder;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.ldap.core.AttributesMapper;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+public class LdifImporterTest extends AbstractServiceTest {
+
+    private static final String TEST_DOMAIN = "test-ldif-import.com";
+
+    @TempDir
+    Path directory;
+
+    private LdifImporter newImporter() {
+        return newImporter(passwordBlocklist);
+    }
+
+    private LdifImporter newImporter(BreachedPasswordBlocklist blocklist) {
+        return new LdifImporter(ldapSessionManager, blocklist, passwordHashingService, 2, 2, 2);
+    }
+
+    private Path writeLdif() throws Exception {
+        String base = "o=hosting,dc=example,dc=com";
+        String domainDn = "jvd=" + TEST_DOMAIN + "," + base;
+        String ldif = """
+                dn: %1$s
+                objectClass: organization
+                o: hosting
+
+                dn: %2$s
+                objectClass: top
+                objectClass: JammVirtualDomain
+                jvd: %3$s
+                accountActive: TRUE
+                delete: FALSE
+
+                dn: mail=first@%3$s,%2$s
+                objectClass: top
+                objectClass: JammMailAccount
+                mail: first@%3$s
+                homeDirectory: /var/vmail/%3$s/first
+                mailbox: /var/vmail/%3$s/first/
+                accountActive: TRUE
+                userPassword: plain-secret
+
+                dn: mail=second@%3$s,%2$s
+                objectClass: JammMailAccount
+                mail: second@%3$s
+                homeDirectory: /var/vmail/%3$s/second
+                mailbox: /var/vmail/%3$s/second/
+                accountActive: TRUE
+                userPassword:: e1NIQX1xVXFQNWN5eG02WWNUQWh6MDVIcGg1Z3Z1OU09
+
+                dn: mail=alias@%3$s,%2$s
+                objectClass: top
+                objectClass: JammMailAlias
+                mail: alias@%3$s
+                maildrop: first@%3$s
+                accountActive: TRUE
+
+                dn: mail=broken,%2$s
+                objectClass: top
+                objectClass: JammMailAlias
+                mail: broken
+                """.formatted(base, domainDn, TEST_DOMAIN);
+
+        Path file = directory.resolve("import.ldif");
+        Files.writeString(file, ldif);
+        return file;
+    }
+
+    /**
+     * JNDI returns userPassword as binary, read it raw instead of through the entity
+     */
+    private String storedPassword(String mail) {
+        Object value = ldapSessionManager.createUserLdapTemplate().lookup(LdapUtils.mailDN(mail).build(),
+                (AttributesMapper<Object>) attributes -> attributes.get("userPassword").get());
+        return value instanceof byte[] bytes ? new String(bytes, StandardCharsets.UTF_8) : String.valueOf(value);
+    }
+
+    @Test
+    @Order(1)
+    public void testImport() throws Exception {
+        LdifImporter importer = newImporter();
+        try {
+            BulkJob.Result result = importer.importFile(writeLdif(), BulkJob.ProgressListener.NONE);
+
+            assertEquals(6, result.read());
+            assertEquals(4, result.created());
+            assertEquals(1, result.skipped());
+            assertEquals(1, result.failed());
+            assertEquals(6, result.errors().get(0).position());
+            assertFalse(result.errorsTruncated());
+        } finally {
+            importer.shutdown();
+        }
+
+        assertTrue(virtualDomainManagementService.domainExists(TEST_DOMAIN));
+
+        assertNotNull(mailAccountManagementService.getAccount("first@" + TEST_DOMAIN));
+        String first = storedPassword("first@" + TEST_DOMAIN);
+        assertTrue(first.startsWith(PasswordUtils.PasswordScheme.SSHA.getPrefix()));
+        assertTrue(PasswordUtils.verifyPassword(first, "plain-secret"));
+
+        // Already hashed values are kept as they are
+        assertEquals("{SHA}qUqP5cyxm6YcTAhz05Hph5gvu9M=", storedPassword("second@" + TEST_DOMAIN));
+
+        JammMailAlias alias = mailAliasManagementService.getAlias("alias@" + TEST_DOMAIN);
+        assertEquals(1, alias.getDestinations().size());
+    }
+
+    @Test
+    @Order(2)
+    public void testImportOfExistingEntriesIsReported() throws Exception {
+        LdifImporter importer = newImporter();
+        try {
+            BulkJob.Result result = importer.importFile(writeLdif(), BulkJob.ProgressListener.NONE);
+
+            assertEquals(0, result.created());
+            assertEquals(5, result.failed());
+            assertTrue(result.errors().get(0).message().contains("already exists"));
+        } finally {
+            importer.shutdown();
+        }
+    }
+
+    @Test
+    @Order(3)
+    public void testBreachedPasswordsAreRejected() throws Exception {
+        Path blocklistFile = directory.resolve("breached.bin");
+        Files.write(blocklistFile, MessageDigest.getInstance("SHA-1").digest("breached-secret".getBytes(StandardCharsets.UTF_8)));
+
+        String domainDn = "jvd=" + TEST_DOMAIN + ",o=hosting,dc=example,dc=com";
+        Path file = directory.resolve("breached.ldif");
+        Files.writeString(file, """
+                dn: mail=breached@%1$s,%2$s
+                objectClass: JammMailAccount
+                mail: breached@%1$s
+                homeDirectory: /var/vmail/%1$s/breached
+                mailbox: /var/vmail/%1$s/breached/
+                accountActive: TRUE
+                userPassword: {PLAIN}breached-secret
+
+                dn: mail=safe@%1$s,%2$s
+                objectClass: JammMailAccount
+                mail: safe@%1$s
+                homeDirectory: /var/vmail/%1$s/safe
+                mailbox: /var/vmail/%1$s/safe/
+                accountActive: TRUE
+                userPassword: unbreached-secret
+                """.formatted(TEST_DOMAIN, domainDn));
+
+        LdifImporter importer = newImporter(new BreachedPasswordBlocklist(blocklistFile.toString(), 20));
+        try {
+            BulkJob.Result result = importer.importFile(file, BulkJob.ProgressListener.NONE);
+
+            assertEquals(1, result.created());
+            assertEquals(1, result.failed());
+            assertEquals(1, result.errors().get(0).position());
+            assertTrue(result.errors().get(0).message().contains("breached"));
+        } finally {
+            importer.shutdown();
+        }
+
+        assertThrows(IllegalArgumentException.class, () -> mailAccountManagementService.getAccount("breached@" + TEST_DOMAIN));
+        assertTrue(PasswordUtils.verifyPassword(storedPassword("safe@" + TEST_DOMAIN), "unbreached-secret"));
+    }
+
+    @AfterAll
+    public void cleanup() {
+        try {
+            virtualDomainManagementService.deleteDomain(TEST_DOMAIN);
+        } catch (Exception ignored) {
+            // Nothing was imported
+        }
+    }
+}
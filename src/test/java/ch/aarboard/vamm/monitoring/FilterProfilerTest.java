@@ -0,0 +1,85 @@
+package ch.aarboard.vamm.monitoring;
+
+import ch.aarboard.vamm.ldap.LdapOperation;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FilterProfilerTest {
+
+    private static LdapOperation search(String filter, long millis) {
+        return new LdapOperation(LdapOperation.Type.SEARCH, "o=hosting,dc=example,dc=com", filter, 2, 100,
+                TimeUnit.MILLISECONDS.toNanos(millis), null);
+    }
+
+    @Test
+    void valuesAreReplacedInShapes() {
+        FilterProfiler.Shape shape = FilterProfiler.shape("(&(objectClass=JammMailAccount)(mail=*term*))");
+
+        assertEquals("(&(mail=*?*)(objectClass=JammMailAccount))", shape.text());
+        assertEquals(Map.of("mail", List.of("sub"), "objectclass", List.of("eq")), shape.matches());
+
+        assertEquals(FilterProfiler.shape("(&(roleOccupant=cn=a,dc=b)(objectClass=JammPostmaster))").text(),
+                FilterProfiler.shape("(&(objectClass=JammPostmaster)(roleOccupant=cn=c,dc=d))").text());
+        assertEquals("(|(!(delete=?))(mail=?*)(objectClass=*))",
+                FilterProfiler.shape("(|(mail=abc*)(objectClass=*)(!(delete=TRUE)))").text());
+        assertEquals(Map.of("delete", List.of("eq"), "mail", List.of("sub")),
+                FilterProfiler.shape("(|(mail=abc*)(objectClass=*)(!(delete=TRUE)))").matches());
+        assertEquals("not a filter", FilterProfiler.shape("not a filter").text());
+    }
+
+    @Test
+    void searchesAreAggregatedByShape() {
+        FilterProfiler profiler = new FilterProfiler(100, "olcDatabase={1}mdb,cn=config", 10);
+        profiler.completed(search("(&(objectClass=JammMailAccount)(mail=*a*))", 10));
+        profiler.completed(search("(&(objectClass=JammMailAccount)(mail=*b*))", 200));
+        profiler.completed(search("(&(objectClass=JammVirtualDomain)(jvd=example.com))", 5));
+        profiler.completed(new LdapOperation(LdapOperation.Type.BIND, "cn=admin", null, 0, 0, 1_000_000, null));
+
+        List<FilterProfiler.ShapeReport> shapes = profiler.shapes();
+        assertEquals(2, shapes.size());
+        FilterProfiler.ShapeReport accounts = shapes.getFirst();
+        assertEquals("(&(mail=*?*)(objectClass=JammMailAccount))", accounts.shape());
+        assertEquals(2, accounts.searches());
+        assertEquals(210, accounts.totalMillis(), 0.001);
+        assertEquals(200, accounts.maxMillis(), 0.001);
+        assertEquals(4, accounts.results());
+        assertEquals(1, accounts.slow());
+    }
+
+    @Test
+    void indexesAreSuggestedForTheHottestAttributes() {
+        FilterProfiler profiler = new FilterProfiler(1000, "olcDatabase={2}mdb,cn=config", 2);
+        profiler.completed(search("(&(objectClass=JammMailAccount)(mail=*a*))", 50));
+        profiler.completed(search("(&(objectClass=JammMailAccount)(mail=b))", 50));
+        profiler.completed(search("(&(objectClass=JammPostmaster)(roleOccupant=cn=x))", 20));
+        profiler.completed(search("(&(objectClass=JammMailAlias)(maildrop=*))", 1));
+
+        String ldif = profiler.indexLdif();
+
+        assertTrue(ldif.contains("dn: olcDatabase={2}mdb,cn=config\nchangetype: modify\n"
+                + "add: olcDbIndex\nolcDbIndex: mail eq,sub\n"), ldif);
+        assertTrue(ldif.contains("dn: olcDatabase={2}mdb,cn=config\nchangetype: modify\n"
+                + "add: olcDbIndex\nolcDbIndex: roleoccupant eq\n"), ldif);
+        assertFalse(ldif.contains("olcDbIndex: objectclass"), ldif);
+        assertFalse(ldif.contains("olcDbIndex: maildrop"), ldif);
+        assertEquals(ldif, profiler.report("indexes"));
+        assertNull(profiler.report("unknown"));
+    }
+
+    @Test
+    void shapesAreBounded() {
+        FilterProfiler profiler = new FilterProfiler(1000, "olcDatabase={1}mdb,cn=config", 10);
+        for (int i = 0; i < FilterProfiler.MAX_SHAPES + 10; i++) {
+            profiler.completed(search("(attribute" + i + "=x)", 1));
+        }
+
+        assertEquals(FilterProfiler.MAX_SHAPES + 1, profiler.shapes().size());
+        assertEquals(10, profiler.shapes().stream().filter(s -> s.shape().equals(FilterProfiler.OTHER_SHAPES))
+                .findFirst().orElseThrow().searches());
+    }
+}
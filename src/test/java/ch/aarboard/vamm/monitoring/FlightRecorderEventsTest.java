@@ -0,0 +1,154 @@
+package ch.aarboard.vamm.monitoring;
+
+import ch.aarboard.vamm.data.repositories.JammMailAccountRepository;
+import ch.aarboard.vamm.data.repositories.JammVirtualDomainRepository;
+import ch.aarboard.vamm.ldap.InMemoryJammDirectory;
+import ch.aarboard.vamm.ldap.LdapSessionManager;
+import ch.aarboard.vamm.security.SecurityService;
+import ch.aarboard.vamm.ui.views.ManageDomainView;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.env.StandardEnvironment;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FlightRecorderEventsTest {
+
+    // Unique, other tests may record LDAP requests in the same JVM
+    private static final String ROUTE = "test/:domain";
+
+    private InMemoryJammDirectory directory;
+    private JammVirtualDomainRepository domains;
+    private JammMailAccountRepository accounts;
+
+    @TempDir
+    Path tempDir;
+
+    @BeforeEach
+    void startDirectory() throws Exception {
+        directory = new InMemoryJammDirectory();
+        directory.importLdif(InMemoryJammDirectory.SAMPLE_FILE);
+        LdapSessionManager sessionManager = new LdapSessionManager(directory.ldapConfig(),
+                new SecurityService(new StandardEnvironment()), List.of(new FlightRecorderEvents()));
+        domains = new JammVirtualDomainRepository(sessionManager);
+        accounts = new JammMailAccountRepository(sessionManager);
+    }
+
+    @AfterEach
+    void stopDirectory() {
+        directory.close();
+    }
+
+    private Path record(Runnable work) throws Exception {
+        Path file = tempDir.resolve("test.jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable(LdapRequestEvent.NAME);
+            recording.enable(ViewLoadEvent.NAME);
+            recording.start();
+            work.run();
+            recording.stop();
+            recording.dump(file);
+        }
+        return file;
+    }
+
+    private static List<RecordedEvent> events(Path file, String name) throws Exception {
+        return RecordingFile.readAllEvents(file).stream()
+                .filter(e -> e.getEventType().getName().equals(name))
+                .filter(e -> ROUTE.equals(e.getString("route")))
+                .toList();
+    }
+
+    @Test
+    void viewLoadsCountTheirRequests() throws Exception {
+        Path file = record(() -> {
+            FlightRecorderEvents.viewStarted(ROUTE, "info.test");
+            assertTrue(domains.findByName("info.test").isPresent());
+            assertFalse(accounts.findByDomain("info.test").isEmpty());
+            FlightRecorderEvents.viewFinished();
+        });
+
+        List<RecordedEvent> loads = events(file, ViewLoadEvent.NAME);
+        List<RecordedEvent> requests = events(file, LdapRequestEvent.NAME);
+        assertEquals(1, loads.size());
+        assertEquals("info.test", loads.getFirst().getString("domain"));
+        assertEquals(requests.size(), loads.getFirst().getInt("ldapCalls"));
+        assertTrue(loads.getFirst().getLong("ldapTime") > 0);
+
+        RecordedEvent search = requests.stream()
+                .filter(e -> "search".equals(e.getString("type")))
+                .filter(e -> e.getString("baseDn").startsWith("jvd=info.test,"))
+                .findFirst().orElseThrow();
+        assertTrue(search.getString("filter").contains("JammMailAccount"), search.getString("filter"));
+        assertTrue(search.getLong("results") > 0);
+        assertTrue(search.getLong("bytes") > 0);
+        assertTrue(search.getLong("elapsed") > 0);
+    }
+
+    @Test
+    void backgroundWorkIsCountedForTheView() throws Exception {
+        Path file = record(() -> {
+            FlightRecorderEvents.viewStarted(ROUTE, "info.test");
+            FlightRecorderEvents.Fork fork = FlightRecorderEvents.fork();
+            FlightRecorderEvents.viewFinished();
+
+            Thread worker = new Thread(() -> {
+                try (fork) {
+                    fork.run(() -> accounts.findByDomain("info.test"));
+                }
+            });
+            worker.start();
+            try {
+                worker.join();
+            } catch (InterruptedException e) {
+                throw new AssertionError(e);
+            }
+        });
+
+        List<RecordedEvent> loads = events(file, ViewLoadEvent.NAME);
+        List<RecordedEvent> requests = events(file, LdapRequestEvent.NAME);
+        assertEquals(1, loads.size());
+        assertFalse(requests.isEmpty());
+        assertEquals(requests.size(), loads.getFirst().getInt("ldapCalls"));
+    }
+
+    @Test
+    void summaryGroupsByRoute() throws Exception {
+        Path file = record(() -> {
+            for (int i = 0; i < 3; i++) {
+                FlightRecorderEvents.viewStarted(ROUTE, "info.test");
+                domains.findByName("info.test");
+                FlightRecorderEvents.viewFinished();
+            }
+        });
+
+        FlightRecordingSummary.RouteCost cost = FlightRecordingSummary.summarize(file).stream()
+                .filter(c -> c.route().equals(ROUTE))
+                .findFirst().orElseThrow();
+        assertEquals(3, cost.loads());
+        assertEquals(cost.requests() / 3.0, cost.callsPerLoad());
+        assertTrue(cost.requestsByType().get("bind") >= 3);
+        assertTrue(cost.loadPercentile(0.95) >= cost.loadPercentile(0.5));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        FlightRecordingSummary.print(List.of(cost), new PrintStream(out, true, StandardCharsets.UTF_8));
+        assertTrue(out.toString(StandardCharsets.UTF_8).contains(ROUTE));
+    }
+
+    @Test
+    void routesComeFromTheRouteAnnotation() {
+        assertEquals("domain/:domain", FlightRecorderEvents.route(ManageDomainView.class));
+        assertEquals("String", FlightRecorderEvents.route(String.class));
+    }
+}
@@ -0,0 +1,96 @@
+package ch.aarboard.vamm.monitoring;
+
+import ch.aarboard.vamm.concurrent.StripedLockRegistry;
+import ch.aarboard.vamm.data.repositories.JammMailAccountRepository;
+import ch.aarboard.vamm.data.repositories.JammMailAliasRepository;
+import ch.aarboard.vamm.data.repositories.JammPostmasterRepository;
+import ch.aarboard.vamm.data.repositories.JammVirtualDomainRepository;
+import ch.aarboard.vamm.ldap.InMemoryJammDirectory;
+import ch.aarboard.vamm.ldap.LdapSessionManager;
+import ch.aarboard.vamm.security.SecurityService;
+import ch.aarboard.vamm.services.JammVirtualDomainManagementService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+import org.springframework.core.env.StandardEnvironment;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LdapCallBudgetTest {
+
+    private InMemoryJammDirectory directory;
+    private SimpleMeterRegistry registry;
+    private JammMailAccountRepository accounts;
+    private JammVirtualDomainManagementService service;
+
+    @BeforeEach
+    void startDirectory() throws Exception {
+        directory = new InMemoryJammDirectory();
+        directory.importLdif(InMemoryJammDirectory.SAMPLE_FILE);
+
+        registry = new SimpleMeterRegistry();
+        LdapCallBudget budget = new LdapCallBudget(registry, 100, 4);
+        LdapSessionManager sessionManager = new LdapSessionManager(directory.ldapConfig(),
+                new SecurityService(new StandardEnvironment()), List.of(budget));
+        accounts = new JammMailAccountRepository(sessionManager);
+        // The first request also checks that o=hosting exists
+        accounts.countByDomain("info.test");
+
+        AspectJProxyFactory factory = new AspectJProxyFactory(new JammVirtualDomainManagementService(
+                new JammVirtualDomainRepository(sessionManager), accounts, new JammMailAliasRepository(sessionManager),
+                new JammPostmasterRepository(sessionManager), new StripedLockRegistry(16), null));
+        factory.setProxyTargetClass(true);
+        factory.addAspect(budget);
+        service = factory.getProxy();
+    }
+
+    @AfterEach
+    void stopDirectory() {
+        directory.close();
+    }
+
+    private double exceeded(String name) {
+        Counter counter = registry.find("jamm.ldap.budget.exceeded").tag("kind", "service").tag("name", name).counter();
+        return counter == null ? 0 : counter.count();
+    }
+
+    @Test
+    void scopesNest() {
+        try (LdapCallBudget.Scope outer = LdapCallBudget.Scope.open("test", "outer", 100)) {
+            accounts.countByDomain("info.test");
+            try (LdapCallBudget.Scope inner = LdapCallBudget.Scope.open("test", "inner", 100)) {
+                accounts.countByDomain("info.test");
+                assertEquals(2, inner.calls());
+            }
+            accounts.countByDomain("info.test");
+
+            assertEquals(6, outer.calls());
+            // The object mapper adds the object classes of the entry to the filter
+            assertTrue(outer.summary().startsWith("bind 3, search 3, 3 searches (&"), outer.summary());
+            assertTrue(outer.summary().contains("(objectClass=JammMailAccount)"), outer.summary());
+        }
+    }
+
+    @Test
+    void servicesOverTheirBudgetAreCounted() {
+        assertTrue(service.domainExists("info.test"));
+        assertEquals(0, exceeded("JammVirtualDomainManagementService.domainExists"));
+
+        service.getDomain("info.test");
+        assertEquals(1, exceeded("JammVirtualDomainManagementService.getDomain"));
+    }
+
+    @Test
+    void serviceCallsCountForTheEnclosingScope() {
+        try (LdapCallBudget.Scope scope = LdapCallBudget.Scope.open("test", "test", 100)) {
+            service.getDomain("info.test");
+
+            assertEquals(6, scope.calls());
+        }
+    }
+}
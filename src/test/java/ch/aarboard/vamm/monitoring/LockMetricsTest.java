@@ -0,0 +1,48 @@
+package ch.aarboard.vamm.monitoring;
+
+import ch.aarboard.vamm.concurrent.StripedLockRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LockMetricsTest {
+
+    @Test
+    void statsAreReadWhenScraped() throws InterruptedException {
+        StripedLockRegistry locks = new StripedLockRegistry(16);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        new LockMetrics(locks).bindTo(registry);
+
+        assertEquals(16, registry.get("jamm.locks.stripes").gauge().value());
+        assertEquals(0, registry.get("jamm.locks.acquisitions").functionCounter().count());
+
+        String key = StripedLockRegistry.mailKey("busy@example.com");
+        CountDownLatch held = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Thread holder = new Thread(() -> locks.withLocks(() -> {
+            held.countDown();
+            try { release.await(); } catch (InterruptedException e) { Thread.currentThread().interrupt(); }
+        }, key));
+        holder.start();
+        held.await();
+
+        Thread waiter = new Thread(() -> locks.withLocks(() -> { }, key));
+        waiter.start();
+        while (registry.get("jamm.locks.waiting").gauge().value() == 0) {
+            Thread.onSpinWait();
+        }
+        release.countDown();
+        holder.join();
+        waiter.join();
+
+        assertEquals(2, registry.get("jamm.locks.acquisitions").functionCounter().count());
+        assertEquals(1, registry.get("jamm.locks.contended").functionCounter().count());
+        assertEquals(0, registry.get("jamm.locks.waiting").gauge().value());
+        assertTrue(registry.get("jamm.locks.wait").functionCounter().count() > 0);
+        assertTrue(registry.get("jamm.locks.wait.max").timeGauge().value(TimeUnit.NANOSECONDS) > 0);
+    }
+}
@@ -0,0 +1,113 @@
+package ch.aarboard.vamm.monitoring;
+
+import ch.aarboard.vamm.data.entries.JammVirtualDomain;
+import ch.aarboard.vamm.data.repositories.JammVirtualDomainRepository;
+import ch.aarboard.vamm.ldap.InMemoryJammDirectory;
+import ch.aarboard.vamm.ldap.LdapSessionManager;
+import ch.aarboard.vamm.security.SecurityService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@ActiveProfiles({"test", "embedded-ldap"})
+public class OperationMetricsTest {
+
+    @Autowired
+    private JammVirtualDomainRepository springRepository;
+
+    @Autowired
+    private MeterRegistry springRegistry;
+
+    private InMemoryJammDirectory directory;
+    private SimpleMeterRegistry registry;
+    private JammVirtualDomainRepository repository;
+    private String endpoint;
+
+    @BeforeEach
+    void startDirectory() throws Exception {
+        directory = new InMemoryJammDirectory();
+        directory.importLdif(InMemoryJammDirectory.SAMPLE_FILE);
+        endpoint = "localhost:" + directory.getPort();
+
+        registry = new SimpleMeterRegistry();
+        OperationMetrics metrics = new OperationMetrics(registry, directory.ldapConfig());
+        LdapSessionManager sessionManager = new LdapSessionManager(directory.ldapConfig(),
+                new SecurityService(new StandardEnvironment()), List.of(metrics));
+
+        AspectJProxyFactory factory = new AspectJProxyFactory(new JammVirtualDomainRepository(sessionManager));
+        factory.setProxyTargetClass(true);
+        factory.addAspect(metrics);
+        repository = factory.getProxy();
+    }
+
+    @AfterEach
+    void stopDirectory() {
+        directory.close();
+    }
+
+    private long count(String name, String... tags) {
+        Timer timer = registry.find(name).tags(tags).tag("endpoint", endpoint).timer();
+        return timer == null ? 0 : timer.count();
+    }
+
+    @Test
+    void callsAreTimedByOperationAndOutcome() {
+        assertTrue(repository.findByName("info.test").isPresent());
+        assertTrue(repository.findByName("missing.test").isEmpty());
+        List<JammVirtualDomain> domains = repository.findAll();
+
+        assertEquals(1, count("jamm.repository", "operation", "findByName", "entity", "domain", "outcome", "success"));
+        assertEquals(1, count("jamm.repository", "operation", "findByName", "entity", "domain", "outcome", "empty"));
+        assertEquals(1, count("jamm.repository", "operation", "findAll", "entity", "domain", "outcome", "success"));
+        assertEquals(domains.size(), registry.find("jamm.repository.results").tag("operation", "findAll")
+                .summary().totalAmount());
+
+        assertEquals(1, count("jamm.ldap.requests", "type", "read", "outcome", "not_found"));
+        assertTrue(count("jamm.ldap.requests", "type", "search", "outcome", "success") >= 1);
+        assertTrue(count("jamm.ldap.requests", "type", "bind", "outcome", "success") >= 3);
+        assertNull(registry.find("jamm.ldap.errors").counter());
+    }
+
+    @Test
+    void swallowedErrorsCountAsErrors() {
+        directory.close();
+
+        assertEquals(List.of(), repository.findAll());
+
+        assertEquals(1, count("jamm.repository", "operation", "findAll", "entity", "domain", "outcome", "error"));
+        assertTrue(count("jamm.ldap.requests", "type", "bind", "outcome", "error") >= 1);
+        assertEquals(count("jamm.ldap.requests", "type", "bind", "outcome", "error"),
+                registry.find("jamm.ldap.errors").tag("type", "bind").counter().count());
+    }
+
+    @Test
+    void applicationBeansAreInstrumented() {
+        assertTrue(AopUtils.isAopProxy(springRepository));
+
+        springRepository.findByName("info.test");
+
+        assertNotNull(springRegistry.find("jamm.repository").tag("operation", "findByName").timer());
+        assertNotNull(springRegistry.find("jamm.ldap.requests").tag("type", "read").timer());
+    }
+
+    @Test
+    void endpointsIncludeTheDefaultPort() {
+        assertEquals("ldap.example.com:389", OperationMetrics.endpoint("ldap://ldap.example.com"));
+        assertEquals("ldap.example.com:636", OperationMetrics.endpoint("ldaps://ldap.example.com/"));
+        assertEquals("localhost:10389", OperationMetrics.endpoint("ldap://localhost:10389"));
+    }
+}
@@ -0,0 +1,99 @@
+package ch.aarboard.vamm.security;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BreachedPasswordBlocklistTest {
+
+    private static final int PASSWORDS = 1000;
+
+    @TempDir
+    Path directory;
+
+    /**
+     * Lines as in the Have I Been Pwned download: upper case hash, count, sorted by hash
+     */
+    private static String hibpLines() throws Exception {
+        MessageDigest sha1 = MessageDigest.getInstance("SHA-1");
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < PASSWORDS; i++) {
+            byte[] hash = sha1.digest(("breached-" + i).getBytes(StandardCharsets.UTF_8));
+            lines.add(HexFormat.of().withUpperCase().formatHex(hash) + ":" + (i + 1));
+        }
+        lines.sort(null);
+        return String.join("\n", lines) + "\n";
+    }
+
+    private Path writeBlocklist(int recordBytes) throws Exception {
+        Path file = directory.resolve("breached-" + recordBytes + ".bin");
+        try (OutputStream out = Files.newOutputStream(file)) {
+            long count = BlocklistCommand.convert(new BufferedReader(new StringReader(hibpLines())), out, recordBytes);
+            assertEquals(PASSWORDS, count);
+        }
+        return file;
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {20, 8})
+    void listedPasswordsAreFound(int recordBytes) throws Exception {
+        BreachedPasswordBlocklist blocklist = new BreachedPasswordBlocklist(writeBlocklist(recordBytes), recordBytes, Integer.MAX_VALUE);
+
+        assertTrue(blocklist.isEnabled());
+        assertEquals(PASSWORDS, blocklist.size());
+        for (int i = 0; i < PASSWORDS; i++) {
+            assertTrue(blocklist.contains("breached-" + i), "breached-" + i);
+            assertFalse(blocklist.contains("unbreached-" + i), "unbreached-" + i);
+        }
+        assertThrows(IllegalArgumentException.class, () -> blocklist.check("breached-42"));
+        assertDoesNotThrow(() -> blocklist.check("correct horse battery staple 42"));
+    }
+
+    @Test
+    void recordsAreFoundAcrossChunks() throws Exception {
+        // 7 records per mapping, the search crosses many chunk boundaries
+        BreachedPasswordBlocklist blocklist = new BreachedPasswordBlocklist(writeBlocklist(8), 8, 60);
+
+        for (int i = 0; i < PASSWORDS; i++) {
+            assertTrue(blocklist.contains("breached-" + i), "breached-" + i);
+        }
+        assertFalse(blocklist.contains("not in the list"));
+    }
+
+    @Test
+    void withoutFileEveryPasswordPasses() {
+        BreachedPasswordBlocklist blocklist = new BreachedPasswordBlocklist("", 20);
+
+        assertFalse(blocklist.isEnabled());
+        assertFalse(blocklist.contains("password"));
+        assertDoesNotThrow(() -> blocklist.check("password"));
+    }
+
+    @Test
+    void invalidFilesAreRejected() throws Exception {
+        Path truncated = directory.resolve("truncated.bin");
+        Files.write(truncated, new byte[21]);
+        assertThrows(IllegalStateException.class, () -> new BreachedPasswordBlocklist(truncated, 20, Integer.MAX_VALUE));
+        assertThrows(IllegalStateException.class,
+                () -> new BreachedPasswordBlocklist(directory.resolve("missing.bin"), 20, Integer.MAX_VALUE));
+
+        String unsorted = "FFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFF:1\n0000000000000000000000000000000000000000:1\n";
+        assertThrows(IllegalArgumentException.class, () -> BlocklistCommand.convert(
+                new BufferedReader(new StringReader(unsorted)), new ByteArrayOutputStream(), 20));
+    }
+}
@@ -9,6 +9,7 @@ import org.junit.jupiter.api.TestMethodOrder;
 import org.springframework.beans.factory.annotation.Autowired;
 
 import java.util.List;
+import java.util.function.Predicate;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -18,6 +19,7 @@ public class JammMailAccountManagementServiceTest extends AbstractServiceTest {
 
     private static final String TEST_DOMAIN = "test-service-domain.com";
     private static final String SECOND_DOMAIN = "second-service-domain.com";
+    private static final Predicate<String> ALL = domain -> true;
 
     @Test
     @Order(1)
@@ -95,4 +97,64 @@ public class JammMailAccountManagementServiceTest extends AbstractServiceTest {
         virtualDomainManagementService.deleteDomain(TEST_DOMAIN);
         assertFalse(virtualDomainManagementService.domainExists(TEST_DOMAIN));
     }
-}
\ No newline at end of file
+
+    @Test
+    @Order(9)
+    public void testDeleteAccountRemovesItFromAliases() {
+        String account = "leaving@" + SECOND_DOMAIN;
+        mailAccountManagementService.createAccount(account, "Leaving-2024!", null, null, null);
+        mailAliasManagementService.createAlias("team@" + SECOND_DOMAIN,
+                List.of("Leaving@" + SECOND_DOMAIN, "staying@elsewhere.test"), null);
+        mailAliasManagementService.createAlias("old@" + SECOND_DOMAIN, List.of(account), null);
+        mailAliasManagementService.createAlias("other@" + SECOND_DOMAIN, List.of("staying@elsewhere.test"), null);
+
+        assertEquals(List.of("old@" + SECOND_DOMAIN, "team@" + SECOND_DOMAIN),
+                mailAccountManagementService.getAliasesDeliveringTo(account, ALL));
+
+        JammMailAccountManagementService.AliasCleanup cleanup = mailAccountManagementService.deleteAccount(account, true, ALL);
+
+        assertEquals(List.of("team@" + SECOND_DOMAIN), cleanup.updated());
+        assertEquals(List.of("old@" + SECOND_DOMAIN), cleanup.deleted());
+        assertTrue(cleanup.skipped().isEmpty());
+        assertTrue(cleanup.failed().isEmpty());
+        assertEquals(List.of("staying@elsewhere.test"),
+                mailAliasManagementService.getAlias("team@" + SECOND_DOMAIN).getDestinations());
+        assertFalse(mailAliasRepository.existsByEmail("old@" + SECOND_DOMAIN));
+        assertTrue(mailAliasRepository.existsByEmail("other@" + SECOND_DOMAIN));
+        assertEquals(List.of(), mailAccountManagementService.getAliasesDeliveringTo(account, ALL));
+    }
+
+    @Test
+    @Order(10)
+    public void testDeleteAccountKeepsAliasesUnlessAsked() {
+        String account = "kept@" + SECOND_DOMAIN;
+        mailAccountManagementService.createAccount(account, "Kept-2024!", null, null, null);
+        mailAliasManagementService.createAlias("forward@" + SECOND_DOMAIN, List.of(account), null);
+
+        JammMailAccountManagementService.AliasCleanup cleanup = mailAccountManagementService.deleteAccount(account, false, ALL);
+
+        assertTrue(cleanup.updated().isEmpty());
+        assertTrue(cleanup.deleted().isEmpty());
+        assertEquals(List.of("forward@" + SECOND_DOMAIN), mailAccountManagementService.getAliasesDeliveringTo(account, ALL));
+    }
+
+    @Test
+    @Order(11)
+    public void testDeleteAccountOnlyChangesAliasesOfTheGivenDomains() {
+        String account = "moving@" + SECOND_DOMAIN;
+        mailAccountManagementService.createAccount(account, "Moving-2024!", null, null, null);
+        mailAliasManagementService.createAlias("mine@" + SECOND_DOMAIN, List.of(account), null);
+        mailAliasManagementService.createAlias("theirs@info.test", List.of(account, "staying@elsewhere.test"), null);
+
+        assertEquals(List.of("mine@" + SECOND_DOMAIN),
+                mailAccountManagementService.getAliasesDeliveringTo(account, SECOND_DOMAIN::equals));
+
+        JammMailAccountManagementService.AliasCleanup cleanup =
+                mailAccountManagementService.deleteAccount(account, true, SECOND_DOMAIN::equals);
+
+        assertEquals(List.of("mine@" + SECOND_DOMAIN), cleanup.deleted());
+        assertTrue(cleanup.updated().isEmpty());
+        assertEquals(List.of(account, "staying@elsewhere.test"),
+                mailAliasManagementService.getAlias("theirs@info.test").getDestinations());
+    }
+}
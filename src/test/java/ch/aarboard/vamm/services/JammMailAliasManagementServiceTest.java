@@ -2,6 +2,7 @@ package ch.aarboard.vamm.services;
 
 import ch.aarboard.vamm.base.AbstractServiceTest;
 import ch.aarboard.vamm.data.entries.JammMailAlias;
+import ch.aarboard.vamm.ldap.EntryConflictException;
 import org.junit.jupiter.api.MethodOrderer;
 import org.junit.jupiter.api.Order;
 import org.junit.jupiter.api.Test;
@@ -78,6 +79,50 @@ public class JammMailAliasManagementServiceTest extends AbstractServiceTest {
 
     @Test
     @Order(6)
+    public void testStaleUpdateIsRejected() {
+        JammMailAlias first = mailAliasManagementService.getAlias(TEST_ALIAS);
+        JammMailAlias second = mailAliasManagementService.getAlias(TEST_ALIAS);
+
+        first.setDescription("First edit");
+        mailAliasManagementService.updateAlias(first);
+
+        second.setDescription("Second edit");
+        assertThrows(EntryConflictException.class, () -> mailAliasManagementService.updateAlias(second));
+        assertEquals("First edit", mailAliasManagementService.getAlias(TEST_ALIAS).getDescription());
+    }
+
+    @Test
+    @Order(6)
+    public void testDeletedAliasIsNotRecreatedByAStaleCopy() {
+        String email = "stale@" + TEST_DOMAIN;
+        mailAliasManagementService.createAlias(email, List.of(SECOND_DESTINATION), null);
+        JammMailAlias stale = mailAliasManagementService.getAlias(email);
+        mailAliasManagementService.deleteAlias(email);
+
+        stale.setDescription("Edited after the delete");
+        assertThrows(EntryConflictException.class, () -> mailAliasManagementService.updateAlias(stale));
+        assertThrows(IllegalArgumentException.class, () -> mailAliasManagementService.toggleAliasStatus(stale));
+        assertFalse(mailAliasRepository.existsByEmail(email));
+    }
+
+    @Test
+    @Order(7)
+    public void testToggleOfStaleAliasIsMerged() {
+        JammMailAlias stale = mailAliasManagementService.getAlias(TEST_ALIAS);
+        boolean wasActive = stale.isActive();
+
+        mailAliasManagementService.addDestination(TEST_ALIAS, SECOND_DESTINATION);
+        JammMailAlias toggled = mailAliasManagementService.toggleAliasStatus(stale);
+
+        assertEquals(!wasActive, toggled.isActive());
+        assertTrue(toggled.getDestinations().contains(SECOND_DESTINATION));
+
+        mailAliasManagementService.removeDestination(TEST_ALIAS, SECOND_DESTINATION);
+        mailAliasManagementService.toggleAliasStatus(TEST_ALIAS);
+    }
+
+    @Test
+    @Order(8)
     public void testGetAliasesByDomain() {
         List<JammMailAlias> aliases = mailAliasManagementService.getAliasesByDomain(TEST_DOMAIN);
 
@@ -86,7 +131,7 @@ public class JammMailAliasManagementServiceTest extends AbstractServiceTest {
     }
 
     @Test
-    @Order(7)
+    @Order(9)
     public void testCreateCatchAllAlias() {
         JammMailAlias catchAll = mailAliasManagementService.createCatchAllAlias(
                 TEST_DOMAIN,
@@ -100,7 +145,7 @@ public class JammMailAliasManagementServiceTest extends AbstractServiceTest {
     }
 
     @Test
-    @Order(8)
+    @Order(10)
     public void testDeleteAlias() {
         mailAliasManagementService.deleteAlias(TEST_ALIAS);
 
@@ -110,7 +155,7 @@ public class JammMailAliasManagementServiceTest extends AbstractServiceTest {
     }
 
     @Test
-    @Order(9)
+    @Order(11)
     public void testCleanup() {
         mailAliasManagementService.deleteAllAliasesInDomain(TEST_DOMAIN);
         virtualDomainManagementService.deleteDomain(TEST_DOMAIN);
@@ -0,0 +1,88 @@
+package ch.aarboard.vamm.utils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PasswordUtilsTest {
+
+    @ParameterizedTest
+    @EnumSource(PasswordUtils.PasswordScheme.class)
+    void hashedPasswordsVerify(PasswordUtils.PasswordScheme scheme) {
+        String hash = PasswordUtils.hashPassword("secret", scheme);
+
+        assertTrue(hash.startsWith(scheme.getPrefix()));
+        assertTrue(PasswordUtils.verifyPassword(hash, "secret"));
+        assertFalse(PasswordUtils.verifyPassword(hash, "Secret"));
+    }
+
+    @Test
+    void saltsDiffer() {
+        assertNotEquals(PasswordUtils.hashPasswordSsha("secret"), PasswordUtils.hashPasswordSsha("secret"));
+    }
+
+    @Test
+    void externallyCreatedHashesVerify() {
+        // Created with slappasswd style tooling, with an 8 and a 4 byte salt
+        assertTrue(PasswordUtils.verifyPassword("{SSHA}tCNGqyJLk/uvKpCa4vga5GB2gWoxMjM0NTY3OA==", "secret"));
+        assertTrue(PasswordUtils.verifyPassword("{SSHA}+RFhsab2AfzZ0VfEdyknXtUT06RhYmNk", "secret"));
+        assertTrue(PasswordUtils.verifyPassword("{MD5}Xr4ilOzQ4PCOq3aQ0qbuaQ==", "secret"));
+        // pw-pbkdf2 format with adapted base64, 1000 iterations
+        assertTrue(PasswordUtils.verifyPassword("{PBKDF2-SHA512}1000$MDEyMzQ1Njc4OWFiY2RlZg"
+                + "$vgFvU7zWIDgDAUi7d8ayt.cfRiPWVVWfv8iQRsGZaZviWzsSNgWYXEE5PmvI/VELMsOmEbqLz0PKuePNjOk41A", "secret"));
+    }
+
+    @Test
+    void lowerWorkFactorsNeedRehash() {
+        Pbkdf2PasswordHasher weakPbkdf2 = new Pbkdf2PasswordHasher(1_000);
+        Pbkdf2PasswordHasher strongPbkdf2 = new Pbkdf2PasswordHasher(2_000);
+        String pbkdf2 = weakPbkdf2.hash("secret");
+        assertTrue(strongPbkdf2.verify(pbkdf2, "secret"));
+        assertTrue(strongPbkdf2.needsRehash(pbkdf2));
+        assertFalse(weakPbkdf2.needsRehash(pbkdf2));
+
+        Argon2PasswordHasher weakArgon2 = new Argon2PasswordHasher(1_024, 1, 1);
+        Argon2PasswordHasher strongArgon2 = new Argon2PasswordHasher(1_024, 2, 1);
+        String argon2 = weakArgon2.hash("secret");
+        assertTrue(argon2.startsWith("{ARGON2}$argon2id$"));
+        assertTrue(strongArgon2.verify(argon2, "secret"));
+        assertTrue(strongArgon2.needsRehash(argon2));
+        assertFalse(weakArgon2.needsRehash(argon2));
+    }
+
+    @Test
+    void malformedHashesDoNotVerify() {
+        assertFalse(PasswordUtils.verifyPassword("{SSHA}", "secret"));
+        assertFalse(PasswordUtils.verifyPassword("{SSHA}not base64!", "secret"));
+        assertFalse(PasswordUtils.verifyPassword("{SHA}YWJj", "secret"));
+        assertFalse(PasswordUtils.verifyPassword("{PBKDF2-SHA512}1000$salt", "secret"));
+        assertFalse(PasswordUtils.verifyPassword("{ARGON2}$argon2id$broken", "secret"));
+        assertFalse(PasswordUtils.verifyPassword("{MD5}" + PasswordUtils.hashPasswordSha("secret").substring(5), "secret"));
+    }
+
+    @Test
+    void hashingIsThreadSafe() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                String password = "password-" + i;
+                results.add(executor.submit(() -> PasswordUtils.verifyPassword(PasswordUtils.hashPasswordSsha(password), password)
+                        && PasswordUtils.verifyPassword(PasswordUtils.hashPasswordMd5(password), password)));
+            }
+            for (Future<Boolean> result : results) {
+                assertTrue(result.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}